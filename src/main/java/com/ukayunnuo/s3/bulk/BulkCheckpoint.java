@@ -0,0 +1,93 @@
+package com.ukayunnuo.s3.bulk;
+
+import cn.hutool.core.util.StrUtil;
+import com.ukayunnuo.s3.exception.S3Exception;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Objects;
+import java.util.Properties;
+
+/**
+ * 批量任务检查点 {@code <workDir>/<jobId>.ckpt}
+ * <p> 记录连续完成的最后位置及累计计数, 先写临时文件再原子重命名 </p>
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+class BulkCheckpoint {
+
+    private final File file;
+
+    String position;
+
+    long processed;
+
+    long failed;
+
+    private BulkCheckpoint(File file) {
+        this.file = file;
+    }
+
+    /**
+     * 加载任务检查点, 不存在或桶不同时为空检查点
+     */
+    static BulkCheckpoint load(File dir, String jobId, String bucket) {
+        BulkCheckpoint checkpoint = new BulkCheckpoint(new File(dir, jobId + ".ckpt"));
+        if (!checkpoint.file.isFile()) {
+            return checkpoint;
+        }
+        Properties props = new Properties();
+        try (InputStream in = Files.newInputStream(checkpoint.file.toPath())) {
+            props.load(in);
+        } catch (IOException e) {
+            throw new S3Exception(StrUtil.format("read bulk checkpoint failed, file:{}", checkpoint.file), e);
+        }
+        if (Objects.equals(bucket, props.getProperty("bucket"))) {
+            checkpoint.position = props.getProperty("position");
+            checkpoint.processed = Long.parseLong(props.getProperty("processed", "0"));
+            checkpoint.failed = Long.parseLong(props.getProperty("failed", "0"));
+        }
+        return checkpoint;
+    }
+
+    boolean isResumed() {
+        return position != null;
+    }
+
+    void save(String jobId, String bucket) {
+        if (position == null) {
+            return;
+        }
+        Properties props = new Properties();
+        props.setProperty("jobId", jobId);
+        props.setProperty("bucket", bucket);
+        props.setProperty("position", position);
+        props.setProperty("processed", String.valueOf(processed));
+        props.setProperty("failed", String.valueOf(failed));
+        File temp = new File(file.getPath() + ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(temp.toPath())) {
+                props.store(out, null);
+            }
+            try {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            throw new S3Exception(StrUtil.format("write bulk checkpoint failed, file:{}", file), e);
+        }
+    }
+
+    void delete() {
+        if (file.exists() && !file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.ukayunnuo.s3.bulk;
+
+import lombok.Getter;
+
+/**
+ * 批量任务: 对 key 来源中的每个 key 执行同一操作
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Getter
+public class BulkJob {
+
+    /**
+     * 任务 ID, 用作检查点与报告的文件名; 相同 ID 再次执行时从检查点继续
+     */
+    private final String id;
+
+    private final String bucket;
+
+    private final KeySource source;
+
+    private final BulkOperation operation;
+
+    public BulkJob(String id, String bucket, KeySource source, BulkOperation operation) {
+        this.id = id;
+        this.bucket = bucket;
+        this.source = source;
+        this.operation = operation;
+    }
+}
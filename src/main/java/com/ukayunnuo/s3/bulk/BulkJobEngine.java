@@ -0,0 +1,366 @@
+package com.ukayunnuo.s3.bulk;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.StrUtil;
+import com.ukayunnuo.s3.core.StorageThreads;
+import com.ukayunnuo.s3.exception.S3Exception;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 批量任务引擎
+ * <p> 调用线程顺序读取 key 并分块, 块再按操作的批大小拆成子块(单 key 操作每个 key 一个子块)提交到
+ * {@link StorageThreads} 执行器(虚拟线程模式下每个子块一个虚拟线程); 已提交未完成的块数受 {@code max-pending-batches} 限制,
+ * 内存占用与 key 总数无关 </p>
+ * <p> 每个桶的在执行子块数受 {@code max-concurrency-per-bucket} 限制(同一引擎的任务共享): 调用线程先取得桶许可再提交,
+ * 许可不足时暂停读取 key, 工作线程不会阻塞在许可上. 块可乱序完成, 检查点只记录连续完成的最后位置,
+ * 中断后从该位置继续, 之后的 key 可能被再次处理, 操作需可重复执行 </p>
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Slf4j
+public class BulkJobEngine implements Closeable {
+
+    private final BulkProp prop;
+
+    private final ExecutorService executor;
+
+    private final Map<String, Semaphore> bucketPermits = new ConcurrentHashMap<>();
+
+    public BulkJobEngine(BulkProp prop) {
+        this.prop = prop;
+        this.executor = StorageThreads.newExecutor("s3-bulk", Math.max(1, prop.getParallelism()));
+    }
+
+    public BulkJobEngine() {
+        this(new BulkProp());
+    }
+
+    /**
+     * 执行批量任务, 存在同 ID 的检查点时从检查点继续; 完成后删除检查点, 保留失败报告
+     *
+     * @param job {@link BulkJob}
+     * @return {@link BulkJobResult}
+     */
+    public BulkJobResult run(BulkJob job) {
+        long start = System.currentTimeMillis();
+        File dir = new File(prop.getWorkDir());
+        FileUtil.mkdir(dir);
+        BulkCheckpoint checkpoint = BulkCheckpoint.load(dir, job.getId(), job.getBucket());
+        boolean resumed = checkpoint.isResumed();
+        File reportFile = new File(dir, job.getId() + ".failed");
+        Run run = new Run(job, checkpoint, reportFile, resumed);
+        try {
+            job.getSource().scan(checkpoint.position, run::offer);
+            run.flush();
+            run.awaitAll();
+        } catch (RuntimeException | Error e) {
+            run.abort();
+            throw e;
+        } finally {
+            run.closeReport();
+        }
+        checkpoint.delete();
+        BulkJobResult result = run.result();
+        result.setElapsedMillis(System.currentTimeMillis() - start);
+        log.info("bulk job finished, id:{}, bucket:{}, processed:{}, failed:{}, resumed:{}, elapsed:{}ms",
+                job.getId(), job.getBucket(), result.getProcessed(), result.getFailed(), resumed, result.getElapsedMillis());
+        return result;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    private Semaphore bucketPermit(String bucket) {
+        return bucketPermits.computeIfAbsent(bucket, b -> new Semaphore(Math.max(1, prop.getMaxConcurrencyPerBucket())));
+    }
+
+    private static void acquire(Semaphore permits) {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new S3Exception("bulk job interrupted", e);
+        }
+    }
+
+    /**
+     * 已提交的一块 key
+     */
+    private static final class Batch {
+
+        final long seq;
+
+        final List<String> keys;
+
+        /**
+         * 块内最后一个 key 的位置
+         */
+        final String position;
+
+        final Map<String, Exception> failures = new ConcurrentHashMap<>();
+
+        /**
+         * 未完成的子块数
+         */
+        final AtomicInteger remaining = new AtomicInteger();
+
+        /**
+         * 提交中途失败, 不计入检查点与结果
+         */
+        volatile boolean abandoned;
+
+        Batch(long seq, List<String> keys, String position) {
+            this.seq = seq;
+            this.keys = keys;
+            this.position = position;
+        }
+    }
+
+    /**
+     * 一次执行的状态
+     */
+    private final class Run {
+
+        private final BulkJob job;
+
+        private final BulkCheckpoint checkpoint;
+
+        private final File reportFile;
+
+        private final boolean resumed;
+
+        private final int taskSize;
+
+        private final int leafSize;
+
+        private final int maxPending;
+
+        private final Semaphore pending;
+
+        /**
+         * 已完成但前面还有未完成块的块, 按序号排序
+         */
+        private final TreeMap<Long, Batch> completed = new TreeMap<>();
+
+        private final List<String> samples = new ArrayList<>();
+
+        private final Writer report;
+
+        private List<String> keys;
+
+        private String lastPosition;
+
+        private long nextSeq;
+
+        private long nextCommit;
+
+        private long lastCheckpoint = System.currentTimeMillis();
+
+        private volatile IOException reportError;
+
+        Run(BulkJob job, BulkCheckpoint checkpoint, File reportFile, boolean resumed) {
+            this.job = job;
+            this.checkpoint = checkpoint;
+            this.reportFile = reportFile;
+            this.resumed = resumed;
+            int batchSize = job.getOperation().batchSize();
+            this.leafSize = Math.max(1, batchSize);
+            this.taskSize = batchSize > 1 ? batchSize : Math.max(1, prop.getKeysPerTask());
+            this.maxPending = Math.max(1, prop.getMaxPendingBatches());
+            this.pending = new Semaphore(maxPending);
+            this.keys = new ArrayList<>(taskSize);
+            try {
+                StandardOpenOption mode = resumed ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING;
+                this.report = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(reportFile.toPath(),
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE, mode), StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                throw new S3Exception(StrUtil.format("open bulk report failed, file:{}", reportFile), e);
+            }
+        }
+
+        void offer(String key, String position) {
+            keys.add(key);
+            lastPosition = position;
+            if (keys.size() >= taskSize) {
+                flush();
+            }
+        }
+
+        /**
+         * 提交当前块, 并按间隔写检查点
+         */
+        void flush() {
+            if (!keys.isEmpty()) {
+                Batch batch = new Batch(nextSeq++, keys, lastPosition);
+                keys = new ArrayList<>(taskSize);
+                acquire(pending);
+                submit(batch);
+            }
+            if (System.currentTimeMillis() - lastCheckpoint >= prop.getCheckpointIntervalMillis()) {
+                saveCheckpoint();
+            }
+        }
+
+        /**
+         * 逐个子块取得桶许可后提交; 提交中途失败(如中断)时放弃该块, 检查点停在它之前
+         */
+        private void submit(Batch batch) {
+            int size = batch.keys.size();
+            int leaves = (size + leafSize - 1) / leafSize;
+            batch.remaining.set(leaves);
+            Semaphore permits = bucketPermit(job.getBucket());
+            for (int from = 0; from < size; from += leafSize) {
+                List<String> leaf = batch.keys.subList(from, Math.min(size, from + leafSize));
+                boolean acquired = false;
+                try {
+                    acquire(permits);
+                    acquired = true;
+                    executor.execute(() -> {
+                        try {
+                            job.getOperation().applyBatch(job.getBucket(), leaf, batch.failures);
+                        } catch (RuntimeException e) {
+                            fail(batch, leaf, e);
+                        } finally {
+                            permits.release();
+                            leafDone(batch);
+                        }
+                    });
+                } catch (RuntimeException e) {
+                    if (acquired) {
+                        permits.release();
+                    }
+                    batch.abandoned = true;
+                    if (batch.remaining.addAndGet(-(leaves - from / leafSize)) == 0) {
+                        pending.release();
+                    }
+                    throw e;
+                }
+            }
+        }
+
+        private void fail(Batch batch, List<String> leaf, RuntimeException e) {
+            for (String key : leaf) {
+                batch.failures.putIfAbsent(key, e);
+            }
+        }
+
+        private void leafDone(Batch batch) {
+            if (batch.remaining.decrementAndGet() == 0) {
+                if (!batch.abandoned) {
+                    complete(batch);
+                }
+                pending.release();
+            }
+        }
+
+        void awaitAll() {
+            try {
+                while (!pending.tryAcquire(maxPending, prop.getCheckpointIntervalMillis(), TimeUnit.MILLISECONDS)) {
+                    saveCheckpoint();
+                }
+                pending.release(maxPending);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new S3Exception("bulk job interrupted", e);
+            }
+            if (reportError != null) {
+                throw new S3Exception(StrUtil.format("write bulk report failed, file:{}", reportFile), reportError);
+            }
+        }
+
+        /**
+         * 失败时等待已提交的块结束并保存检查点, 下次从检查点继续
+         */
+        void abort() {
+            try {
+                pending.acquire(maxPending);
+                pending.release(maxPending);
+                saveCheckpoint();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                log.warn("save bulk checkpoint failed, id:{}", job.getId(), e);
+            }
+        }
+
+        private void complete(Batch batch) {
+            synchronized (this) {
+                for (Map.Entry<String, Exception> failure : batch.failures.entrySet()) {
+                    Exception e = failure.getValue();
+                    String message = String.valueOf(e.getMessage()).replace('\n', ' ').replace('\t', ' ');
+                    try {
+                        report.write(failure.getKey() + '\t' + e.getClass().getName() + '\t' + message + '\n');
+                    } catch (IOException io) {
+                        reportError = io;
+                    }
+                    if (samples.size() < prop.getMaxFailureSamples()) {
+                        samples.add(failure.getKey() + ": " + message);
+                    }
+                }
+                completed.put(batch.seq, batch);
+                Map.Entry<Long, Batch> first;
+                while ((first = completed.firstEntry()) != null && first.getKey() == nextCommit) {
+                    Batch done = completed.pollFirstEntry().getValue();
+                    checkpoint.position = done.position;
+                    checkpoint.processed += done.keys.size();
+                    checkpoint.failed += done.failures.size();
+                    nextCommit++;
+                }
+            }
+        }
+
+        private synchronized void saveCheckpoint() {
+            try {
+                report.flush();
+            } catch (IOException e) {
+                reportError = e;
+            }
+            checkpoint.save(job.getId(), job.getBucket());
+            lastCheckpoint = System.currentTimeMillis();
+            log.debug("bulk checkpoint, id:{}, position:{}, processed:{}", job.getId(), checkpoint.position, checkpoint.processed);
+        }
+
+        synchronized void closeReport() {
+            try {
+                report.close();
+            } catch (IOException e) {
+                log.warn("close bulk report failed, file:{}", reportFile, e);
+            }
+        }
+
+        synchronized BulkJobResult result() {
+            BulkJobResult result = new BulkJobResult();
+            result.setJobId(job.getId());
+            result.setProcessed(checkpoint.processed);
+            result.setFailed(checkpoint.failed);
+            result.setSucceeded(checkpoint.processed - checkpoint.failed);
+            result.setResumed(resumed);
+            result.setPosition(checkpoint.position);
+            result.setReportFile(reportFile);
+            result.setFailureSamples(new ArrayList<>(samples));
+            return result;
+        }
+    }
+}
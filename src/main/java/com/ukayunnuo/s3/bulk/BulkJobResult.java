@@ -0,0 +1,53 @@
+package com.ukayunnuo.s3.bulk;
+
+import lombok.Data;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 批量任务结果, 计数包含之前中断的执行
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Data
+public class BulkJobResult {
+
+    private String jobId;
+
+    /**
+     * 已处理的 key 数
+     */
+    private long processed;
+
+    private long succeeded;
+
+    private long failed;
+
+    /**
+     * 是否从检查点继续
+     */
+    private boolean resumed;
+
+    /**
+     * 本次执行耗时(毫秒)
+     */
+    private long elapsedMillis;
+
+    /**
+     * 最后处理的位置
+     */
+    private String position;
+
+    /**
+     * 失败报告, 每行 {@code key\t异常类型\t消息}
+     */
+    private File reportFile;
+
+    /**
+     * 部分失败样例: key: 消息
+     */
+    private List<String> failureSamples = new ArrayList<>();
+}
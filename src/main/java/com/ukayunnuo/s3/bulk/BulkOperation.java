@@ -0,0 +1,49 @@
+package com.ukayunnuo.s3.bulk;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 对每个 key 执行的操作
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@FunctionalInterface
+public interface BulkOperation {
+
+    /**
+     * 处理一个 key, 抛出异常视为该 key 失败
+     *
+     * @param bucket 桶
+     * @param key    key
+     * @throws Exception 处理异常
+     */
+    void apply(String bucket, String key) throws Exception;
+
+    /**
+     * 每批 key 数, 大于 1 时由 {@link #applyBatch} 一次处理一批(如批量删除)
+     *
+     * @return int
+     */
+    default int batchSize() {
+        return 1;
+    }
+
+    /**
+     * 处理一批 key
+     *
+     * @param bucket   桶
+     * @param keys     key 列表
+     * @param failures 失败的 key -> 异常
+     */
+    default void applyBatch(String bucket, List<String> keys, Map<String, Exception> failures) {
+        for (String key : keys) {
+            try {
+                apply(bucket, key);
+            } catch (Exception e) {
+                failures.put(key, e);
+            }
+        }
+    }
+}
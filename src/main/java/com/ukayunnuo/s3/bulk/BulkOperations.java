@@ -0,0 +1,55 @@
+package com.ukayunnuo.s3.bulk;
+
+import com.ukayunnuo.s3.storage.ObjectStorage;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 常用批量操作
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+public class BulkOperations {
+
+    /**
+     * 单次批量删除的最大数量
+     */
+    private static final int DELETE_BATCH_SIZE = 1000;
+
+    private BulkOperations() {
+    }
+
+    /**
+     * 批量删除, 每 1000 个 key 一次请求
+     *
+     * @param storage {@link ObjectStorage}
+     * @return {@link BulkOperation}
+     */
+    public static BulkOperation delete(ObjectStorage storage) {
+        return new BulkOperation() {
+            @Override
+            public void apply(String bucket, String key) {
+                storage.deleteObjects(bucket, Collections.singletonList(key));
+            }
+
+            @Override
+            public int batchSize() {
+                return DELETE_BATCH_SIZE;
+            }
+
+            @Override
+            public void applyBatch(String bucket, List<String> keys, Map<String, Exception> failures) {
+                try {
+                    storage.deleteObjects(bucket, keys);
+                } catch (RuntimeException e) {
+                    for (String key : keys) {
+                        failures.put(key, e);
+                    }
+                }
+            }
+        };
+    }
+}
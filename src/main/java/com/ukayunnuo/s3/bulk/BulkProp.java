@@ -0,0 +1,60 @@
+package com.ukayunnuo.s3.bulk;
+
+import cn.hutool.json.JSONUtil;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+
+/**
+ * 批量任务 配置
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "s3.bulk")
+public class BulkProp {
+
+    /**
+     * 检查点与结果报告目录
+     */
+    private String workDir = System.getProperty("java.io.tmpdir") + File.separator + "s3-util" + File.separator + "bulk";
+
+    /**
+     * 同时执行的子块数(平台线程模式下为线程数)
+     */
+    private int parallelism = 64;
+
+    /**
+     * 每个块的 key 数(批量操作按其批大小), 块内按操作的批大小拆成子块并行执行
+     */
+    private int keysPerTask = 256;
+
+    /**
+     * 每个桶同时执行的子块上限, 多个任务共享; 许可不足时暂停读取 key
+     */
+    private int maxConcurrencyPerBucket = 64;
+
+    /**
+     * 已提交未完成的批次上限, 超过时暂停读取 key
+     */
+    private int maxPendingBatches = 1024;
+
+    /**
+     * 检查点写入间隔(毫秒)
+     */
+    private long checkpointIntervalMillis = 10000;
+
+    /**
+     * 结果中保留的失败样例数, 全部失败 key 写入报告文件
+     */
+    private int maxFailureSamples = 100;
+
+    @Override
+    public String toString() {
+        return JSONUtil.toJsonStr(this);
+    }
+}
@@ -0,0 +1,32 @@
+package com.ukayunnuo.s3.bulk;
+
+/**
+ * 批量任务的 key 来源
+ * <p> 按固定顺序产出 key, 每个 key 附带可恢复的位置; 从检查点恢复时从该位置之后继续 </p>
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+public interface KeySource {
+
+    /**
+     * key 回调
+     */
+    @FunctionalInterface
+    interface KeyConsumer {
+
+        /**
+         * @param key      key
+         * @param position 该 key 的位置, 从这里恢复时不再产出该 key
+         */
+        void accept(String key, String position);
+    }
+
+    /**
+     * 按顺序产出 key
+     *
+     * @param resumeAfter 检查点位置, 为空时从头开始
+     * @param consumer    key 回调
+     */
+    void scan(String resumeAfter, KeyConsumer consumer);
+}
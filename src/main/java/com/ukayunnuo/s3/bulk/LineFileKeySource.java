@@ -0,0 +1,42 @@
+package com.ukayunnuo.s3.bulk;
+
+import cn.hutool.core.util.StrUtil;
+import com.ukayunnuo.s3.exception.S3Exception;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * 文本文件(每行一个 key)作为 key 来源, 位置为行号; 空行忽略
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+public class LineFileKeySource implements KeySource {
+
+    private final File file;
+
+    public LineFileKeySource(File file) {
+        this.file = file;
+    }
+
+    @Override
+    public void scan(String resumeAfter, KeyConsumer consumer) {
+        long skip = resumeAfter == null ? 0 : Long.parseLong(resumeAfter);
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            long line = 0;
+            String key;
+            while ((key = reader.readLine()) != null) {
+                line++;
+                if (line > skip && !key.isEmpty()) {
+                    consumer.accept(key, String.valueOf(line));
+                }
+            }
+        } catch (IOException e) {
+            throw new S3Exception(StrUtil.format("read key file failed, file:{}", file), e);
+        }
+    }
+}
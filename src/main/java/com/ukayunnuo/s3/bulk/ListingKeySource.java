@@ -0,0 +1,33 @@
+package com.ukayunnuo.s3.bulk;
+
+import com.ukayunnuo.s3.storage.ObjectStorage;
+
+/**
+ * 列举前缀下的对象作为 key 来源, 位置为 key 本身(列举按 key 升序)
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+public class ListingKeySource implements KeySource {
+
+    private final ObjectStorage storage;
+
+    private final String bucket;
+
+    private final String prefix;
+
+    public ListingKeySource(ObjectStorage storage, String bucket, String prefix) {
+        this.storage = storage;
+        this.bucket = bucket;
+        this.prefix = prefix;
+    }
+
+    @Override
+    public void scan(String resumeAfter, KeyConsumer consumer) {
+        storage.listObjects(bucket, prefix, info -> {
+            if (resumeAfter == null || info.getKey().compareTo(resumeAfter) > 0) {
+                consumer.accept(info.getKey(), info.getKey());
+            }
+        });
+    }
+}
@@ -0,0 +1,66 @@
+package com.ukayunnuo.s3.bulk;
+
+import lombok.Getter;
+
+/**
+ * 清单文件格式: 每行一个 key, 或 CSV 的某一列(如 S3 Inventory 的 key 列)
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Getter
+public class ManifestFormat {
+
+    /**
+     * key 所在列, 从 0 开始; 为 -1 时整行作为 key
+     */
+    private final int column;
+
+    private final byte delimiter;
+
+    /**
+     * 是否跳过首行表头
+     */
+    private final boolean header;
+
+    private ManifestFormat(int column, byte delimiter, boolean header) {
+        this.column = column;
+        this.delimiter = delimiter;
+        this.header = header;
+    }
+
+    /**
+     * 每行一个 key
+     *
+     * @return {@link ManifestFormat}
+     */
+    public static ManifestFormat lines() {
+        return new ManifestFormat(-1, (byte) ',', false);
+    }
+
+    /**
+     * 逗号分隔的 CSV, 支持双引号包裹的字段
+     *
+     * @param column key 所在列, 从 0 开始
+     * @param header 是否有表头
+     * @return {@link ManifestFormat}
+     */
+    public static ManifestFormat csv(int column, boolean header) {
+        return csv(column, ',', header);
+    }
+
+    /**
+     * 指定分隔符的 CSV(如制表符)
+     *
+     * @param column    key 所在列, 从 0 开始
+     * @param delimiter 分隔符(单字节字符)
+     * @param header    是否有表头
+     * @return {@link ManifestFormat}
+     */
+    public static ManifestFormat csv(int column, char delimiter, boolean header) {
+        if (column < 0 || delimiter > 0x7f) {
+            throw new IllegalArgumentException("invalid csv format, column:" + column + ", delimiter:" + delimiter);
+        }
+        return new ManifestFormat(column, (byte) delimiter, header);
+    }
+}
@@ -0,0 +1,277 @@
+package com.ukayunnuo.s3.bulk;
+
+import cn.hutool.core.util.StrUtil;
+import com.ukayunnuo.s3.exception.S3Exception;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 清单文件读取
+ * <p> 按窗口内存映射文件, 直接在映射内存上查找换行与分隔符, key 字节复制到复用的缓冲区, 不按行创建字符串;
+ * 作为 {@link KeySource} 使用时位置为下一行的字节偏移. {@link #split} 按行边界把文件切分为多段, 供多个任务并行读取 </p>
+ * <p> CSV 的引号字段不能跨行 </p>
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+public class ManifestReader implements KeySource {
+
+    /**
+     * 映射窗口大小
+     */
+    private static final int WINDOW_SIZE = 64 * 1024 * 1024;
+
+    private static final byte QUOTE = '"';
+
+    /**
+     * key 字节回调
+     */
+    @FunctionalInterface
+    public interface KeyBytesConsumer {
+
+        /**
+         * @param key    key 的 UTF-8 字节, 缓冲区会被复用, 回调返回后不能再引用
+         * @param length 字节数
+         * @param next   下一行的字节偏移
+         */
+        void accept(byte[] key, int length, long next);
+    }
+
+    private final File file;
+
+    private final ManifestFormat format;
+
+    private final long start;
+
+    private final long end;
+
+    public ManifestReader(File file, ManifestFormat format) {
+        this(file, format, 0, file.length());
+    }
+
+    private ManifestReader(File file, ManifestFormat format, long start, long end) {
+        this.file = file;
+        this.format = format;
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * 起始字节偏移
+     *
+     * @return long
+     */
+    public long getStart() {
+        return start;
+    }
+
+    /**
+     * 结束字节偏移(不含)
+     *
+     * @return long
+     */
+    public long getEnd() {
+        return end;
+    }
+
+    /**
+     * 按行边界把读取范围切分为至多 parts 段
+     *
+     * @param parts 段数
+     * @return 各段的读取器, 按偏移顺序
+     */
+    public List<ManifestReader> split(int parts) {
+        List<ManifestReader> readers = new ArrayList<>();
+        long length = end - start;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long from = start;
+            for (int i = 1; i <= parts && from < end; i++) {
+                long to = i == parts ? end : nextLineStart(channel, start + length * i / parts);
+                if (to > from) {
+                    readers.add(new ManifestReader(file, format, from, to));
+                    from = to;
+                }
+            }
+        } catch (IOException e) {
+            throw new S3Exception(StrUtil.format("split manifest failed, file:{}", file), e);
+        }
+        return readers;
+    }
+
+    @Override
+    public void scan(String resumeAfter, KeyConsumer consumer) {
+        long from = resumeAfter == null ? start : Math.max(start, Long.parseLong(resumeAfter));
+        scanBytes(from, (key, length, next) -> consumer.accept(new String(key, 0, length, StandardCharsets.UTF_8), String.valueOf(next)));
+    }
+
+    /**
+     * 读取全部 key 的字节
+     *
+     * @param consumer {@link KeyBytesConsumer}
+     */
+    public void scanBytes(KeyBytesConsumer consumer) {
+        scanBytes(start, consumer);
+    }
+
+    private void scanBytes(long from, KeyBytesConsumer consumer) {
+        byte[] key = new byte[1024];
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long position = from;
+            boolean skipHeader = format.isHeader() && from == 0;
+            while (position < end) {
+                int size = (int) Math.min(WINDOW_SIZE, end - position);
+                boolean last = position + size >= end;
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+                window.order(ByteOrder.LITTLE_ENDIAN);
+                int lineStart = 0;
+                while (lineStart < size) {
+                    int lineEnd = indexOf(window, lineStart, size, (byte) '\n');
+                    if (lineEnd < 0) {
+                        if (!last) {
+                            break;
+                        }
+                        lineEnd = size;
+                    }
+                    int next = Math.min(lineEnd + 1, size);
+                    if (skipHeader) {
+                        skipHeader = false;
+                    } else {
+                        if (lineEnd > lineStart && window.get(lineEnd - 1) == '\r') {
+                            lineEnd--;
+                        }
+                        if (lineEnd - lineStart > key.length) {
+                            key = new byte[Math.max(key.length * 2, lineEnd - lineStart)];
+                        }
+                        int length = format.getColumn() < 0 ? copy(window, lineStart, lineEnd, key) : field(window, lineStart, lineEnd, key);
+                        if (length > 0) {
+                            consumer.accept(key, length, position + next);
+                        }
+                    }
+                    lineStart = next;
+                }
+                if (lineStart == 0) {
+                    throw new S3Exception(StrUtil.format("manifest line exceeds {} bytes, file:{}, offset:{}", WINDOW_SIZE, file, position));
+                }
+                position += lineStart;
+            }
+        } catch (IOException e) {
+            throw new S3Exception(StrUtil.format("read manifest failed, file:{}", file), e);
+        }
+    }
+
+    /**
+     * 复制整行
+     */
+    private static int copy(ByteBuffer window, int from, int to, byte[] key) {
+        window.position(from);
+        window.get(key, 0, to - from);
+        return to - from;
+    }
+
+    /**
+     * 复制目标列, 去掉引号并还原转义的双引号; 列不存在时返回 0
+     */
+    private int field(ByteBuffer window, int from, int to, byte[] key) {
+        byte delimiter = format.getDelimiter();
+        int i = from;
+        for (int column = 0; column < format.getColumn(); column++) {
+            boolean quoted = false;
+            while (true) {
+                if (i >= to) {
+                    return 0;
+                }
+                byte b = window.get(i++);
+                if (b == QUOTE) {
+                    quoted = !quoted;
+                } else if (b == delimiter && !quoted) {
+                    break;
+                }
+            }
+        }
+        int length = 0;
+        if (i < to && window.get(i) == QUOTE) {
+            i++;
+            while (i < to) {
+                byte b = window.get(i++);
+                if (b == QUOTE) {
+                    if (i < to && window.get(i) == QUOTE) {
+                        i++;
+                    } else {
+                        break;
+                    }
+                }
+                key[length++] = b;
+            }
+        } else {
+            while (i < to) {
+                byte b = window.get(i++);
+                if (b == delimiter) {
+                    break;
+                }
+                key[length++] = b;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * 查找字节, 每次比较 8 个字节(SWAR)
+     */
+    private static int indexOf(ByteBuffer window, int from, int to, byte target) {
+        long pattern = (target & 0xffL) * 0x0101010101010101L;
+        int i = from;
+        for (; i + Long.BYTES <= to; i += Long.BYTES) {
+            long word = window.getLong(i) ^ pattern;
+            long found = (word - 0x0101010101010101L) & ~word & 0x8080808080808080L;
+            if (found != 0) {
+                return i + (Long.numberOfTrailingZeros(found) >>> 3);
+            }
+        }
+        for (; i < to; i++) {
+            if (window.get(i) == target) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * offset 处或其后第一个行首
+     */
+    private long nextLineStart(FileChannel channel, long offset) throws IOException {
+        if (offset <= start) {
+            return start;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        long position = offset - 1;
+        while (position < end) {
+            buffer.clear();
+            int n = channel.read(buffer, position);
+            if (n <= 0) {
+                break;
+            }
+            byte[] bytes = buffer.array();
+            for (int i = 0; i < n; i++) {
+                if (bytes[i] == '\n') {
+                    return Math.min(end, position + i + 1);
+                }
+            }
+            position += n;
+        }
+        return end;
+    }
+
+    @Override
+    public String toString() {
+        return StrUtil.format("{}[{},{})", file, start, end);
+    }
+}
@@ -0,0 +1,48 @@
+package com.ukayunnuo.s3.checksum;
+
+import lombok.Getter;
+
+/**
+ * 校验和算法
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Getter
+public enum ChecksumAlgorithm {
+
+    /**
+     * CRC32C, 值为大端 4 字节的 base64(与 x-amz-checksum-crc32c 相同)
+     */
+    CRC32C("s3util-crc32c"),
+
+    /**
+     * SHA-256, 值为 base64
+     */
+    SHA256("s3util-sha256"),
+
+    /**
+     * MD5, 值为十六进制; 与单次上传对象及每个分段的 ETag 比对, 不写入元数据
+     */
+    MD5(null);
+
+    /**
+     * 保存该校验和的元数据名, 为空表示不保存
+     */
+    private final String metaName;
+
+    ChecksumAlgorithm(String metaName) {
+        this.metaName = metaName;
+    }
+
+    /**
+     * 比较两个校验和, 十六进制不区分大小写, base64 区分
+     *
+     * @param expected 预期值
+     * @param actual   实际值
+     * @return 是否一致
+     */
+    public boolean matches(String expected, String actual) {
+        return this == MD5 ? expected.equalsIgnoreCase(actual) : expected.equals(actual);
+    }
+}
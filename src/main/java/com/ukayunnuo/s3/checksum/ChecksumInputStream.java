@@ -0,0 +1,110 @@
+package com.ukayunnuo.s3.checksum;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * 读取时同步计算校验和的输入流, 给定预期值时读到流末尾即校验, 不一致抛出 {@link IOException}
+ * <p> 不支持 mark/reset, 重放会使校验和失效 </p>
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+public class ChecksumInputStream extends FilterInputStream {
+
+    private final ContentChecksum checksum;
+
+    private final Map<ChecksumAlgorithm, String> expected;
+
+    private final String source;
+
+    private boolean verified;
+
+    /**
+     * @param in       源流
+     * @param checksum 校验和
+     * @param expected 预期校验和, 可为空
+     * @param source   内容来源, 用于异常信息
+     */
+    public ChecksumInputStream(InputStream in, ContentChecksum checksum, Map<ChecksumAlgorithm, String> expected, String source) {
+        super(in);
+        this.checksum = checksum;
+        this.expected = expected == null ? Collections.emptyMap() : expected;
+        this.source = source;
+    }
+
+    public ChecksumInputStream(InputStream in, ContentChecksum checksum) {
+        this(in, checksum, null, null);
+    }
+
+    public ContentChecksum getChecksum() {
+        return checksum;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] one = new byte[1];
+        int n = read(one, 0, 1);
+        return n < 0 ? -1 : one[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = in.read(b, off, len);
+        if (n > 0) {
+            checksum.update(b, off, n);
+        } else if (n < 0) {
+            verify();
+        }
+        return n;
+    }
+
+    /**
+     * 跳过的内容同样需要计入校验和
+     */
+    @Override
+    public long skip(long n) throws IOException {
+        byte[] buffer = new byte[(int) Math.min(Math.max(n, 0), 8192)];
+        long skipped = 0;
+        while (skipped < n) {
+            int r = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+            if (r < 0) {
+                break;
+            }
+            skipped += r;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(int readLimit) {
+        // 不支持
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("mark/reset not supported");
+    }
+
+    private void verify() throws IOException {
+        if (verified) {
+            return;
+        }
+        verified = true;
+        for (Map.Entry<ChecksumAlgorithm, String> entry : expected.entrySet()) {
+            String actual = checksum.get(entry.getKey());
+            if (actual != null && !entry.getKey().matches(entry.getValue(), actual)) {
+                String message = source + " " + entry.getKey() + " mismatch, expected:" + entry.getValue() + ", actual:" + actual;
+                throw new IOException(message, new ChecksumMismatchException(message));
+            }
+        }
+    }
+}
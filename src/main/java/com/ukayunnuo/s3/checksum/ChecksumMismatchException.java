@@ -0,0 +1,16 @@
+package com.ukayunnuo.s3.checksum;
+
+import com.ukayunnuo.s3.exception.S3Exception;
+
+/**
+ * 校验和不一致(传输中内容损坏)
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+public class ChecksumMismatchException extends S3Exception {
+
+    public ChecksumMismatchException(String message) {
+        super(message);
+    }
+}
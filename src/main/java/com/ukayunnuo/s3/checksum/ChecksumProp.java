@@ -0,0 +1,52 @@
+package com.ukayunnuo.s3.checksum;
+
+import cn.hutool.json.JSONUtil;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * 校验和 配置
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "s3.checksum")
+public class ChecksumProp {
+
+    /**
+     * 上传时计算的校验和, 单次上传写入对象元数据, 分段上传逐段计算后写入旁路对象, 下载时据此校验
+     */
+    private Set<ChecksumAlgorithm> algorithms = EnumSet.of(ChecksumAlgorithm.CRC32C);
+
+    /**
+     * 是否以 MD5 校验服务端返回的 ETag(单次上传对象、每个分段及分段合并结果), 下载时校验未加密对象的 ETag;
+     * 默认关闭, 只按 {@code algorithms} 写入的元数据校验. 桶使用 SSE-KMS / SSE-C 等 ETag 不是内容 MD5 的加密方式时不能开启
+     */
+    private boolean verifyEtag = false;
+
+    /**
+     * 读入内存计算校验和后上传的文件/分段大小上限(字节), 超过时先读一遍计算校验和, 再直接上传文件(ETag 不一致时重读文件重传)
+     */
+    private long maxBufferedBytes = 64L * 1024 * 1024;
+
+    /**
+     * 分段上传对象与直接上传的大文件的校验和保存在旁路对象 {@code sidecar-prefix + key} 中, 列举时过滤
+     */
+    private String sidecarPrefix = ".s3util/checksums/";
+
+    /**
+     * 上传后校验不一致时的重传次数
+     */
+    private int mismatchRetries = 1;
+
+    @Override
+    public String toString() {
+        return JSONUtil.toJsonStr(this);
+    }
+}
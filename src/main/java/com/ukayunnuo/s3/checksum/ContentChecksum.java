@@ -0,0 +1,141 @@
+package com.ukayunnuo.s3.checksum;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.Checksum;
+
+/**
+ * 增量计算一段内容的多个校验和, 内容只需遍历一次
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+public class ContentChecksum {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Checksum crc32c;
+
+    private final MessageDigest md5;
+
+    private final MessageDigest sha256;
+
+    private long length;
+
+    private Map<ChecksumAlgorithm, String> values;
+
+    public ContentChecksum(Set<ChecksumAlgorithm> algorithms) {
+        this.crc32c = algorithms.contains(ChecksumAlgorithm.CRC32C) ? Crc32c.create() : null;
+        this.md5 = algorithms.contains(ChecksumAlgorithm.MD5) ? digest("MD5") : null;
+        this.sha256 = algorithms.contains(ChecksumAlgorithm.SHA256) ? digest("SHA-256") : null;
+    }
+
+    /**
+     * 计算内存中内容的校验和
+     *
+     * @param algorithms 算法
+     * @param data       内容
+     * @return {@link ContentChecksum}
+     */
+    public static ContentChecksum of(Set<ChecksumAlgorithm> algorithms, byte[] data) {
+        ContentChecksum checksum = new ContentChecksum(algorithms);
+        checksum.update(data, 0, data.length);
+        return checksum;
+    }
+
+    public void update(byte[] b, int off, int len) {
+        if (values != null) {
+            throw new IllegalStateException("checksum already finished");
+        }
+        if (crc32c != null) {
+            crc32c.update(b, off, len);
+        }
+        if (md5 != null) {
+            md5.update(b, off, len);
+        }
+        if (sha256 != null) {
+            sha256.update(b, off, len);
+        }
+        length += len;
+    }
+
+    /**
+     * 已计算的字节数
+     *
+     * @return long
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * 结束计算, 返回各算法的校验和(可重复调用)
+     *
+     * @return 算法 -> 校验和
+     */
+    public Map<ChecksumAlgorithm, String> values() {
+        if (values == null) {
+            Map<ChecksumAlgorithm, String> result = new EnumMap<>(ChecksumAlgorithm.class);
+            if (crc32c != null) {
+                byte[] crc = ByteBuffer.allocate(4).putInt((int) crc32c.getValue()).array();
+                result.put(ChecksumAlgorithm.CRC32C, Base64.getEncoder().encodeToString(crc));
+            }
+            if (md5 != null) {
+                result.put(ChecksumAlgorithm.MD5, hex(md5.digest()));
+            }
+            if (sha256 != null) {
+                result.put(ChecksumAlgorithm.SHA256, Base64.getEncoder().encodeToString(sha256.digest()));
+            }
+            values = result;
+        }
+        return values;
+    }
+
+    /**
+     * 校验和
+     *
+     * @param algorithm 算法
+     * @return 未计算该算法时为空
+     */
+    public String get(ChecksumAlgorithm algorithm) {
+        return values().get(algorithm);
+    }
+
+    /**
+     * 需要保存到对象元数据的校验和
+     *
+     * @return 元数据名 -> 校验和
+     */
+    public Map<String, String> toMetadata() {
+        Map<String, String> metadata = new LinkedHashMap<>();
+        values().forEach((algorithm, value) -> {
+            if (algorithm.getMetaName() != null) {
+                metadata.put(algorithm.getMetaName(), value);
+            }
+        });
+        return metadata;
+    }
+
+    static String hex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xf];
+        }
+        return new String(chars);
+    }
+
+    private static MessageDigest digest(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(algorithm + " not supported", e);
+        }
+    }
+}
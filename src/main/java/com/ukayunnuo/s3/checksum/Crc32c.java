@@ -0,0 +1,100 @@
+package com.ukayunnuo.s3.checksum;
+
+import java.util.zip.Checksum;
+
+/**
+ * CRC32C(Castagnoli)
+ * <p> 运行在 Java 9+ 时使用 JDK 自带的 {@code java.util.zip.CRC32C}(由 JIT 内联为 SSE4.2/ARMv8 CRC 指令),
+ * Java 8 上退化为本类的查表实现(slicing-by-8) </p>
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+public final class Crc32c implements Checksum {
+
+    private static final int POLY = 0x82F63B78;
+
+    private static final int[][] TABLE = new int[8][256];
+
+    private static final Class<?> JDK_CRC32C;
+
+    static {
+        for (int n = 0; n < 256; n++) {
+            int crc = n;
+            for (int k = 0; k < 8; k++) {
+                crc = (crc & 1) != 0 ? (crc >>> 1) ^ POLY : crc >>> 1;
+            }
+            TABLE[0][n] = crc;
+        }
+        for (int n = 0; n < 256; n++) {
+            for (int t = 1; t < 8; t++) {
+                TABLE[t][n] = (TABLE[t - 1][n] >>> 8) ^ TABLE[0][TABLE[t - 1][n] & 0xff];
+            }
+        }
+        Class<?> type;
+        try {
+            type = Class.forName("java.util.zip.CRC32C");
+        } catch (ClassNotFoundException e) {
+            type = null;
+        }
+        JDK_CRC32C = type;
+    }
+
+    private int crc = 0xFFFFFFFF;
+
+    /**
+     * 创建 CRC32C 计算器, 优先使用 JDK 实现
+     *
+     * @return {@link Checksum}
+     */
+    public static Checksum create() {
+        if (JDK_CRC32C != null) {
+            try {
+                return (Checksum) JDK_CRC32C.newInstance();
+            } catch (ReflectiveOperationException ignored) {
+                // 使用查表实现
+            }
+        }
+        return new Crc32c();
+    }
+
+    /**
+     * 是否使用 JDK(硬件加速)实现
+     *
+     * @return boolean
+     */
+    public static boolean isIntrinsic() {
+        return JDK_CRC32C != null;
+    }
+
+    @Override
+    public void update(int b) {
+        crc = (crc >>> 8) ^ TABLE[0][(crc ^ b) & 0xff];
+    }
+
+    @Override
+    public void update(byte[] b, int off, int len) {
+        int c = crc;
+        int end = off + len;
+        while (end - off >= 8) {
+            c ^= (b[off] & 0xff) | (b[off + 1] & 0xff) << 8 | (b[off + 2] & 0xff) << 16 | (b[off + 3] & 0xff) << 24;
+            c = TABLE[7][c & 0xff] ^ TABLE[6][(c >>> 8) & 0xff] ^ TABLE[5][(c >>> 16) & 0xff] ^ TABLE[4][c >>> 24]
+                    ^ TABLE[3][b[off + 4] & 0xff] ^ TABLE[2][b[off + 5] & 0xff] ^ TABLE[1][b[off + 6] & 0xff] ^ TABLE[0][b[off + 7] & 0xff];
+            off += 8;
+        }
+        while (off < end) {
+            c = (c >>> 8) ^ TABLE[0][(c ^ b[off++]) & 0xff];
+        }
+        crc = c;
+    }
+
+    @Override
+    public long getValue() {
+        return ~crc & 0xFFFFFFFFL;
+    }
+
+    @Override
+    public void reset() {
+        crc = 0xFFFFFFFF;
+    }
+}
@@ -0,0 +1,136 @@
+package com.ukayunnuo.s3.checksum;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按分段校验的输入流: 按 {@link PartChecksums} 中的分段大小切分内容, 每读完一个分段即校验该分段, 不一致或长度不符时抛出 {@link IOException}
+ * <p> 不支持 mark/reset </p>
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+public class PartChecksumInputStream extends FilterInputStream {
+
+    private final List<PartChecksums.Part> parts;
+
+    private final String source;
+
+    private int index;
+
+    private long remaining;
+
+    private ContentChecksum checksum;
+
+    private boolean finished;
+
+    /**
+     * @param in       源流
+     * @param expected 各分段的预期校验和
+     * @param source   内容来源, 用于异常信息
+     */
+    public PartChecksumInputStream(InputStream in, PartChecksums expected, String source) {
+        super(in);
+        this.parts = expected.getParts();
+        this.source = source;
+        this.index = -1;
+        next();
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] one = new byte[1];
+        int n = read(one, 0, 1);
+        return n < 0 ? -1 : one[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        settle();
+        // 分段结束后多读 1 个字节, 确认内容没有超出
+        int n = in.read(b, off, finished ? len : (int) Math.min(len, remaining));
+        if (n < 0) {
+            if (!finished) {
+                throw new IOException(source + " truncated at part " + parts.get(index).getPartNumber() + ", missing " + remaining + " bytes");
+            }
+            return n;
+        }
+        if (finished) {
+            throw new IOException(source + " longer than recorded parts");
+        }
+        checksum.update(b, off, n);
+        remaining -= n;
+        settle();
+        return n;
+    }
+
+    /**
+     * 跳过的内容同样需要计入校验和
+     */
+    @Override
+    public long skip(long n) throws IOException {
+        byte[] buffer = new byte[(int) Math.min(Math.max(n, 0), 8192)];
+        long skipped = 0;
+        while (skipped < n) {
+            int r = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+            if (r < 0) {
+                break;
+            }
+            skipped += r;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(int readLimit) {
+        // 不支持
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("mark/reset not supported");
+    }
+
+    /**
+     * 校验已读完的分段(含空分段)
+     */
+    private void settle() throws IOException {
+        while (!finished && remaining == 0) {
+            verify(parts.get(index));
+            next();
+        }
+    }
+
+    private void next() {
+        index++;
+        if (index >= parts.size()) {
+            finished = true;
+            return;
+        }
+        PartChecksums.Part part = parts.get(index);
+        remaining = part.getSize();
+        checksum = new ContentChecksum(part.getValues().keySet());
+    }
+
+    private void verify(PartChecksums.Part part) throws IOException {
+        for (Map.Entry<ChecksumAlgorithm, String> entry : part.getValues().entrySet()) {
+            String actual = checksum.get(entry.getKey());
+            if (actual != null && !entry.getKey().matches(entry.getValue(), actual)) {
+                String message = source + " part " + part.getPartNumber() + " " + entry.getKey() + " mismatch, expected:"
+                        + entry.getValue() + ", actual:" + actual;
+                throw new IOException(message, new ChecksumMismatchException(message));
+            }
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.ukayunnuo.s3.checksum;
+
+import cn.hutool.core.util.StrUtil;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 无法写入对象元数据的校验和(分段上传、超过内存上限直接上传的文件), 保存在旁路对象中:
+ * <pre>
+ * etag &lt;对象 ETag&gt;
+ * part &lt;分段号&gt; &lt;大小&gt; &lt;算法&gt;=&lt;校验和&gt; ...
+ * </pre>
+ * 分段按对象中的顺序排列; ETag 与对象当前 ETag 不一致时说明对象已被覆盖, 旁路内容作废
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Getter
+public class PartChecksums {
+
+    /**
+     * 单个分段的大小与校验和
+     */
+    @Getter
+    public static class Part {
+
+        private final int partNumber;
+
+        private final long size;
+
+        private final Map<ChecksumAlgorithm, String> values;
+
+        public Part(int partNumber, long size, Map<ChecksumAlgorithm, String> values) {
+            this.partNumber = partNumber;
+            this.size = size;
+            this.values = Collections.unmodifiableMap(new EnumMap<>(values));
+        }
+    }
+
+    private final String etag;
+
+    private final List<Part> parts;
+
+    public PartChecksums(String etag, List<Part> parts) {
+        this.etag = normalize(etag);
+        this.parts = Collections.unmodifiableList(new ArrayList<>(parts));
+    }
+
+    /**
+     * 各分段大小之和
+     *
+     * @return long
+     */
+    public long getSize() {
+        long size = 0;
+        for (Part part : parts) {
+            size += part.size;
+        }
+        return size;
+    }
+
+    /**
+     * 是否对应当前对象
+     *
+     * @param objectEtag 对象当前 ETag
+     * @return boolean
+     */
+    public boolean matches(String objectEtag) {
+        return etag != null && etag.equals(normalize(objectEtag));
+    }
+
+    public String toText() {
+        StringBuilder text = new StringBuilder("etag ").append(etag).append('\n');
+        for (Part part : parts) {
+            text.append("part ").append(part.partNumber).append(' ').append(part.size);
+            part.values.forEach((algorithm, value) -> text.append(' ').append(algorithm.name()).append('=').append(value));
+            text.append('\n');
+        }
+        return text.toString();
+    }
+
+    /**
+     * 解析旁路对象内容
+     *
+     * @param text 内容
+     * @return {@link PartChecksums}
+     * @throws IllegalArgumentException 格式错误
+     */
+    public static PartChecksums parse(String text) {
+        String etag = null;
+        List<Part> parts = new ArrayList<>();
+        for (String line : text.split("\n")) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            String[] fields = line.split(" ");
+            if ("etag".equals(fields[0]) && fields.length == 2) {
+                etag = fields[1];
+            } else if ("part".equals(fields[0]) && fields.length >= 3) {
+                Map<ChecksumAlgorithm, String> values = new EnumMap<>(ChecksumAlgorithm.class);
+                for (int i = 3; i < fields.length; i++) {
+                    int eq = fields[i].indexOf('=');
+                    if (eq <= 0) {
+                        throw new IllegalArgumentException("invalid checksum field: " + fields[i]);
+                    }
+                    values.put(ChecksumAlgorithm.valueOf(fields[i].substring(0, eq)), fields[i].substring(eq + 1));
+                }
+                parts.add(new Part(Integer.parseInt(fields[1]), Long.parseLong(fields[2]), values));
+            } else {
+                throw new IllegalArgumentException("invalid part checksums line: " + line);
+            }
+        }
+        if (StrUtil.isEmpty(etag)) {
+            throw new IllegalArgumentException("part checksums without etag");
+        }
+        return new PartChecksums(etag, parts);
+    }
+
+    private static String normalize(String etag) {
+        return etag == null ? null : etag.replace("\"", "");
+    }
+}
@@ -0,0 +1,448 @@
+package com.ukayunnuo.s3.checksum;
+
+import cn.hutool.core.util.StrUtil;
+import com.ukayunnuo.s3.core.StorageProvider;
+import com.ukayunnuo.s3.exception.S3Exception;
+import com.ukayunnuo.s3.resilience.FailureClassifier;
+import com.ukayunnuo.s3.storage.MultipartUploadInfo;
+import com.ukayunnuo.s3.storage.ObjectInfo;
+import com.ukayunnuo.s3.storage.ObjectStorage;
+import com.ukayunnuo.s3.storage.PartInfo;
+import com.ukayunnuo.s3.transfer.FileRangeInputStream;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * 端到端校验的对象存储
+ * <p> 包装任意 {@link ObjectStorage}, 校验和在读取上传内容的同一遍中计算, 不再额外读取文件:
+ * <ul>
+ *     <li>单次上传: 计算 {@code s3.checksum.algorithms} 写入对象元数据, 开启 {@code verify-etag} 时以 MD5 校验返回的 ETag</li>
+ *     <li>分段上传: 每个分段计算 {@code algorithms}, 合并后把各分段的大小与校验和写入旁路对象 {@code sidecar-prefix + key}
+ *     ({@link PartChecksums}); 开启 {@code verify-etag} 时每个分段以 MD5 校验分段 ETag, 合并后校验 MD5(各分段 MD5)-N 形式的对象 ETag</li>
+ *     <li>下载: {@link #getVerifiedObject} 按元数据中的校验和边读边算, 读到末尾时校验; 没有元数据校验和时按旁路对象逐段校验;
+ *     开启 {@code verify-etag} 且对象未加密或为 SSE-S3(AES256)时同时校验 MD5 形式的 ETag</li>
+ * </ul>
+ * SSE-KMS / SSE-C 加密对象的 ETag 不是内容 MD5, 下载不按 ETag 校验; 上传的 ETag 校验默认关闭, 只在确认未使用这类加密时开启
+ * 文件与文件区间读入内存(不超过 {@code max-buffered-bytes})后上传, 重传无需再次读取文件; 超过上限时先读一遍计算校验和,
+ * 再由下层直接上传文件, 校验和写入旁路对象 </p>
+ * <p> 旁路对象记录对象的 ETag, 对象被其他方式覆盖后不再使用; 列举时过滤旁路对象, 删除对象时一并删除 </p>
+ *
+ * <pre>
+ * ObjectStorage storage = new VerifyingObjectStorage(new AwsObjectStorage(amazonS3), checksumProp);
+ * new ResumableUploader(storage, uploadProp).upload(bucket, key, file);
+ * </pre>
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Slf4j
+public class VerifyingObjectStorage implements ObjectStorage {
+
+    private static final Pattern MD5_HEX = Pattern.compile("[0-9a-fA-F]{32}");
+
+    private static final String SSE_S3 = "AES256";
+
+    private final ObjectStorage delegate;
+
+    private final ChecksumProp prop;
+
+    /**
+     * 本进程上传的分段校验和: uploadId -> 分段号 -> 分段
+     */
+    private final Map<String, Map<Integer, PartChecksums.Part>> uploadedParts = new ConcurrentHashMap<>();
+
+    public VerifyingObjectStorage(ObjectStorage delegate, ChecksumProp prop) {
+        this.delegate = delegate;
+        this.prop = prop;
+    }
+
+    public VerifyingObjectStorage(ObjectStorage delegate) {
+        this(delegate, new ChecksumProp());
+    }
+
+    @Override
+    public StorageProvider getProvider() {
+        return delegate.getProvider();
+    }
+
+    @Override
+    public ObjectInfo headObject(String bucket, String key) {
+        return delegate.headObject(bucket, key);
+    }
+
+    /**
+     * 不校验: 调用方给出的 ETag 无法判断对象是否加密, 需要校验时使用 {@link #getVerifiedObject}
+     */
+    @Override
+    public InputStream getObject(String bucket, String key, long offset, long length, String etag) {
+        return delegate.getObject(bucket, key, offset, length, etag);
+    }
+
+    /**
+     * 读取整个对象, 按元数据中的校验和(及未加密对象 MD5 形式的 ETag)边读边校验, 不一致时读到末尾抛出 {@link IOException}
+     *
+     * @param bucket 桶
+     * @param key    key
+     * @return {@link InputStream}, 由调用方关闭
+     */
+    public InputStream getVerifiedObject(String bucket, String key) {
+        ObjectInfo info = delegate.headObject(bucket, key);
+        Map<ChecksumAlgorithm, String> expected = expected(info);
+        PartChecksums parts = expected.containsKey(ChecksumAlgorithm.CRC32C) || expected.containsKey(ChecksumAlgorithm.SHA256)
+                ? null : sidecar(bucket, key, info);
+        InputStream in = delegate.getObject(bucket, key, 0, -1, info.getEtag());
+        if (parts != null) {
+            return new PartChecksumInputStream(in, parts, source(bucket, key));
+        }
+        if (expected.isEmpty()) {
+            log.debug("no checksum to verify, bucket:{}, key:{}, etag:{}", bucket, key, info.getEtag());
+            return in;
+        }
+        return new ChecksumInputStream(in, new ContentChecksum(expected.keySet()), expected, source(bucket, key));
+    }
+
+    @Override
+    public void listObjects(String bucket, String prefix, Consumer<ObjectInfo> consumer) {
+        delegate.listObjects(bucket, prefix, info -> {
+            if (!info.getKey().startsWith(prop.getSidecarPrefix())) {
+                consumer.accept(info);
+            }
+        });
+    }
+
+    @Override
+    public boolean existsPrefix(String bucket, String prefix) {
+        return delegate.existsPrefix(bucket, prefix);
+    }
+
+    @Override
+    public String putObject(String bucket, String key, File file, String contentType) {
+        ContentChecksum checksum = new ContentChecksum(putAlgorithms());
+        long size = file.length();
+        if (size <= prop.getMaxBufferedBytes()) {
+            byte[] data = read(file, 0, size, checksum);
+            return put(bucket, key, data, contentType, null, checksum);
+        }
+        // 下层直接上传文件时无法写入元数据, 校验和写入旁路对象
+        digest(file, 0, size, checksum);
+        String etag = verifyEtag(bucket, key, "object", checksum.get(ChecksumAlgorithm.MD5),
+                () -> delegate.putObject(bucket, key, file, contentType));
+        writeSidecar(bucket, key, new PartChecksums(etag, Collections.singletonList(new PartChecksums.Part(1, size, checksum.values()))));
+        return etag;
+    }
+
+    @Override
+    public String putObject(String bucket, String key, byte[] data, String contentType, Map<String, String> metadata) {
+        return put(bucket, key, data, contentType, metadata, ContentChecksum.of(putAlgorithms(), data));
+    }
+
+    @Override
+    public void deleteObjects(String bucket, List<String> keys) {
+        List<String> all = new ArrayList<>(keys.size() * 2);
+        all.addAll(keys);
+        for (String key : keys) {
+            all.add(sidecarKey(key));
+        }
+        delegate.deleteObjects(bucket, all);
+    }
+
+    @Override
+    public String initiateMultipartUpload(String bucket, String key, String contentType, Map<String, String> metadata) {
+        return delegate.initiateMultipartUpload(bucket, key, contentType, metadata);
+    }
+
+    @Override
+    public String uploadPart(String bucket, String key, String uploadId, int partNumber, File file, long offset, long size) {
+        ContentChecksum checksum = new ContentChecksum(putAlgorithms());
+        if (size > prop.getMaxBufferedBytes()) {
+            digest(file, offset, size, checksum);
+            return part(bucket, key, partNumber, uploadId, size, checksum,
+                    () -> delegate.uploadPart(bucket, key, uploadId, partNumber, file, offset, size));
+        }
+        byte[] data = read(file, offset, size, checksum);
+        return part(bucket, key, partNumber, uploadId, size, checksum,
+                () -> delegate.uploadPart(bucket, key, uploadId, partNumber, data));
+    }
+
+    @Override
+    public String uploadPart(String bucket, String key, String uploadId, int partNumber, byte[] data) {
+        return part(bucket, key, partNumber, uploadId, data.length, ContentChecksum.of(putAlgorithms(), data),
+                () -> delegate.uploadPart(bucket, key, uploadId, partNumber, data));
+    }
+
+    @Override
+    public List<PartInfo> listParts(String bucket, String key, String uploadId) {
+        return delegate.listParts(bucket, key, uploadId);
+    }
+
+    @Override
+    public String completeMultipartUpload(String bucket, String key, String uploadId, List<PartInfo> parts) {
+        Map<Integer, PartChecksums.Part> uploaded = uploadedParts.getOrDefault(uploadId, Collections.emptyMap());
+        for (PartInfo part : parts) {
+            // 续传复用的分段若与本进程上传的内容不一致, 合并前发现
+            PartChecksums.Part local = uploaded.get(part.getPartNumber());
+            String md5 = local == null ? null : local.getValues().get(ChecksumAlgorithm.MD5);
+            String actual = md5FromEtag(part.getEtag());
+            if (md5 != null && actual != null && !md5.equalsIgnoreCase(actual)) {
+                throw new ChecksumMismatchException(StrUtil.format("part md5 mismatch, bucket:{}, key:{}, part:{}, expected:{}, actual:{}",
+                        bucket, key, part.getPartNumber(), md5, actual));
+            }
+        }
+        String etag = delegate.completeMultipartUpload(bucket, key, uploadId, parts);
+        uploadedParts.remove(uploadId);
+        List<PartChecksums.Part> checksums = new ArrayList<>(parts.size());
+        for (PartInfo part : parts) {
+            PartChecksums.Part local = uploaded.get(part.getPartNumber());
+            if (local == null) {
+                break;
+            }
+            checksums.add(local);
+        }
+        if (checksums.size() == parts.size()) {
+            writeSidecar(bucket, key, new PartChecksums(etag, checksums));
+        } else {
+            // 由其他进程上传的分段没有校验和
+            log.warn("parts uploaded by another process, multipart checksums not recorded, bucket:{}, key:{}, uploadId:{}",
+                    bucket, key, uploadId);
+        }
+        String expected = prop.isVerifyEtag() ? compositeEtag(parts) : null;
+        String actual = etag == null ? null : etag.replace("\"", "");
+        if (expected != null && actual != null && actual.contains("-") && !expected.equalsIgnoreCase(actual)) {
+            throw new ChecksumMismatchException(StrUtil.format("multipart etag mismatch, bucket:{}, key:{}, expected:{}, actual:{}",
+                    bucket, key, expected, actual));
+        }
+        return etag;
+    }
+
+    @Override
+    public void abortMultipartUpload(String bucket, String key, String uploadId) {
+        uploadedParts.remove(uploadId);
+        delegate.abortMultipartUpload(bucket, key, uploadId);
+    }
+
+    @Override
+    public List<MultipartUploadInfo> listMultipartUploads(String bucket, String prefix) {
+        return delegate.listMultipartUploads(bucket, prefix);
+    }
+
+    private String put(String bucket, String key, byte[] data, String contentType, Map<String, String> metadata, ContentChecksum checksum) {
+        Map<String, String> merged = new HashMap<>();
+        if (metadata != null) {
+            merged.putAll(metadata);
+        }
+        merged.putAll(checksum.toMetadata());
+        return verifyEtag(bucket, key, "object", checksum.get(ChecksumAlgorithm.MD5),
+                () -> delegate.putObject(bucket, key, data, contentType, merged));
+    }
+
+    private String part(String bucket, String key, int partNumber, String uploadId, long size, ContentChecksum checksum,
+                        Supplier<String> upload) {
+        String etag = verifyEtag(bucket, key, "part " + partNumber, checksum.get(ChecksumAlgorithm.MD5), upload);
+        uploadedParts.computeIfAbsent(uploadId, id -> new ConcurrentHashMap<>())
+                .put(partNumber, new PartChecksums.Part(partNumber, size, checksum.values()));
+        return etag;
+    }
+
+    /**
+     * 写入旁路校验和; 对象已写入, 失败时只记录日志, 下载时不做校验
+     */
+    private void writeSidecar(String bucket, String key, PartChecksums checksums) {
+        if (checksums.getParts().isEmpty() || checksums.getParts().get(0).getValues().isEmpty()) {
+            return;
+        }
+        try {
+            delegate.putObject(bucket, sidecarKey(key), checksums.toText().getBytes(StandardCharsets.UTF_8), "text/plain", null);
+        } catch (RuntimeException e) {
+            log.warn("write checksum sidecar failed, object will not be verified, bucket:{}, key:{}, msg:{}", bucket, key, e.getMessage());
+        }
+    }
+
+    /**
+     * 读取与对象当前 ETag 对应的旁路校验和, 不存在或已作废时为空
+     */
+    private PartChecksums sidecar(String bucket, String key, ObjectInfo info) {
+        String text;
+        try (InputStream in = delegate.getObject(bucket, sidecarKey(key), 0, -1, null)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = in.read(buffer)) >= 0) {
+                out.write(buffer, 0, n);
+            }
+            text = new String(out.toByteArray(), StandardCharsets.UTF_8);
+        } catch (IOException | RuntimeException e) {
+            if (!FailureClassifier.isNotFound(e)) {
+                log.warn("read checksum sidecar failed, bucket:{}, key:{}, msg:{}", bucket, key, e.getMessage());
+            }
+            return null;
+        }
+        try {
+            PartChecksums checksums = PartChecksums.parse(text);
+            if (checksums.matches(info.getEtag()) && checksums.getSize() == info.getSize()) {
+                return checksums;
+            }
+            log.debug("stale checksum sidecar, bucket:{}, key:{}, etag:{}", bucket, key, info.getEtag());
+        } catch (IllegalArgumentException e) {
+            log.warn("invalid checksum sidecar, bucket:{}, key:{}, msg:{}", bucket, key, e.getMessage());
+        }
+        return null;
+    }
+
+    private String sidecarKey(String key) {
+        return prop.getSidecarPrefix() + key;
+    }
+
+    /**
+     * 上传并以 MD5 校验返回的 ETag, 不一致时从内存中的内容重传
+     */
+    private String verifyEtag(String bucket, String key, String what, String md5, Supplier<String> upload) {
+        int attempts = 1 + Math.max(0, prop.getMismatchRetries());
+        for (int attempt = 1; ; attempt++) {
+            String etag = upload.get();
+            String actual = md5FromEtag(etag);
+            if (md5 == null || actual == null || md5.equalsIgnoreCase(actual)) {
+                return etag;
+            }
+            String message = StrUtil.format("{} md5 mismatch, bucket:{}, key:{}, expected:{}, actual:{}", what, bucket, key, md5, actual);
+            if (attempt >= attempts) {
+                throw new ChecksumMismatchException(message);
+            }
+            log.warn("{}, retry upload, attempt:{}", message, attempt);
+        }
+    }
+
+    private Set<ChecksumAlgorithm> putAlgorithms() {
+        Set<ChecksumAlgorithm> algorithms = EnumSet.noneOf(ChecksumAlgorithm.class);
+        algorithms.addAll(prop.getAlgorithms());
+        if (prop.isVerifyEtag()) {
+            algorithms.add(ChecksumAlgorithm.MD5);
+        }
+        return algorithms;
+    }
+
+    /**
+     * 对象元数据中的校验和与 MD5 形式的 ETag
+     */
+    private Map<ChecksumAlgorithm, String> expected(ObjectInfo info) {
+        Map<ChecksumAlgorithm, String> expected = new EnumMap<>(ChecksumAlgorithm.class);
+        if (info.getMetadata() != null) {
+            for (ChecksumAlgorithm algorithm : ChecksumAlgorithm.values()) {
+                for (Map.Entry<String, String> entry : info.getMetadata().entrySet()) {
+                    // 不同平台返回的元数据名大小写不同
+                    if (algorithm.getMetaName() != null && algorithm.getMetaName().equalsIgnoreCase(entry.getKey())) {
+                        expected.put(algorithm, entry.getValue());
+                    }
+                }
+            }
+        }
+        String md5 = prop.isVerifyEtag() && isEtagMd5(info) ? md5FromEtag(info.getEtag()) : null;
+        if (md5 != null) {
+            expected.put(ChecksumAlgorithm.MD5, md5);
+        }
+        return expected;
+    }
+
+    /**
+     * 未加密或 SSE-S3 加密的对象 ETag 才可能是内容 MD5
+     */
+    private static boolean isEtagMd5(ObjectInfo info) {
+        String sse = info.getServerSideEncryption();
+        return StrUtil.isBlank(sse) || SSE_S3.equalsIgnoreCase(sse);
+    }
+
+    /**
+     * 读取文件区间到内存, 同时计算校验和
+     */
+    private static byte[] read(File file, long offset, long size, ContentChecksum checksum) {
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new S3Exception(StrUtil.format("range too large to buffer, file:{}, size:{}", file, size));
+        }
+        byte[] data = new byte[(int) size];
+        try (InputStream in = new ChecksumInputStream(new FileRangeInputStream(file, offset, size), checksum)) {
+            int read = 0;
+            int n;
+            while (read < data.length && (n = in.read(data, read, data.length - read)) >= 0) {
+                read += n;
+            }
+            if (read < data.length) {
+                throw new IOException("file truncated while reading, read:" + read + ", expected:" + size);
+            }
+        } catch (IOException e) {
+            throw new S3Exception(StrUtil.format("read file failed, file:{}, offset:{}, size:{}", file, offset, size), e);
+        }
+        return data;
+    }
+
+    /**
+     * 读一遍文件区间计算校验和, 不保留内容
+     */
+    private static void digest(File file, long offset, long size, ContentChecksum checksum) {
+        try (InputStream in = new ChecksumInputStream(new FileRangeInputStream(file, offset, size), checksum)) {
+            byte[] buffer = new byte[64 * 1024];
+            while (in.read(buffer) >= 0) {
+                // 读取即计算
+            }
+        } catch (IOException e) {
+            throw new S3Exception(StrUtil.format("read file failed, file:{}, offset:{}, size:{}", file, offset, size), e);
+        }
+        if (checksum.getLength() != size) {
+            throw new S3Exception(StrUtil.format("file truncated while reading, file:{}, read:{}, expected:{}", file, checksum.getLength(), size));
+        }
+    }
+
+    /**
+     * 分段上传对象的 ETag: MD5(各分段 MD5 拼接)-分段数, 有分段 ETag 不是 MD5 时为空
+     */
+    private static String compositeEtag(List<PartInfo> parts) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            return null;
+        }
+        for (PartInfo part : parts) {
+            String md5 = md5FromEtag(part.getEtag());
+            if (md5 == null) {
+                return null;
+            }
+            for (int i = 0; i < 32; i += 2) {
+                digest.update((byte) Integer.parseInt(md5.substring(i, i + 2), 16));
+            }
+        }
+        return ContentChecksum.hex(digest.digest()) + "-" + parts.size();
+    }
+
+    /**
+     * 单次上传对象与分段的 ETag 即内容 MD5; 分段上传对象(带 -N 后缀)与 OCI 的 ETag 不是
+     */
+    private static String md5FromEtag(String etag) {
+        if (etag == null) {
+            return null;
+        }
+        String value = etag.replace("\"", "");
+        return MD5_HEX.matcher(value).matches() ? value.toLowerCase() : null;
+    }
+
+    private static String source(String bucket, String key) {
+        return StrUtil.format("bucket:{}, key:{}", bucket, key);
+    }
+}
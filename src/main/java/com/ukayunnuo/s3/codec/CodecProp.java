@@ -0,0 +1,48 @@
+package com.ukayunnuo.s3.codec;
+
+import cn.hutool.json.JSONUtil;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 压缩上传/下载 配置
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "s3.codec")
+public class CodecProp {
+
+    /**
+     * 压缩格式
+     */
+    private CompressionCodec codec = CompressionCodec.GZIP;
+
+    /**
+     * 压缩级别, 负数表示格式默认级别(gzip 6, zstd 3)
+     */
+    private int level = -1;
+
+    /**
+     * 压缩块大小(字节), 每块独立压缩, 多块并行
+     */
+    private int chunkSize = 4 * 1024 * 1024;
+
+    /**
+     * 分段大小(字节), 压缩后不足该大小时单次上传; 不能小于 5MB
+     */
+    private int partSize = 8 * 1024 * 1024;
+
+    /**
+     * 并行压缩线程数, 同时也是在内存中等待上传的压缩块数上限
+     */
+    private int concurrency = Runtime.getRuntime().availableProcessors();
+
+    @Override
+    public String toString() {
+        return JSONUtil.toJsonStr(this);
+    }
+}
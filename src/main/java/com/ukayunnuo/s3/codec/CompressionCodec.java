@@ -0,0 +1,117 @@
+package com.ukayunnuo.s3.codec;
+
+import cn.hutool.core.util.StrUtil;
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
+import com.ukayunnuo.s3.exception.S3Exception;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 压缩格式
+ * <p> 多个独立压缩块直接拼接仍是合法的 gzip(多 member) / zstd(多 frame) 流, 解压时无需知道分块边界 </p>
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Getter
+public enum CompressionCodec {
+
+    /**
+     * 不压缩
+     */
+    NONE("identity") {
+        @Override
+        public OutputStream compress(OutputStream out, int level) {
+            return out;
+        }
+
+        @Override
+        public InputStream decompress(InputStream in) {
+            return in;
+        }
+    },
+
+    GZIP("gzip") {
+        @Override
+        public OutputStream compress(OutputStream out, int level) throws IOException {
+            return new GZIPOutputStream(out, BUFFER_SIZE) {
+                {
+                    def.setLevel(level < 0 ? Deflater.DEFAULT_COMPRESSION : Math.min(level, 9));
+                }
+            };
+        }
+
+        @Override
+        public InputStream decompress(InputStream in) throws IOException {
+            return new GZIPInputStream(in, BUFFER_SIZE);
+        }
+    },
+
+    ZSTD("zstd") {
+        @Override
+        public OutputStream compress(OutputStream out, int level) throws IOException {
+            return level < 0 ? new ZstdOutputStream(out) : new ZstdOutputStream(out, level);
+        }
+
+        @Override
+        public InputStream decompress(InputStream in) throws IOException {
+            return new ZstdInputStream(in);
+        }
+    };
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * 记录在对象元数据中的标识
+     */
+    private final String tag;
+
+    CompressionCodec(String tag) {
+        this.tag = tag;
+    }
+
+    /**
+     * 包装压缩输出流, 关闭时写出结尾
+     *
+     * @param out   输出
+     * @param level 压缩级别, 负数表示默认级别
+     * @return 压缩流
+     * @throws IOException 初始化失败
+     */
+    public abstract OutputStream compress(OutputStream out, int level) throws IOException;
+
+    /**
+     * 包装解压输入流
+     *
+     * @param in 输入
+     * @return 解压流
+     * @throws IOException 初始化失败
+     */
+    public abstract InputStream decompress(InputStream in) throws IOException;
+
+    /**
+     * 按标识查找, 为空时视为未压缩
+     * <p> 未知标识(如更新版本写入的新格式)抛出异常, 避免把压缩内容当作原文返回 </p>
+     *
+     * @param tag 标识
+     * @return {@link CompressionCodec}
+     */
+    public static CompressionCodec of(String tag) {
+        if (StrUtil.isBlank(tag)) {
+            return NONE;
+        }
+        for (CompressionCodec codec : values()) {
+            if (codec.tag.equalsIgnoreCase(tag.trim())) {
+                return codec;
+            }
+        }
+        throw new S3Exception(StrUtil.format("unknown compression codec: {}", tag));
+    }
+}
@@ -0,0 +1,240 @@
+package com.ukayunnuo.s3.codec;
+
+import cn.hutool.core.util.StrUtil;
+import com.ukayunnuo.s3.exception.S3Exception;
+import com.ukayunnuo.s3.storage.ObjectInfo;
+import com.ukayunnuo.s3.storage.ObjectStorage;
+import com.ukayunnuo.s3.storage.PartInfo;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 压缩上传/解压下载
+ * <p> 上传: 输入按 {@code chunkSize} 分块, 各块独立压缩并行执行, 压缩结果按顺序拼接, 攒满 {@code partSize} 上传一个分段;
+ * 压缩后不足一个分段时改为单次上传. 内存中最多保留 {@code concurrency} 个压缩块和一个分段. 压缩格式记录在对象元数据
+ * {@value #META_CODEC} 中 </p>
+ * <p> 下载: 按元数据中的压缩格式流式解压, 没有该元数据的对象原样返回 </p>
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Slf4j
+public class CompressionStage {
+
+    /**
+     * 记录压缩格式的元数据名
+     */
+    public static final String META_CODEC = "s3util-codec";
+
+    private static final int MIN_PART_SIZE = 5 * 1024 * 1024;
+
+    private static final AtomicInteger THREAD_SEQ = new AtomicInteger();
+
+    private final ObjectStorage storage;
+
+    private final CodecProp prop;
+
+    private final ExecutorService compressors;
+
+    public CompressionStage(ObjectStorage storage, CodecProp prop) {
+        this.storage = storage;
+        this.prop = prop;
+        this.compressors = Executors.newFixedThreadPool(Math.max(1, prop.getConcurrency()), r -> {
+            Thread thread = new Thread(r, "s3-codec-" + THREAD_SEQ.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public CompressionStage(ObjectStorage storage) {
+        this(storage, new CodecProp());
+    }
+
+    /**
+     * 压缩上传(读取至流结束, 不关闭流)
+     *
+     * @param bucket      桶
+     * @param key         key
+     * @param in          原始内容
+     * @param contentType 原始内容类型, 可为空
+     * @return 对象 ETag
+     */
+    public String put(String bucket, String key, InputStream in, String contentType) {
+        CompressionCodec codec = prop.getCodec();
+        Map<String, String> metadata = Collections.singletonMap(META_CODEC, codec.getTag());
+        int chunkSize = Math.max(1, prop.getChunkSize());
+        int partSize = Math.max(MIN_PART_SIZE, prop.getPartSize());
+        int concurrency = Math.max(1, prop.getConcurrency());
+
+        Deque<Future<byte[]>> compressing = new ArrayDeque<>();
+        ByteArrayOutputStream part = new ByteArrayOutputStream(partSize + chunkSize);
+        List<PartInfo> parts = new ArrayList<>();
+        String uploadId = null;
+        long rawBytes = 0;
+        try {
+            byte[] chunk;
+            while ((chunk = readChunk(in, chunkSize)) != null) {
+                rawBytes += chunk.length;
+                byte[] raw = chunk;
+                compressing.add(compressors.submit(() -> compress(codec, raw)));
+                // 限制在内存中等待的压缩块数
+                while (compressing.size() >= concurrency || (!compressing.isEmpty() && compressing.peek().isDone())) {
+                    part.write(compressing.poll().get());
+                    if (part.size() >= partSize) {
+                        if (uploadId == null) {
+                            uploadId = storage.initiateMultipartUpload(bucket, key, contentType, metadata);
+                        }
+                        uploadPart(bucket, key, uploadId, parts, part);
+                    }
+                }
+            }
+            while (!compressing.isEmpty()) {
+                part.write(compressing.poll().get());
+                if (part.size() >= partSize) {
+                    if (uploadId == null) {
+                        uploadId = storage.initiateMultipartUpload(bucket, key, contentType, metadata);
+                    }
+                    uploadPart(bucket, key, uploadId, parts, part);
+                }
+            }
+            String etag;
+            if (uploadId == null) {
+                // 空内容也写出合法的压缩流
+                byte[] data = rawBytes == 0 ? compress(codec, new byte[0]) : part.toByteArray();
+                etag = storage.putObject(bucket, key, data, contentType, metadata);
+                log.debug("compressed put, bucket:{}, key:{}, codec:{}, raw:{}, stored:{}", bucket, key, codec, rawBytes, data.length);
+            } else {
+                if (part.size() > 0) {
+                    uploadPart(bucket, key, uploadId, parts, part);
+                }
+                etag = storage.completeMultipartUpload(bucket, key, uploadId, parts);
+                log.debug("compressed multipart put, bucket:{}, key:{}, codec:{}, raw:{}, parts:{}", bucket, key, codec, rawBytes, parts.size());
+            }
+            return etag;
+        } catch (IOException | ExecutionException | InterruptedException | RuntimeException e) {
+            for (Future<byte[]> future : compressing) {
+                future.cancel(true);
+            }
+            if (uploadId != null) {
+                abortQuietly(bucket, key, uploadId);
+            }
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new S3Exception(StrUtil.format("compressed put failed, bucket:{}, key:{}", bucket, key), (Exception) cause);
+        }
+    }
+
+    /**
+     * 下载并按对象元数据中的压缩格式解压
+     *
+     * @param bucket 桶
+     * @param key    key
+     * @return 原始内容流, 由调用方关闭
+     */
+    public InputStream get(String bucket, String key) {
+        ObjectInfo info = storage.headObject(bucket, key);
+        CompressionCodec codec = codecOf(info);
+        InputStream in = storage.getObject(bucket, key, 0, -1, info.getEtag());
+        try {
+            return codec.decompress(in);
+        } catch (IOException e) {
+            try {
+                in.close();
+            } catch (IOException ignored) {
+                // 已在处理异常
+            }
+            throw new S3Exception(StrUtil.format("decompress failed, bucket:{}, key:{}, codec:{}", bucket, key, codec), e);
+        }
+    }
+
+    /**
+     * 对象的压缩格式
+     *
+     * @param info 对象元数据(需包含用户自定义元数据)
+     * @return {@link CompressionCodec}
+     */
+    public static CompressionCodec codecOf(ObjectInfo info) {
+        if (info.getMetadata() == null) {
+            return CompressionCodec.NONE;
+        }
+        for (Map.Entry<String, String> entry : info.getMetadata().entrySet()) {
+            // 不同平台返回的元数据名大小写不同
+            if (META_CODEC.equalsIgnoreCase(entry.getKey())) {
+                return CompressionCodec.of(entry.getValue());
+            }
+        }
+        return CompressionCodec.NONE;
+    }
+
+    /**
+     * 停止压缩线程
+     */
+    public void shutdown() {
+        compressors.shutdown();
+    }
+
+    private void uploadPart(String bucket, String key, String uploadId, List<PartInfo> parts, ByteArrayOutputStream part) {
+        byte[] data = part.toByteArray();
+        part.reset();
+        int partNumber = parts.size() + 1;
+        String etag = storage.uploadPart(bucket, key, uploadId, partNumber, data);
+        parts.add(new PartInfo(partNumber, etag, data.length));
+    }
+
+    private void abortQuietly(String bucket, String key, String uploadId) {
+        try {
+            storage.abortMultipartUpload(bucket, key, uploadId);
+        } catch (RuntimeException e) {
+            log.warn("abort compressed multipart upload failed, bucket:{}, key:{}, uploadId:{}, msg:{}", bucket, key, uploadId, e.getMessage());
+        }
+    }
+
+    private byte[] compress(CompressionCodec codec, byte[] raw) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(Math.max(64, raw.length / 2));
+        try (OutputStream out = codec.compress(bytes, prop.getLevel())) {
+            out.write(raw);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * 读满一个块, 流结束时返回空
+     */
+    private static byte[] readChunk(InputStream in, int chunkSize) throws IOException {
+        byte[] buffer = new byte[chunkSize];
+        int read = 0;
+        int n;
+        while (read < chunkSize && (n = in.read(buffer, read, chunkSize - read)) >= 0) {
+            read += n;
+        }
+        if (read == 0) {
+            return null;
+        }
+        if (read < chunkSize) {
+            byte[] last = new byte[read];
+            System.arraycopy(buffer, 0, last, 0, read);
+            return last;
+        }
+        return buffer;
+    }
+}
@@ -0,0 +1,80 @@
+package com.ukayunnuo.s3.core;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 并发受限的执行器: 每个任务立即交给底层执行器(虚拟线程), 在任务线程内等待许可后执行
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+class BoundedExecutor extends AbstractExecutorService {
+
+    private final ExecutorService delegate;
+
+    private final Semaphore permits;
+
+    BoundedExecutor(ExecutorService delegate, int concurrency) {
+        this.delegate = delegate;
+        this.permits = new Semaphore(concurrency);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        delegate.execute(() -> {
+            acquire(permits);
+            try {
+                command.run();
+            } finally {
+                permits.release();
+            }
+        });
+    }
+
+    /**
+     * 等待许可; 等待中被中断时仍执行任务(以便 Future 完成), 由任务自行响应中断标记
+     */
+    static void acquire(Semaphore permits) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                permits.acquire();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return delegate.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return delegate.awaitTermination(timeout, unit);
+    }
+}
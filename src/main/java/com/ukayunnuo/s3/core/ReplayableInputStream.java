@@ -0,0 +1,11 @@
+package com.ukayunnuo.s3.core;
+
+/**
+ * 可重放输入流标记
+ * <p> 实现类的 mark/reset 不缓存数据(如按文件偏移重新定位), 重试时不受 {@code s3.retry.max-replay-bytes} 限制 </p>
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+public interface ReplayableInputStream {
+}
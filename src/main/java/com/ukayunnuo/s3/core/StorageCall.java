@@ -0,0 +1,22 @@
+package com.ukayunnuo.s3.core;
+
+/**
+ * 存储调用
+ * <p> 异常类型参数化: SDK 只抛运行时异常时, 调用方无需处理受检异常 </p>
+ *
+ * @param <T> 返回值类型
+ * @param <E> 异常类型
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@FunctionalInterface
+public interface StorageCall<T, E extends Exception> {
+
+    /**
+     * 执行调用
+     *
+     * @return T
+     * @throws E 异常
+     */
+    T call() throws E;
+}
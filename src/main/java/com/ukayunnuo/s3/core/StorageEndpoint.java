@@ -0,0 +1,104 @@
+package com.ukayunnuo.s3.core;
+
+import cn.hutool.core.util.StrUtil;
+import lombok.Getter;
+
+import java.net.URI;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 存储端点
+ * <p> 平台 + 主机(host[:port]), 端点许可按它区分; 同一平台的多个端点(如局域网 minio 与公网 AWS)互不占用许可.
+ * 未指定主机时为平台默认端点, 与只按平台区分时相同 </p>
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Getter
+public final class StorageEndpoint {
+
+    private static final Map<StorageProvider, StorageEndpoint> DEFAULTS = new EnumMap<>(StorageProvider.class);
+
+    static {
+        for (StorageProvider provider : StorageProvider.values()) {
+            DEFAULTS.put(provider, new StorageEndpoint(provider, null));
+        }
+    }
+
+    private final StorageProvider provider;
+
+    /**
+     * 主机(host[:port]), 平台默认端点为空
+     */
+    private final String host;
+
+    /**
+     * 标识: 平台 tag 或 平台 tag@主机
+     */
+    private final String id;
+
+    private StorageEndpoint(StorageProvider provider, String host) {
+        this.provider = Objects.requireNonNull(provider);
+        this.host = host;
+        this.id = host == null ? provider.getTag() : provider.getTag() + "@" + host;
+    }
+
+    /**
+     * 平台默认端点
+     *
+     * @param provider 平台
+     * @return {@link StorageEndpoint}
+     */
+    public static StorageEndpoint of(StorageProvider provider) {
+        return DEFAULTS.get(provider);
+    }
+
+    /**
+     * 指定主机的端点
+     *
+     * @param provider 平台
+     * @param endpoint 端点地址(如 http://10.0.0.5:9000)或 host[:port], 为空时为平台默认端点
+     * @return {@link StorageEndpoint}
+     */
+    public static StorageEndpoint of(StorageProvider provider, String endpoint) {
+        String host = hostOf(endpoint);
+        return host == null ? of(provider) : new StorageEndpoint(provider, host);
+    }
+
+    private static String hostOf(String endpoint) {
+        if (StrUtil.isBlank(endpoint)) {
+            return null;
+        }
+        String value = endpoint.trim();
+        if (!value.contains("://")) {
+            value = "http://" + value;
+        }
+        try {
+            URI uri = URI.create(value);
+            if (uri.getHost() != null) {
+                String host = uri.getHost().toLowerCase();
+                return uri.getPort() > 0 ? host + ":" + uri.getPort() : host;
+            }
+        } catch (IllegalArgumentException e) {
+            // 不是 URI 时原样使用
+        }
+        return endpoint.trim().toLowerCase();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || (o instanceof StorageEndpoint && id.equals(((StorageEndpoint) o).id));
+    }
+
+    @Override
+    public int hashCode() {
+        return id.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return id;
+    }
+}
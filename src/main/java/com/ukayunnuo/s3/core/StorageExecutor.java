@@ -0,0 +1,286 @@
+package com.ukayunnuo.s3.core;
+
+import com.ukayunnuo.s3.exception.StorageException;
+import com.ukayunnuo.s3.metrics.S3Metrics;
+import com.ukayunnuo.s3.resilience.FailureClassifier;
+import com.ukayunnuo.s3.resilience.FailureKind;
+import com.ukayunnuo.s3.resilience.S3Hedge;
+import com.ukayunnuo.s3.resilience.S3Limiter;
+import com.ukayunnuo.s3.resilience.S3Retry;
+
+import java.io.InputStream;
+import java.util.function.Supplier;
+
+/**
+ * 存储调用执行器
+ * <p> 三个平台工具类的所有存储调用统一经过这里, 用于挂载指标、重试、对冲、并发限制等横切能力 </p>
+ * <p> 调用链: 重试 -> 对冲 -> 并发限制 -> 端点许可(虚拟线程模式) -> 指标, 每次尝试(含对冲请求)单独占用并发许可并记录指标;
+ * 先过并发限制再占端点许可, 被限流等待的调用不占用端点许可 </p>
+ * <p> 平台 SDK 异常与网络异常在出口转换为 {@link StorageException}(不存在为 {@link com.ukayunnuo.s3.exception.StorageNotFoundException}),
+ * 原异常保留为 cause; 线程中断与本工具自身的异常原样抛出 </p>
+ * <p> 重试预算、对冲延迟窗口、并发限制按端点区分; 以 {@link StorageProvider} 调用时使用平台默认端点 </p>
+ * <p> {@link #failFast} 范围内的调用只尝试一次: 不重试、不对冲、不等待并发许可, 供多副本读路由尽快换副本 </p>
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+public class StorageExecutor {
+
+    private static final ThreadLocal<Boolean> FAIL_FAST = new ThreadLocal<>();
+
+    private StorageExecutor() {
+    }
+
+    /**
+     * 在快速失败模式下执行: 当前线程在 call 内发起的存储调用不重试、不对冲, 并发已满时立即失败
+     *
+     * @param call 调用
+     * @return T
+     */
+    public static <T> T failFast(Supplier<T> call) {
+        Boolean previous = FAIL_FAST.get();
+        FAIL_FAST.set(Boolean.TRUE);
+        try {
+            return call.get();
+        } finally {
+            if (previous == null) {
+                FAIL_FAST.remove();
+            } else {
+                FAIL_FAST.set(previous);
+            }
+        }
+    }
+
+    /**
+     * 当前线程是否处于快速失败模式
+     *
+     * @return boolean
+     */
+    public static boolean isFailFast() {
+        return FAIL_FAST.get() != null;
+    }
+
+    /**
+     * 执行存储调用(桶级)
+     *
+     * @param provider  平台
+     * @param operation 操作
+     * @param bucket    桶
+     * @param call      调用
+     * @return T
+     * @throws E 调用异常
+     */
+    public static <T, E extends Exception> T execute(StorageProvider provider, StorageOperation operation, String bucket,
+                                                     StorageCall<T, E> call) throws E {
+        return execute(StorageEndpoint.of(provider), operation, bucket, null, call);
+    }
+
+    /**
+     * 执行存储调用
+     *
+     * @param provider  平台
+     * @param operation 操作
+     * @param bucket    桶
+     * @param key       对象 key, 用于按前缀限流
+     * @param call      调用
+     * @return T
+     * @throws E 调用异常
+     */
+    public static <T, E extends Exception> T execute(StorageProvider provider, StorageOperation operation, String bucket, String key,
+                                                     StorageCall<T, E> call) throws E {
+        return execute(StorageEndpoint.of(provider), operation, bucket, key, call);
+    }
+
+    /**
+     * 执行存储调用(桶级)
+     *
+     * @param endpoint  端点
+     * @param operation 操作
+     * @param bucket    桶
+     * @param call      调用
+     * @return T
+     * @throws E 调用异常
+     */
+    public static <T, E extends Exception> T execute(StorageEndpoint endpoint, StorageOperation operation, String bucket,
+                                                     StorageCall<T, E> call) throws E {
+        return execute(endpoint, operation, bucket, null, call);
+    }
+
+    /**
+     * 执行存储调用
+     *
+     * @param endpoint  端点
+     * @param operation 操作
+     * @param bucket    桶
+     * @param key       对象 key, 用于按前缀限流
+     * @param call      调用
+     * @return T
+     * @throws E 调用异常
+     */
+    public static <T, E extends Exception> T execute(StorageEndpoint endpoint, StorageOperation operation, String bucket, String key,
+                                                     StorageCall<T, E> call) throws E {
+        try {
+            if (isFailFast()) {
+                return attempt(endpoint, operation, bucket, key, true, call).call();
+            }
+            return S3Retry.execute(endpoint, operation, bucket, attempt(endpoint, operation, bucket, key, false, call));
+        } catch (Exception e) {
+            StorageException converted = convert(e, bucket, key);
+            if (converted != null) {
+                throw converted;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 执行上传调用, 并记录上传字节数
+     *
+     * @param provider  平台
+     * @param operation 操作
+     * @param bucket    桶
+     * @param bytes     上传字节数(未知时传负数)
+     * @param call      调用
+     * @return T
+     * @throws E 调用异常
+     */
+    public static <T, E extends Exception> T executeUpload(StorageProvider provider, StorageOperation operation, String bucket,
+                                                           long bytes, StorageCall<T, E> call) throws E {
+        return executeUpload(StorageEndpoint.of(provider), operation, bucket, null, bytes, null, call);
+    }
+
+    /**
+     * 执行上传调用, 并记录上传字节数
+     * <p> 流式请求体支持 mark/reset 且不超过重放上限时才会重试 </p>
+     *
+     * @param provider  平台
+     * @param operation 操作
+     * @param bucket    桶
+     * @param key       对象 key
+     * @param bytes     上传字节数(未知时传负数)
+     * @param body      流式请求体, 文件上传等无流式请求体时为空
+     * @param call      调用
+     * @return T
+     * @throws E 调用异常
+     */
+    public static <T, E extends Exception> T executeUpload(StorageProvider provider, StorageOperation operation, String bucket, String key,
+                                                           long bytes, InputStream body, StorageCall<T, E> call) throws E {
+        return executeUpload(StorageEndpoint.of(provider), operation, bucket, key, bytes, body, call);
+    }
+
+    /**
+     * 执行上传调用, 并记录上传字节数
+     * <p> 流式请求体支持 mark/reset 且不超过重放上限时才会重试 </p>
+     *
+     * @param endpoint  端点
+     * @param operation 操作
+     * @param bucket    桶
+     * @param key       对象 key
+     * @param bytes     上传字节数(未知时传负数)
+     * @param body      流式请求体, 文件上传等无流式请求体时为空
+     * @param call      调用
+     * @return T
+     * @throws E 调用异常
+     */
+    public static <T, E extends Exception> T executeUpload(StorageEndpoint endpoint, StorageOperation operation, String bucket, String key,
+                                                           long bytes, InputStream body, StorageCall<T, E> call) throws E {
+        T result;
+        try {
+            if (isFailFast()) {
+                result = attempt(endpoint, operation, bucket, key, true, call).call();
+            } else {
+                result = S3Retry.execute(endpoint, operation, bucket, body, bytes, attempt(endpoint, operation, bucket, key, false, call));
+            }
+        } catch (Exception e) {
+            StorageException converted = convert(e, bucket, key);
+            if (converted != null) {
+                throw converted;
+            }
+            throw e;
+        }
+        S3Metrics.bytesOut(endpoint, operation, bucket, bytes);
+        return result;
+    }
+
+    /**
+     * 单次执行整体传输(不经 {@link S3Retry} 重试), 并记录上传字节数
+     * <p> 用于内部按分段各自重试的传输(如 TransferManager 上传), 整体重试会从头重传所有分段 </p>
+     *
+     * @param endpoint  端点
+     * @param operation 操作
+     * @param bucket    桶
+     * @param key       对象 key
+     * @param bytes     上传字节数(未知时传负数)
+     * @param call      调用
+     * @return T
+     * @throws E 调用异常
+     */
+    public static <T, E extends Exception> T executeTransfer(StorageEndpoint endpoint, StorageOperation operation, String bucket, String key,
+                                                             long bytes, StorageCall<T, E> call) throws E {
+        T result;
+        try {
+            result = attempt(endpoint, operation, bucket, key, isFailFast(), call).call();
+        } catch (Exception e) {
+            StorageException converted = convert(e, bucket, key);
+            if (converted != null) {
+                throw converted;
+            }
+            throw e;
+        }
+        S3Metrics.bytesOut(endpoint, operation, bucket, bytes);
+        return result;
+    }
+
+    /**
+     * 执行下载调用, 返回的流在读取时记录下载字节数
+     *
+     * @param provider  平台
+     * @param operation 操作
+     * @param bucket    桶
+     * @param key       对象 key
+     * @param call      调用
+     * @return {@link InputStream}
+     * @throws E 调用异常
+     */
+    public static <E extends Exception> InputStream executeDownload(StorageProvider provider, StorageOperation operation, String bucket,
+                                                                   String key, StorageCall<? extends InputStream, E> call) throws E {
+        return executeDownload(StorageEndpoint.of(provider), operation, bucket, key, call);
+    }
+
+    /**
+     * 执行下载调用, 返回的流在读取时记录下载字节数
+     *
+     * @param endpoint  端点
+     * @param operation 操作
+     * @param bucket    桶
+     * @param key       对象 key
+     * @param call      调用
+     * @return {@link InputStream}
+     * @throws E 调用异常
+     */
+    public static <E extends Exception> InputStream executeDownload(StorageEndpoint endpoint, StorageOperation operation, String bucket,
+                                                                   String key, StorageCall<? extends InputStream, E> call) throws E {
+        InputStream in = execute(endpoint, operation, bucket, key, call);
+        return S3Metrics.meter(endpoint, operation, bucket, in);
+    }
+
+    /**
+     * 平台或网络异常转换为 {@link StorageException}, 不需要转换时为空
+     */
+    private static StorageException convert(Exception e, String bucket, String key) {
+        if (e instanceof StorageException || e instanceof InterruptedException || FailureClassifier.classify(e) == FailureKind.UNKNOWN) {
+            return null;
+        }
+        return StorageException.of(e, bucket, key);
+    }
+
+    /**
+     * 单次尝试, 快速失败时不对冲且不等待并发许可
+     */
+    private static <T, E extends Exception> StorageCall<T, E> attempt(StorageEndpoint endpoint, StorageOperation operation, String bucket,
+                                                                      String key, boolean failFast, StorageCall<T, E> call) {
+        StorageCall<T, E> limited = () -> S3Limiter.execute(endpoint, operation, bucket, key, failFast,
+                () -> StorageThreads.execute(endpoint, () -> S3Metrics.record(endpoint, operation, bucket, call)));
+        return failFast ? limited : () -> S3Hedge.execute(endpoint, operation, bucket, limited);
+    }
+}
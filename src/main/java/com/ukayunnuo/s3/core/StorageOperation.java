@@ -0,0 +1,77 @@
+package com.ukayunnuo.s3.core;
+
+import lombok.Getter;
+
+/**
+ * 存储操作类型
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Getter
+public enum StorageOperation {
+
+    CREATE_BUCKET("create_bucket", false, false),
+
+    BUCKET_EXISTS("bucket_exists", true, true),
+
+    GET_BUCKET_POLICY("get_bucket_policy", true, true),
+
+    LIST_BUCKETS("list_buckets", true, true),
+
+    REMOVE_BUCKET("remove_bucket", false, false),
+
+    LIST_OBJECTS("list_objects", true, true),
+
+    HEAD_OBJECT("head_object", true, true),
+
+    PRESIGN("presign", true, true),
+
+    GET_OBJECT("get_object", true, true),
+
+    PUT_OBJECT("put_object", false, true),
+
+    /**
+     * 初始化分段上传: 重复执行会产生孤立的上传, 不幂等
+     */
+    INITIATE_MULTIPART("initiate_multipart", false, false),
+
+    /**
+     * 上传分段、列举、中止等分段上传操作
+     */
+    MULTIPART_UPLOAD("multipart_upload", false, true),
+
+    /**
+     * 完成分段上传: 已完成后重复执行返回 NoSuchUpload, 不幂等
+     */
+    COMPLETE_MULTIPART("complete_multipart", false, false),
+
+    COPY_OBJECT("copy_object", false, true),
+
+    RENAME_OBJECT("rename_object", false, false),
+
+    DELETE_OBJECT("delete_object", false, true),
+
+    DELETE_OBJECTS("delete_objects", false, true);
+
+    /**
+     * 指标 tag 值
+     */
+    private final String tag;
+
+    /**
+     * 是否只读(无副作用)
+     */
+    private final boolean readOnly;
+
+    /**
+     * 是否幂等(重复执行结果一致, 可在请求可能已到达服务端时重试)
+     */
+    private final boolean idempotent;
+
+    StorageOperation(String tag, boolean readOnly, boolean idempotent) {
+        this.tag = tag;
+        this.readOnly = readOnly;
+        this.idempotent = idempotent;
+    }
+}
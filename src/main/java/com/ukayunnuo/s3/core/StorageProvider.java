@@ -0,0 +1,37 @@
+package com.ukayunnuo.s3.core;
+
+import lombok.Getter;
+
+/**
+ * 存储平台
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Getter
+public enum StorageProvider {
+
+    /**
+     * minio
+     */
+    MINIO("minio"),
+
+    /**
+     * Amazon S3 (包括 Oracle S3 兼容端点)
+     */
+    AWS("aws"),
+
+    /**
+     * Oracle Object Storage 原生 API
+     */
+    OCI("oci");
+
+    /**
+     * 指标 tag 值
+     */
+    private final String tag;
+
+    StorageProvider(String tag) {
+        this.tag = tag;
+    }
+}
@@ -0,0 +1,155 @@
+package com.ukayunnuo.s3.core;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 存储调用线程
+ * <p> 静态门面, 传输引擎通过它创建执行器; 默认使用平台线程池. {@code s3.threads.mode=VIRTUAL} 且运行在 Java 21+ 时
+ * 每个任务一个虚拟线程, 阻塞的 SDK 调用不再占用平台线程, 引擎的并发数只由信号量限制;
+ * 同时 {@link StorageExecutor} 的每次调用按端点({@link StorageEndpoint})占用许可, 限制同一端点的在途请求数 </p>
+ * <p> 虚拟线程通过反射创建, 项目仍可按 Java 8 编译运行 </p>
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Slf4j
+public class StorageThreads {
+
+    private static final AtomicInteger THREAD_SEQ = new AtomicInteger();
+
+    private static final Method OF_VIRTUAL;
+
+    private static final Method BUILDER_NAME;
+
+    private static final Method BUILDER_FACTORY;
+
+    private static final Method NEW_THREAD_PER_TASK_EXECUTOR;
+
+    static {
+        Method ofVirtual = null;
+        Method name = null;
+        Method factory = null;
+        Method perTask = null;
+        try {
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            name = builder.getMethod("name", String.class, long.class);
+            factory = builder.getMethod("factory");
+            perTask = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+        } catch (ReflectiveOperationException e) {
+            // Java 21 以下没有虚拟线程
+            ofVirtual = null;
+        }
+        OF_VIRTUAL = ofVirtual;
+        BUILDER_NAME = name;
+        BUILDER_FACTORY = factory;
+        NEW_THREAD_PER_TASK_EXECUTOR = perTask;
+    }
+
+    private static volatile StorageThreadsProp prop = new StorageThreadsProp();
+
+    private static volatile boolean virtual;
+
+    /**
+     * 端点标识 -> 许可
+     */
+    private static final Map<String, Semaphore> PERMITS = new ConcurrentHashMap<>();
+
+    private StorageThreads() {
+    }
+
+    /**
+     * 绑定配置
+     *
+     * @param threadsProp 配置
+     */
+    public static synchronized void configure(StorageThreadsProp threadsProp) {
+        prop = Objects.requireNonNull(threadsProp);
+        boolean requested = threadsProp.getMode() == ThreadMode.VIRTUAL;
+        if (requested && !isVirtualSupported()) {
+            log.warn("virtual threads require Java 21+, fall back to platform threads, java.version:{}", System.getProperty("java.version"));
+        }
+        virtual = requested && isVirtualSupported();
+        PERMITS.clear();
+        log.info("s3 threads configured, virtual:{}, prop:{}", virtual, threadsProp);
+    }
+
+    /**
+     * 运行时是否支持虚拟线程
+     *
+     * @return boolean
+     */
+    public static boolean isVirtualSupported() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * 是否使用虚拟线程
+     *
+     * @return boolean
+     */
+    public static boolean isVirtual() {
+        return virtual;
+    }
+
+    /**
+     * 创建最多同时执行 concurrency 个任务的执行器, 平台线程模式下为守护线程的固定线程池
+     *
+     * @param prefix      线程名前缀
+     * @param concurrency 并发数
+     * @return {@link ExecutorService}, 由调用方关闭
+     */
+    public static ExecutorService newExecutor(String prefix, int concurrency) {
+        int threads = Math.max(1, concurrency);
+        if (virtual) {
+            return new BoundedExecutor(virtualExecutor(prefix), threads);
+        }
+        return Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, prefix + "-" + THREAD_SEQ.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 在端点许可内执行存储调用, 仅虚拟线程模式生效
+     *
+     * @param endpoint 端点
+     * @param call     调用
+     * @return T
+     * @throws E 调用异常
+     */
+    public static <T, E extends Exception> T execute(StorageEndpoint endpoint, StorageCall<T, E> call) throws E {
+        int limit = prop.getMaxInFlightPerHost();
+        if (!virtual || limit <= 0) {
+            return call.call();
+        }
+        Semaphore permits = PERMITS.computeIfAbsent(endpoint.getId(), id -> new Semaphore(limit));
+        BoundedExecutor.acquire(permits);
+        try {
+            return call.call();
+        } finally {
+            permits.release();
+        }
+    }
+
+    private static ExecutorService virtualExecutor(String prefix) {
+        try {
+            Object builder = BUILDER_NAME.invoke(OF_VIRTUAL.invoke(null), prefix + "-v", 1L);
+            ThreadFactory factory = (ThreadFactory) BUILDER_FACTORY.invoke(builder);
+            return (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invoke(null, factory);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("create virtual thread executor failed", e);
+        }
+    }
+}
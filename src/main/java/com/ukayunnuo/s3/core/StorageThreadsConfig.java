@@ -0,0 +1,25 @@
+package com.ukayunnuo.s3.core;
+
+import org.springframework.context.annotation.Configuration;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+
+/**
+ * 存储调用线程 配置: 将配置绑定到 {@link StorageThreads} 静态门面
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Configuration
+public class StorageThreadsConfig {
+
+    @Resource
+    private StorageThreadsProp storageThreadsProp;
+
+    @PostConstruct
+    public void init() {
+        StorageThreads.configure(storageThreadsProp);
+    }
+
+}
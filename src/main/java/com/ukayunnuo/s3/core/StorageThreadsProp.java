@@ -0,0 +1,34 @@
+package com.ukayunnuo.s3.core;
+
+import cn.hutool.json.JSONUtil;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 存储调用线程 配置
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "s3.threads")
+public class StorageThreadsProp {
+
+    /**
+     * 线程模式
+     */
+    private ThreadMode mode = ThreadMode.PLATFORM;
+
+    /**
+     * 虚拟线程模式下每个端点(平台 + 主机)同时在途的存储调用数上限, 0 表示不限制;
+     * 应与 SDK 连接池大小匹配, 超出的调用在虚拟线程上等待, 不占用平台线程
+     */
+    private int maxInFlightPerHost = 512;
+
+    @Override
+    public String toString() {
+        return JSONUtil.toJsonStr(this);
+    }
+}
@@ -0,0 +1,20 @@
+package com.ukayunnuo.s3.core;
+
+/**
+ * 存储调用线程模式
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+public enum ThreadMode {
+
+    /**
+     * 平台线程, 固定大小线程池
+     */
+    PLATFORM,
+
+    /**
+     * 虚拟线程(Java 21+), 每个任务一个虚拟线程, 并发由信号量限制; 运行时不支持时退回平台线程
+     */
+    VIRTUAL
+}
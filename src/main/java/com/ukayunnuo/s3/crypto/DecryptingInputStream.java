@@ -0,0 +1,110 @@
+package com.ukayunnuo.s3.crypto;
+
+import javax.crypto.Cipher;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+
+/**
+ * 逐块解密的输入流, 每块认证通过后才返回其明文
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+class DecryptingInputStream extends FilterInputStream {
+
+    private final EnvelopeCipher envelope;
+
+    private final Cipher cipher;
+
+    private final long chunkCount;
+
+    private final byte[] sealed;
+
+    private final byte[] plain;
+
+    private long index;
+
+    private int position;
+
+    private int limit;
+
+    DecryptingInputStream(InputStream in, EnvelopeCipher envelope, long chunkCount, long firstChunk) throws GeneralSecurityException {
+        super(in);
+        this.envelope = envelope;
+        this.cipher = EnvelopeCipher.newCipher();
+        this.chunkCount = chunkCount;
+        this.sealed = new byte[(int) envelope.cipherChunkSize()];
+        this.plain = new byte[envelope.getChunkSize()];
+        this.index = firstChunk;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] one = new byte[1];
+        int n = read(one, 0, 1);
+        return n < 0 ? -1 : one[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        while (position >= limit) {
+            if (index >= chunkCount) {
+                return -1;
+            }
+            nextChunk();
+        }
+        int n = Math.min(len, limit - position);
+        System.arraycopy(plain, position, b, off, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        byte[] buffer = new byte[(int) Math.min(n, 8192)];
+        long skipped = 0;
+        while (skipped < n) {
+            int r = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+            if (r < 0) {
+                break;
+            }
+            skipped += r;
+        }
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return limit - position;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    private void nextChunk() throws IOException {
+        int read = 0;
+        int n;
+        while (read < sealed.length && (n = in.read(sealed, read, sealed.length - read)) >= 0) {
+            read += n;
+        }
+        boolean last = index == chunkCount - 1;
+        if (read < EnvelopeCipher.TAG_BYTES || (!last && read < sealed.length)) {
+            throw new EOFException("encrypted content truncated at chunk " + index);
+        }
+        try {
+            limit = envelope.decrypt(cipher, index, last, sealed, 0, read, plain, 0);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("decrypt chunk " + index + " failed", e);
+        }
+        position = 0;
+        index++;
+    }
+}
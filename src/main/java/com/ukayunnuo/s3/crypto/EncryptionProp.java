@@ -0,0 +1,58 @@
+package com.ukayunnuo.s3.crypto;
+
+import cn.hutool.json.JSONUtil;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 客户端加密 配置
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "s3.crypto")
+public class EncryptionProp {
+
+    /**
+     * 主密钥: 密钥 id -> Base64 编码的 AES 密钥(16/24/32 字节). 轮换时新增密钥并切换 {@link #activeKeyId}, 旧密钥保留用于解密
+     */
+    private Map<String, String> masterKeys = new LinkedHashMap<>();
+
+    /**
+     * 加密新对象使用的主密钥 id
+     */
+    private String activeKeyId;
+
+    /**
+     * 明文块大小(字节), 每块独立 AES-GCM 加密, 也是区间解密的最小单位
+     */
+    private int chunkSize = 64 * 1024;
+
+    /**
+     * 分段大小(字节), 按整块对齐; 内容不足一个分段时单次上传
+     */
+    private int partSize = 8 * 1024 * 1024;
+
+    /**
+     * 并行加密并上传的分段数
+     */
+    private int concurrency = 4;
+
+    @Override
+    public String toString() {
+        // 不输出密钥
+        Map<String, Object> view = new LinkedHashMap<>();
+        view.put("masterKeyIds", masterKeys.keySet());
+        view.put("activeKeyId", activeKeyId);
+        view.put("chunkSize", chunkSize);
+        view.put("partSize", partSize);
+        view.put("concurrency", concurrency);
+        return JSONUtil.toJsonStr(view);
+    }
+}
@@ -0,0 +1,324 @@
+package com.ukayunnuo.s3.crypto;
+
+import cn.hutool.core.util.StrUtil;
+import com.ukayunnuo.s3.exception.S3Exception;
+import com.ukayunnuo.s3.storage.ObjectInfo;
+import com.ukayunnuo.s3.storage.ObjectStorage;
+import com.ukayunnuo.s3.storage.PartInfo;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.crypto.Cipher;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 客户端信封加密上传/解密下载
+ * <p> 上传: 每个对象生成独立数据密钥, 内容按 {@code chunkSize} 分块 AES-GCM 加密, 分段按整块对齐,
+ * 多个分段并行加密并上传; 不足一个分段时单次上传. 被主密钥加密的数据密钥、主密钥 id、块大小记录在对象元数据中 </p>
+ * <p> 下载: 整体流式解密, 或只请求覆盖所需明文区间的密文块并解密 </p>
+ *
+ * <pre>
+ * EncryptionStage stage = new EncryptionStage(new AwsObjectStorage(amazonS3), encryptionProp);
+ * stage.put(bucket, key, inputStream, "application/pdf");
+ * byte[] page = stage.getRange(bucket, key, 1024 * 1024, 4096);
+ * </pre>
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Slf4j
+public class EncryptionStage {
+
+    public static final String META_ALGORITHM = "s3util-enc";
+
+    public static final String META_KEY_ID = "s3util-enc-kid";
+
+    public static final String META_DATA_KEY = "s3util-enc-key";
+
+    public static final String META_CHUNK_SIZE = "s3util-enc-chunk";
+
+    private static final int MIN_PART_SIZE = 5 * 1024 * 1024;
+
+    private static final AtomicInteger THREAD_SEQ = new AtomicInteger();
+
+    private final ObjectStorage storage;
+
+    private final EncryptionProp prop;
+
+    private final ExecutorService workers;
+
+    public EncryptionStage(ObjectStorage storage, EncryptionProp prop) {
+        if (StrUtil.isBlank(prop.getActiveKeyId()) || !prop.getMasterKeys().containsKey(prop.getActiveKeyId())) {
+            throw new S3Exception(StrUtil.format("active master key not configured, activeKeyId:{}", prop.getActiveKeyId()));
+        }
+        this.storage = storage;
+        this.prop = prop;
+        this.workers = Executors.newFixedThreadPool(Math.max(1, prop.getConcurrency()), r -> {
+            Thread thread = new Thread(r, "s3-crypto-" + THREAD_SEQ.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 加密上传(读取至流结束, 不关闭流)
+     *
+     * @param bucket      桶
+     * @param key         key
+     * @param in          明文
+     * @param contentType 内容类型, 可为空
+     * @return 对象 ETag
+     */
+    public String put(String bucket, String key, InputStream in, String contentType) {
+        int chunkSize = Math.max(16, prop.getChunkSize());
+        EnvelopeCipher envelope = EnvelopeCipher.generate(chunkSize);
+        Map<String, String> metadata = new HashMap<>();
+        try {
+            String keyId = prop.getActiveKeyId();
+            metadata.put(META_ALGORITHM, EnvelopeCipher.ALGORITHM);
+            metadata.put(META_KEY_ID, keyId);
+            metadata.put(META_DATA_KEY, Base64.getEncoder().encodeToString(envelope.wrap(masterKey(keyId), keyId)));
+            metadata.put(META_CHUNK_SIZE, String.valueOf(chunkSize));
+        } catch (GeneralSecurityException e) {
+            throw new S3Exception(StrUtil.format("wrap data key failed, bucket:{}, key:{}", bucket, key), e);
+        }
+        int chunksPerPart = Math.max(1, (Math.max(MIN_PART_SIZE, prop.getPartSize()) + chunkSize - 1) / chunkSize);
+        int partPlainSize = chunksPerPart * chunkSize;
+
+        String uploadId = null;
+        List<Future<PartInfo>> futures = new ArrayList<>();
+        try {
+            byte[] current = readFully(in, partPlainSize);
+            byte[] next = current.length == partPlainSize ? readFully(in, partPlainSize) : new byte[0];
+            if (next.length == 0) {
+                return storage.putObject(bucket, key, encryptPart(envelope, 0, current, true), contentType, metadata);
+            }
+            String id = storage.initiateMultipartUpload(bucket, key, contentType, metadata);
+            uploadId = id;
+            // 在途分段数受信号量限制, 内存占用与对象大小无关
+            Semaphore permits = new Semaphore(Math.max(1, prop.getConcurrency()));
+            long firstChunk = 0;
+            for (int partNumber = 1; ; partNumber++) {
+                boolean last = next.length == 0;
+                permits.acquire();
+                checkFailed(futures);
+                byte[] plain = current;
+                long chunk = firstChunk;
+                int number = partNumber;
+                futures.add(workers.submit(() -> {
+                    try {
+                        byte[] sealed = encryptPart(envelope, chunk, plain, last);
+                        return new PartInfo(number, storage.uploadPart(bucket, key, id, number, sealed), sealed.length);
+                    } finally {
+                        permits.release();
+                    }
+                }));
+                if (last) {
+                    break;
+                }
+                firstChunk += chunksPerPart;
+                current = next;
+                next = current.length == partPlainSize ? readFully(in, partPlainSize) : new byte[0];
+            }
+            List<PartInfo> parts = new ArrayList<>(futures.size());
+            for (Future<PartInfo> future : futures) {
+                parts.add(future.get());
+            }
+            return storage.completeMultipartUpload(bucket, key, uploadId, parts);
+        } catch (IOException | GeneralSecurityException | ExecutionException | InterruptedException | RuntimeException e) {
+            for (Future<PartInfo> future : futures) {
+                future.cancel(false);
+            }
+            if (uploadId != null) {
+                try {
+                    storage.abortMultipartUpload(bucket, key, uploadId);
+                } catch (RuntimeException abortError) {
+                    log.warn("abort encrypted upload failed, bucket:{}, key:{}, uploadId:{}, msg:{}", bucket, key, uploadId, abortError.getMessage());
+                }
+            }
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new S3Exception(StrUtil.format("encrypted put failed, bucket:{}, key:{}", bucket, key), (Exception) cause);
+        }
+    }
+
+    /**
+     * 下载并流式解密
+     *
+     * @param bucket 桶
+     * @param key    key
+     * @return 明文流, 由调用方关闭; 内容被篡改时读取抛出 IOException
+     */
+    public InputStream get(String bucket, String key) {
+        ObjectInfo info = storage.headObject(bucket, key);
+        EnvelopeCipher envelope = envelope(info);
+        InputStream in = storage.getObject(bucket, key, 0, -1, info.getEtag());
+        try {
+            return new DecryptingInputStream(in, envelope, envelope.chunkCount(info.getSize()), 0);
+        } catch (GeneralSecurityException e) {
+            closeQuietly(in);
+            throw new S3Exception(StrUtil.format("init decrypt failed, bucket:{}, key:{}", bucket, key), e);
+        }
+    }
+
+    /**
+     * 读取明文区间, 只请求覆盖该区间的密文块
+     *
+     * @param bucket 桶
+     * @param key    key
+     * @param offset 明文偏移
+     * @param length 长度, 超出末尾时截断
+     * @return 明文
+     */
+    public byte[] getRange(String bucket, String key, long offset, int length) {
+        ObjectInfo info = storage.headObject(bucket, key);
+        EnvelopeCipher envelope = envelope(info);
+        long plainLength = envelope.plainLength(info.getSize());
+        if (offset < 0 || offset > plainLength) {
+            throw new S3Exception(StrUtil.format("range out of bounds, bucket:{}, key:{}, offset:{}, length:{}", bucket, key, offset, plainLength));
+        }
+        int size = (int) Math.min(length, plainLength - offset);
+        if (size <= 0) {
+            return new byte[0];
+        }
+        long chunkCount = envelope.chunkCount(info.getSize());
+        long firstChunk = offset / envelope.getChunkSize();
+        long lastChunk = (offset + size - 1) / envelope.getChunkSize();
+        long cipherStart = firstChunk * envelope.cipherChunkSize();
+        long cipherEnd = Math.min(info.getSize(), (lastChunk + 1) * envelope.cipherChunkSize());
+        byte[] result = new byte[size];
+        try (InputStream in = new DecryptingInputStream(
+                storage.getObject(bucket, key, cipherStart, cipherEnd - cipherStart, info.getEtag()), envelope, chunkCount, firstChunk)) {
+            long skip = offset - firstChunk * envelope.getChunkSize();
+            if (in.skip(skip) != skip) {
+                throw new IOException("premature end of encrypted range");
+            }
+            int read = 0;
+            while (read < size) {
+                int n = in.read(result, read, size - read);
+                if (n < 0) {
+                    throw new IOException("premature end of encrypted range");
+                }
+                read += n;
+            }
+            return result;
+        } catch (IOException | GeneralSecurityException e) {
+            throw new S3Exception(StrUtil.format("decrypt range failed, bucket:{}, key:{}, offset:{}, length:{}", bucket, key, offset, size), e);
+        }
+    }
+
+    /**
+     * 明文大小
+     *
+     * @param info 对象元数据(需包含用户自定义元数据)
+     * @return long
+     */
+    public long plainLength(ObjectInfo info) {
+        return envelope(info).plainLength(info.getSize());
+    }
+
+    /**
+     * 停止加密线程
+     */
+    public void shutdown() {
+        workers.shutdown();
+    }
+
+    private byte[] encryptPart(EnvelopeCipher envelope, long firstChunk, byte[] plain, boolean lastPart) throws GeneralSecurityException {
+        int chunkSize = envelope.getChunkSize();
+        int chunks = Math.max(1, (plain.length + chunkSize - 1) / chunkSize);
+        byte[] sealed = new byte[plain.length + chunks * EnvelopeCipher.TAG_BYTES];
+        Cipher cipher = EnvelopeCipher.newCipher();
+        int out = 0;
+        for (int i = 0; i < chunks; i++) {
+            int from = i * chunkSize;
+            out += envelope.encrypt(cipher, firstChunk + i, lastPart && i == chunks - 1,
+                    plain, from, Math.min(chunkSize, plain.length - from), sealed, out);
+        }
+        return sealed;
+    }
+
+    private EnvelopeCipher envelope(ObjectInfo info) {
+        String algorithm = metadata(info, META_ALGORITHM);
+        if (!EnvelopeCipher.ALGORITHM.equals(algorithm)) {
+            throw new S3Exception(StrUtil.format("object is not encrypted by this stage, key:{}, algorithm:{}", info.getKey(), algorithm));
+        }
+        String keyId = metadata(info, META_KEY_ID);
+        try {
+            return EnvelopeCipher.unwrap(masterKey(keyId), keyId, Base64.getDecoder().decode(metadata(info, META_DATA_KEY)),
+                    Integer.parseInt(metadata(info, META_CHUNK_SIZE)));
+        } catch (GeneralSecurityException | IllegalArgumentException | NullPointerException e) {
+            throw new S3Exception(StrUtil.format("unwrap data key failed, key:{}, keyId:{}", info.getKey(), keyId), e);
+        }
+    }
+
+    private byte[] masterKey(String keyId) {
+        String encoded = prop.getMasterKeys().get(keyId);
+        if (encoded == null) {
+            throw new S3Exception(StrUtil.format("master key not found, keyId:{}", keyId));
+        }
+        return Base64.getDecoder().decode(encoded);
+    }
+
+    /**
+     * 不同平台返回的元数据名大小写不同
+     */
+    private static String metadata(ObjectInfo info, String name) {
+        if (info.getMetadata() != null) {
+            for (Map.Entry<String, String> entry : info.getMetadata().entrySet()) {
+                if (name.equalsIgnoreCase(entry.getKey())) {
+                    return entry.getValue();
+                }
+            }
+        }
+        return null;
+    }
+
+    private static void checkFailed(List<Future<PartInfo>> futures) throws ExecutionException, InterruptedException {
+        for (Future<PartInfo> future : futures) {
+            if (future.isDone()) {
+                future.get();
+            }
+        }
+    }
+
+    private static void closeQuietly(InputStream in) {
+        try {
+            in.close();
+        } catch (IOException ignored) {
+            // 已在处理异常
+        }
+    }
+
+    private static byte[] readFully(InputStream in, int size) throws IOException {
+        byte[] buffer = new byte[size];
+        int read = 0;
+        int n;
+        while (read < size && (n = in.read(buffer, read, size - read)) >= 0) {
+            read += n;
+        }
+        if (read == size) {
+            return buffer;
+        }
+        byte[] last = new byte[read];
+        System.arraycopy(buffer, 0, last, 0, read);
+        return last;
+    }
+}
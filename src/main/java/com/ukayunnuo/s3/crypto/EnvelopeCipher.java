@@ -0,0 +1,138 @@
+package com.ukayunnuo.s3.crypto;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+
+/**
+ * 信封加密
+ * <p> 每个对象生成独立的 256 位数据密钥, 数据密钥由主密钥以 AES-GCM 加密后存入对象元数据.
+ * 内容按固定大小的明文块分别加密, 每块密文 = 明文 + 16 字节认证标签; 块序号作为 nonce,
+ * 块序号与"是否最后一块"作为附加认证数据, 块被调换、截断或追加都会解密失败 </p>
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+class EnvelopeCipher {
+
+    static final String ALGORITHM = "AES256-GCM-v1";
+
+    static final int TAG_BYTES = 16;
+
+    private static final int TAG_BITS = TAG_BYTES * 8;
+
+    private static final int NONCE_BYTES = 12;
+
+    private static final int DATA_KEY_BYTES = 32;
+
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final SecretKeySpec dataKey;
+
+    private final int chunkSize;
+
+    private EnvelopeCipher(byte[] dataKey, int chunkSize) {
+        this.dataKey = new SecretKeySpec(dataKey, "AES");
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * 生成新的数据密钥
+     */
+    static EnvelopeCipher generate(int chunkSize) {
+        byte[] key = new byte[DATA_KEY_BYTES];
+        RANDOM.nextBytes(key);
+        return new EnvelopeCipher(key, chunkSize);
+    }
+
+    /**
+     * 由主密钥解开数据密钥
+     */
+    static EnvelopeCipher unwrap(byte[] masterKey, String keyId, byte[] wrapped, int chunkSize) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+        cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(masterKey, "AES"), new GCMParameterSpec(TAG_BITS, wrapped, 0, NONCE_BYTES));
+        cipher.updateAAD(keyId.getBytes(StandardCharsets.UTF_8));
+        return new EnvelopeCipher(cipher.doFinal(wrapped, NONCE_BYTES, wrapped.length - NONCE_BYTES), chunkSize);
+    }
+
+    /**
+     * 用主密钥加密数据密钥: nonce(12) + 密文 + 标签
+     */
+    byte[] wrap(byte[] masterKey, String keyId) throws GeneralSecurityException {
+        byte[] nonce = new byte[NONCE_BYTES];
+        RANDOM.nextBytes(nonce);
+        Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(masterKey, "AES"), new GCMParameterSpec(TAG_BITS, nonce));
+        cipher.updateAAD(keyId.getBytes(StandardCharsets.UTF_8));
+        byte[] sealed = cipher.doFinal(dataKey.getEncoded());
+        return ByteBuffer.allocate(NONCE_BYTES + sealed.length).put(nonce).put(sealed).array();
+    }
+
+    int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * 密文块大小
+     */
+    long cipherChunkSize() {
+        return (long) chunkSize + TAG_BYTES;
+    }
+
+    /**
+     * 由密文大小计算块数, 空内容也有一个(仅含标签的)块
+     */
+    long chunkCount(long cipherLength) {
+        return Math.max(1, (cipherLength + cipherChunkSize() - 1) / cipherChunkSize());
+    }
+
+    /**
+     * 由密文大小计算明文大小
+     */
+    long plainLength(long cipherLength) {
+        return cipherLength - chunkCount(cipherLength) * TAG_BYTES;
+    }
+
+    /**
+     * 加密一块, 密文写入 out 的 outOffset 处
+     *
+     * @return 密文长度
+     */
+    int encrypt(Cipher cipher, long index, boolean last, byte[] plain, int offset, int length, byte[] out, int outOffset)
+            throws GeneralSecurityException {
+        cipher.init(Cipher.ENCRYPT_MODE, dataKey, new GCMParameterSpec(TAG_BITS, nonce(index)));
+        cipher.updateAAD(aad(index, last));
+        return cipher.doFinal(plain, offset, length, out, outOffset);
+    }
+
+    /**
+     * 解密一块, 认证失败时抛出 {@link javax.crypto.AEADBadTagException}
+     *
+     * @return 明文长度
+     */
+    int decrypt(Cipher cipher, long index, boolean last, byte[] sealed, int offset, int length, byte[] out, int outOffset)
+            throws GeneralSecurityException {
+        cipher.init(Cipher.DECRYPT_MODE, dataKey, new GCMParameterSpec(TAG_BITS, nonce(index)));
+        cipher.updateAAD(aad(index, last));
+        return cipher.doFinal(sealed, offset, length, out, outOffset);
+    }
+
+    static Cipher newCipher() throws GeneralSecurityException {
+        return Cipher.getInstance(TRANSFORMATION);
+    }
+
+    private static byte[] nonce(long index) {
+        // 数据密钥每个对象唯一, 块序号不会重复
+        return ByteBuffer.allocate(NONCE_BYTES).putInt(0).putLong(index).array();
+    }
+
+    private static byte[] aad(long index, boolean last) {
+        return ByteBuffer.allocate(9).putLong(index).put((byte) (last ? 1 : 0)).array();
+    }
+}
@@ -0,0 +1,50 @@
+package com.ukayunnuo.s3.dedup;
+
+import cn.hutool.json.JSONUtil;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+
+/**
+ * 内容寻址去重上传 配置
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "s3.dedup")
+public class DedupProp {
+
+    /**
+     * 内容对象的 key 前缀, 内容对象 key 为 前缀 + SHA-256 前两位 + "/" + SHA-256
+     */
+    private String blobPrefix = "cas/blobs/";
+
+    /**
+     * 引用记录的 key 前缀, 每个引用一个空对象: 前缀 + SHA-256 + "/" + 逻辑 key
+     */
+    private String refPrefix = "cas/refs/";
+
+    /**
+     * 流式上传时在内存中缓存的最大字节数, 超过后转存到临时文件
+     */
+    private int memoryThreshold = 8 * 1024 * 1024;
+
+    /**
+     * 超过该大小(字节)的内容以分段方式上传
+     */
+    private long multipartThreshold = 64L * 1024 * 1024;
+
+    /**
+     * 临时文件目录
+     */
+    private String tempDir = System.getProperty("java.io.tmpdir") + File.separator + "s3-util" + File.separator + "dedup";
+
+    @Override
+    public String toString() {
+        return JSONUtil.toJsonStr(this);
+    }
+}
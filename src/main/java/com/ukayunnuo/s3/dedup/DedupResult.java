@@ -0,0 +1,40 @@
+package com.ukayunnuo.s3.dedup;
+
+import lombok.Data;
+
+/**
+ * 去重上传结果
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Data
+public class DedupResult {
+
+    /**
+     * 逻辑 key
+     */
+    private String key;
+
+    /**
+     * 内容 SHA-256(十六进制)
+     */
+    private String digest;
+
+    private long size;
+
+    /**
+     * 内容已存在, 未上传
+     */
+    private boolean deduplicated;
+
+    public DedupResult() {
+    }
+
+    public DedupResult(String key, String digest, long size, boolean deduplicated) {
+        this.key = key;
+        this.digest = digest;
+        this.size = size;
+        this.deduplicated = deduplicated;
+    }
+}
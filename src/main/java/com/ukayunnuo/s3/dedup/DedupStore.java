@@ -0,0 +1,310 @@
+package com.ukayunnuo.s3.dedup;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.HexUtil;
+import cn.hutool.core.util.StrUtil;
+import com.ukayunnuo.s3.exception.S3Exception;
+import com.ukayunnuo.s3.resilience.FailureClassifier;
+import com.ukayunnuo.s3.storage.ObjectInfo;
+import com.ukayunnuo.s3.storage.ObjectStorage;
+import com.ukayunnuo.s3.transfer.ResumableUploadProp;
+import com.ukayunnuo.s3.transfer.ResumableUploader;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 内容寻址去重上传
+ * <p> 内容按 SHA-256 只存一份(内容对象), 逻辑 key 写入一个空的指针对象, 元数据 {@value #META_DIGEST} 记录内容摘要.
+ * 写入指针前总是向服务端确认内容对象存在(其他进程可能已删除), 已有则不上传. 每个指针对应一条引用记录(空对象),
+ * 删除逻辑 key 时移除引用, 前缀下已没有引用时删除内容对象 </p>
+ * <p> 写入顺序为 引用 -> 内容 -> 指针, 删除顺序为 指针 -> 引用 -> 内容, 中途失败只会留下多余的引用或内容, 不会产生悬空指针;
+ * 多个进程对同一内容并发写入与删除时仍有极小的窗口, 可能需要重新上传 </p>
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Slf4j
+public class DedupStore {
+
+    /**
+     * 指针对象中记录内容摘要的元数据名
+     */
+    public static final String META_DIGEST = "s3util-cas";
+
+    /**
+     * 指针对象中记录内容大小的元数据名
+     */
+    public static final String META_SIZE = "s3util-cas-size";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final AtomicInteger TEMP_SEQ = new AtomicInteger();
+
+    private final ObjectStorage storage;
+
+    private final DedupProp prop;
+
+    private final ResumableUploader uploader;
+
+    public DedupStore(ObjectStorage storage, DedupProp prop, ResumableUploadProp uploadProp) {
+        this.storage = storage;
+        this.prop = prop;
+        this.uploader = new ResumableUploader(storage, uploadProp);
+    }
+
+    public DedupStore(ObjectStorage storage, DedupProp prop) {
+        this(storage, prop, new ResumableUploadProp());
+    }
+
+    public DedupStore(ObjectStorage storage) {
+        this(storage, new DedupProp());
+    }
+
+    /**
+     * 上传文件, 内容已存在时只写入指针
+     *
+     * @param bucket 桶
+     * @param key    逻辑 key
+     * @param file   文件
+     * @return {@link DedupResult}
+     */
+    public DedupResult put(String bucket, String key, File file) {
+        String digest;
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            MessageDigest sha256 = sha256();
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int n;
+            while ((n = in.read(buffer)) >= 0) {
+                sha256.update(buffer, 0, n);
+            }
+            digest = HexUtil.encodeHexStr(sha256.digest());
+        } catch (IOException e) {
+            throw new S3Exception(StrUtil.format("hash file failed, file:{}", file), e);
+        }
+        String contentType = FileUtil.getMimeType(file.getName());
+        return store(bucket, key, digest, file.length(), contentType, () -> uploadBlob(bucket, digest, file, contentType));
+    }
+
+    /**
+     * 上传流(读取至流结束, 不关闭流), 边读边计算摘要; 超过 {@code memory-threshold} 的部分转存临时文件
+     *
+     * @param bucket      桶
+     * @param key         逻辑 key
+     * @param in          内容
+     * @param contentType 内容类型, 可为空
+     * @return {@link DedupResult}
+     */
+    public DedupResult put(String bucket, String key, InputStream in, String contentType) {
+        MessageDigest sha256 = sha256();
+        ByteArrayOutputStream memory = new ByteArrayOutputStream();
+        File spill = null;
+        OutputStream out = memory;
+        long size = 0;
+        try {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int n;
+            while ((n = in.read(buffer)) >= 0) {
+                sha256.update(buffer, 0, n);
+                if (spill == null && memory.size() + n > prop.getMemoryThreshold()) {
+                    spill = tempFile();
+                    out = Files.newOutputStream(spill.toPath());
+                    memory.writeTo(out);
+                    memory = null;
+                }
+                out.write(buffer, 0, n);
+                size += n;
+            }
+            out.close();
+            String digest = HexUtil.encodeHexStr(sha256.digest());
+            if (spill == null) {
+                byte[] data = memory.toByteArray();
+                return store(bucket, key, digest, size, contentType,
+                        () -> storage.putObject(bucket, blobKey(digest), data, contentType));
+            }
+            File file = spill;
+            return store(bucket, key, digest, size, contentType, () -> uploadBlob(bucket, digest, file, contentType));
+        } catch (IOException e) {
+            throw new S3Exception(StrUtil.format("dedup put failed, bucket:{}, key:{}", bucket, key), e);
+        } finally {
+            if (spill != null) {
+                try {
+                    out.close();
+                } catch (IOException ignored) {
+                    // 已关闭或已在处理异常
+                }
+                FileUtil.del(spill);
+            }
+        }
+    }
+
+    /**
+     * 读取逻辑 key 的内容, 不是指针的对象原样读取
+     *
+     * @param bucket 桶
+     * @param key    逻辑 key
+     * @return {@link InputStream}, 由调用方关闭
+     */
+    public InputStream get(String bucket, String key) {
+        String digest = digestOf(storage.headObject(bucket, key));
+        return storage.getObject(bucket, digest == null ? key : blobKey(digest), 0, -1, null);
+    }
+
+    /**
+     * 逻辑 key 实际内容所在的 key, 用于生成下载链接等
+     *
+     * @param bucket 桶
+     * @param key    逻辑 key
+     * @return 内容对象 key, 不是指针时为 key 本身
+     */
+    public String resolve(String bucket, String key) {
+        String digest = digestOf(storage.headObject(bucket, key));
+        return digest == null ? key : blobKey(digest);
+    }
+
+    /**
+     * 删除逻辑 key, 内容不再被引用时一并删除
+     *
+     * @param bucket 桶
+     * @param key    逻辑 key
+     * @return 是否删除了内容对象
+     */
+    public boolean delete(String bucket, String key) {
+        String digest = pointerDigest(bucket, key);
+        storage.deleteObjects(bucket, Collections.singletonList(key));
+        return digest != null && release(bucket, key, digest);
+    }
+
+    /**
+     * 内容的引用数, 需列举全部引用
+     *
+     * @param bucket 桶
+     * @param digest 内容 SHA-256
+     * @return long
+     */
+    public long refCount(String bucket, String digest) {
+        long[] count = {0};
+        storage.listObjects(bucket, refKeyPrefix(digest), info -> count[0]++);
+        return count[0];
+    }
+
+    /**
+     * 内容对象 key
+     *
+     * @param digest 内容 SHA-256(十六进制)
+     * @return key
+     */
+    public String blobKey(String digest) {
+        return prop.getBlobPrefix() + digest.substring(0, 2) + "/" + digest;
+    }
+
+    private DedupResult store(String bucket, String key, String digest, long size, String contentType, Runnable upload) {
+        String previous = pointerDigest(bucket, key);
+        storage.putObject(bucket, refKeyPrefix(digest) + key, new byte[0], null);
+        boolean exists = blobExists(bucket, digest);
+        if (!exists) {
+            upload.run();
+        }
+        Map<String, String> metadata = new HashMap<>();
+        metadata.put(META_DIGEST, digest);
+        metadata.put(META_SIZE, String.valueOf(size));
+        storage.putObject(bucket, key, new byte[0], contentType, metadata);
+        if (previous != null && !previous.equals(digest)) {
+            release(bucket, key, previous);
+        }
+        log.debug("dedup put, bucket:{}, key:{}, digest:{}, size:{}, deduplicated:{}", bucket, key, digest, size, exists);
+        return new DedupResult(key, digest, size, exists);
+    }
+
+    /**
+     * 移除引用, 没有其他引用时删除内容对象
+     */
+    private boolean release(String bucket, String key, String digest) {
+        storage.deleteObjects(bucket, Collections.singletonList(refKeyPrefix(digest) + key));
+        if (storage.existsPrefix(bucket, refKeyPrefix(digest))) {
+            return false;
+        }
+        storage.deleteObjects(bucket, Collections.singletonList(blobKey(digest)));
+        log.debug("dedup blob released, bucket:{}, digest:{}", bucket, digest);
+        return true;
+    }
+
+    /**
+     * 不缓存结果: 内容对象可能已被其他进程释放, 指针只能在刚确认存在后写入
+     */
+    private boolean blobExists(String bucket, String digest) {
+        try {
+            storage.headObject(bucket, blobKey(digest));
+        } catch (RuntimeException e) {
+            if (FailureClassifier.isNotFound(e)) {
+                return false;
+            }
+            throw e;
+        }
+        return true;
+    }
+
+    private void uploadBlob(String bucket, String digest, File file, String contentType) {
+        if (file.length() > prop.getMultipartThreshold()) {
+            uploader.upload(bucket, blobKey(digest), file);
+        } else {
+            storage.putObject(bucket, blobKey(digest), file, contentType);
+        }
+    }
+
+    /**
+     * 现有指针的内容摘要, 对象不存在或不是指针时为空
+     */
+    private String pointerDigest(String bucket, String key) {
+        try {
+            return digestOf(storage.headObject(bucket, key));
+        } catch (RuntimeException e) {
+            if (FailureClassifier.isNotFound(e)) {
+                return null;
+            }
+            throw e;
+        }
+    }
+
+    private String refKeyPrefix(String digest) {
+        return prop.getRefPrefix() + digest + "/";
+    }
+
+    private File tempFile() {
+        File dir = new File(prop.getTempDir());
+        FileUtil.mkdir(dir);
+        return new File(dir, System.nanoTime() + "-" + TEMP_SEQ.incrementAndGet() + ".tmp");
+    }
+
+    private static String digestOf(ObjectInfo info) {
+        if (info.getMetadata() == null) {
+            return null;
+        }
+        for (Map.Entry<String, String> entry : info.getMetadata().entrySet()) {
+            // 不同平台返回的元数据名大小写不同
+            if (META_DIGEST.equalsIgnoreCase(entry.getKey())) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new S3Exception("SHA-256 not supported", e);
+        }
+    }
+}
@@ -20,4 +20,11 @@ public class S3Exception extends RuntimeException {
         super(message, e);
     }
 
+    /**
+     * @param writableStackTrace 是否采集堆栈, 预期结果类异常可关闭以降低开销
+     */
+    protected S3Exception(String message, Throwable cause, boolean writableStackTrace) {
+        super(message, cause, true, writableStackTrace);
+    }
+
 }
@@ -1,16 +1,17 @@
 package com.ukayunnuo.s3.exception;
 
 import cn.hutool.core.util.StrUtil;
+import com.ukayunnuo.s3.resilience.FailureClassifier;
 import io.minio.errors.MinioException;
 import lombok.Getter;
 import lombok.Setter;
 
 import java.io.Serializable;
-import java.util.Arrays;
 
 /**
  * s3 minio例外
  * minio 异常
+ * <p> 原异常作为 cause 保留, 不再复制其堆栈 </p>
  *
  * @author ukayunnuo
  * @date 2023-07-10
@@ -29,16 +30,16 @@ public class S3MinioException extends MinioException implements Serializable {
     }
 
     public S3MinioException(String bucketName, String message, Exception e) {
-        super(StrUtil.format("bucketName:{}, msg:{}", bucketName, message), Arrays.toString(e.getStackTrace()));
+        super(StrUtil.format("bucketName:{}, msg:{}", bucketName, message), httpTrace(e));
         this.bucketName = bucketName;
-        super.setStackTrace(e.getStackTrace());
+        initCause(e);
     }
 
     public S3MinioException(String bucketName, String objectName, String message, Exception e) {
-        super(StrUtil.format("bucketName:{}, objectName:{}, msg:{}", bucketName, objectName, message), Arrays.toString(e.getStackTrace()));
+        super(StrUtil.format("bucketName:{}, objectName:{}, msg:{}", bucketName, objectName, message), httpTrace(e));
         this.bucketName = bucketName;
         this.objectName = objectName;
-        super.setStackTrace(e.getStackTrace());
+        initCause(e);
     }
 
     public S3MinioException(String bucketName, String objectName, String message) {
@@ -48,15 +49,34 @@ public class S3MinioException extends MinioException implements Serializable {
     }
 
     public S3MinioException(Exception e) {
-        super(e.getMessage(), Arrays.toString(e.getStackTrace()));
+        super(e.getMessage(), httpTrace(e));
+        initCause(e);
     }
 
     public S3MinioException(String message, Exception e) {
-        super(message, Arrays.toString(e.getStackTrace()));
+        super(message, httpTrace(e));
+        initCause(e);
     }
 
     public S3MinioException(String message) {
         super(message);
     }
 
+    /**
+     * 平台错误类别
+     *
+     * @return {@link StorageErrorKind}
+     */
+    public StorageErrorKind getKind() {
+        return FailureClassifier.errorKind(this);
+    }
+
+    /**
+     * 原异常的 http 请求/响应记录(仅 minio 异常有, 已转换为 {@link StorageException} 时取其 cause)
+     */
+    private static String httpTrace(Exception e) {
+        Throwable source = e instanceof StorageException ? e.getCause() : e;
+        return source instanceof MinioException ? ((MinioException) source).httpTrace() : null;
+    }
+
 }
@@ -0,0 +1,35 @@
+package com.ukayunnuo.s3.exception;
+
+/**
+ * 与平台无关的存储错误类别
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+public enum StorageErrorKind {
+
+    /**
+     * 对象、桶或分段上传不存在(404), 属于预期结果
+     */
+    NOT_FOUND,
+
+    /**
+     * 被限流(429、SlowDown 等限流错误码)
+     */
+    THROTTLED,
+
+    /**
+     * 鉴权失败或无权限(401、403)
+     */
+    AUTH,
+
+    /**
+     * 网络异常、超时、5xx 等暂时性错误, 可重试
+     */
+    TRANSIENT,
+
+    /**
+     * 其他不可重试的错误
+     */
+    PERMANENT
+}
@@ -0,0 +1,80 @@
+package com.ukayunnuo.s3.exception;
+
+import cn.hutool.core.util.StrUtil;
+import com.ukayunnuo.s3.resilience.FailureClassifier;
+import lombok.Getter;
+
+/**
+ * 结构化的存储异常
+ * <p> 错误类别、http 状态码与错误码作为字段, 调用方无需解析异常信息; 预期结果(如 {@link StorageNotFoundException})
+ * 与限流不采集堆栈, 平台异常保留为 cause </p>
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Getter
+public class StorageException extends S3Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    private final StorageErrorKind kind;
+
+    /**
+     * http 状态码, 未知时为 0
+     */
+    private final int status;
+
+    /**
+     * 平台错误码, 可为空
+     */
+    private final String errorCode;
+
+    private final String bucket;
+
+    private final String key;
+
+    public StorageException(StorageErrorKind kind, int status, String errorCode, String bucket, String key, String message, Throwable cause) {
+        this(kind, status, errorCode, bucket, key, message, cause, kind != StorageErrorKind.THROTTLED);
+    }
+
+    protected StorageException(StorageErrorKind kind, int status, String errorCode, String bucket, String key, String message,
+                               Throwable cause, boolean writableStackTrace) {
+        super(message, cause, writableStackTrace);
+        this.kind = kind;
+        this.status = status;
+        this.errorCode = errorCode;
+        this.bucket = bucket;
+        this.key = key;
+    }
+
+    /**
+     * 将平台异常转换为结构化异常, 已是结构化异常时原样返回
+     *
+     * @param e      平台异常
+     * @param bucket 桶
+     * @param key    key, 可为空
+     * @return {@link StorageException}
+     */
+    public static StorageException of(Throwable e, String bucket, String key) {
+        if (e instanceof StorageException) {
+            return (StorageException) e;
+        }
+        StorageErrorKind kind = FailureClassifier.errorKind(e);
+        int status = FailureClassifier.status(e);
+        String errorCode = FailureClassifier.errorCode(e);
+        if (kind == StorageErrorKind.NOT_FOUND) {
+            return new StorageNotFoundException(status, errorCode, bucket, key, e);
+        }
+        return new StorageException(kind, status, errorCode, bucket, key,
+                StrUtil.format("{}, bucket:{}, key:{}, status:{}, code:{}, msg:{}", kind, bucket, key, status, errorCode, e.getMessage()), e);
+    }
+
+    /**
+     * 是否可重试
+     *
+     * @return boolean
+     */
+    public boolean isRetryable() {
+        return kind == StorageErrorKind.THROTTLED || kind == StorageErrorKind.TRANSIENT;
+    }
+}
@@ -0,0 +1,33 @@
+package com.ukayunnuo.s3.exception;
+
+import cn.hutool.core.util.StrUtil;
+
+/**
+ * 对象或桶不存在
+ * <p> 不采集堆栈, 异常信息在首次读取时才生成, 存在性检查等高频场景开销接近普通返回值 </p>
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+public class StorageNotFoundException extends StorageException {
+
+    private static final long serialVersionUID = 1L;
+
+    private transient String message;
+
+    public StorageNotFoundException(int status, String errorCode, String bucket, String key, Throwable cause) {
+        super(StorageErrorKind.NOT_FOUND, status, errorCode, bucket, key, null, cause, false);
+    }
+
+    public StorageNotFoundException(String bucket, String key) {
+        this(404, null, bucket, key, null);
+    }
+
+    @Override
+    public String getMessage() {
+        if (message == null) {
+            message = StrUtil.format("not found, bucket:{}, key:{}", getBucket(), getKey());
+        }
+        return message;
+    }
+}
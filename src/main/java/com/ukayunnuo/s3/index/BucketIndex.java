@@ -0,0 +1,424 @@
+package com.ukayunnuo.s3.index;
+
+import cn.hutool.core.io.FileUtil;
+import com.ukayunnuo.s3.storage.ObjectInfo;
+import com.ukayunnuo.s3.storage.ObjectStorage;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * 本地桶索引
+ * <p> 全量列举桶生成按 key 排序的本地索引文件(大小、ETag、修改时间), 之后的查询不再访问服务端:
+ * 存在性检查先查布隆过滤器, 可能存在时二分定位一个块读取; 前缀查询从块开始顺序读取 </p>
+ * <p> 增量更新: {@link #put}/{@link #remove}(如桶通知)写入内存中的变更表, 查询时覆盖索引文件; {@link #refresh} 重新列举一个前缀,
+ * 与索引文件及变更表合并写入新文件. 变更表超过 {@code max-overlay-entries} 时自动合并 </p>
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Slf4j
+public class BucketIndex implements Closeable {
+
+    @Getter
+    private final String bucket;
+
+    private final ObjectStorage storage;
+
+    private final BucketIndexProp prop;
+
+    private final File file;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Object mergeLock = new Object();
+
+    /**
+     * 增量变更, 删除记为 info 为空的变更
+     */
+    private final ConcurrentSkipListMap<String, Change> overlay = new ConcurrentSkipListMap<>(IndexFile.KEY_ORDER);
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private volatile IndexFile snapshot;
+
+    private BucketIndex(ObjectStorage storage, String bucket, BucketIndexProp prop) {
+        this.storage = storage;
+        this.bucket = bucket;
+        this.prop = prop;
+        File dir = new File(prop.getDir());
+        FileUtil.mkdir(dir);
+        this.file = new File(dir, bucket + ".idx");
+    }
+
+    /**
+     * 打开桶索引, 已有索引文件时直接加载, 否则需调用 {@link #rebuild()}
+     *
+     * @param storage {@link ObjectStorage}
+     * @param bucket  桶
+     * @param prop    配置
+     * @return {@link BucketIndex}
+     */
+    public static BucketIndex open(ObjectStorage storage, String bucket, BucketIndexProp prop) {
+        BucketIndex index = new BucketIndex(storage, bucket, prop);
+        if (index.file.isFile()) {
+            index.snapshot = IndexFile.open(index.file);
+            log.info("bucket index loaded, bucket:{}, entries:{}, file:{}", bucket, index.snapshot.getEntryCount(), index.file);
+        }
+        return index;
+    }
+
+    /**
+     * 是否已有索引文件
+     *
+     * @return boolean
+     */
+    public boolean isBuilt() {
+        return snapshot != null;
+    }
+
+    /**
+     * 全量列举重建索引
+     */
+    public void rebuild() {
+        refresh("");
+    }
+
+    /**
+     * 重新列举前缀, 前缀下的记录以列举结果为准, 其余记录保留
+     *
+     * @param prefix 前缀
+     */
+    public void refresh(String prefix) {
+        merge(Objects.requireNonNull(prefix));
+    }
+
+    /**
+     * 把变更表合并写入新的索引文件
+     */
+    public void compact() {
+        merge(null);
+    }
+
+    /**
+     * 记录对象新增或覆盖
+     *
+     * @param info 对象元数据
+     */
+    public void put(ObjectInfo info) {
+        overlay.put(info.getKey(), new Change(sequence.incrementAndGet(), info.getKey(), info));
+        compactIfNeeded();
+    }
+
+    /**
+     * 记录对象删除
+     *
+     * @param key key
+     */
+    public void remove(String key) {
+        overlay.put(key, new Change(sequence.incrementAndGet(), key, null));
+        compactIfNeeded();
+    }
+
+    /**
+     * 布隆过滤器判断, 为 false 时一定不存在, 不读取索引文件
+     *
+     * @param key key
+     * @return boolean
+     */
+    public boolean mightExist(String key) {
+        Change change = overlay.get(key);
+        if (change != null) {
+            return change.info != null;
+        }
+        IndexFile current = snapshot;
+        return current != null && current.mightContain(key);
+    }
+
+    /**
+     * 对象是否存在
+     *
+     * @param key key
+     * @return boolean
+     */
+    public boolean exists(String key) {
+        return get(key).isPresent();
+    }
+
+    /**
+     * 查询对象元数据
+     *
+     * @param key key
+     * @return {@link ObjectInfo}, 不存在时为空
+     */
+    public Optional<ObjectInfo> get(String key) {
+        Change change = overlay.get(key);
+        if (change != null) {
+            return Optional.ofNullable(change.info);
+        }
+        lock.readLock().lock();
+        try {
+            IndexFile current = snapshot;
+            return current == null ? Optional.empty() : Optional.ofNullable(current.get(key));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 按 key 顺序遍历前缀下的对象
+     *
+     * @param prefix   前缀
+     * @param consumer 回调
+     */
+    public void list(String prefix, Consumer<ObjectInfo> consumer) {
+        String from = prefix == null ? "" : prefix;
+        List<Change> changes = new ArrayList<>();
+        for (Change change : overlay.tailMap(from).values()) {
+            if (!change.key.startsWith(from)) {
+                break;
+            }
+            changes.add(change);
+        }
+        Merger merger = new Merger(consumer, changes.iterator());
+        lock.readLock().lock();
+        try {
+            IndexFile current = snapshot;
+            if (current != null) {
+                current.scan(from, merger::base);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        merger.drain(null);
+    }
+
+    /**
+     * 前缀下的全部 key
+     *
+     * @param prefix 前缀
+     * @return key 列表
+     */
+    public List<String> listKeys(String prefix) {
+        List<String> keys = new ArrayList<>();
+        list(prefix, info -> keys.add(info.getKey()));
+        return keys;
+    }
+
+    /**
+     * 前缀下是否有对象, 最多读取一个块
+     *
+     * @param prefix 前缀
+     * @return boolean
+     */
+    public boolean hasPrefix(String prefix) {
+        for (Change change : overlay.tailMap(prefix).values()) {
+            if (!change.key.startsWith(prefix)) {
+                break;
+            }
+            if (change.info != null) {
+                return true;
+            }
+        }
+        boolean[] found = {false};
+        lock.readLock().lock();
+        try {
+            IndexFile current = snapshot;
+            if (current != null) {
+                current.scan(prefix, info -> {
+                    Change change = overlay.get(info.getKey());
+                    found[0] = change == null || change.info != null;
+                    return !found[0];
+                });
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return found[0];
+    }
+
+    /**
+     * 索引文件中的记录数(不含未合并的变更)
+     *
+     * @return long
+     */
+    public long size() {
+        IndexFile current = snapshot;
+        return current == null ? 0 : current.getEntryCount();
+    }
+
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            if (snapshot != null) {
+                snapshot.close();
+                snapshot = null;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void compactIfNeeded() {
+        if (overlay.size() > prop.getMaxOverlayEntries()) {
+            synchronized (mergeLock) {
+                if (overlay.size() > prop.getMaxOverlayEntries()) {
+                    compact();
+                }
+            }
+        }
+    }
+
+    /**
+     * 合并写入新的索引文件: 前缀外的记录来自旧文件并应用变更, 前缀内的记录来自列举(prefix 为空时不列举)
+     * <p> 只合并开始前的变更, 合并期间的变更保留在变更表中, 继续覆盖新文件 </p>
+     */
+    private void merge(String prefix) {
+        synchronized (mergeLock) {
+            long start = System.currentTimeMillis();
+            long mark = sequence.get();
+            NavigableMap<String, Change> changes = new TreeMap<>(IndexFile.KEY_ORDER);
+            for (Map.Entry<String, Change> entry : overlay.entrySet()) {
+                if (entry.getValue().seq <= mark) {
+                    changes.put(entry.getKey(), entry.getValue());
+                }
+            }
+            IndexFile base = snapshot;
+            IndexFile.Writer writer = new IndexFile.Writer(file, prop.getRestartInterval());
+            try {
+                Merger merger = new Merger(writer::add, changes.values().iterator());
+                if (prefix == null) {
+                    if (base != null) {
+                        base.forEachFrom("", merger::base);
+                    }
+                    merger.drain(null);
+                } else {
+                    if (base != null && !prefix.isEmpty()) {
+                        base.forEachFrom("", info -> IndexFile.KEY_ORDER.compare(info.getKey(), prefix) < 0 && merger.base(info));
+                    }
+                    merger.drain(prefix);
+                    merger.skip(prefix);
+                    storage.listObjects(bucket, prefix, writer::add);
+                    if (base != null && !prefix.isEmpty()) {
+                        base.forEachFrom(prefix, info -> info.getKey().startsWith(prefix) || merger.base(info));
+                    }
+                    merger.drain(null);
+                }
+                writer.finish(prop.getBloomFalsePositiveRate());
+                lock.writeLock().lock();
+                try {
+                    if (base != null) {
+                        base.close();
+                    }
+                    snapshot = writer.commit();
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            } finally {
+                writer.close();
+            }
+            for (Map.Entry<String, Change> entry : changes.entrySet()) {
+                overlay.remove(entry.getKey(), entry.getValue());
+            }
+            log.info("bucket index merged, bucket:{}, prefix:{}, entries:{}, changes:{}, elapsed:{}ms",
+                    bucket, prefix, snapshot.getEntryCount(), changes.size(), System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * 一条增量变更
+     */
+    private static final class Change {
+
+        final long seq;
+
+        final String key;
+
+        final ObjectInfo info;
+
+        Change(long seq, String key, ObjectInfo info) {
+            this.seq = seq;
+            this.key = key;
+            this.info = info;
+        }
+    }
+
+    /**
+     * 按 key 顺序合并索引文件记录与变更
+     */
+    private static final class Merger {
+
+        private final Consumer<ObjectInfo> sink;
+
+        private final Iterator<Change> changes;
+
+        private Change pending;
+
+        Merger(Consumer<ObjectInfo> sink, Iterator<Change> changes) {
+            this.sink = sink;
+            this.changes = changes;
+            this.pending = changes.hasNext() ? changes.next() : null;
+        }
+
+        /**
+         * 输出一条索引文件记录, 先输出 key 更小的变更; 同 key 的变更替换该记录
+         */
+        boolean base(ObjectInfo info) {
+            while (pending != null && IndexFile.KEY_ORDER.compare(pending.key, info.getKey()) < 0) {
+                write(pending);
+                advance();
+            }
+            if (pending != null && pending.key.equals(info.getKey())) {
+                write(pending);
+                advance();
+            } else {
+                sink.accept(info);
+            }
+            return true;
+        }
+
+        /**
+         * 输出小于 bound 的全部变更, bound 为空时输出剩余全部
+         */
+        void drain(String bound) {
+            while (pending != null && (bound == null || IndexFile.KEY_ORDER.compare(pending.key, bound) < 0)) {
+                write(pending);
+                advance();
+            }
+        }
+
+        /**
+         * 丢弃前缀下的变更(以列举结果为准)
+         */
+        void skip(String prefix) {
+            while (pending != null && pending.key.startsWith(prefix)) {
+                advance();
+            }
+        }
+
+        private void write(Change change) {
+            if (change.info != null) {
+                sink.accept(change.info);
+            }
+        }
+
+        private void advance() {
+            pending = changes.hasNext() ? changes.next() : null;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.ukayunnuo.s3.index;
+
+import cn.hutool.json.JSONUtil;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+
+/**
+ * 本地桶索引 配置
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "s3.index")
+public class BucketIndexProp {
+
+    /**
+     * 索引文件目录, 每个桶一个文件 {@code <bucket>.idx}
+     */
+    private String dir = System.getProperty("java.io.tmpdir") + File.separator + "s3-util" + File.separator + "index";
+
+    /**
+     * 布隆过滤器误判率
+     */
+    private double bloomFalsePositiveRate = 0.01;
+
+    /**
+     * 每多少条记录一个重启点(完整 key), 其间的 key 只存与前一个 key 不同的后缀
+     */
+    private int restartInterval = 64;
+
+    /**
+     * 内存中未合并的增量变更上限, 超过时合并写入新的索引文件
+     */
+    private int maxOverlayEntries = 100000;
+
+    @Override
+    public String toString() {
+        return JSONUtil.toJsonStr(this);
+    }
+}
@@ -0,0 +1,516 @@
+package com.ukayunnuo.s3.index;
+
+import cn.hutool.core.util.StrUtil;
+import com.ukayunnuo.s3.exception.S3Exception;
+import com.ukayunnuo.s3.storage.ObjectInfo;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * 索引文件(只读快照)
+ * <pre>
+ * magic version
+ * 记录: 共享前缀长度 后缀长度 后缀 大小 修改时间 ETag (变长整数, 每 restartInterval 条一个重启点, 共享前缀为 0)
+ * 尾部: 记录数 创建时间 重启点(偏移 + 完整 key) 布隆过滤器 尾部偏移 magic
+ * </pre>
+ * <p> key 按 UTF-8 字节序(即码点序, 与 S3 列举顺序一致)排列; 重启点常驻内存, 查找时二分定位后读取一个块 </p>
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+class IndexFile implements Closeable {
+
+    private static final int MAGIC = 0x53334958;
+
+    private static final int VERSION = 1;
+
+    /**
+     * key 顺序: 码点序, 与 UTF-8 字节序一致(String#compareTo 按 UTF-16 比较, 补充平面字符与 U+E000 以上字符顺序不同)
+     */
+    static final Comparator<String> KEY_ORDER = (a, b) -> {
+        int n = Math.min(a.length(), b.length());
+        for (int i = 0; i < n; i++) {
+            char x = a.charAt(i);
+            char y = b.charAt(i);
+            if (x != y) {
+                return codePointOrder(x) - codePointOrder(y);
+            }
+        }
+        return a.length() - b.length();
+    };
+
+    private final File file;
+
+    private final FileChannel channel;
+
+    private final long entryCount;
+
+    private final long createdAt;
+
+    private final String[] restartKeys;
+
+    private final long[] restartOffsets;
+
+    private final long entriesEnd;
+
+    private final BloomFilter bloom;
+
+    private IndexFile(File file, FileChannel channel, long entryCount, long createdAt, String[] restartKeys, long[] restartOffsets,
+                      long entriesEnd, BloomFilter bloom) {
+        this.file = file;
+        this.channel = channel;
+        this.entryCount = entryCount;
+        this.createdAt = createdAt;
+        this.restartKeys = restartKeys;
+        this.restartOffsets = restartOffsets;
+        this.entriesEnd = entriesEnd;
+        this.bloom = bloom;
+    }
+
+    /**
+     * 打开索引文件, 读取尾部的重启点与布隆过滤器
+     */
+    static IndexFile open(File file) {
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            long length = channel.size();
+            ByteBuffer tail = ByteBuffer.allocate(12);
+            readFully(channel, tail, length - 12);
+            tail.flip();
+            long footer = tail.getLong();
+            if (tail.getInt() != MAGIC) {
+                throw new IOException("not an index file");
+            }
+            channel.position(footer);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 1 << 16));
+            long entryCount = in.readLong();
+            long createdAt = in.readLong();
+            int restarts = in.readInt();
+            String[] keys = new String[restarts];
+            long[] offsets = new long[restarts];
+            for (int i = 0; i < restarts; i++) {
+                offsets[i] = in.readLong();
+                byte[] key = new byte[in.readInt()];
+                in.readFully(key);
+                keys[i] = new String(key, StandardCharsets.UTF_8);
+            }
+            BloomFilter bloom = BloomFilter.read(in);
+            return new IndexFile(file, channel, entryCount, createdAt, keys, offsets, footer, bloom);
+        } catch (IOException | RuntimeException e) {
+            closeQuietly(channel);
+            throw new S3Exception(StrUtil.format("open bucket index failed, file:{}", file), e);
+        }
+    }
+
+    long getEntryCount() {
+        return entryCount;
+    }
+
+    long getCreatedAt() {
+        return createdAt;
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    boolean mightContain(String key) {
+        return bloom.mightContain(key);
+    }
+
+    /**
+     * 查找 key
+     *
+     * @return {@link ObjectInfo}, 不存在时为空
+     */
+    ObjectInfo get(String key) {
+        if (!bloom.mightContain(key)) {
+            return null;
+        }
+        byte[] target = key.getBytes(StandardCharsets.UTF_8);
+        ObjectInfo[] found = {null};
+        scanFrom(block(key), target, entry -> {
+            int cmp = entry.compareKey(target);
+            if (cmp == 0) {
+                found[0] = entry.toInfo();
+            }
+            return false;
+        });
+        return found[0];
+    }
+
+    /**
+     * 按顺序遍历前缀下的记录
+     *
+     * @param prefix   前缀, 为空时遍历全部
+     * @param consumer 返回 false 时停止
+     */
+    void scan(String prefix, Predicate<ObjectInfo> consumer) {
+        String from = prefix == null ? "" : prefix;
+        byte[] target = from.getBytes(StandardCharsets.UTF_8);
+        scanFrom(block(from), target, entry -> entry.startsWith(target) && consumer.test(entry.toInfo()));
+    }
+
+    /**
+     * 按顺序遍历不小于 from 的记录
+     *
+     * @param from     起始 key
+     * @param consumer 返回 false 时停止
+     */
+    void forEachFrom(String from, Predicate<ObjectInfo> consumer) {
+        scanFrom(block(from), from.getBytes(StandardCharsets.UTF_8), entry -> consumer.test(entry.toInfo()));
+    }
+
+    /**
+     * 从块开始解码, 跳过小于 target 的记录, 对其余记录调用 visitor 直到返回 false
+     */
+    private void scanFrom(int block, byte[] target, Predicate<Entry> visitor) {
+        if (block < 0) {
+            block = 0;
+        }
+        Entry entry = new Entry();
+        try {
+            for (int b = block; b < restartOffsets.length; b++) {
+                long start = restartOffsets[b];
+                long end = b + 1 < restartOffsets.length ? restartOffsets[b + 1] : entriesEnd;
+                ByteBuffer buffer = ByteBuffer.allocate((int) (end - start));
+                readFully(channel, buffer, start);
+                entry.reset(buffer.array());
+                while (entry.next()) {
+                    if (entry.compareKey(target) >= 0 && !visitor.test(entry)) {
+                        return;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new S3Exception(StrUtil.format("read bucket index failed, file:{}", file), e);
+        }
+    }
+
+    /**
+     * 可能包含 key 的块: 最后一个重启点 key 不大于 key 的块
+     */
+    private int block(String key) {
+        int index = Arrays.binarySearch(restartKeys, key, KEY_ORDER);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    @Override
+    public void close() {
+        closeQuietly(channel);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position + buffer.position());
+            if (n < 0) {
+                throw new IOException("unexpected end of index file");
+            }
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+                // 只读文件
+            }
+        }
+    }
+
+    private static int codePointOrder(char c) {
+        // 代理项移到 U+E000-U+FFFF 之后
+        if (c >= 0xD800) {
+            return c >= 0xE000 ? c - 0x800 : c + 0x2000;
+        }
+        return c;
+    }
+
+    /**
+     * 块内记录解码
+     */
+    private static final class Entry {
+
+        private byte[] data;
+
+        private int position;
+
+        private byte[] key = new byte[256];
+
+        private int keyLength;
+
+        private long size;
+
+        private long modified;
+
+        private int etagOffset;
+
+        private int etagLength;
+
+        void reset(byte[] data) {
+            this.data = data;
+            this.position = 0;
+            this.keyLength = 0;
+        }
+
+        boolean next() {
+            if (position >= data.length) {
+                return false;
+            }
+            int shared = (int) readVarLong();
+            int suffix = (int) readVarLong();
+            if (shared + suffix > key.length) {
+                key = Arrays.copyOf(key, Math.max(key.length * 2, shared + suffix));
+            }
+            System.arraycopy(data, position, key, shared, suffix);
+            position += suffix;
+            keyLength = shared + suffix;
+            size = readVarLong();
+            modified = readVarLong();
+            etagLength = (int) readVarLong();
+            etagOffset = position;
+            position += etagLength;
+            return true;
+        }
+
+        /**
+         * 按无符号字节比较当前 key 与 target
+         */
+        int compareKey(byte[] target) {
+            int n = Math.min(keyLength, target.length);
+            for (int i = 0; i < n; i++) {
+                int cmp = (key[i] & 0xff) - (target[i] & 0xff);
+                if (cmp != 0) {
+                    return cmp;
+                }
+            }
+            return keyLength - target.length;
+        }
+
+        boolean startsWith(byte[] prefix) {
+            if (keyLength < prefix.length) {
+                return false;
+            }
+            for (int i = 0; i < prefix.length; i++) {
+                if (key[i] != prefix[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        String key() {
+            return new String(key, 0, keyLength, StandardCharsets.UTF_8);
+        }
+
+        ObjectInfo toInfo() {
+            String etag = etagLength == 0 ? null : new String(data, etagOffset, etagLength, StandardCharsets.ISO_8859_1);
+            return new ObjectInfo(key(), size, etag,
+                    modified == 0 ? null : new Date(modified), null);
+        }
+
+        private long readVarLong() {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[position++];
+                value |= (long) (b & 0x7f) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+    }
+
+    /**
+     * 索引文件写入: 记录须按 {@link #KEY_ORDER} 严格递增写入临时文件, 完成后原子替换目标文件
+     */
+    static final class Writer implements Closeable {
+
+        private final File target;
+
+        private final File temp;
+
+        private final int restartInterval;
+
+        private final CountingOutputStream counter;
+
+        private final DataOutputStream out;
+
+        private final List<String> restartKeys = new ArrayList<>();
+
+        private final List<Long> restartOffsets = new ArrayList<>();
+
+        private byte[] previous = new byte[0];
+
+        private String previousKey;
+
+        private long count;
+
+        Writer(File target, int restartInterval) {
+            this.target = target;
+            this.temp = new File(target.getPath() + ".tmp");
+            this.restartInterval = Math.max(1, restartInterval);
+            try {
+                this.counter = new CountingOutputStream(new BufferedOutputStream(Files.newOutputStream(temp.toPath()), 1 << 16));
+                this.out = new DataOutputStream(counter);
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+            } catch (IOException e) {
+                throw new S3Exception(StrUtil.format("create bucket index failed, file:{}", temp), e);
+            }
+        }
+
+        void add(ObjectInfo info) {
+            String key = info.getKey();
+            if (previousKey != null && KEY_ORDER.compare(previousKey, key) >= 0) {
+                throw new S3Exception(StrUtil.format("bucket index keys out of order, previous:{}, key:{}", previousKey, key));
+            }
+            byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+            try {
+                int shared = 0;
+                if (count % restartInterval == 0) {
+                    restartKeys.add(key);
+                    restartOffsets.add(counter.count);
+                } else {
+                    int n = Math.min(previous.length, bytes.length);
+                    while (shared < n && previous[shared] == bytes[shared]) {
+                        shared++;
+                    }
+                }
+                writeVarLong(shared);
+                writeVarLong(bytes.length - shared);
+                out.write(bytes, shared, bytes.length - shared);
+                writeVarLong(info.getSize());
+                writeVarLong(info.getLastModified() == null ? 0 : info.getLastModified().getTime());
+                byte[] etag = info.getEtag() == null ? new byte[0] : info.getEtag().getBytes(StandardCharsets.ISO_8859_1);
+                writeVarLong(etag.length);
+                out.write(etag);
+            } catch (IOException e) {
+                throw new S3Exception(StrUtil.format("write bucket index failed, file:{}", temp), e);
+            }
+            previous = bytes;
+            previousKey = key;
+            count++;
+        }
+
+        /**
+         * 写入尾部; 布隆过滤器按实际记录数创建, 再顺序读一遍已写入的记录填充
+         */
+        void finish(double falsePositiveRate) {
+            try {
+                out.flush();
+                long footer = counter.count;
+                BloomFilter bloom = BloomFilter.create(count, falsePositiveRate);
+                try (FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.READ)) {
+                    Entry entry = new Entry();
+                    for (int b = 0; b < restartOffsets.size(); b++) {
+                        long start = restartOffsets.get(b);
+                        long end = b + 1 < restartOffsets.size() ? restartOffsets.get(b + 1) : footer;
+                        ByteBuffer buffer = ByteBuffer.allocate((int) (end - start));
+                        readFully(channel, buffer, start);
+                        entry.reset(buffer.array());
+                        while (entry.next()) {
+                            bloom.add(entry.key());
+                        }
+                    }
+                }
+                out.writeLong(count);
+                out.writeLong(System.currentTimeMillis());
+                out.writeInt(restartKeys.size());
+                for (int i = 0; i < restartKeys.size(); i++) {
+                    byte[] key = restartKeys.get(i).getBytes(StandardCharsets.UTF_8);
+                    out.writeLong(restartOffsets.get(i));
+                    out.writeInt(key.length);
+                    out.write(key);
+                }
+                bloom.write(out);
+                out.writeLong(footer);
+                out.writeInt(MAGIC);
+                out.close();
+            } catch (IOException e) {
+                throw new S3Exception(StrUtil.format("write bucket index failed, file:{}", temp), e);
+            }
+        }
+
+        /**
+         * 替换目标文件并打开; 旧文件的读取器须先关闭
+         */
+        IndexFile commit() {
+            try {
+                try {
+                    Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+            } catch (IOException e) {
+                throw new S3Exception(StrUtil.format("replace bucket index failed, file:{}", target), e);
+            }
+            return open(target);
+        }
+
+        @Override
+        public void close() {
+            closeQuietly(out);
+            if (temp.exists() && !temp.delete()) {
+                temp.deleteOnExit();
+            }
+        }
+
+        private void writeVarLong(long value) throws IOException {
+            while ((value & ~0x7fL) != 0) {
+                out.writeByte((int) ((value & 0x7f) | 0x80));
+                value >>>= 7;
+            }
+            out.writeByte((int) value);
+        }
+    }
+
+    /**
+     * 统计已写入字节数
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.ukayunnuo.s3.metrics;
+
+import io.micrometer.core.instrument.Counter;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 统计读取字节数的输入流
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+public class MeteredInputStream extends FilterInputStream {
+
+    private final Counter counter;
+
+    public MeteredInputStream(InputStream in, Counter counter) {
+        super(in);
+        this.counter = counter;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b >= 0) {
+            counter.increment();
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = super.read(b, off, len);
+        if (n > 0) {
+            counter.increment(n);
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        if (skipped > 0) {
+            counter.increment(skipped);
+        }
+        return skipped;
+    }
+}
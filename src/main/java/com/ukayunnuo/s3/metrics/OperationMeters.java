@@ -0,0 +1,128 @@
+package com.ukayunnuo.s3.metrics;
+
+import com.ukayunnuo.s3.core.StorageEndpoint;
+import com.ukayunnuo.s3.core.StorageOperation;
+import com.ukayunnuo.s3.core.StorageProvider;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import lombok.Getter;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单个 端点/操作/桶 的指标集合
+ * <p> tag 只在创建时构造一次, 热路径上只做计数, 不分配对象 </p>
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Getter
+public class OperationMeters {
+
+    public static final String REQUESTS = "s3.storage.requests";
+
+    public static final String BYTES_IN = "s3.storage.bytes.in";
+
+    public static final String BYTES_OUT = "s3.storage.bytes.out";
+
+    public static final String ERRORS = "s3.storage.errors";
+
+    public static final String IN_FLIGHT = "s3.storage.inflight";
+
+    public static final String RETRIES = "s3.storage.retries";
+
+    public static final String HEDGES = "s3.storage.hedges";
+
+    public static final String HEDGES_WON = "s3.storage.hedges.won";
+
+    private final StorageEndpoint endpoint;
+
+    private final StorageOperation operation;
+
+    private final String bucket;
+
+    private final Tags tags;
+
+    private final Timer timer;
+
+    private final Counter bytesIn;
+
+    private final Counter bytesOut;
+
+    private final Counter retries;
+
+    private final Counter hedges;
+
+    private final Counter hedgesWon;
+
+    private final Gauge inFlightGauge;
+
+    private final AtomicLong inFlight = new AtomicLong();
+
+    private final Map<Class<?>, Counter> errors = new ConcurrentHashMap<>();
+
+    private final MeterRegistry registry;
+
+    OperationMeters(MeterRegistry registry, S3MetricsProp prop, StorageEndpoint endpoint, StorageOperation operation, String bucket) {
+        this.registry = registry;
+        this.endpoint = endpoint;
+        this.operation = operation;
+        this.bucket = bucket;
+        this.tags = Tags.of("provider", endpoint.getProvider().getTag(), "endpoint", endpoint.getId(), "operation", operation.getTag(), "bucket", bucket);
+        this.timer = Timer.builder(REQUESTS)
+                .description("storage operation latency")
+                .tags(tags)
+                .publishPercentiles(prop.getPercentiles())
+                .publishPercentileHistogram(prop.isPercentileHistogram())
+                .register(registry);
+        this.bytesIn = Counter.builder(BYTES_IN).description("bytes downloaded").baseUnit("bytes").tags(tags).register(registry);
+        this.bytesOut = Counter.builder(BYTES_OUT).description("bytes uploaded").baseUnit("bytes").tags(tags).register(registry);
+        this.retries = Counter.builder(RETRIES).description("storage operation retries").tags(tags).register(registry);
+        this.hedges = Counter.builder(HEDGES).description("hedged requests sent").tags(tags).register(registry);
+        this.hedgesWon = Counter.builder(HEDGES_WON).description("hedged requests that finished first").tags(tags).register(registry);
+        this.inFlightGauge = Gauge.builder(IN_FLIGHT, inFlight, AtomicLong::get).description("storage operations in flight").tags(tags).register(registry);
+    }
+
+    public StorageProvider getProvider() {
+        return endpoint.getProvider();
+    }
+
+    /**
+     * 从注册中心移除全部指标
+     */
+    public void remove() {
+        registry.remove(timer);
+        registry.remove(bytesIn);
+        registry.remove(bytesOut);
+        registry.remove(retries);
+        registry.remove(hedges);
+        registry.remove(hedgesWon);
+        registry.remove(inFlightGauge);
+        for (Counter counter : errors.values()) {
+            registry.remove(counter);
+        }
+    }
+
+    /**
+     * 获取异常类型对应的错误计数器
+     *
+     * @param error 异常
+     * @return {@link Counter}
+     */
+    public Counter error(Throwable error) {
+        Class<?> type = error.getClass();
+        Counter counter = errors.get(type);
+        if (counter == null) {
+            counter = errors.computeIfAbsent(type, t -> Counter.builder(ERRORS)
+                    .description("storage operation errors")
+                    .tags(tags.and("exception", t.getSimpleName()))
+                    .register(registry));
+        }
+        return counter;
+    }
+}
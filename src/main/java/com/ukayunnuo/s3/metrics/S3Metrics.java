@@ -0,0 +1,309 @@
+package com.ukayunnuo.s3.metrics;
+
+import com.ukayunnuo.s3.core.StorageCall;
+import com.ukayunnuo.s3.core.StorageEndpoint;
+import com.ukayunnuo.s3.core.StorageOperation;
+import com.ukayunnuo.s3.core.StorageProvider;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 存储指标
+ * <p> 静态门面, 便于 {@code AmazonS3Utils}、{@code OciS3Utils} 等静态工具类使用; 默认注册到 {@link Metrics#globalRegistry},
+ * Spring 环境下由 {@link S3MetricsConfig} 绑定到容器中的 {@link MeterRegistry} </p>
+ * <p> 指标按 平台 x 操作 两级数组索引, 再按 端点、bucket 查表, 热路径上无对象分配; 同一平台的多个端点(如局域网 minio 与公网 AWS)
+ * 以 endpoint tag 区分, 以 {@link StorageProvider} 记录时为平台默认端点 </p>
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Slf4j
+public class S3Metrics {
+
+    /**
+     * bucket 为空时的 tag 值
+     */
+    public static final String NONE_BUCKET = "none";
+
+    /**
+     * bucket 取值超出上限后的 tag 值
+     */
+    public static final String OTHER_BUCKET = "other";
+
+    private static volatile MeterRegistry registry = Metrics.globalRegistry;
+
+    private static volatile S3MetricsProp prop = new S3MetricsProp();
+
+    private static volatile Map<StorageEndpoint, Map<String, OperationMeters>>[][] table = newTable();
+
+    private static final Map<String, Boolean> KNOWN_BUCKETS = new ConcurrentHashMap<>();
+
+    private S3Metrics() {
+    }
+
+    /**
+     * 绑定指标注册中心与配置, 已创建的指标会从旧注册中心移除
+     *
+     * @param meterRegistry 指标注册中心
+     * @param metricsProp   配置
+     */
+    public static synchronized void configure(MeterRegistry meterRegistry, S3MetricsProp metricsProp) {
+        Map<StorageEndpoint, Map<String, OperationMeters>>[][] old = table;
+        registry = Objects.requireNonNull(meterRegistry);
+        prop = Objects.requireNonNull(metricsProp);
+        table = newTable();
+        KNOWN_BUCKETS.clear();
+        for (Map<StorageEndpoint, Map<String, OperationMeters>>[] row : old) {
+            for (Map<StorageEndpoint, Map<String, OperationMeters>> cell : row) {
+                for (Map<String, OperationMeters> buckets : cell.values()) {
+                    buckets.values().forEach(OperationMeters::remove);
+                }
+            }
+        }
+        log.info("s3 metrics configured, prop:{}", metricsProp);
+    }
+
+    public static boolean isEnabled() {
+        return prop.isEnabled();
+    }
+
+    /**
+     * 当前绑定的指标注册中心, 供其他模块注册自有指标
+     *
+     * @return {@link MeterRegistry}
+     */
+    public static MeterRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * 执行并记录 延迟、在途数、错误
+     *
+     * @param provider  平台
+     * @param operation 操作
+     * @param bucket    桶
+     * @param call      调用
+     * @return T
+     * @throws E 调用异常
+     */
+    public static <T, E extends Exception> T record(StorageProvider provider, StorageOperation operation, String bucket,
+                                                    StorageCall<T, E> call) throws E {
+        return record(StorageEndpoint.of(provider), operation, bucket, call);
+    }
+
+    /**
+     * 执行并记录 延迟、在途数、错误
+     *
+     * @param endpoint  端点
+     * @param operation 操作
+     * @param bucket    桶
+     * @param call      调用
+     * @return T
+     * @throws E 调用异常
+     */
+    public static <T, E extends Exception> T record(StorageEndpoint endpoint, StorageOperation operation, String bucket,
+                                                    StorageCall<T, E> call) throws E {
+        if (!prop.isEnabled()) {
+            return call.call();
+        }
+        OperationMeters meters = meters(endpoint, operation, bucket);
+        meters.getInFlight().incrementAndGet();
+        long start = System.nanoTime();
+        try {
+            T result = call.call();
+            meters.getTimer().record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return result;
+        } catch (Exception e) {
+            meters.getTimer().record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            meters.error(e).increment();
+            throw e;
+        } finally {
+            meters.getInFlight().decrementAndGet();
+        }
+    }
+
+    /**
+     * 记录上传字节数
+     */
+    public static void bytesOut(StorageProvider provider, StorageOperation operation, String bucket, long bytes) {
+        bytesOut(StorageEndpoint.of(provider), operation, bucket, bytes);
+    }
+
+    /**
+     * 记录上传字节数(指定端点)
+     */
+    public static void bytesOut(StorageEndpoint endpoint, StorageOperation operation, String bucket, long bytes) {
+        if (prop.isEnabled() && bytes > 0) {
+            meters(endpoint, operation, bucket).getBytesOut().increment(bytes);
+        }
+    }
+
+    /**
+     * 记录下载字节数
+     */
+    public static void bytesIn(StorageProvider provider, StorageOperation operation, String bucket, long bytes) {
+        bytesIn(StorageEndpoint.of(provider), operation, bucket, bytes);
+    }
+
+    /**
+     * 记录下载字节数(指定端点)
+     */
+    public static void bytesIn(StorageEndpoint endpoint, StorageOperation operation, String bucket, long bytes) {
+        if (prop.isEnabled() && bytes > 0) {
+            meters(endpoint, operation, bucket).getBytesIn().increment(bytes);
+        }
+    }
+
+    /**
+     * 包装下载流, 读取时记录下载字节数
+     *
+     * @param in 下载流
+     * @return {@link InputStream}
+     */
+    public static InputStream meter(StorageProvider provider, StorageOperation operation, String bucket, InputStream in) {
+        return meter(StorageEndpoint.of(provider), operation, bucket, in);
+    }
+
+    /**
+     * 包装下载流, 读取时记录下载字节数(指定端点)
+     *
+     * @param in 下载流
+     * @return {@link InputStream}
+     */
+    public static InputStream meter(StorageEndpoint endpoint, StorageOperation operation, String bucket, InputStream in) {
+        if (!prop.isEnabled() || in == null) {
+            return in;
+        }
+        return new MeteredInputStream(in, meters(endpoint, operation, bucket).getBytesIn());
+    }
+
+    /**
+     * 记录一次重试
+     */
+    public static void retry(StorageProvider provider, StorageOperation operation, String bucket) {
+        retry(StorageEndpoint.of(provider), operation, bucket);
+    }
+
+    /**
+     * 记录一次重试(指定端点)
+     */
+    public static void retry(StorageEndpoint endpoint, StorageOperation operation, String bucket) {
+        if (prop.isEnabled()) {
+            meters(endpoint, operation, bucket).getRetries().increment();
+        }
+    }
+
+    /**
+     * 记录一次对冲请求
+     */
+    public static void hedge(StorageProvider provider, StorageOperation operation, String bucket) {
+        hedge(StorageEndpoint.of(provider), operation, bucket);
+    }
+
+    /**
+     * 记录一次对冲请求(指定端点)
+     */
+    public static void hedge(StorageEndpoint endpoint, StorageOperation operation, String bucket) {
+        if (prop.isEnabled()) {
+            meters(endpoint, operation, bucket).getHedges().increment();
+        }
+    }
+
+    /**
+     * 记录一次对冲请求先于原请求完成
+     */
+    public static void hedgeWon(StorageProvider provider, StorageOperation operation, String bucket) {
+        hedgeWon(StorageEndpoint.of(provider), operation, bucket);
+    }
+
+    /**
+     * 记录一次对冲请求先于原请求完成(指定端点)
+     */
+    public static void hedgeWon(StorageEndpoint endpoint, StorageOperation operation, String bucket) {
+        if (prop.isEnabled()) {
+            meters(endpoint, operation, bucket).getHedgesWon().increment();
+        }
+    }
+
+    /**
+     * 获取指标集合
+     *
+     * @param provider  平台
+     * @param operation 操作
+     * @param bucket    桶
+     * @return {@link OperationMeters}
+     */
+    public static OperationMeters meters(StorageProvider provider, StorageOperation operation, String bucket) {
+        return meters(StorageEndpoint.of(provider), operation, bucket);
+    }
+
+    /**
+     * 获取指标集合
+     *
+     * @param endpoint  端点
+     * @param operation 操作
+     * @param bucket    桶
+     * @return {@link OperationMeters}
+     */
+    public static OperationMeters meters(StorageEndpoint endpoint, StorageOperation operation, String bucket) {
+        Map<StorageEndpoint, Map<String, OperationMeters>> row = table[endpoint.getProvider().ordinal()][operation.ordinal()];
+        Map<String, OperationMeters> cell = row.get(endpoint);
+        if (cell == null) {
+            cell = row.computeIfAbsent(endpoint, e -> new ConcurrentHashMap<>());
+        }
+        String tag = bucket == null ? NONE_BUCKET : bucket;
+        OperationMeters meters = cell.get(tag);
+        if (meters != null) {
+            return meters;
+        }
+        if (!KNOWN_BUCKETS.containsKey(tag)) {
+            if (KNOWN_BUCKETS.size() >= prop.getMaxBucketTags()) {
+                tag = OTHER_BUCKET;
+            } else {
+                KNOWN_BUCKETS.putIfAbsent(tag, Boolean.TRUE);
+            }
+        }
+        meters = cell.get(tag);
+        if (meters != null) {
+            return meters;
+        }
+        return cell.computeIfAbsent(tag, t -> new OperationMeters(registry, prop, endpoint, operation, t));
+    }
+
+    /**
+     * 获取已创建的所有指标集合
+     *
+     * @return {@link List}<{@link OperationMeters}>
+     */
+    public static List<OperationMeters> allMeters() {
+        List<OperationMeters> result = new ArrayList<>();
+        for (Map<StorageEndpoint, Map<String, OperationMeters>>[] row : table) {
+            for (Map<StorageEndpoint, Map<String, OperationMeters>> cell : row) {
+                for (Map<String, OperationMeters> buckets : cell.values()) {
+                    result.addAll(buckets.values());
+                }
+            }
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<StorageEndpoint, Map<String, OperationMeters>>[][] newTable() {
+        Map<StorageEndpoint, Map<String, OperationMeters>>[][] newTable = new Map[StorageProvider.values().length][StorageOperation.values().length];
+        for (Map<StorageEndpoint, Map<String, OperationMeters>>[] row : newTable) {
+            for (int i = 0; i < row.length; i++) {
+                row[i] = new ConcurrentHashMap<>();
+            }
+        }
+        return newTable;
+    }
+}
@@ -0,0 +1,29 @@
+package com.ukayunnuo.s3.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Configuration;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+
+/**
+ * 存储指标 配置: 将 {@link S3Metrics} 绑定到容器中的 {@link MeterRegistry}
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Configuration
+public class S3MetricsConfig {
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Resource
+    private S3MetricsProp s3MetricsProp;
+
+    @PostConstruct
+    public void init() {
+        S3Metrics.configure(meterRegistry, s3MetricsProp);
+    }
+
+}
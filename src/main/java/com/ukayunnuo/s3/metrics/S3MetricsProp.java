@@ -0,0 +1,43 @@
+package com.ukayunnuo.s3.metrics;
+
+import cn.hutool.json.JSONUtil;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 存储指标 配置
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "s3.metrics")
+public class S3MetricsProp {
+
+    /**
+     * 是否开启
+     */
+    private boolean enabled = true;
+
+    /**
+     * 客户端计算的延迟百分位
+     */
+    private double[] percentiles = {0.5, 0.95, 0.99};
+
+    /**
+     * 是否发布百分位直方图(供 Prometheus 等服务端聚合)
+     */
+    private boolean percentileHistogram = true;
+
+    /**
+     * bucket tag 最大取值个数, 超出后归入 "other", 防止指标基数膨胀
+     */
+    private int maxBucketTags = 100;
+
+    @Override
+    public String toString() {
+        return JSONUtil.toJsonStr(this);
+    }
+}
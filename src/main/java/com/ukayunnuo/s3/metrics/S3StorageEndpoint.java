@@ -0,0 +1,75 @@
+package com.ukayunnuo.s3.metrics;
+
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 存储指标 Actuator 端点: /actuator/s3storage
+ * <p> 按 端点/操作/桶 汇总延迟、吞吐、错误、在途数, 原始指标仍可通过 /actuator/metrics/s3.storage.* 查询 </p>
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Component
+@Endpoint(id = "s3storage")
+public class S3StorageEndpoint {
+
+    @ReadOperation
+    public List<Map<String, Object>> summary() {
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (OperationMeters meters : S3Metrics.allMeters()) {
+            result.add(toMap(meters));
+        }
+        return result;
+    }
+
+    @ReadOperation
+    public List<Map<String, Object>> provider(@Selector String provider) {
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (OperationMeters meters : S3Metrics.allMeters()) {
+            if (meters.getProvider().getTag().equalsIgnoreCase(provider)) {
+                result.add(toMap(meters));
+            }
+        }
+        return result;
+    }
+
+    private static Map<String, Object> toMap(OperationMeters meters) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("provider", meters.getProvider().getTag());
+        map.put("endpoint", meters.getEndpoint().getId());
+        map.put("operation", meters.getOperation().getTag());
+        map.put("bucket", meters.getBucket());
+        HistogramSnapshot snapshot = meters.getTimer().takeSnapshot();
+        map.put("count", snapshot.count());
+        map.put("meanMs", snapshot.mean(TimeUnit.MILLISECONDS));
+        map.put("maxMs", snapshot.max(TimeUnit.MILLISECONDS));
+        Map<String, Object> percentiles = new LinkedHashMap<>();
+        for (ValueAtPercentile value : snapshot.percentileValues()) {
+            double percentile = value.percentile() * 100;
+            String key = percentile == Math.rint(percentile) ? String.valueOf((long) percentile) : String.valueOf(percentile);
+            percentiles.put("p" + key, value.value(TimeUnit.MILLISECONDS));
+        }
+        map.put("percentilesMs", percentiles);
+        map.put("bytesIn", (long) meters.getBytesIn().count());
+        map.put("bytesOut", (long) meters.getBytesOut().count());
+        map.put("inFlight", meters.getInFlight().get());
+        map.put("retries", (long) meters.getRetries().count());
+        map.put("hedges", (long) meters.getHedges().count());
+        map.put("hedgesWon", (long) meters.getHedgesWon().count());
+        Map<String, Object> errors = new LinkedHashMap<>();
+        meters.getErrors().forEach((type, counter) -> errors.put(type.getSimpleName(), (long) counter.count()));
+        map.put("errors", errors);
+        return map;
+    }
+}
@@ -0,0 +1,48 @@
+package com.ukayunnuo.s3.mirror;
+
+import cn.hutool.json.JSONUtil;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 镜像写入 配置
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "s3.mirror")
+public class MirrorProp {
+
+    /**
+     * 分段大小(字节), 不超过该大小的内容各目标单次写入; 不能小于 5MB(S3 分段下限)
+     */
+    private int partSize = 8 * 1024 * 1024;
+
+    /**
+     * 每个目标最多缓冲的分段数, 最慢的目标缓冲满时暂停读取源
+     */
+    private int bufferedParts = 4;
+
+    /**
+     * 至少多少个目标成功才算写入成功, 0 表示全部目标
+     */
+    private int quorum = 0;
+
+    /**
+     * 上传线程数, 每次镜像写入占用 目标数 个线程, 不足时等待其他写入完成; 小于目标数时按目标数
+     */
+    private int workers = 16;
+
+    /**
+     * 等待上传线程、以及目标提交后开始执行的最长时间(毫秒): 等不到线程时抛出 S3Exception, 未开始执行的目标判定失败
+     */
+    private long startTimeoutMillis = 30000;
+
+    @Override
+    public String toString() {
+        return JSONUtil.toJsonStr(this);
+    }
+}
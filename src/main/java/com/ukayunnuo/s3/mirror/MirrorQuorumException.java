@@ -0,0 +1,21 @@
+package com.ukayunnuo.s3.mirror;
+
+import com.ukayunnuo.s3.exception.S3Exception;
+import lombok.Getter;
+
+/**
+ * 镜像写入成功的目标数未达到要求; 已成功的目标保留写入的对象
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Getter
+public class MirrorQuorumException extends S3Exception {
+
+    private final MirrorResult result;
+
+    public MirrorQuorumException(String message, MirrorResult result) {
+        super(message);
+        this.result = result;
+    }
+}
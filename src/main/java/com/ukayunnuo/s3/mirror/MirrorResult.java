@@ -0,0 +1,57 @@
+package com.ukayunnuo.s3.mirror;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 镜像写入结果
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Data
+public class MirrorResult {
+
+    private String key;
+
+    /**
+     * 内容大小(字节)
+     */
+    private long size;
+
+    /**
+     * 要求成功的目标数
+     */
+    private int quorum;
+
+    /**
+     * 各目标结果, 与目标顺序一致
+     */
+    private List<MirrorTargetResult> targets = new ArrayList<>();
+
+    /**
+     * 成功的目标数
+     *
+     * @return int
+     */
+    public int succeededCount() {
+        int count = 0;
+        for (MirrorTargetResult target : targets) {
+            if (target.isSuccess()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 成功的目标数是否达到要求
+     *
+     * @return boolean
+     */
+    public boolean quorumMet() {
+        return succeededCount() >= quorum;
+    }
+}
@@ -0,0 +1,48 @@
+package com.ukayunnuo.s3.mirror;
+
+import com.ukayunnuo.s3.storage.ObjectStorage;
+import lombok.Getter;
+
+/**
+ * 镜像写入的目标
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Getter
+public class MirrorTarget {
+
+    private final String name;
+
+    private final ObjectStorage storage;
+
+    /**
+     * 目标桶, 为空时与写入的桶相同
+     */
+    private final String bucket;
+
+    public MirrorTarget(String name, ObjectStorage storage, String bucket) {
+        this.name = name;
+        this.storage = storage;
+        this.bucket = bucket;
+    }
+
+    public MirrorTarget(String name, ObjectStorage storage) {
+        this(name, storage, null);
+    }
+
+    /**
+     * 写入的桶在该目标上对应的桶
+     *
+     * @param bucket 桶
+     * @return 目标桶
+     */
+    public String bucket(String bucket) {
+        return this.bucket == null ? bucket : this.bucket;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,31 @@
+package com.ukayunnuo.s3.mirror;
+
+import lombok.Data;
+
+/**
+ * 单个目标的写入结果
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Data
+public class MirrorTargetResult {
+
+    private String name;
+
+    private String bucket;
+
+    private boolean success;
+
+    private String etag;
+
+    /**
+     * 失败原因, 成功时为空
+     */
+    private Exception error;
+
+    /**
+     * 该目标的写入耗时(毫秒)
+     */
+    private long elapsedMillis;
+}
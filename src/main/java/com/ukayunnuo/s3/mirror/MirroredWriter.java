@@ -0,0 +1,445 @@
+package com.ukayunnuo.s3.mirror;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.StrUtil;
+import com.ukayunnuo.s3.core.StorageThreads;
+import com.ukayunnuo.s3.exception.S3Exception;
+import com.ukayunnuo.s3.storage.PartInfo;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 镜像写入
+ * <p> 同一对象写入多个后端(如 minio 与 AWS), 源只读取一次: 不超过 {@code part-size} 的内容各目标并行单次写入,
+ * 更大的内容按分段读取, 每段同时交给各目标的分段上传. 各目标最多缓冲 {@code buffered-parts} 段,
+ * 最慢的目标缓冲满时暂停读取源, 内存占用与对象大小无关 </p>
+ * <p> 返回各目标的结果; 成功数低于 {@code quorum} 时抛出 {@link MirrorQuorumException}, 失败数已使成功数不可能达到要求时
+ * 立即取消其余目标. 失败的目标中止其分段上传, 已成功的目标保留对象 </p>
+ * <p> 每次写入先占用 目标数 个上传线程再提交, 各目标同时执行, 不会因线程被其他写入占满而互相等待;
+ * 等待线程超过 {@code start-timeout-millis} 时抛出 {@link S3Exception}, 提交后超时仍未开始执行的目标判定失败 </p>
+ *
+ * <pre>
+ * &#64;Bean(destroyMethod = "close")
+ * public MirroredWriter mirroredWriter(AmazonS3 minioAmazonS3, AmazonS3 amazonS3, MirrorProp mirrorProp) {
+ *     return new MirroredWriter(mirrorProp,
+ *             new MirrorTarget("minio", new AwsObjectStorage(minioAmazonS3, StorageProvider.MINIO)),
+ *             new MirrorTarget("aws", new AwsObjectStorage(amazonS3), "dr-bucket"));
+ * }
+ * </pre>
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Slf4j
+public class MirroredWriter implements Closeable {
+
+    private static final long POLL_MILLIS = 200;
+
+    /**
+     * 分段结束标记
+     */
+    private static final byte[] END = new byte[0];
+
+    private final List<MirrorTarget> targets;
+
+    private final MirrorProp prop;
+
+    private final ExecutorService workers;
+
+    /**
+     * 上传线程占用, 与线程数相同; 任务结束时释放
+     */
+    private final Semaphore slots;
+
+    public MirroredWriter(MirrorProp prop, MirrorTarget... targets) {
+        if (targets.length == 0) {
+            throw new IllegalArgumentException("mirror targets required");
+        }
+        this.prop = prop;
+        this.targets = Collections.unmodifiableList(Arrays.asList(targets));
+        int threads = Math.max(targets.length, prop.getWorkers());
+        this.workers = StorageThreads.newExecutor("s3-mirror", threads);
+        this.slots = new Semaphore(threads, true);
+    }
+
+    public MirroredWriter(MirrorTarget... targets) {
+        this(new MirrorProp(), targets);
+    }
+
+    public List<MirrorTarget> getTargets() {
+        return targets;
+    }
+
+    /**
+     * 上传文件到全部目标
+     *
+     * @param bucket 桶
+     * @param key    key
+     * @param file   文件
+     * @return {@link MirrorResult}
+     */
+    public MirrorResult put(String bucket, String key, File file) {
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            return put(bucket, key, in, FileUtil.getMimeType(file.getName()), null);
+        } catch (IOException e) {
+            throw new S3Exception(StrUtil.format("mirror read file failed, file:{}", file), e);
+        }
+    }
+
+    /**
+     * 写入内容到全部目标
+     *
+     * @param bucket      桶
+     * @param key         key
+     * @param data        内容
+     * @param contentType 内容类型, 可为空
+     * @param metadata    用户元数据, 可为空
+     * @return {@link MirrorResult}
+     */
+    public MirrorResult put(String bucket, String key, byte[] data, String contentType, Map<String, String> metadata) {
+        acquireSlots(key);
+        List<TargetUpload> uploads = new ArrayList<>(targets.size());
+        for (MirrorTarget target : targets) {
+            TargetUpload upload = new TargetUpload(target, bucket, key, contentType, metadata, 1);
+            uploads.add(upload);
+            submit(upload, () -> upload.putSingle(data));
+        }
+        return finish(key, data.length, uploads);
+    }
+
+    /**
+     * 读取流(至流结束, 不关闭流)并写入全部目标
+     *
+     * @param bucket      桶
+     * @param key         key
+     * @param in          内容
+     * @param contentType 内容类型, 可为空
+     * @param metadata    用户元数据, 可为空
+     * @return {@link MirrorResult}
+     */
+    public MirrorResult put(String bucket, String key, InputStream in, String contentType, Map<String, String> metadata) {
+        int partSize = prop.getPartSize();
+        byte[] first;
+        byte[] second;
+        try {
+            first = readChunk(in, partSize);
+            second = first.length < partSize ? END : readChunk(in, partSize);
+        } catch (IOException e) {
+            throw new S3Exception(StrUtil.format("mirror read source failed, bucket:{}, key:{}", bucket, key), e);
+        }
+        if (second.length == 0) {
+            return put(bucket, key, first, contentType, metadata);
+        }
+        acquireSlots(key);
+        List<TargetUpload> uploads = new ArrayList<>(targets.size());
+        for (MirrorTarget target : targets) {
+            TargetUpload upload = new TargetUpload(target, bucket, key, contentType, metadata, prop.getBufferedParts());
+            uploads.add(upload);
+            submit(upload, upload::putMultipart);
+        }
+        long size = 0;
+        try {
+            byte[] chunk = first;
+            while (chunk.length > 0) {
+                if (!dispatch(uploads, chunk)) {
+                    break;
+                }
+                size += chunk.length;
+                if (chunk.length < partSize) {
+                    break;
+                }
+                chunk = chunk == first ? second : readChunk(in, partSize);
+            }
+            dispatch(uploads, END);
+        } catch (IOException | RuntimeException e) {
+            uploads.forEach(TargetUpload::cancel);
+            awaitAll(uploads, startTimeoutNanos());
+            throw e instanceof IOException
+                    ? new S3Exception(StrUtil.format("mirror read source failed, bucket:{}, key:{}", bucket, key), (IOException) e)
+                    : (RuntimeException) e;
+        }
+        return finish(key, size, uploads);
+    }
+
+    /**
+     * 停止上传线程, 进行中的镜像写入继续完成
+     */
+    @Override
+    public void close() {
+        workers.shutdown();
+    }
+
+    /**
+     * 一次占用全部目标所需的上传线程
+     */
+    private void acquireSlots(String key) {
+        boolean acquired;
+        try {
+            acquired = slots.tryAcquire(targets.size(), prop.getStartTimeoutMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new S3Exception(StrUtil.format("mirror interrupted, key:{}", key), e);
+        }
+        if (!acquired) {
+            throw new S3Exception(StrUtil.format("mirror workers busy, key:{}, targets:{}, waited:{}ms",
+                    key, targets.size(), prop.getStartTimeoutMillis()));
+        }
+    }
+
+    /**
+     * 提交目标任务, 任务结束(含被判定超时后才开始执行)时释放占用的线程
+     */
+    private void submit(TargetUpload upload, Runnable task) {
+        try {
+            workers.execute(() -> {
+                try {
+                    if (upload.start()) {
+                        run(upload, task);
+                    }
+                } finally {
+                    slots.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            slots.release();
+            if (upload.start()) {
+                upload.fail(new S3Exception(StrUtil.format("mirror writer closed, target:{}, key:{}", upload.target.getName(), upload.key), e));
+            }
+        }
+    }
+
+    private static void run(TargetUpload upload, Runnable task) {
+        long start = System.nanoTime();
+        try {
+            task.run();
+            upload.result.setSuccess(true);
+        } catch (RuntimeException e) {
+            upload.result.setError(e);
+            log.warn("mirror target failed, target:{}, bucket:{}, key:{}, error:{}", upload.target.getName(),
+                    upload.result.getBucket(), upload.key, e.toString());
+        } finally {
+            upload.result.setElapsedMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            upload.finished.countDown();
+        }
+    }
+
+    /**
+     * 把一段交给仍在进行的目标, 某个目标缓冲满时等待
+     *
+     * @return 成功数仍可能达到要求
+     */
+    private boolean dispatch(List<TargetUpload> uploads, byte[] chunk) {
+        long startTimeoutNanos = startTimeoutNanos();
+        for (TargetUpload upload : uploads) {
+            try {
+                while (!upload.isFinished() && !upload.queue.offer(chunk, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                    // 等待该目标消费或失败
+                    upload.checkStarted(startTimeoutNanos);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new S3Exception(StrUtil.format("mirror interrupted, key:{}", upload.key), e);
+            }
+        }
+        int failed = 0;
+        for (TargetUpload upload : uploads) {
+            if (upload.isFinished() && !upload.result.isSuccess()) {
+                failed++;
+            }
+        }
+        if (uploads.size() - failed < quorum()) {
+            uploads.forEach(TargetUpload::cancel);
+            return false;
+        }
+        return true;
+    }
+
+    private MirrorResult finish(String key, long size, List<TargetUpload> uploads) {
+        awaitAll(uploads, startTimeoutNanos());
+        MirrorResult result = new MirrorResult();
+        result.setKey(key);
+        result.setSize(size);
+        result.setQuorum(quorum());
+        List<String> failures = new ArrayList<>();
+        for (TargetUpload upload : uploads) {
+            result.getTargets().add(upload.result);
+            if (!upload.result.isSuccess()) {
+                failures.add(upload.target.getName() + ": " + upload.result.getError());
+            }
+        }
+        if (!result.quorumMet()) {
+            throw new MirrorQuorumException(StrUtil.format("mirror quorum not met, key:{}, succeeded:{}/{}, quorum:{}, failures:{}",
+                    key, result.succeededCount(), uploads.size(), result.getQuorum(), failures), result);
+        }
+        log.debug("mirror put, key:{}, size:{}, succeeded:{}/{}", key, size, result.succeededCount(), uploads.size());
+        return result;
+    }
+
+    private int quorum() {
+        int quorum = prop.getQuorum();
+        return quorum <= 0 || quorum > targets.size() ? targets.size() : quorum;
+    }
+
+    private long startTimeoutNanos() {
+        return TimeUnit.MILLISECONDS.toNanos(prop.getStartTimeoutMillis());
+    }
+
+    private static void awaitAll(List<TargetUpload> uploads, long startTimeoutNanos) {
+        for (TargetUpload upload : uploads) {
+            try {
+                while (!upload.finished.await(POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                    upload.checkStarted(startTimeoutNanos);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                uploads.forEach(TargetUpload::cancel);
+                throw new S3Exception(StrUtil.format("mirror interrupted, key:{}", upload.key), e);
+            }
+        }
+    }
+
+    /**
+     * 读取一段, 流结束前读满 size 字节; 流已结束时返回空数组
+     */
+    private static byte[] readChunk(InputStream in, int size) throws IOException {
+        byte[] chunk = new byte[size];
+        int read = 0;
+        int n;
+        while (read < size && (n = in.read(chunk, read, size - read)) >= 0) {
+            read += n;
+        }
+        return read == size ? chunk : Arrays.copyOf(chunk, read);
+    }
+
+    /**
+     * 一个目标上的写入
+     */
+    private static class TargetUpload {
+
+        final MirrorTarget target;
+
+        final String key;
+
+        final String contentType;
+
+        final Map<String, String> metadata;
+
+        final BlockingQueue<byte[]> queue;
+
+        final CountDownLatch finished = new CountDownLatch(1);
+
+        final MirrorTargetResult result = new MirrorTargetResult();
+
+        /**
+         * 已开始执行或已判定失败, 两者只发生一个
+         */
+        final AtomicBoolean claimed = new AtomicBoolean();
+
+        final long submitted = System.nanoTime();
+
+        volatile boolean cancelled;
+
+        TargetUpload(MirrorTarget target, String bucket, String key, String contentType, Map<String, String> metadata, int bufferedParts) {
+            this.target = target;
+            this.key = key;
+            this.contentType = contentType;
+            this.metadata = metadata;
+            this.queue = new ArrayBlockingQueue<>(Math.max(1, bufferedParts));
+            result.setName(target.getName());
+            result.setBucket(target.bucket(bucket));
+        }
+
+        boolean isFinished() {
+            return finished.getCount() == 0;
+        }
+
+        void cancel() {
+            cancelled = true;
+        }
+
+        /**
+         * 开始执行, 已被判定失败时返回 false
+         */
+        boolean start() {
+            return claimed.compareAndSet(false, true);
+        }
+
+        /**
+         * 提交后超时仍未开始执行时判定失败
+         */
+        void checkStarted(long timeoutNanos) {
+            if (!claimed.get() && System.nanoTime() - submitted > timeoutNanos && start()) {
+                fail(new S3Exception(StrUtil.format("mirror target not started, target:{}, key:{}, waited:{}ms",
+                        target.getName(), key, TimeUnit.NANOSECONDS.toMillis(timeoutNanos))));
+            }
+        }
+
+        void fail(RuntimeException error) {
+            cancelled = true;
+            result.setError(error);
+            log.warn("mirror target failed, target:{}, bucket:{}, key:{}, error:{}", target.getName(), result.getBucket(), key, error.toString());
+            finished.countDown();
+        }
+
+        void putSingle(byte[] data) {
+            result.setEtag(target.getStorage().putObject(result.getBucket(), key, data, contentType, metadata));
+        }
+
+        void putMultipart() {
+            String bucket = result.getBucket();
+            String uploadId = target.getStorage().initiateMultipartUpload(bucket, key, contentType, metadata);
+            try {
+                List<PartInfo> parts = new ArrayList<>();
+                while (true) {
+                    byte[] chunk = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    if (cancelled) {
+                        throw new S3Exception(StrUtil.format("mirror cancelled, target:{}, key:{}", target.getName(), key));
+                    }
+                    if (chunk == END) {
+                        break;
+                    }
+                    if (chunk != null) {
+                        int partNumber = parts.size() + 1;
+                        parts.add(new PartInfo(partNumber, target.getStorage().uploadPart(bucket, key, uploadId, partNumber, chunk), chunk.length));
+                    }
+                }
+                result.setEtag(target.getStorage().completeMultipartUpload(bucket, key, uploadId, parts));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                abort(bucket, uploadId, null);
+                throw new S3Exception(StrUtil.format("mirror interrupted, target:{}, key:{}", target.getName(), key), e);
+            } catch (RuntimeException e) {
+                abort(bucket, uploadId, e);
+                throw e;
+            }
+        }
+
+        private void abort(String bucket, String uploadId, RuntimeException error) {
+            try {
+                target.getStorage().abortMultipartUpload(bucket, key, uploadId);
+            } catch (RuntimeException abortError) {
+                if (error != null) {
+                    error.addSuppressed(abortError);
+                }
+            }
+        }
+    }
+}
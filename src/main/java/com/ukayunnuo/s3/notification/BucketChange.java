@@ -0,0 +1,65 @@
+package com.ukayunnuo.s3.notification;
+
+import com.ukayunnuo.s3.storage.ObjectInfo;
+import lombok.Getter;
+
+import java.util.Date;
+
+/**
+ * 一条对象变更
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Getter
+public class BucketChange {
+
+    private final String bucket;
+
+    private final String key;
+
+    private final BucketChangeType type;
+
+    /**
+     * 对象大小, 删除时为 0
+     */
+    private final long size;
+
+    private final String etag;
+
+    /**
+     * 对象修改时间, 来源不提供时为空
+     */
+    private final Date lastModified;
+
+    public BucketChange(String bucket, String key, BucketChangeType type, long size, String etag, Date lastModified) {
+        this.bucket = bucket;
+        this.key = key;
+        this.type = type;
+        this.size = size;
+        this.etag = etag;
+        this.lastModified = lastModified;
+    }
+
+    public static BucketChange created(String bucket, ObjectInfo info) {
+        return new BucketChange(bucket, info.getKey(), BucketChangeType.CREATED, info.getSize(), info.getEtag(), info.getLastModified());
+    }
+
+    public static BucketChange removed(String bucket, String key) {
+        return new BucketChange(bucket, key, BucketChangeType.REMOVED, 0, null, null);
+    }
+
+    /**
+     * 转换为对象元数据, 删除时为空
+     *
+     * @return {@link ObjectInfo}
+     */
+    public ObjectInfo toObjectInfo() {
+        return type == BucketChangeType.REMOVED ? null : new ObjectInfo(key, size, etag, lastModified, null);
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + bucket + "/" + key;
+    }
+}
@@ -0,0 +1,29 @@
+package com.ukayunnuo.s3.notification;
+
+import java.util.List;
+
+/**
+ * 对象变更回调, 由通知监听器的分发线程按批调用
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@FunctionalInterface
+public interface BucketChangeListener {
+
+    /**
+     * 一批变更, 同一 key 在批内只保留最后一条
+     *
+     * @param changes 变更列表
+     */
+    void onChanges(List<BucketChange> changes);
+
+    /**
+     * 通知连接断开后重连, 断开期间的变更可能丢失, 缓存与索引应整体失效或重新列举
+     *
+     * @param bucket 桶
+     * @param prefix 监听的前缀
+     */
+    default void onResync(String bucket, String prefix) {
+    }
+}
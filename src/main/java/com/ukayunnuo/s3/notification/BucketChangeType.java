@@ -0,0 +1,20 @@
+package com.ukayunnuo.s3.notification;
+
+/**
+ * 对象变更类型
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+public enum BucketChangeType {
+
+    /**
+     * 新增或覆盖(含复制、分段上传完成)
+     */
+    CREATED,
+
+    /**
+     * 删除(含版本桶的删除标记)
+     */
+    REMOVED
+}
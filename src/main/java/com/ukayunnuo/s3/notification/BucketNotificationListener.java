@@ -0,0 +1,310 @@
+package com.ukayunnuo.s3.notification;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 桶通知监听
+ * <p> 监听线程读取变更放入队列(断线后按退避重连), 分发线程按合并窗口把变更合并成批, 同一 key 只保留最后一条,
+ * 再依次交给各 {@link BucketChangeListener}; 监听线程不会被回调阻塞, 队列满时才暂停读取 </p>
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Slf4j
+public abstract class BucketNotificationListener implements Closeable {
+
+    private static final AtomicInteger THREAD_SEQ = new AtomicInteger();
+
+    /**
+     * 重连标记, 分发到此处时先分发已合并的变更再通知重连
+     */
+    private static final BucketChange RESYNC = new BucketChange(null, null, null, 0, null, null);
+
+    @Getter
+    protected final String bucket;
+
+    @Getter
+    protected final String prefix;
+
+    protected final BucketNotificationProp prop;
+
+    private final List<BucketChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    private final BlockingQueue<BucketChange> queue;
+
+    private final AtomicLong received = new AtomicLong();
+
+    private final AtomicLong coalesced = new AtomicLong();
+
+    private final AtomicLong batches = new AtomicLong();
+
+    private volatile boolean running;
+
+    /**
+     * 重连后待发出的重连标记, 新连接建立后才放入队列
+     */
+    private volatile boolean resyncPending;
+
+    /**
+     * 是否建立过订阅
+     */
+    private volatile boolean established;
+
+    private Thread watcher;
+
+    private Thread dispatcher;
+
+    protected BucketNotificationListener(String bucket, String prefix, BucketNotificationProp prop) {
+        this.bucket = bucket;
+        this.prefix = prefix == null ? "" : prefix;
+        this.prop = prop;
+        this.queue = new LinkedBlockingQueue<>(Math.max(1, prop.getQueueCapacity()));
+    }
+
+    /**
+     * 添加变更回调, 需在 {@link #start()} 之前添加
+     *
+     * @param listener {@link BucketChangeListener}
+     * @return this
+     */
+    public BucketNotificationListener addListener(BucketChangeListener listener) {
+        listeners.add(listener);
+        return this;
+    }
+
+    /**
+     * 启动监听与分发线程
+     *
+     * @return this
+     */
+    public synchronized BucketNotificationListener start() {
+        if (!running) {
+            running = true;
+            dispatcher = daemon(this::dispatch, "s3-notify-dispatch-");
+            watcher = daemon(this::watchLoop, "s3-notify-watch-");
+            dispatcher.start();
+            watcher.start();
+            log.info("bucket notification listener started, type:{}, bucket:{}, prefix:{}", getClass().getSimpleName(), bucket, prefix);
+        }
+        return this;
+    }
+
+    /**
+     * 已收到的变更数
+     *
+     * @return long
+     */
+    public long getReceivedCount() {
+        return received.get();
+    }
+
+    /**
+     * 因同 key 合并而未单独分发的变更数
+     *
+     * @return long
+     */
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    /**
+     * 已分发的批数
+     *
+     * @return long
+     */
+    public long getBatchCount() {
+        return batches.get();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        stopWatch();
+        watcher.interrupt();
+        try {
+            dispatcher.join(prop.getBatchWindowMillis() + 5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("bucket notification listener closed, bucket:{}, received:{}, coalesced:{}, batches:{}",
+                bucket, received.get(), coalesced.get(), batches.get());
+    }
+
+    /**
+     * 读取变更直到连接断开或监听关闭, 通过 {@link #publish} 提交变更; 返回或抛出异常后按退避重连.
+     * 订阅建立后应调用 {@link #connected()}, 重连时的失效通知在此之后才发出
+     *
+     * @throws Exception 读取失败
+     */
+    protected abstract void watch() throws Exception;
+
+    /**
+     * 关闭时调用, 中断阻塞中的 {@link #watch()}(如关闭通知流)
+     */
+    protected void stopWatch() {
+    }
+
+    /**
+     * 重连后是否需要通知回调整体失效; 来源能自行补齐断开期间的变更时返回 false
+     *
+     * @return boolean
+     */
+    protected boolean resyncOnReconnect() {
+        return true;
+    }
+
+    /**
+     * 提交一条变更, 队列满时等待
+     *
+     * @param change {@link BucketChange}
+     * @throws InterruptedException 监听关闭
+     */
+    protected final void publish(BucketChange change) throws InterruptedException {
+        // 未调用 connected() 的实现, 以收到第一条变更作为连接已建立
+        connected();
+        received.incrementAndGet();
+        queue.put(change);
+    }
+
+    /**
+     * 订阅已建立; 重连时在此之后发出失效通知, 回调整体重新加载时不会漏掉重新订阅之前的变更
+     *
+     * @throws InterruptedException 监听关闭
+     */
+    protected final void connected() throws InterruptedException {
+        established = true;
+        if (resyncPending) {
+            resyncPending = false;
+            queue.put(RESYNC);
+        }
+    }
+
+    protected final boolean isRunning() {
+        return running;
+    }
+
+    private void watchLoop() {
+        long delay = prop.getReconnectDelayMillis();
+        while (running) {
+            long sleep;
+            try {
+                resyncPending = established && resyncOnReconnect();
+                watch();
+                if (!running) {
+                    break;
+                }
+                // 服务端正常结束连接, 同样等待后再重连, 避免连接立即结束时空转
+                log.debug("bucket notification stream ended, bucket:{}, prefix:{}, reconnect in {}ms", bucket, prefix, prop.getReconnectDelayMillis());
+                sleep = prop.getReconnectDelayMillis();
+                delay = sleep;
+            } catch (InterruptedException e) {
+                break;
+            } catch (Exception e) {
+                if (!running) {
+                    break;
+                }
+                log.warn("bucket notification disconnected, bucket:{}, prefix:{}, retry in {}ms, error:{}", bucket, prefix, delay, e.toString());
+                sleep = delay;
+                delay = Math.min(delay * 2, prop.getMaxReconnectDelayMillis());
+            }
+            try {
+                TimeUnit.MILLISECONDS.sleep(sleep);
+            } catch (InterruptedException interrupted) {
+                break;
+            }
+        }
+    }
+
+    private void dispatch() {
+        Map<String, BucketChange> batch = new LinkedHashMap<>();
+        while (running || !queue.isEmpty()) {
+            try {
+                BucketChange first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                boolean resync = first == RESYNC;
+                if (!resync) {
+                    add(batch, first);
+                    long deadline = System.currentTimeMillis() + prop.getBatchWindowMillis();
+                    while (batch.size() < prop.getMaxBatchSize()) {
+                        long wait = deadline - System.currentTimeMillis();
+                        BucketChange next = wait > 0 ? queue.poll(wait, TimeUnit.MILLISECONDS) : queue.poll();
+                        if (next == null) {
+                            break;
+                        }
+                        if (next == RESYNC) {
+                            resync = true;
+                            break;
+                        }
+                        add(batch, next);
+                    }
+                }
+                deliver(batch);
+                if (resync) {
+                    resync();
+                }
+            } catch (InterruptedException e) {
+                deliver(batch);
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void add(Map<String, BucketChange> batch, BucketChange change) {
+        if (batch.remove(change.getKey()) != null) {
+            coalesced.incrementAndGet();
+        }
+        batch.put(change.getKey(), change);
+    }
+
+    private void deliver(Map<String, BucketChange> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<BucketChange> changes = new ArrayList<>(batch.values());
+        batch.clear();
+        batches.incrementAndGet();
+        for (BucketChangeListener listener : listeners) {
+            try {
+                listener.onChanges(changes);
+            } catch (RuntimeException e) {
+                log.warn("bucket change listener failed, bucket:{}, changes:{}", bucket, changes.size(), e);
+            }
+        }
+    }
+
+    private void resync() {
+        log.info("bucket notification resync, bucket:{}, prefix:{}", bucket, prefix);
+        for (BucketChangeListener listener : listeners) {
+            try {
+                listener.onResync(bucket, prefix);
+            } catch (RuntimeException e) {
+                log.warn("bucket change listener resync failed, bucket:{}, prefix:{}", bucket, prefix, e);
+            }
+        }
+    }
+
+    private static Thread daemon(Runnable runnable, String prefix) {
+        Thread thread = new Thread(runnable, prefix + THREAD_SEQ.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    }
+}
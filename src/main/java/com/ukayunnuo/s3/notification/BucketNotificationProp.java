@@ -0,0 +1,53 @@
+package com.ukayunnuo.s3.notification;
+
+import cn.hutool.json.JSONUtil;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 桶通知监听 配置
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "s3.notification")
+public class BucketNotificationProp {
+
+    /**
+     * 合并窗口(毫秒): 收到第一条变更后等待该时间, 窗口内的变更合并为一批分发
+     */
+    private long batchWindowMillis = 200;
+
+    /**
+     * 每批最多变更数
+     */
+    private int maxBatchSize = 1000;
+
+    /**
+     * 待分发变更队列容量, 满时暂停读取通知
+     */
+    private int queueCapacity = 100000;
+
+    /**
+     * 轮询间隔(毫秒), 用于不支持通知推送的平台(AWS / OCI)
+     */
+    private long pollIntervalMillis = 60000;
+
+    /**
+     * 断线重连的初始等待(毫秒), 连续失败时翻倍
+     */
+    private long reconnectDelayMillis = 1000;
+
+    /**
+     * 断线重连的最大等待(毫秒)
+     */
+    private long maxReconnectDelayMillis = 30000;
+
+    @Override
+    public String toString() {
+        return JSONUtil.toJsonStr(this);
+    }
+}
@@ -0,0 +1,41 @@
+package com.ukayunnuo.s3.notification;
+
+import com.ukayunnuo.s3.index.BucketIndex;
+
+import java.util.List;
+
+/**
+ * 把变更写入 {@link BucketIndex}, 重连后重新列举监听的前缀
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+public class IndexChangeListener implements BucketChangeListener {
+
+    private final BucketIndex index;
+
+    public IndexChangeListener(BucketIndex index) {
+        this.index = index;
+    }
+
+    @Override
+    public void onChanges(List<BucketChange> changes) {
+        for (BucketChange change : changes) {
+            if (!index.getBucket().equals(change.getBucket())) {
+                continue;
+            }
+            if (change.getType() == BucketChangeType.REMOVED) {
+                index.remove(change.getKey());
+            } else {
+                index.put(change.toObjectInfo());
+            }
+        }
+    }
+
+    @Override
+    public void onResync(String bucket, String prefix) {
+        if (index.getBucket().equals(bucket)) {
+            index.refresh(prefix);
+        }
+    }
+}
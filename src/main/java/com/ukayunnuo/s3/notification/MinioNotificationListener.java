@@ -0,0 +1,91 @@
+package com.ukayunnuo.s3.notification;
+
+import io.minio.CloseableIterator;
+import io.minio.ListenBucketNotificationArgs;
+import io.minio.MinioClient;
+import io.minio.Result;
+import io.minio.messages.Event;
+import io.minio.messages.NotificationRecords;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+
+/**
+ * MinIO 桶通知监听, 基于 {@code listenBucketNotification} 长连接推送
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Slf4j
+public class MinioNotificationListener extends BucketNotificationListener {
+
+    private static final String[] EVENTS = {"s3:ObjectCreated:*", "s3:ObjectRemoved:*"};
+
+    private final MinioClient minioClient;
+
+    private volatile CloseableIterator<Result<NotificationRecords>> stream;
+
+    public MinioNotificationListener(MinioClient minioClient, String bucket, String prefix, BucketNotificationProp prop) {
+        super(bucket, prefix, prop);
+        this.minioClient = minioClient;
+    }
+
+    @Override
+    protected void watch() throws Exception {
+        ListenBucketNotificationArgs args = ListenBucketNotificationArgs.builder()
+                .bucket(bucket)
+                .prefix(prefix)
+                .suffix("")
+                .events(EVENTS)
+                .build();
+        try (CloseableIterator<Result<NotificationRecords>> records = minioClient.listenBucketNotification(args)) {
+            stream = records;
+            connected();
+            while (isRunning() && records.hasNext()) {
+                NotificationRecords batch = records.next().get();
+                if (batch.events() == null) {
+                    // 服务端的保活空消息
+                    continue;
+                }
+                for (Event event : batch.events()) {
+                    BucketChange change = toChange(event);
+                    if (change != null) {
+                        publish(change);
+                    }
+                }
+            }
+        } finally {
+            stream = null;
+        }
+    }
+
+    @Override
+    protected void stopWatch() {
+        CloseableIterator<Result<NotificationRecords>> current = stream;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (Exception e) {
+                log.debug("close notification stream failed, bucket:{}", bucket, e);
+            }
+        }
+    }
+
+    private BucketChange toChange(Event event) throws UnsupportedEncodingException {
+        if (event.eventType() == null || event.objectName() == null) {
+            return null;
+        }
+        // 通知中的 key 经过 URL 编码
+        String key = URLDecoder.decode(event.objectName(), "UTF-8");
+        String bucketName = event.bucketName() == null ? bucket : event.bucketName();
+        String type = event.eventType().name();
+        if (type.startsWith("OBJECT_CREATED")) {
+            return new BucketChange(bucketName, key, BucketChangeType.CREATED, event.objectSize(), event.etag(), null);
+        }
+        if (type.startsWith("OBJECT_REMOVED")) {
+            return BucketChange.removed(bucketName, key);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,67 @@
+package com.ukayunnuo.s3.notification;
+
+import com.ukayunnuo.s3.storage.ObjectInfo;
+import com.ukayunnuo.s3.storage.ObjectStorage;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 轮询桶通知, 用于不支持通知推送的平台(AWS / OCI)
+ * <p> 按 {@code poll-interval-millis} 列举前缀, 与上次列举的 ETag 对比得出新增、覆盖与删除; 首次列举只作为基准.
+ * 上次列举保存在内存中, 适合中小规模的前缀 </p>
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+public class PollingNotificationListener extends BucketNotificationListener {
+
+    private final ObjectStorage storage;
+
+    /**
+     * 上次列举: key -> ETag
+     */
+    private Map<String, String> last;
+
+    public PollingNotificationListener(ObjectStorage storage, String bucket, String prefix, BucketNotificationProp prop) {
+        super(bucket, prefix, prop);
+        this.storage = storage;
+    }
+
+    @Override
+    protected void watch() throws Exception {
+        while (isRunning()) {
+            poll();
+            TimeUnit.MILLISECONDS.sleep(prop.getPollIntervalMillis());
+        }
+    }
+
+    @Override
+    protected boolean resyncOnReconnect() {
+        // 下一次列举与上次列举对比即可补齐
+        return false;
+    }
+
+    private void poll() throws InterruptedException {
+        Map<String, ObjectInfo> current = new HashMap<>(last == null ? 1024 : last.size() * 4 / 3 + 16);
+        storage.listObjects(bucket, prefix, info -> current.put(info.getKey(), info));
+        if (last != null) {
+            for (ObjectInfo info : current.values()) {
+                String etag = last.remove(info.getKey());
+                if (etag == null || !Objects.equals(etag, info.getEtag())) {
+                    publish(BucketChange.created(bucket, info));
+                }
+            }
+            for (String key : last.keySet()) {
+                publish(BucketChange.removed(bucket, key));
+            }
+        }
+        Map<String, String> next = new HashMap<>(current.size() * 4 / 3 + 16);
+        for (ObjectInfo info : current.values()) {
+            next.put(info.getKey(), info.getEtag());
+        }
+        last = next;
+    }
+}
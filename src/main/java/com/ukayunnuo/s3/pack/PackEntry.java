@@ -0,0 +1,49 @@
+package com.ukayunnuo.s3.pack;
+
+import lombok.Data;
+
+/**
+ * 段内条目位置
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Data
+public class PackEntry {
+
+    /**
+     * 段对象 key
+     */
+    private String segment;
+
+    /**
+     * 条目 key
+     */
+    private String key;
+
+    /**
+     * 段内偏移
+     */
+    private long offset;
+
+    /**
+     * 长度(字节)
+     */
+    private int length;
+
+    /**
+     * 内容 CRC32
+     */
+    private int crc;
+
+    public PackEntry() {
+    }
+
+    public PackEntry(String segment, String key, long offset, int length, int crc) {
+        this.segment = segment;
+        this.key = key;
+        this.offset = offset;
+        this.length = length;
+        this.crc = crc;
+    }
+}
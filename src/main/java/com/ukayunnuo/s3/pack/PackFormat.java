@@ -0,0 +1,107 @@
+package com.ukayunnuo.s3.pack;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * 段文件格式
+ * <pre>
+ * [条目内容 ...][索引][尾部 24 字节]
+ * 索引: count(int) { key(modified UTF-8) offset(long) length(int) crc(int) } * count
+ * 尾部: indexOffset(long) indexLength(int) indexCrc(int) version(int) magic(int)
+ * </pre>
+ * 读取时先取段尾, 由尾部定位索引, 不需要额外的元数据请求
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+class PackFormat {
+
+    static final int FOOTER_SIZE = 24;
+
+    static final int VERSION = 1;
+
+    static final int MAGIC = 0x53334b50;
+
+    static final String SUFFIX = ".pack";
+
+    private PackFormat() {
+    }
+
+    static int crc(byte[] data, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(data, offset, length);
+        return (int) crc.getValue();
+    }
+
+    static byte[] encodeIndex(Collection<PackEntry> entries) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(entries.size() * 48 + 4);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(entries.size());
+        for (PackEntry entry : entries) {
+            out.writeUTF(entry.getKey());
+            out.writeLong(entry.getOffset());
+            out.writeInt(entry.getLength());
+            out.writeInt(entry.getCrc());
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    static byte[] encodeFooter(long indexOffset, byte[] index) {
+        return ByteBuffer.allocate(FOOTER_SIZE)
+                .putLong(indexOffset)
+                .putInt(index.length)
+                .putInt(crc(index, 0, index.length))
+                .putInt(VERSION)
+                .putInt(MAGIC)
+                .array();
+    }
+
+    /**
+     * 解析尾部
+     *
+     * @param tail   段尾字节, 末尾 {@link #FOOTER_SIZE} 字节为尾部
+     * @param length 有效字节数
+     * @return [indexOffset, indexLength, indexCrc]
+     */
+    static long[] decodeFooter(byte[] tail, int length) throws IOException {
+        if (length < FOOTER_SIZE) {
+            throw new IOException("pack segment too short: " + length);
+        }
+        ByteBuffer footer = ByteBuffer.wrap(tail, length - FOOTER_SIZE, FOOTER_SIZE);
+        long indexOffset = footer.getLong();
+        int indexLength = footer.getInt();
+        int indexCrc = footer.getInt();
+        int version = footer.getInt();
+        if (footer.getInt() != MAGIC) {
+            throw new IOException("not a pack segment");
+        }
+        if (version != VERSION) {
+            throw new IOException("unsupported pack version: " + version);
+        }
+        return new long[]{indexOffset, indexLength, indexCrc};
+    }
+
+    static Map<String, PackEntry> decodeIndex(String segment, byte[] data, int offset, int length, int expectedCrc) throws IOException {
+        if (crc(data, offset, length) != expectedCrc) {
+            throw new IOException("pack index checksum mismatch");
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data, offset, length));
+        int count = in.readInt();
+        Map<String, PackEntry> entries = new LinkedHashMap<>(Math.max(16, count * 4 / 3 + 1));
+        for (int i = 0; i < count; i++) {
+            String key = in.readUTF();
+            entries.put(key, new PackEntry(segment, key, in.readLong(), in.readInt(), in.readInt()));
+        }
+        return entries;
+    }
+}
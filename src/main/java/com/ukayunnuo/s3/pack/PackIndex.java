@@ -0,0 +1,71 @@
+package com.ukayunnuo.s3.pack;
+
+import lombok.Getter;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * 段索引(不可变)
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+public class PackIndex {
+
+    /**
+     * 段对象 key
+     */
+    @Getter
+    private final String segment;
+
+    /**
+     * 段对象 ETag, 读取条目时作为条件, 防止读到被覆盖的段
+     */
+    @Getter
+    private final String etag;
+
+    /**
+     * 段对象大小
+     */
+    @Getter
+    private final long size;
+
+    private final Map<String, PackEntry> entries;
+
+    PackIndex(String segment, String etag, long size, Map<String, PackEntry> entries) {
+        this.segment = segment;
+        this.etag = etag;
+        this.size = size;
+        this.entries = Collections.unmodifiableMap(entries);
+    }
+
+    /**
+     * 获取条目位置
+     *
+     * @param key 条目 key
+     * @return 不存在时返回空
+     */
+    public PackEntry get(String key) {
+        return entries.get(key);
+    }
+
+    /**
+     * 全部条目
+     *
+     * @return 条目集合
+     */
+    public Collection<PackEntry> entries() {
+        return entries.values();
+    }
+
+    /**
+     * 条目数
+     *
+     * @return int
+     */
+    public int size() {
+        return entries.size();
+    }
+}
@@ -0,0 +1,60 @@
+package com.ukayunnuo.s3.pack;
+
+import cn.hutool.json.JSONUtil;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+
+/**
+ * 小文件打包 配置
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "s3.pack")
+public class PackProp {
+
+    /**
+     * 段文件在本地暂存的目录
+     */
+    private String spoolDir = System.getProperty("java.io.tmpdir") + File.separator + "s3-util" + File.separator + "packs";
+
+    /**
+     * 段大小(字节), 达到后自动封段上传
+     */
+    private long segmentSize = 64L * 1024 * 1024;
+
+    /**
+     * 单段最大条目数, 达到后自动封段上传
+     */
+    private int maxEntriesPerSegment = 100000;
+
+    /**
+     * 单个条目最大字节数, 更大的文件应直接上传
+     */
+    private int maxEntrySize = 1024 * 1024;
+
+    /**
+     * 缓存的段索引数量
+     */
+    private int indexCacheSize = 1024;
+
+    /**
+     * 读取索引时首次请求的段尾字节数, 索引不超过该大小时一次请求即可读到
+     */
+    private int tailReadSize = 64 * 1024;
+
+    /**
+     * 批量读取时, 间隔不超过该字节数的相邻条目合并为一次区间请求
+     */
+    private int mergeGapBytes = 64 * 1024;
+
+    @Override
+    public String toString() {
+        return JSONUtil.toJsonStr(this);
+    }
+}
@@ -0,0 +1,247 @@
+package com.ukayunnuo.s3.pack;
+
+import cn.hutool.core.util.StrUtil;
+import com.ukayunnuo.s3.exception.S3Exception;
+import com.ukayunnuo.s3.storage.ObjectChangedException;
+import com.ukayunnuo.s3.storage.ObjectInfo;
+import com.ukayunnuo.s3.storage.ObjectStorage;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 小文件打包读取
+ * <p> 段索引首次读取时以一次段尾区间请求获取(索引较大时再补一次), 之后缓存在内存中(LRU);
+ * 条目内容以区间请求读取并校验 CRC32. 批量读取同一段的多个条目时, 相邻条目合并为一次区间请求 </p>
+ *
+ * <pre>
+ * PackReader reader = new PackReader(new AwsObjectStorage(amazonS3), packProp);
+ * byte[] data = reader.get(bucket, entry.getSegment(), "avatar/1001.png");
+ * </pre>
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Slf4j
+public class PackReader {
+
+    private final ObjectStorage storage;
+
+    private final PackProp prop;
+
+    private final Map<String, PackIndex> indexes;
+
+    public PackReader(ObjectStorage storage, PackProp prop) {
+        this.storage = storage;
+        this.prop = prop;
+        this.indexes = new LinkedHashMap<String, PackIndex>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PackIndex> eldest) {
+                return size() > prop.getIndexCacheSize();
+            }
+        };
+    }
+
+    public PackReader(ObjectStorage storage) {
+        this(storage, new PackProp());
+    }
+
+    /**
+     * 读取段内条目
+     *
+     * @param bucket  桶
+     * @param segment 段对象 key
+     * @param key     条目 key
+     * @return 内容, 段内不存在该条目时返回空
+     */
+    public byte[] get(String bucket, String segment, String key) {
+        for (int attempt = 1; ; attempt++) {
+            PackIndex index = index(bucket, segment);
+            PackEntry entry = index.get(key);
+            if (entry == null) {
+                return null;
+            }
+            try {
+                return read(bucket, entry, index.getEtag());
+            } catch (ObjectChangedException e) {
+                // 段被覆盖, 缓存的索引已失效
+                invalidate(bucket, segment);
+                if (attempt > 1) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * 按已知位置读取条目, 不读取索引
+     *
+     * @param bucket 桶
+     * @param entry  条目位置
+     * @return 内容
+     */
+    public byte[] read(String bucket, PackEntry entry) {
+        return read(bucket, entry, null);
+    }
+
+    /**
+     * 批量读取同一段内的条目, 相邻条目合并请求
+     *
+     * @param bucket  桶
+     * @param segment 段对象 key
+     * @param keys    条目 key
+     * @return key -> 内容, 不包含段内不存在的条目
+     */
+    public Map<String, byte[]> getAll(String bucket, String segment, Collection<String> keys) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return readAll(bucket, segment, keys, index(bucket, segment));
+            } catch (ObjectChangedException e) {
+                // 段被覆盖, 缓存的索引已失效
+                invalidate(bucket, segment);
+                if (attempt > 1) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * 获取段索引(优先缓存)
+     *
+     * @param bucket  桶
+     * @param segment 段对象 key
+     * @return {@link PackIndex}
+     */
+    public PackIndex index(String bucket, String segment) {
+        String cacheKey = bucket + "/" + segment;
+        synchronized (indexes) {
+            PackIndex cached = indexes.get(cacheKey);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        PackIndex index = load(bucket, segment);
+        synchronized (indexes) {
+            indexes.put(cacheKey, index);
+        }
+        return index;
+    }
+
+    /**
+     * 移除缓存的段索引
+     *
+     * @param bucket  桶
+     * @param segment 段对象 key
+     */
+    public void invalidate(String bucket, String segment) {
+        synchronized (indexes) {
+            indexes.remove(bucket + "/" + segment);
+        }
+    }
+
+    private Map<String, byte[]> readAll(String bucket, String segment, Collection<String> keys, PackIndex index) {
+        List<PackEntry> entries = new ArrayList<>();
+        for (String key : keys) {
+            PackEntry entry = index.get(key);
+            if (entry != null) {
+                entries.add(entry);
+            }
+        }
+        entries.sort(Comparator.comparingLong(PackEntry::getOffset));
+        Map<String, byte[]> result = new LinkedHashMap<>();
+        int from = 0;
+        while (from < entries.size()) {
+            long start = entries.get(from).getOffset();
+            long end = start + entries.get(from).getLength();
+            int to = from + 1;
+            while (to < entries.size() && entries.get(to).getOffset() - end <= prop.getMergeGapBytes()
+                    && Math.max(end, entries.get(to).getOffset() + entries.get(to).getLength()) - start <= Integer.MAX_VALUE) {
+                end = Math.max(end, entries.get(to).getOffset() + entries.get(to).getLength());
+                to++;
+            }
+            byte[] range = fetch(bucket, segment, start, (int) (end - start), index.getEtag());
+            for (PackEntry entry : entries.subList(from, to)) {
+                int offset = (int) (entry.getOffset() - start);
+                verify(entry, range, offset);
+                byte[] data = new byte[entry.getLength()];
+                System.arraycopy(range, offset, data, 0, data.length);
+                result.put(entry.getKey(), data);
+            }
+            from = to;
+        }
+        return result;
+    }
+
+    private PackIndex load(String bucket, String segment) {
+        ObjectInfo info = storage.headObject(bucket, segment);
+        long size = info.getSize();
+        int tailLength = (int) Math.min(size, Math.max(PackFormat.FOOTER_SIZE, prop.getTailReadSize()));
+        byte[] tail = fetch(bucket, segment, size - tailLength, tailLength, info.getEtag());
+        try {
+            long[] footer = PackFormat.decodeFooter(tail, tail.length);
+            long indexOffset = footer[0];
+            int indexLength = (int) footer[1];
+            if (indexOffset < 0 || indexOffset + indexLength + PackFormat.FOOTER_SIZE != size) {
+                throw new IOException("pack footer out of range");
+            }
+            byte[] data;
+            int offset;
+            if (indexLength + PackFormat.FOOTER_SIZE <= tailLength) {
+                data = tail;
+                offset = tailLength - PackFormat.FOOTER_SIZE - indexLength;
+            } else {
+                data = fetch(bucket, segment, indexOffset, indexLength, info.getEtag());
+                offset = 0;
+            }
+            Map<String, PackEntry> entries = PackFormat.decodeIndex(segment, data, offset, indexLength, (int) footer[2]);
+            log.debug("pack index loaded, bucket:{}, segment:{}, entries:{}", bucket, segment, entries.size());
+            return new PackIndex(segment, info.getEtag(), size, entries);
+        } catch (IOException e) {
+            throw new S3Exception(StrUtil.format("read pack index failed, bucket:{}, segment:{}", bucket, segment), e);
+        }
+    }
+
+    private byte[] read(String bucket, PackEntry entry, String etag) {
+        byte[] data = fetch(bucket, entry.getSegment(), entry.getOffset(), entry.getLength(), etag);
+        verify(entry, data, 0);
+        return data;
+    }
+
+    private static void verify(PackEntry entry, byte[] data, int offset) {
+        if (PackFormat.crc(data, offset, entry.getLength()) != entry.getCrc()) {
+            throw new S3Exception(StrUtil.format("pack entry checksum mismatch, segment:{}, key:{}", entry.getSegment(), entry.getKey()));
+        }
+    }
+
+    private byte[] fetch(String bucket, String segment, long offset, int length, String etag) {
+        byte[] data = new byte[length];
+        if (length == 0) {
+            return data;
+        }
+        try (InputStream in = storage.getObject(bucket, segment, offset, length, etag)) {
+            int read = 0;
+            while (read < length) {
+                int n = in.read(data, read, length - read);
+                if (n < 0) {
+                    throw new EOFException(StrUtil.format("premature end of pack segment, expected:{}, actual:{}", length, read));
+                }
+                read += n;
+            }
+            return data;
+        } catch (IOException e) {
+            throw new S3Exception(StrUtil.format("read pack segment failed, bucket:{}, segment:{}, range:{}+{}",
+                    bucket, segment, offset, length), e);
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package com.ukayunnuo.s3.pack;
+
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.StrUtil;
+import com.ukayunnuo.s3.exception.S3Exception;
+import com.ukayunnuo.s3.storage.ObjectStorage;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 小文件打包写入
+ * <p> 条目顺序写入本地段文件, 段大小或条目数达到上限时追加索引与尾部并作为一个对象上传, 一次 PUT 写入成千上万个小文件.
+ * {@link #add} 返回条目位置, 所在段上传({@link #flush})后才可读取; 段上传失败时保留本地段文件, 下次 flush 重试 </p>
+ * <p> 写本地段文件失败时已写入的字节数未知, 条目位置无法再对齐, 写入器进入损坏状态: 之后的 add/flush 都失败,
+ * close 删除本地段文件, 当前段中尚未上传的条目需由调用方重新写入 </p>
+ *
+ * <pre>
+ * try (PackWriter writer = new PackWriter(new AwsObjectStorage(amazonS3), bucket, "packs/", packProp)) {
+ *     PackEntry entry = writer.add("avatar/1001.png", bytes);
+ * }
+ * </pre>
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Slf4j
+public class PackWriter implements Closeable {
+
+    private static final String CONTENT_TYPE = "application/octet-stream";
+
+    private final ObjectStorage storage;
+
+    private final String bucket;
+
+    private final String prefix;
+
+    private final PackProp prop;
+
+    private final List<String> segments = new ArrayList<>();
+
+    private String segment;
+
+    private File spool;
+
+    private OutputStream out;
+
+    private long position;
+
+    /**
+     * 当前段的条目, 同一 key 重复写入时以最后一次为准
+     */
+    private final Map<String, PackEntry> entries = new LinkedHashMap<>();
+
+    private boolean sealed;
+
+    private boolean closed;
+
+    /**
+     * 写本地段文件失败的原因, 非空时写入器不可用
+     */
+    private IOException broken;
+
+    public PackWriter(ObjectStorage storage, String bucket, String prefix, PackProp prop) {
+        this.storage = storage;
+        this.bucket = bucket;
+        this.prefix = StrUtil.isEmpty(prefix) ? "" : StrUtil.addSuffixIfNot(prefix, "/");
+        this.prop = prop;
+    }
+
+    public PackWriter(ObjectStorage storage, String bucket, String prefix) {
+        this(storage, bucket, prefix, new PackProp());
+    }
+
+    /**
+     * 写入一个条目
+     *
+     * @param key  条目 key
+     * @param data 内容
+     * @return 条目位置
+     */
+    public synchronized PackEntry add(String key, byte[] data) {
+        if (closed) {
+            throw new S3Exception("pack writer closed");
+        }
+        if (StrUtil.isEmpty(key)) {
+            throw new S3Exception("pack entry key is empty");
+        }
+        if (data.length > prop.getMaxEntrySize()) {
+            throw new S3Exception(StrUtil.format("pack entry too large, key:{}, size:{}, max:{}", key, data.length, prop.getMaxEntrySize()));
+        }
+        checkBroken();
+        if (sealed) {
+            flush();
+        }
+        if (out == null) {
+            try {
+                open();
+            } catch (IOException e) {
+                // 尚未写入任何字节, 下次 add 重新打开
+                discard();
+                throw new S3Exception(StrUtil.format("open pack spool failed, file:{}", spool), e);
+            }
+        }
+        try {
+            out.write(data);
+        } catch (IOException e) {
+            // 可能已写入部分字节, position 与文件内容不再一致
+            broken = e;
+            throw new S3Exception(StrUtil.format("write pack spool failed, writer is broken, file:{}", spool), e);
+        }
+        PackEntry entry = new PackEntry(segment, key, position, data.length, PackFormat.crc(data, 0, data.length));
+        entries.remove(key);
+        entries.put(key, entry);
+        position += data.length;
+        if (position >= prop.getSegmentSize() || entries.size() >= prop.getMaxEntriesPerSegment()) {
+            flush();
+        }
+        return entry;
+    }
+
+    /**
+     * 写入一个条目(读取至流结束, 不关闭流)
+     *
+     * @param key 条目 key
+     * @param in  内容
+     * @return 条目位置
+     */
+    public PackEntry add(String key, InputStream in) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        try {
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                bytes.write(buffer, 0, n);
+                if (bytes.size() > prop.getMaxEntrySize()) {
+                    throw new S3Exception(StrUtil.format("pack entry too large, key:{}, max:{}", key, prop.getMaxEntrySize()));
+                }
+            }
+        } catch (IOException e) {
+            throw new S3Exception(StrUtil.format("read pack entry failed, key:{}", key), e);
+        }
+        return add(key, bytes.toByteArray());
+    }
+
+    /**
+     * 封段并上传当前段
+     *
+     * @return 段对象 key, 当前段为空时返回空
+     */
+    public synchronized String flush() {
+        checkBroken();
+        if (out == null) {
+            return null;
+        }
+        if (!sealed) {
+            try {
+                byte[] index = PackFormat.encodeIndex(entries.values());
+                out.write(index);
+                out.write(PackFormat.encodeFooter(position, index));
+                out.close();
+            } catch (IOException e) {
+                // 索引可能已部分写入, 不能再次封段
+                broken = e;
+                throw new S3Exception(StrUtil.format("seal pack segment failed, writer is broken, file:{}", spool), e);
+            }
+            entries.clear();
+            sealed = true;
+        }
+        // 已封段, 上传失败时下次只重试上传
+        storage.putObject(bucket, segment, spool, CONTENT_TYPE);
+        log.info("pack segment uploaded, bucket:{}, segment:{}, bytes:{}", bucket, segment, spool.length());
+        String uploaded = segment;
+        segments.add(uploaded);
+        discard();
+        return uploaded;
+    }
+
+    /**
+     * 已上传的段
+     *
+     * @return 段对象 key 列表
+     */
+    public synchronized List<String> getSegments() {
+        return Collections.unmodifiableList(new ArrayList<>(segments));
+    }
+
+    /**
+     * 上传剩余条目并关闭
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        if (broken != null) {
+            closed = true;
+            log.error("pack writer broken, discard segment, bucket:{}, segment:{}, entries:{}", bucket, segment, entries.size());
+            closeQuietly();
+            discard();
+            throw new S3Exception(StrUtil.format("pack writer broken, segment discarded, bucket:{}", bucket), broken);
+        }
+        flush();
+        closed = true;
+    }
+
+    private void checkBroken() {
+        if (broken != null) {
+            throw new S3Exception(StrUtil.format("pack writer broken by earlier spool failure, file:{}", spool), broken);
+        }
+    }
+
+    private void closeQuietly() {
+        if (out == null) {
+            return;
+        }
+        try {
+            out.close();
+        } catch (IOException e) {
+            log.debug("close pack spool failed, file:{}, msg:{}", spool, e.getMessage());
+        }
+    }
+
+    /**
+     * 删除本地段文件并重置当前段
+     */
+    private void discard() {
+        if (spool != null) {
+            try {
+                Files.deleteIfExists(spool.toPath());
+            } catch (IOException e) {
+                log.warn("delete pack spool failed, file:{}, msg:{}", spool, e.getMessage());
+            }
+        }
+        out = null;
+        sealed = false;
+        spool = null;
+        segment = null;
+        position = 0;
+        entries.clear();
+    }
+
+    private void open() throws IOException {
+        File dir = new File(prop.getSpoolDir());
+        if (!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
+            throw new IOException("create pack spool dir failed: " + dir);
+        }
+        String id = IdUtil.fastSimpleUUID();
+        segment = prefix + id + PackFormat.SUFFIX;
+        spool = new File(dir, id + PackFormat.SUFFIX);
+        out = new BufferedOutputStream(Files.newOutputStream(spool.toPath()), 64 * 1024);
+        position = 0;
+    }
+}
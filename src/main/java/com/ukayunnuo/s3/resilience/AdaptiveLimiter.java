@@ -0,0 +1,198 @@
+package com.ukayunnuo.s3.resilience;
+
+import com.ukayunnuo.s3.core.StorageEndpoint;
+import com.ukayunnuo.s3.core.StorageOperation;
+import com.ukayunnuo.s3.core.StorageProvider;
+import lombok.Getter;
+
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * AIMD 自适应并发限制器(单个 端点/桶/前缀)
+ * <p> 请求成功且延迟健康、并且并发已用到上限一半以上时, 上限 +1/上限(约每个往返 +1); 限流、超时或延迟超过基线
+ * {@code latencyTolerance} 倍时, 上限乘以 {@code backoffRatio}. 延迟基线为同一操作成功请求延迟的 EWMA </p>
+ * <p> 每个往返最多退让一次: 只有在上次退让之后发出的请求才会再次触发退让, 同一批并发请求集中失败时上限只下降一次 </p>
+ * <p> 上传、复制等耗时随对象大小变化的操作不参与延迟判断, 只按限流、超时退让, 避免大对象拖慢同前缀的小请求 </p>
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+public class AdaptiveLimiter {
+
+    /**
+     * 延迟基线 EWMA 平滑系数
+     */
+    private static final double BASELINE_ALPHA = 0.05;
+
+    /**
+     * 耗时取决于传输字节数的操作
+     */
+    private static final Set<StorageOperation> TRANSFER_BOUND = EnumSet.of(StorageOperation.PUT_OBJECT,
+            StorageOperation.MULTIPART_UPLOAD, StorageOperation.COPY_OBJECT, StorageOperation.RENAME_OBJECT);
+
+    @Getter
+    private final StorageEndpoint endpoint;
+
+    @Getter
+    private final String bucket;
+
+    @Getter
+    private final String prefix;
+
+    private final S3LimiterProp prop;
+
+    private final long slowFloorNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition available = lock.newCondition();
+
+    private volatile double limit;
+
+    private volatile int inFlight;
+
+    /**
+     * 上次退让的时间(nanoTime)
+     */
+    private long lastDecreaseNanos;
+
+    private boolean decreased;
+
+    /**
+     * 按操作分别统计的延迟基线
+     */
+    private final double[] baselineNanos = new double[StorageOperation.values().length];
+
+    public AdaptiveLimiter(StorageProvider provider, String bucket, String prefix, S3LimiterProp prop) {
+        this(StorageEndpoint.of(provider), bucket, prefix, prop);
+    }
+
+    public AdaptiveLimiter(StorageEndpoint endpoint, String bucket, String prefix, S3LimiterProp prop) {
+        this.endpoint = endpoint;
+        this.bucket = bucket;
+        this.prefix = prefix;
+        this.prop = prop;
+        this.slowFloorNanos = TimeUnit.MILLISECONDS.toNanos(prop.getSlowLatencyFloorMillis());
+        this.limit = Math.max(prop.getMinLimit(), Math.min(prop.getMaxLimit(), prop.getInitialLimit()));
+    }
+
+    public StorageProvider getProvider() {
+        return endpoint.getProvider();
+    }
+
+    /**
+     * 获取并发许可, 超过上限时阻塞等待
+     *
+     * @param timeoutNanos 最长等待时间
+     * @return 是否获取成功
+     * @throws InterruptedException 等待时被中断
+     */
+    public boolean acquire(long timeoutNanos) throws InterruptedException {
+        long remaining = timeoutNanos;
+        lock.lockInterruptibly();
+        try {
+            while (inFlight >= (int) limit) {
+                if (remaining <= 0) {
+                    return false;
+                }
+                remaining = available.awaitNanos(remaining);
+            }
+            inFlight++;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 成功释放许可, 并按延迟调整上限
+     *
+     * @param operation    操作
+     * @param latencyNanos 延迟
+     */
+    public void onSuccess(StorageOperation operation, long latencyNanos) {
+        lock.lock();
+        try {
+            int current = inFlight--;
+            long startNanos = System.nanoTime() - latencyNanos;
+            boolean latencyBound = !TRANSFER_BOUND.contains(operation);
+            double baseline = baselineNanos[operation.ordinal()];
+            if (latencyBound && baseline > 0 && latencyNanos > slowFloorNanos && latencyNanos > baseline * prop.getLatencyTolerance()) {
+                decrease(startNanos);
+            } else if (current * 2 >= limit) {
+                limit = Math.min(prop.getMaxLimit(), limit + 1.0 / limit);
+            }
+            if (latencyBound) {
+                baselineNanos[operation.ordinal()] = baseline <= 0 ? latencyNanos : baseline + BASELINE_ALPHA * (latencyNanos - baseline);
+            }
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 失败释放许可
+     *
+     * @param dropped      是否因限流、超时失败(需要退让)
+     * @param latencyNanos 延迟
+     */
+    public void onFailure(boolean dropped, long latencyNanos) {
+        lock.lock();
+        try {
+            inFlight--;
+            if (dropped) {
+                decrease(System.nanoTime() - latencyNanos);
+            }
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 退让, 请求在上次退让之前发出时忽略(它看到的还是退让前的上限)
+     *
+     * @param startNanos 请求发出时间
+     */
+    private void decrease(long startNanos) {
+        if (decreased && startNanos - lastDecreaseNanos < 0) {
+            return;
+        }
+        limit = Math.max(prop.getMinLimit(), limit * prop.getBackoffRatio());
+        lastDecreaseNanos = System.nanoTime();
+        decreased = true;
+    }
+
+    /**
+     * 当前并发上限
+     *
+     * @return int
+     */
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * 操作的延迟基线(毫秒)
+     *
+     * @param operation 操作
+     * @return double, 无样本或不参与延迟判断的操作为 0
+     */
+    public double getBaselineMillis(StorageOperation operation) {
+        lock.lock();
+        try {
+            return baselineNanos[operation.ordinal()] / TimeUnit.MILLISECONDS.toNanos(1);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package com.ukayunnuo.s3.resilience;
+
+import com.amazonaws.AmazonServiceException;
+import com.oracle.bmc.model.BmcException;
+import com.ukayunnuo.s3.exception.StorageErrorKind;
+import com.ukayunnuo.s3.exception.StorageException;
+import io.minio.errors.ErrorResponseException;
+import io.minio.errors.ServerException;
+
+import java.io.EOFException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 存储调用失败分类器
+ * <p> 沿 cause 链识别 {@link StorageException}、三个平台 SDK 的异常与 JDK 网络异常 </p>
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+public class FailureClassifier {
+
+    /**
+     * cause 链最大深度
+     */
+    private static final int MAX_CAUSE_DEPTH = 8;
+
+    /**
+     * 限流错误码(S3 / MinIO / OCI)
+     * <p> 不含 ServiceUnavailable: 503 不一定是限流, 请求可能已被执行, 按 5xx 处理 </p>
+     */
+    private static final Set<String> THROTTLE_CODES = new HashSet<>(Arrays.asList(
+            "SlowDown", "Throttling", "ThrottlingException", "ThrottledException", "RequestThrottled",
+            "RequestLimitExceeded", "TooManyRequests", "TooManyRequestsException",
+            "RequestThrottledException", "BandwidthLimitExceeded", "EC2ThrottledException"));
+
+    /**
+     * 超时错误码(S3 / MinIO)
+     */
+    private static final Set<String> TIMEOUT_CODES = new HashSet<>(Arrays.asList(
+            "RequestTimeout", "RequestTimeoutException"));
+
+    /**
+     * 连接中断类异常(按类名识别, 避免依赖具体的 http 客户端)
+     */
+    private static final Set<String> RESET_CLASS_NAMES = new HashSet<>(Arrays.asList(
+            "NoHttpResponseException", "ConnectionClosedException", "TruncatedChunkException",
+            "StreamResetException", "SSLException"));
+
+    /**
+     * 鉴权失败错误码(S3 / MinIO / OCI)
+     */
+    private static final Set<String> AUTH_CODES = new HashSet<>(Arrays.asList(
+            "AccessDenied", "InvalidAccessKeyId", "SignatureDoesNotMatch", "ExpiredToken", "InvalidToken", "NotAuthenticated"));
+
+    private FailureClassifier() {
+    }
+
+    /**
+     * 分类
+     *
+     * @param e 异常
+     * @return {@link FailureKind}
+     */
+    public static FailureKind classify(Throwable e) {
+        Throwable current = e;
+        for (int depth = 0; current != null && depth < MAX_CAUSE_DEPTH; depth++) {
+            FailureKind kind = classifyOne(current);
+            if (kind != null) {
+                return kind;
+            }
+            if (current.getCause() == current) {
+                break;
+            }
+            current = current.getCause();
+        }
+        return FailureKind.UNKNOWN;
+    }
+
+    /**
+     * 按 http 状态码与错误码分类
+     *
+     * @param status http 状态码
+     * @param code   错误码, 可为空
+     * @return {@link FailureKind}
+     */
+    public static FailureKind classify(int status, String code) {
+        if (code != null && THROTTLE_CODES.contains(code)) {
+            return FailureKind.THROTTLED;
+        }
+        if (code != null && TIMEOUT_CODES.contains(code)) {
+            return FailureKind.TIMEOUT;
+        }
+        if (status == 429) {
+            return FailureKind.THROTTLED;
+        }
+        if (status == 408) {
+            return FailureKind.TIMEOUT;
+        }
+        if (status >= 500) {
+            return FailureKind.SERVER_ERROR;
+        }
+        return status > 0 ? FailureKind.CLIENT_ERROR : null;
+    }
+
+    /**
+     * 是否为对象或桶不存在(404)
+     *
+     * @param e 异常
+     * @return boolean
+     */
+    public static boolean isNotFound(Throwable e) {
+        return status(e) == 404;
+    }
+
+    /**
+     * 与平台无关的错误类别
+     *
+     * @param e 异常
+     * @return {@link StorageErrorKind}
+     */
+    public static StorageErrorKind errorKind(Throwable e) {
+        StorageException storageException = find(e, StorageException.class);
+        if (storageException != null) {
+            return storageException.getKind();
+        }
+        int status = status(e);
+        if (status == 404) {
+            return StorageErrorKind.NOT_FOUND;
+        }
+        String code = errorCode(e);
+        if (status == 401 || status == 403 || (code != null && AUTH_CODES.contains(code))) {
+            return StorageErrorKind.AUTH;
+        }
+        FailureKind kind = classify(e);
+        if (kind == FailureKind.THROTTLED) {
+            return StorageErrorKind.THROTTLED;
+        }
+        return kind.isRetryable() ? StorageErrorKind.TRANSIENT : StorageErrorKind.PERMANENT;
+    }
+
+    /**
+     * 沿 cause 链找到的第一个平台异常的 http 状态码
+     *
+     * @param e 异常
+     * @return 状态码, 没有平台异常时为 0
+     */
+    public static int status(Throwable e) {
+        Throwable current = e;
+        for (int depth = 0; current != null && depth < MAX_CAUSE_DEPTH; depth++) {
+            int status = statusOf(current);
+            if (status > 0) {
+                return status;
+            }
+            if (current.getCause() == current) {
+                break;
+            }
+            current = current.getCause();
+        }
+        return 0;
+    }
+
+    /**
+     * 沿 cause 链找到的第一个平台错误码
+     *
+     * @param e 异常
+     * @return 错误码, 可为空
+     */
+    public static String errorCode(Throwable e) {
+        Throwable current = e;
+        for (int depth = 0; current != null && depth < MAX_CAUSE_DEPTH; depth++) {
+            String code = errorCodeOf(current);
+            if (code != null) {
+                return code;
+            }
+            if (current.getCause() == current) {
+                break;
+            }
+            current = current.getCause();
+        }
+        return null;
+    }
+
+    private static <T extends Throwable> T find(Throwable e, Class<T> type) {
+        Throwable current = e;
+        for (int depth = 0; current != null && depth < MAX_CAUSE_DEPTH; depth++) {
+            if (type.isInstance(current)) {
+                return type.cast(current);
+            }
+            if (current.getCause() == current) {
+                break;
+            }
+            current = current.getCause();
+        }
+        return null;
+    }
+
+    /**
+     * 平台异常中的 http 状态码, 不是平台异常时为 0
+     */
+    private static int statusOf(Throwable e) {
+        if (e instanceof StorageException) {
+            return ((StorageException) e).getStatus();
+        }
+        if (e instanceof AmazonServiceException) {
+            return ((AmazonServiceException) e).getStatusCode();
+        }
+        if (e instanceof ErrorResponseException) {
+            ErrorResponseException ere = (ErrorResponseException) e;
+            return ere.response() == null ? 0 : ere.response().code();
+        }
+        if (e instanceof ServerException) {
+            return ((ServerException) e).statusCode();
+        }
+        if (e instanceof BmcException) {
+            return Math.max(0, ((BmcException) e).getStatusCode());
+        }
+        return 0;
+    }
+
+    private static String errorCodeOf(Throwable e) {
+        if (e instanceof StorageException) {
+            return ((StorageException) e).getErrorCode();
+        }
+        if (e instanceof AmazonServiceException) {
+            return ((AmazonServiceException) e).getErrorCode();
+        }
+        if (e instanceof ErrorResponseException) {
+            ErrorResponseException ere = (ErrorResponseException) e;
+            return ere.errorResponse() == null ? null : ere.errorResponse().code();
+        }
+        if (e instanceof BmcException) {
+            return ((BmcException) e).getServiceCode();
+        }
+        return null;
+    }
+
+    private static FailureKind classifyOne(Throwable e) {
+        if (e instanceof StorageException) {
+            // 没有状态码(网络异常等)时由 cause 决定
+            StorageException se = (StorageException) e;
+            return classify(se.getStatus(), se.getErrorCode());
+        }
+        if (e instanceof AmazonServiceException) {
+            AmazonServiceException ase = (AmazonServiceException) e;
+            return orClientError(classify(ase.getStatusCode(), ase.getErrorCode()));
+        }
+        if (e instanceof ErrorResponseException) {
+            ErrorResponseException ere = (ErrorResponseException) e;
+            int status = ere.response() == null ? 0 : ere.response().code();
+            String code = ere.errorResponse() == null ? null : ere.errorResponse().code();
+            return orClientError(classify(status, code));
+        }
+        if (e instanceof ServerException) {
+            return orClientError(classify(((ServerException) e).statusCode(), null));
+        }
+        if (e instanceof BmcException) {
+            BmcException bmc = (BmcException) e;
+            if (bmc.isTimeout()) {
+                return FailureKind.TIMEOUT;
+            }
+            // 客户端侧异常(status 为 -1 等)由 cause 决定
+            return classify(bmc.getStatusCode(), bmc.getServiceCode());
+        }
+        return classifyJdk(e);
+    }
+
+    private static FailureKind classifyJdk(Throwable e) {
+        if (e instanceof SocketTimeoutException || e instanceof TimeoutException) {
+            return FailureKind.TIMEOUT;
+        }
+        if (e instanceof ConnectException || e instanceof NoRouteToHostException) {
+            return FailureKind.CONNECT;
+        }
+        if (e instanceof UnknownHostException) {
+            return FailureKind.CLIENT_ERROR;
+        }
+        if (e instanceof SocketException || e instanceof EOFException || RESET_CLASS_NAMES.contains(e.getClass().getSimpleName())) {
+            return FailureKind.CONNECTION_RESET;
+        }
+        if (e instanceof InterruptedIOException || e instanceof InterruptedException) {
+            // 线程中断或主动取消
+            return FailureKind.CLIENT_ERROR;
+        }
+        return null;
+    }
+
+    private static FailureKind orClientError(FailureKind kind) {
+        return kind == null ? FailureKind.CLIENT_ERROR : kind;
+    }
+}
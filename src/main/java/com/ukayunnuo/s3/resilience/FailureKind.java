@@ -0,0 +1,63 @@
+package com.ukayunnuo.s3.resilience;
+
+import lombok.Getter;
+
+/**
+ * 存储调用失败分类
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Getter
+public enum FailureKind {
+
+    /**
+     * 限流(429、SlowDown 等限流错误码), 请求被服务端拒绝, 任何操作都可重试
+     */
+    THROTTLED(true, true),
+
+    /**
+     * 建连失败, 请求未发出, 任何操作都可重试
+     */
+    CONNECT(true, true),
+
+    /**
+     * 连接重置、响应提前结束, 请求可能已被执行
+     */
+    CONNECTION_RESET(true, false),
+
+    /**
+     * 超时, 请求可能已被执行
+     */
+    TIMEOUT(true, false),
+
+    /**
+     * 服务端 5xx 错误(含不带限流错误码的 503), 请求可能已被执行
+     */
+    SERVER_ERROR(true, false),
+
+    /**
+     * 客户端错误(4xx、参数错误、鉴权失败等), 不可重试
+     */
+    CLIENT_ERROR(false, false),
+
+    /**
+     * 无法识别的异常, 不重试
+     */
+    UNKNOWN(false, false);
+
+    /**
+     * 是否可重试
+     */
+    private final boolean retryable;
+
+    /**
+     * 是否确定未被服务端执行(非幂等操作也可重试)
+     */
+    private final boolean notExecuted;
+
+    FailureKind(boolean retryable, boolean notExecuted) {
+        this.retryable = retryable;
+        this.notExecuted = notExecuted;
+    }
+}
@@ -0,0 +1,77 @@
+package com.ukayunnuo.s3.resilience;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 最近请求延迟滑动窗口
+ * <p> 环形数组保存最近 {@code size} 个延迟样本, 每记录 {@code recomputeEvery} 个样本重新计算一次百分位, 读取无锁 </p>
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+public class LatencyWindow {
+
+    private final AtomicLongArray samples;
+
+    private final AtomicLong count = new AtomicLong();
+
+    private final double percentile;
+
+    private final int recomputeEvery;
+
+    private volatile long percentileNanos = -1;
+
+    /**
+     * @param size           窗口大小
+     * @param percentile     百分位, 如 0.95
+     * @param recomputeEvery 每记录多少个样本重算一次百分位
+     */
+    public LatencyWindow(int size, double percentile, int recomputeEvery) {
+        this.samples = new AtomicLongArray(Math.max(1, size));
+        this.percentile = percentile;
+        this.recomputeEvery = Math.max(1, recomputeEvery);
+    }
+
+    /**
+     * 记录一个延迟样本
+     *
+     * @param latencyNanos 延迟
+     */
+    public void record(long latencyNanos) {
+        long n = count.getAndIncrement();
+        samples.set((int) (n % samples.length()), latencyNanos);
+        if ((n + 1) % recomputeEvery == 0) {
+            recompute(Math.min(n + 1, samples.length()));
+        }
+    }
+
+    /**
+     * 已记录的样本数
+     *
+     * @return long
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * 最近一次计算的百分位延迟, 尚未计算时返回 -1
+     *
+     * @return long
+     */
+    public long getPercentileNanos() {
+        return percentileNanos;
+    }
+
+    private void recompute(long size) {
+        long[] copy = new long[(int) size];
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = samples.get(i);
+        }
+        Arrays.sort(copy);
+        int index = (int) Math.min(copy.length - 1, Math.ceil(percentile * copy.length) - 1);
+        percentileNanos = copy[Math.max(0, index)];
+    }
+}
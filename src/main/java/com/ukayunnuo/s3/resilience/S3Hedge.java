@@ -0,0 +1,299 @@
+package com.ukayunnuo.s3.resilience;
+
+import cn.hutool.core.io.IoUtil;
+import com.oracle.bmc.objectstorage.responses.GetObjectResponse;
+import com.ukayunnuo.s3.core.StorageCall;
+import com.ukayunnuo.s3.core.StorageEndpoint;
+import com.ukayunnuo.s3.core.StorageOperation;
+import com.ukayunnuo.s3.core.StorageProvider;
+import com.ukayunnuo.s3.exception.S3Exception;
+import com.ukayunnuo.s3.metrics.S3Metrics;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 对冲请求
+ * <p> 静态门面, 由 {@code StorageExecutor} 在每次尝试时调用, 仅作用于 GET、HEAD; 请求超过最近延迟的 {@code percentile}
+ * 百分位仍未返回时, 再发一个相同请求, 取先成功的结果并取消另一个, 落败请求返回的流会被关闭 </p>
+ * <p> 对冲请求数受 {@link TokenBudget} 限制, 不超过请求量的 {@code budgetRatio} 倍; 预算按端点、延迟窗口按 端点/操作/桶 区分 </p>
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Slf4j
+public class S3Hedge {
+
+    /**
+     * 窗口个数上限, 超出后同一端点/操作共用一个窗口
+     */
+    private static final int MAX_WINDOWS = 1000;
+
+    /**
+     * 每记录多少个样本重算一次百分位
+     */
+    private static final int RECOMPUTE_EVERY = 32;
+
+    /**
+     * 落败请求的占位结果
+     */
+    private static final Object LOST = new Object();
+
+    private static volatile S3HedgeProp prop = new S3HedgeProp();
+
+    private static final Map<String, TokenBudget> BUDGETS = new ConcurrentHashMap<>();
+
+    private static volatile ThreadPoolExecutor executor;
+
+    private static final Map<String, LatencyWindow> WINDOWS = new ConcurrentHashMap<>();
+
+    private S3Hedge() {
+    }
+
+    /**
+     * 绑定配置, 已学习的延迟窗口会被清除
+     *
+     * @param hedgeProp 配置
+     */
+    public static synchronized void configure(S3HedgeProp hedgeProp) {
+        prop = Objects.requireNonNull(hedgeProp);
+        BUDGETS.clear();
+        WINDOWS.clear();
+        ThreadPoolExecutor old = executor;
+        executor = null;
+        if (old != null) {
+            old.shutdown();
+        }
+        log.info("s3 hedge configured, prop:{}", hedgeProp);
+    }
+
+    public static boolean isEnabled() {
+        return prop.isEnabled();
+    }
+
+    /**
+     * 当前对冲延迟(毫秒), 样本不足时返回 -1
+     *
+     * @param provider  平台
+     * @param operation 操作
+     * @param bucket    桶
+     * @return long
+     */
+    public static long hedgeDelayMillis(StorageProvider provider, StorageOperation operation, String bucket) {
+        return hedgeDelayMillis(StorageEndpoint.of(provider), operation, bucket);
+    }
+
+    /**
+     * 当前对冲延迟(毫秒), 样本不足时返回 -1
+     *
+     * @param endpoint  端点
+     * @param operation 操作
+     * @param bucket    桶
+     * @return long
+     */
+    public static long hedgeDelayMillis(StorageEndpoint endpoint, StorageOperation operation, String bucket) {
+        long nanos = hedgeDelayNanos(prop, window(endpoint, operation, bucket));
+        return nanos < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    /**
+     * 执行, 必要时发出对冲请求
+     *
+     * @param provider  平台
+     * @param operation 操作
+     * @param bucket    桶
+     * @param call      调用
+     * @return T
+     * @throws E 调用异常
+     */
+    public static <T, E extends Exception> T execute(StorageProvider provider, StorageOperation operation, String bucket,
+                                                     StorageCall<T, E> call) throws E {
+        return execute(StorageEndpoint.of(provider), operation, bucket, call);
+    }
+
+    /**
+     * 执行, 必要时发出对冲请求
+     *
+     * @param endpoint  端点
+     * @param operation 操作
+     * @param bucket    桶
+     * @param call      调用
+     * @return T
+     * @throws E 调用异常
+     */
+    public static <T, E extends Exception> T execute(StorageEndpoint endpoint, StorageOperation operation, String bucket,
+                                                     StorageCall<T, E> call) throws E {
+        S3HedgeProp hedgeProp = prop;
+        if (!hedgeProp.isEnabled() || (operation != StorageOperation.GET_OBJECT && operation != StorageOperation.HEAD_OBJECT)) {
+            return call.call();
+        }
+        LatencyWindow window = window(endpoint, operation, bucket);
+        TokenBudget hedgeBudget = BUDGETS.computeIfAbsent(endpoint.getId(), k -> newBudget(hedgeProp));
+        hedgeBudget.deposit();
+        long delayNanos = hedgeDelayNanos(hedgeProp, window);
+        if (delayNanos < 0) {
+            long start = System.nanoTime();
+            T result = call.call();
+            window.record(System.nanoTime() - start);
+            return result;
+        }
+        return race(endpoint, operation, bucket, call, window, hedgeBudget, delayNanos);
+    }
+
+    private static <T, E extends Exception> T race(StorageEndpoint endpoint, StorageOperation operation, String bucket,
+                                                   StorageCall<T, E> call, LatencyWindow window, TokenBudget hedgeBudget,
+                                                   long delayNanos) throws E {
+        AtomicInteger winner = new AtomicInteger(-1);
+        ExecutorCompletionService<Object> service = new ExecutorCompletionService<>(executor());
+        Future<?>[] branches = new Future<?>[2];
+        try {
+            branches[0] = service.submit(() -> branch(0, call, window, winner));
+        } catch (RejectedExecutionException e) {
+            // 线程耗尽或线程池已关闭(重新配置), 在调用线程执行且不对冲
+            long start = System.nanoTime();
+            T result = call.call();
+            window.record(System.nanoTime() - start);
+            return result;
+        }
+        int submitted = 1;
+        Throwable firstError = null;
+        try {
+            Future<Object> done = service.poll(delayNanos, TimeUnit.NANOSECONDS);
+            if (done == null) {
+                if (hedgeBudget.tryAcquire()) {
+                    try {
+                        branches[1] = service.submit(() -> branch(1, call, window, winner));
+                        submitted++;
+                        S3Metrics.hedge(endpoint, operation, bucket);
+                    } catch (RejectedExecutionException e) {
+                        // 线程耗尽时不对冲, 只等待主请求
+                        log.debug("s3 hedge rejected, threads exhausted, endpoint:{}, operation:{}", endpoint.getId(), operation);
+                    }
+                }
+                done = service.take();
+            }
+            for (int completed = 1; ; completed++) {
+                try {
+                    Object result = done.get();
+                    if (result != LOST) {
+                        if (winner.get() == 1) {
+                            S3Metrics.hedgeWon(endpoint, operation, bucket);
+                        }
+                        return cast(result);
+                    }
+                } catch (ExecutionException e) {
+                    if (firstError == null) {
+                        firstError = e.getCause();
+                    }
+                }
+                if (completed >= submitted) {
+                    break;
+                }
+                done = service.take();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new S3Exception("interrupted while waiting for hedged request", e);
+        } finally {
+            for (Future<?> branch : branches) {
+                if (branch != null) {
+                    branch.cancel(true);
+                }
+            }
+        }
+        throw S3Hedge.<E>rethrow(firstError);
+    }
+
+    private static <T, E extends Exception> Object branch(int index, StorageCall<T, E> call, LatencyWindow window,
+                                                          AtomicInteger winner) throws E {
+        long start = System.nanoTime();
+        T result = call.call();
+        window.record(System.nanoTime() - start);
+        if (winner.compareAndSet(-1, index)) {
+            return result;
+        }
+        release(result);
+        return LOST;
+    }
+
+    /**
+     * 关闭落败请求的结果
+     */
+    private static void release(Object result) {
+        if (result instanceof Closeable) {
+            IoUtil.close((Closeable) result);
+        } else if (result instanceof GetObjectResponse) {
+            IoUtil.close(((GetObjectResponse) result).getInputStream());
+        }
+    }
+
+    private static long hedgeDelayNanos(S3HedgeProp hedgeProp, LatencyWindow window) {
+        long percentile = window.getPercentileNanos();
+        if (percentile < 0 || window.getCount() < hedgeProp.getMinSamples()) {
+            return -1;
+        }
+        long min = TimeUnit.MILLISECONDS.toNanos(hedgeProp.getMinDelayMillis());
+        long max = TimeUnit.MILLISECONDS.toNanos(hedgeProp.getMaxDelayMillis());
+        return Math.max(min, Math.min(max, percentile));
+    }
+
+    private static LatencyWindow window(StorageEndpoint endpoint, StorageOperation operation, String bucket) {
+        String id = endpoint.getId() + '/' + operation.getTag() + '/' + bucket;
+        LatencyWindow window = WINDOWS.get(id);
+        if (window != null) {
+            return window;
+        }
+        if (WINDOWS.size() >= MAX_WINDOWS) {
+            id = endpoint.getId() + '/' + operation.getTag() + "/*";
+        }
+        S3HedgeProp hedgeProp = prop;
+        return WINDOWS.computeIfAbsent(id, k -> new LatencyWindow(hedgeProp.getWindowSize(), hedgeProp.getPercentile(), RECOMPUTE_EVERY));
+    }
+
+    private static ThreadPoolExecutor executor() {
+        ThreadPoolExecutor current = executor;
+        if (current != null) {
+            return current;
+        }
+        synchronized (S3Hedge.class) {
+            if (executor == null) {
+                AtomicInteger threads = new AtomicInteger();
+                // 线程耗尽或线程池已关闭(重新配置)时拒绝提交, 由 race 退化为不对冲
+                executor = new ThreadPoolExecutor(0, prop.getMaxThreads(), 60, TimeUnit.SECONDS, new SynchronousQueue<>(), r -> {
+                    Thread thread = new Thread(r, "s3-hedge-" + threads.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+            }
+            return executor;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T cast(Object result) {
+        return (T) result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E extends Exception> E rethrow(Throwable e) throws E {
+        if (e instanceof Error) {
+            throw (Error) e;
+        }
+        throw (E) e;
+    }
+
+    private static TokenBudget newBudget(S3HedgeProp hedgeProp) {
+        return new TokenBudget(hedgeProp.getBudgetRatio(), hedgeProp.getBudgetMinPerSecond(), hedgeProp.getBudgetCapacity());
+    }
+}
@@ -0,0 +1,73 @@
+package com.ukayunnuo.s3.resilience;
+
+import cn.hutool.json.JSONUtil;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 对冲请求 配置
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "s3.hedge")
+public class S3HedgeProp {
+
+    /**
+     * 是否开启(仅作用于 GET、HEAD)
+     */
+    private boolean enabled = false;
+
+    /**
+     * 对冲延迟取最近延迟的该百分位
+     */
+    private double percentile = 0.95;
+
+    /**
+     * 延迟窗口大小
+     */
+    private int windowSize = 1024;
+
+    /**
+     * 样本数达到该值前不对冲
+     */
+    private int minSamples = 100;
+
+    /**
+     * 对冲延迟下限(毫秒)
+     */
+    private long minDelayMillis = 5;
+
+    /**
+     * 对冲延迟上限(毫秒)
+     */
+    private long maxDelayMillis = 2000;
+
+    /**
+     * 对冲预算: 每个请求存入的令牌数, 即对冲请求占请求量的比例上限
+     */
+    private double budgetRatio = 0.05;
+
+    /**
+     * 对冲预算: 每秒保底令牌数
+     */
+    private double budgetMinPerSecond = 1;
+
+    /**
+     * 对冲预算: 令牌上限
+     */
+    private int budgetCapacity = 20;
+
+    /**
+     * 对冲线程池最大线程数, 线程耗尽时不发对冲请求, 主请求也提交不了时由调用线程直接执行
+     */
+    private int maxThreads = 256;
+
+    @Override
+    public String toString() {
+        return JSONUtil.toJsonStr(this);
+    }
+}
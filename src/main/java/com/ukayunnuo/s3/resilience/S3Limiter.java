@@ -0,0 +1,234 @@
+package com.ukayunnuo.s3.resilience;
+
+import cn.hutool.core.util.StrUtil;
+import com.ukayunnuo.s3.core.StorageCall;
+import com.ukayunnuo.s3.core.StorageEndpoint;
+import com.ukayunnuo.s3.core.StorageOperation;
+import com.ukayunnuo.s3.core.StorageProvider;
+import com.ukayunnuo.s3.exception.S3Exception;
+import com.ukayunnuo.s3.metrics.S3Metrics;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 自适应并发限制
+ * <p> 静态门面, 由 {@code StorageExecutor} 在每次尝试前调用; 三个平台共用, 按 端点/桶/key 前缀 划分 {@link AdaptiveLimiter},
+ * 并发已满时阻塞等待, 形成对批量任务的背压; 同一平台的多个端点(如局域网 minio 与公网 AWS)互不影响 </p>
+ * <p> 下载调用只在拿到响应流之前占用许可 </p>
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Slf4j
+public class S3Limiter {
+
+    /**
+     * 当前并发上限
+     */
+    public static final String LIMIT = "s3.storage.concurrency.limit";
+
+    /**
+     * 当前在途数
+     */
+    public static final String IN_FLIGHT = "s3.storage.concurrency.inflight";
+
+    /**
+     * 超出 maxLimiters 后共用的前缀
+     */
+    public static final String ANY_PREFIX = "*";
+
+    private static volatile S3LimiterProp prop = new S3LimiterProp();
+
+    private static final Map<String, AdaptiveLimiter> LIMITERS = new ConcurrentHashMap<>();
+
+    private static final Map<String, List<Meter>> GAUGES = new ConcurrentHashMap<>();
+
+    private S3Limiter() {
+    }
+
+    /**
+     * 绑定配置, 已创建的限流器及其指标会被清除
+     *
+     * @param limiterProp 配置
+     */
+    public static synchronized void configure(S3LimiterProp limiterProp) {
+        prop = Objects.requireNonNull(limiterProp);
+        LIMITERS.clear();
+        MeterRegistry registry = S3Metrics.getRegistry();
+        for (List<Meter> meters : GAUGES.values()) {
+            for (Meter meter : meters) {
+                registry.remove(meter);
+            }
+        }
+        GAUGES.clear();
+        log.info("s3 limiter configured, prop:{}", limiterProp);
+    }
+
+    public static boolean isEnabled() {
+        return prop.isEnabled();
+    }
+
+    /**
+     * 在并发许可内执行(平台默认端点)
+     *
+     * @param provider  平台
+     * @param operation 操作
+     * @param bucket    桶
+     * @param key       对象 key, 桶级操作为空
+     * @param call      调用
+     * @return T
+     * @throws E 调用异常
+     */
+    public static <T, E extends Exception> T execute(StorageProvider provider, StorageOperation operation, String bucket, String key,
+                                                     StorageCall<T, E> call) throws E {
+        return execute(StorageEndpoint.of(provider), operation, bucket, key, false, call);
+    }
+
+    /**
+     * 在并发许可内执行
+     *
+     * @param endpoint  端点
+     * @param operation 操作
+     * @param bucket    桶
+     * @param key       对象 key, 桶级操作为空
+     * @param failFast  为 true 时不等待许可, 并发已满立即失败
+     * @param call      调用
+     * @return T
+     * @throws E 调用异常
+     */
+    public static <T, E extends Exception> T execute(StorageEndpoint endpoint, StorageOperation operation, String bucket, String key,
+                                                     boolean failFast, StorageCall<T, E> call) throws E {
+        S3LimiterProp limiterProp = prop;
+        if (!limiterProp.isEnabled() || operation == StorageOperation.PRESIGN) {
+            // 预签名为本地计算, 不占用许可
+            return call.call();
+        }
+        AdaptiveLimiter limiter = limiter(endpoint, bucket, key);
+        acquire(limiter, failFast ? 0 : limiterProp.getMaxWaitMillis());
+        long start = System.nanoTime();
+        boolean success = false;
+        Throwable error = null;
+        try {
+            T result = call.call();
+            success = true;
+            return result;
+        } catch (Throwable e) {
+            error = e;
+            throw e;
+        } finally {
+            // Error 与异常同样释放许可, 避免许可泄漏
+            long latency = System.nanoTime() - start;
+            if (success) {
+                limiter.onSuccess(operation, latency);
+            } else {
+                FailureKind kind = FailureClassifier.classify(error);
+                limiter.onFailure(kind == FailureKind.THROTTLED || kind == FailureKind.TIMEOUT, latency);
+            }
+        }
+    }
+
+    /**
+     * 获取限流器(平台默认端点)
+     *
+     * @param provider 平台
+     * @param bucket   桶
+     * @param key      对象 key, 可为空
+     * @return {@link AdaptiveLimiter}
+     */
+    public static AdaptiveLimiter limiter(StorageProvider provider, String bucket, String key) {
+        return limiter(StorageEndpoint.of(provider), bucket, key);
+    }
+
+    /**
+     * 获取限流器
+     *
+     * @param endpoint 端点
+     * @param bucket   桶
+     * @param key      对象 key, 可为空
+     * @return {@link AdaptiveLimiter}
+     */
+    public static AdaptiveLimiter limiter(StorageEndpoint endpoint, String bucket, String key) {
+        S3LimiterProp limiterProp = prop;
+        String bucketName = StrUtil.nullToEmpty(bucket);
+        String prefix = prefix(key, limiterProp.getPrefixDepth());
+        String id = endpoint.getId() + '/' + bucketName + '/' + prefix;
+        AdaptiveLimiter limiter = LIMITERS.get(id);
+        if (limiter != null) {
+            return limiter;
+        }
+        if (LIMITERS.size() >= limiterProp.getMaxLimiters()) {
+            prefix = ANY_PREFIX;
+            id = endpoint.getId() + '/' + bucketName + '/' + prefix;
+        }
+        String finalPrefix = prefix;
+        return LIMITERS.computeIfAbsent(id, k -> register(k, new AdaptiveLimiter(endpoint, bucketName, finalPrefix, limiterProp)));
+    }
+
+    /**
+     * 已创建的所有限流器
+     *
+     * @return {@link List}<{@link AdaptiveLimiter}>
+     */
+    public static List<AdaptiveLimiter> limiters() {
+        return new ArrayList<>(LIMITERS.values());
+    }
+
+    /**
+     * 取 key 的前 depth 级目录(含末尾 /)
+     *
+     * @param key   对象 key
+     * @param depth 目录级数
+     * @return {@link String}
+     */
+    static String prefix(String key, int depth) {
+        if (key == null || depth <= 0) {
+            return "";
+        }
+        int end = -1;
+        for (int i = 0; i < depth; i++) {
+            int next = key.indexOf('/', end + 1);
+            if (next < 0) {
+                break;
+            }
+            end = next;
+        }
+        return end < 0 ? "" : key.substring(0, end + 1);
+    }
+
+    private static void acquire(AdaptiveLimiter limiter, long maxWaitMillis) {
+        boolean acquired;
+        try {
+            acquired = limiter.acquire(TimeUnit.MILLISECONDS.toNanos(maxWaitMillis));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new S3Exception("interrupted while waiting for concurrency permit", e);
+        }
+        if (!acquired) {
+            throw new S3Exception(StrUtil.format("concurrency permit wait timeout, endpoint:{}, bucket:{}, prefix:{}, limit:{}",
+                    limiter.getEndpoint().getId(), limiter.getBucket(), limiter.getPrefix(), limiter.getLimit()));
+        }
+    }
+
+    private static AdaptiveLimiter register(String id, AdaptiveLimiter limiter) {
+        if (!S3Metrics.isEnabled()) {
+            return limiter;
+        }
+        MeterRegistry registry = S3Metrics.getRegistry();
+        Tags tags = Tags.of("provider", limiter.getProvider().getTag(), "endpoint", limiter.getEndpoint().getId(), "bucket", limiter.getBucket(), "prefix", limiter.getPrefix());
+        List<Meter> meters = new ArrayList<>(2);
+        meters.add(Gauge.builder(LIMIT, limiter, AdaptiveLimiter::getLimit).description("adaptive concurrency limit").tags(tags).register(registry));
+        meters.add(Gauge.builder(IN_FLIGHT, limiter, AdaptiveLimiter::getInFlight).description("requests holding a concurrency permit").tags(tags).register(registry));
+        GAUGES.put(id, meters);
+        return limiter;
+    }
+}
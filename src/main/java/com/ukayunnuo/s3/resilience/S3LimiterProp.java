@@ -0,0 +1,73 @@
+package com.ukayunnuo.s3.resilience;
+
+import cn.hutool.json.JSONUtil;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 自适应并发限制 配置
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "s3.limiter")
+public class S3LimiterProp {
+
+    /**
+     * 是否开启(默认关闭, 开启后并发已满的请求会阻塞等待)
+     */
+    private boolean enabled = false;
+
+    /**
+     * 初始并发上限
+     */
+    private int initialLimit = 20;
+
+    /**
+     * 并发上限的下限
+     */
+    private int minLimit = 1;
+
+    /**
+     * 并发上限的上限
+     */
+    private int maxLimit = 200;
+
+    /**
+     * 限流、超时或延迟恶化时的乘性退让系数
+     */
+    private double backoffRatio = 0.9;
+
+    /**
+     * 延迟超过基线的倍数视为恶化
+     */
+    private double latencyTolerance = 2.0;
+
+    /**
+     * 延迟低于该值时不视为恶化(毫秒), 避免小延迟抖动触发退让
+     */
+    private long slowLatencyFloorMillis = 50;
+
+    /**
+     * 按 key 前几级目录划分限流维度, 0 表示仅按桶
+     */
+    private int prefixDepth = 1;
+
+    /**
+     * 等待并发许可的最长时间(毫秒)
+     */
+    private long maxWaitMillis = 30000;
+
+    /**
+     * 限流器最大个数, 超出后同一桶下的新前缀共用桶级限流器
+     */
+    private int maxLimiters = 1000;
+
+    @Override
+    public String toString() {
+        return JSONUtil.toJsonStr(this);
+    }
+}
@@ -0,0 +1,36 @@
+package com.ukayunnuo.s3.resilience;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+
+/**
+ * 存储调用容错 配置: 将配置绑定到 {@link S3Retry}、{@link S3Limiter}、{@link S3Hedge} 静态门面
+ * <p> 依赖指标配置, 保证限流器指标注册到容器中的注册中心 </p>
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Configuration
+@DependsOn("s3MetricsConfig")
+public class S3ResilienceConfig {
+
+    @Resource
+    private S3RetryProp s3RetryProp;
+
+    @Resource
+    private S3LimiterProp s3LimiterProp;
+
+    @Resource
+    private S3HedgeProp s3HedgeProp;
+
+    @PostConstruct
+    public void init() {
+        S3Retry.configure(s3RetryProp);
+        S3Limiter.configure(s3LimiterProp);
+        S3Hedge.configure(s3HedgeProp);
+    }
+
+}
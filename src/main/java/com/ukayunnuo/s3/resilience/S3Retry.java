@@ -0,0 +1,262 @@
+package com.ukayunnuo.s3.resilience;
+
+import com.ukayunnuo.s3.core.ReplayableInputStream;
+import com.ukayunnuo.s3.core.StorageCall;
+import com.ukayunnuo.s3.core.StorageEndpoint;
+import com.ukayunnuo.s3.core.StorageOperation;
+import com.ukayunnuo.s3.core.StorageProvider;
+import com.ukayunnuo.s3.metrics.S3Metrics;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 存储重试
+ * <p> 静态门面, 由 {@code StorageExecutor} 统一调用; 按 {@link FailureClassifier} 分类决定是否重试,
+ * 退避采用 decorrelated jitter: {@code sleep = min(max, random(base, sleep * 3))} </p>
+ * <p> 非幂等操作只在确定未被服务端执行时重试(限流、建连失败); 带流式请求体的上传只在流可重放时重试 </p>
+ * <p> 重试预算按端点区分, 一个端点故障耗尽预算不影响其他端点 </p>
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Slf4j
+public class S3Retry {
+
+    private static volatile S3RetryProp prop = new S3RetryProp();
+
+    private static final Map<String, TokenBudget> BUDGETS = new ConcurrentHashMap<>();
+
+    /**
+     * 当前线程的调用是否由本类负责重试
+     */
+    private static final ThreadLocal<Boolean> MANAGED = new ThreadLocal<>();
+
+    private S3Retry() {
+    }
+
+    /**
+     * 绑定配置
+     *
+     * @param retryProp 配置
+     */
+    public static synchronized void configure(S3RetryProp retryProp) {
+        prop = Objects.requireNonNull(retryProp);
+        BUDGETS.clear();
+        log.info("s3 retry configured, prop:{}", retryProp);
+    }
+
+    public static boolean isEnabled() {
+        return prop.isEnabled();
+    }
+
+    /**
+     * 是否应关闭 SDK 内置重试
+     *
+     * @return boolean
+     */
+    public static boolean isSdkRetryDisabled() {
+        return prop.isEnabled() && prop.isDisableSdkRetry();
+    }
+
+    /**
+     * 当前线程正在执行的存储调用是否由本类负责重试, SDK 内置重试据此避免叠加
+     *
+     * @return boolean
+     */
+    public static boolean isManaged() {
+        return Boolean.TRUE.equals(MANAGED.get());
+    }
+
+    /**
+     * 端点当前的重试预算余量
+     *
+     * @param endpoint 端点
+     * @return double
+     */
+    public static double availableBudget(StorageEndpoint endpoint) {
+        return budget(endpoint).available();
+    }
+
+    /**
+     * 上传流需要的 mark 长度, 流不可重放时返回 -1
+     *
+     * @param body   请求体
+     * @param length 请求体长度
+     * @return int
+     */
+    public static int replayLimit(InputStream body, long length) {
+        if (body instanceof ReplayableInputStream && body.markSupported()) {
+            return Integer.MAX_VALUE;
+        }
+        if (body == null || !body.markSupported() || length < 0 || length >= prop.getMaxReplayBytes()) {
+            return -1;
+        }
+        return (int) length + 1;
+    }
+
+    /**
+     * 执行(无流式请求体)
+     *
+     * @param provider  平台
+     * @param operation 操作
+     * @param bucket    桶
+     * @param call      调用
+     * @return T
+     * @throws E 调用异常
+     */
+    public static <T, E extends Exception> T execute(StorageProvider provider, StorageOperation operation, String bucket,
+                                                     StorageCall<T, E> call) throws E {
+        return execute(StorageEndpoint.of(provider), operation, bucket, null, -1, call);
+    }
+
+    /**
+     * 执行(无流式请求体)
+     *
+     * @param endpoint  端点
+     * @param operation 操作
+     * @param bucket    桶
+     * @param call      调用
+     * @return T
+     * @throws E 调用异常
+     */
+    public static <T, E extends Exception> T execute(StorageEndpoint endpoint, StorageOperation operation, String bucket,
+                                                     StorageCall<T, E> call) throws E {
+        return execute(endpoint, operation, bucket, null, -1, call);
+    }
+
+    /**
+     * 执行
+     *
+     * @param provider   平台
+     * @param operation  操作
+     * @param bucket     桶
+     * @param body       流式请求体, 无则为空; 重试前会 reset 到调用前的位置
+     * @param bodyLength 请求体长度(未知时传负数)
+     * @param call       调用
+     * @return T
+     * @throws E 调用异常
+     */
+    public static <T, E extends Exception> T execute(StorageProvider provider, StorageOperation operation, String bucket,
+                                                     InputStream body, long bodyLength, StorageCall<T, E> call) throws E {
+        return execute(StorageEndpoint.of(provider), operation, bucket, body, bodyLength, call);
+    }
+
+    /**
+     * 执行
+     *
+     * @param endpoint   端点
+     * @param operation  操作
+     * @param bucket     桶
+     * @param body       流式请求体, 无则为空; 重试前会 reset 到调用前的位置
+     * @param bodyLength 请求体长度(未知时传负数)
+     * @param call       调用
+     * @return T
+     * @throws E 调用异常
+     */
+    public static <T, E extends Exception> T execute(StorageEndpoint endpoint, StorageOperation operation, String bucket,
+                                                     InputStream body, long bodyLength, StorageCall<T, E> call) throws E {
+        S3RetryProp retryProp = prop;
+        if (!retryProp.isEnabled()) {
+            return call.call();
+        }
+        Boolean outer = MANAGED.get();
+        MANAGED.set(Boolean.TRUE);
+        try {
+            return retry(retryProp, endpoint, operation, bucket, body, bodyLength, call);
+        } finally {
+            if (outer == null) {
+                MANAGED.remove();
+            }
+        }
+    }
+
+    private static <T, E extends Exception> T retry(S3RetryProp retryProp, StorageEndpoint endpoint, StorageOperation operation,
+                                                    String bucket, InputStream body, long bodyLength, StorageCall<T, E> call) throws E {
+        if (retryProp.getMaxAttempts() <= 1) {
+            return call.call();
+        }
+        TokenBudget retryBudget = budget(endpoint);
+        retryBudget.deposit();
+        int replayLimit = replayLimit(body, bodyLength);
+        if (replayLimit > 0) {
+            body.mark(replayLimit);
+        }
+        boolean replayable = body == null || replayLimit > 0;
+        long sleep = 0;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return call.call();
+            } catch (Exception e) {
+                FailureKind kind = FailureClassifier.classify(e);
+                if (attempt >= retryProp.getMaxAttempts() || !kind.isRetryable() || !replayable
+                        || (!operation.isIdempotent() && !kind.isNotExecuted())) {
+                    throw e;
+                }
+                if (!retryBudget.tryAcquire()) {
+                    log.warn("s3 retry budget exhausted, endpoint:{}, operation:{}, bucket:{}, kind:{}",
+                            endpoint.getId(), operation.getTag(), bucket, kind);
+                    throw e;
+                }
+                sleep = nextDelay(retryProp, kind, sleep);
+                log.debug("s3 retry, endpoint:{}, operation:{}, bucket:{}, attempt:{}, kind:{}, sleep:{}ms, msg:{}",
+                        endpoint.getId(), operation.getTag(), bucket, attempt, kind, sleep, e.getMessage());
+                if (!pause(sleep) || !rewind(body)) {
+                    throw e;
+                }
+                S3Metrics.retry(endpoint, operation, bucket);
+            }
+        }
+    }
+
+    /**
+     * decorrelated jitter
+     *
+     * @param retryProp 配置
+     * @param kind      失败分类
+     * @param previous  上次延迟, 首次为 0
+     * @return long
+     */
+    static long nextDelay(S3RetryProp retryProp, FailureKind kind, long previous) {
+        long base = kind == FailureKind.THROTTLED ? retryProp.getThrottleBaseDelayMillis() : retryProp.getBaseDelayMillis();
+        long upper = Math.max(base, previous * 3);
+        long delay = upper > base ? ThreadLocalRandom.current().nextLong(base, upper + 1) : base;
+        return Math.min(retryProp.getMaxDelayMillis(), delay);
+    }
+
+    private static boolean pause(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static boolean rewind(InputStream body) {
+        if (body == null) {
+            return true;
+        }
+        try {
+            body.reset();
+            return true;
+        } catch (IOException e) {
+            log.warn("s3 retry rewind body failed, msg:{}", e.getMessage());
+            return false;
+        }
+    }
+
+    private static TokenBudget budget(StorageEndpoint endpoint) {
+        return BUDGETS.computeIfAbsent(endpoint.getId(), k -> newBudget(prop));
+    }
+
+    private static TokenBudget newBudget(S3RetryProp retryProp) {
+        return new TokenBudget(retryProp.getBudgetRatio(), retryProp.getBudgetMinPerSecond(), retryProp.getBudgetCapacity());
+    }
+}
@@ -0,0 +1,74 @@
+package com.ukayunnuo.s3.resilience;
+
+import cn.hutool.json.JSONUtil;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 存储重试 配置
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "s3.retry")
+public class S3RetryProp {
+
+    /**
+     * 是否开启
+     */
+    private boolean enabled = true;
+
+    /**
+     * 最大尝试次数(含首次)
+     */
+    private int maxAttempts = 3;
+
+    /**
+     * 退避基础延迟(毫秒)
+     */
+    private long baseDelayMillis = 50;
+
+    /**
+     * 限流时的退避基础延迟(毫秒)
+     */
+    private long throttleBaseDelayMillis = 200;
+
+    /**
+     * 退避最大延迟(毫秒)
+     */
+    private long maxDelayMillis = 5000;
+
+    /**
+     * 重试预算: 每个请求存入的令牌数, 即重试量占请求量的比例上限
+     */
+    private double budgetRatio = 0.2;
+
+    /**
+     * 重试预算: 每秒保底令牌数, 保证低流量时也能重试
+     */
+    private double budgetMinPerSecond = 10;
+
+    /**
+     * 重试预算: 令牌上限
+     */
+    private int budgetCapacity = 100;
+
+    /**
+     * 上传流可重放(mark/reset)的最大字节数, 超出或不支持 mark 的流不重试
+     */
+    private int maxReplayBytes = 8 * 1024 * 1024;
+
+    /**
+     * 开启时关闭 {@code AmazonS3ClientUtil}、{@code OciS3Utils} 创建的客户端的 SDK 内置重试, 避免重试叠加
+     * <p> TransferManager 内部上传的分段不经 StorageExecutor, 仍保留 SDK 重试 </p>
+     */
+    private boolean disableSdkRetry = true;
+
+    @Override
+    public String toString() {
+        return JSONUtil.toJsonStr(this);
+    }
+}
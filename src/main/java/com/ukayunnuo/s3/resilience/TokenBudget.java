@@ -0,0 +1,99 @@
+package com.ukayunnuo.s3.resilience;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按请求量比例的令牌预算(重试、对冲请求共用的实现)
+ * <p> 每个请求存入 {@code ratio} 个令牌, 另按 {@code minPerSecond} 匀速补充保底令牌, 每次额外请求消耗 1 个令牌;
+ * 后端整体故障时额外请求量被限制在请求量的 {@code ratio} 倍以内, 避免重试风暴或对冲放大负载 </p>
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+public class TokenBudget {
+
+    /**
+     * 令牌精度(1 个令牌 = 1000 个单位)
+     */
+    private static final long UNIT = 1000;
+
+    private final long depositUnits;
+
+    private final long nanosPerUnit;
+
+    private final long capacityUnits;
+
+    private final AtomicLong balance;
+
+    private final AtomicLong lastRefillNanos = new AtomicLong(System.nanoTime());
+
+    /**
+     * @param ratio        每个请求存入的令牌数(额外请求占请求的比例)
+     * @param minPerSecond 每秒保底令牌数
+     * @param capacity     令牌上限
+     */
+    public TokenBudget(double ratio, double minPerSecond, int capacity) {
+        this.depositUnits = (long) (ratio * UNIT);
+        this.nanosPerUnit = minPerSecond <= 0 ? Long.MAX_VALUE : (long) (TimeUnit.SECONDS.toNanos(1) / (minPerSecond * UNIT));
+        this.capacityUnits = Math.max(1, capacity) * UNIT;
+        this.balance = new AtomicLong(capacityUnits);
+    }
+
+    /**
+     * 记录一次请求(存入令牌)
+     */
+    public void deposit() {
+        if (depositUnits > 0) {
+            add(depositUnits);
+        }
+    }
+
+    /**
+     * 尝试为一次额外请求扣减令牌
+     *
+     * @return 是否允许
+     */
+    public boolean tryAcquire() {
+        refill();
+        long current;
+        do {
+            current = balance.get();
+            if (current < UNIT) {
+                return false;
+            }
+        } while (!balance.compareAndSet(current, current - UNIT));
+        return true;
+    }
+
+    /**
+     * 当前可用的令牌数
+     *
+     * @return double
+     */
+    public double available() {
+        refill();
+        return balance.get() / (double) UNIT;
+    }
+
+    private void refill() {
+        if (nanosPerUnit == Long.MAX_VALUE) {
+            return;
+        }
+        long now = System.nanoTime();
+        long last = lastRefillNanos.get();
+        long units = (now - last) / Math.max(1, nanosPerUnit);
+        if (units > 0 && lastRefillNanos.compareAndSet(last, last + units * nanosPerUnit)) {
+            add(units);
+        }
+    }
+
+    private void add(long units) {
+        long current;
+        long next;
+        do {
+            current = balance.get();
+            next = Math.min(capacityUnits, current + units);
+        } while (current != next && !balance.compareAndSet(current, next));
+    }
+}
@@ -0,0 +1,56 @@
+package com.ukayunnuo.s3.routing;
+
+import com.ukayunnuo.s3.storage.ObjectStorage;
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * 一个副本端点
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Getter
+public class Replica {
+
+    /**
+     * 副本名, 如区域名
+     */
+    private final String name;
+
+    private final ObjectStorage storage;
+
+    /**
+     * 主副本桶名 -> 该副本桶名, 未配置的桶同名
+     */
+    private final Map<String, String> buckets;
+
+    private final ReplicaStats stats = new ReplicaStats();
+
+    public Replica(String name, ObjectStorage storage, Map<String, String> buckets) {
+        this.name = name;
+        this.storage = storage;
+        this.buckets = buckets == null ? Collections.emptyMap() : buckets;
+    }
+
+    public Replica(String name, ObjectStorage storage) {
+        this(name, storage, null);
+    }
+
+    /**
+     * 该副本上的桶名
+     *
+     * @param bucket 主副本桶名
+     * @return 桶名
+     */
+    public String bucket(String bucket) {
+        return buckets.getOrDefault(bucket, bucket);
+    }
+
+    @Override
+    public String toString() {
+        return name + stats;
+    }
+}
@@ -0,0 +1,58 @@
+package com.ukayunnuo.s3.routing;
+
+import cn.hutool.json.JSONUtil;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 多副本读路由 配置
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "s3.routing")
+public class ReplicaRoutingProp {
+
+    /**
+     * 延迟与错误率 EWMA 的平滑系数, 越大越看重最近的请求
+     */
+    private double ewmaAlpha = 0.2;
+
+    /**
+     * 错误率惩罚: 评分 = EWMA 延迟 * (1 + 错误率 * 该系数)
+     */
+    private double errorPenalty = 10;
+
+    /**
+     * 探索比例: 该比例的读请求发往随机的其他健康副本, 保持各副本的延迟估计是最新的
+     */
+    private double exploreRatio = 0.05;
+
+    /**
+     * 连续失败多少次后暂停使用该副本
+     */
+    private int failureThreshold = 3;
+
+    /**
+     * 暂停时间(毫秒), 之后放行请求试探恢复
+     */
+    private long cooldownMillis = 30000;
+
+    /**
+     * 从副本读到 404 或版本不符(可能是复制延迟)时是否回源主副本
+     */
+    private boolean fallbackToPrimaryOnMiss = true;
+
+    /**
+     * 换副本前的尝试是否快速失败(不重试、不对冲、不等待并发许可), 最后一个候选副本与回源主副本仍完整重试
+     */
+    private boolean failFast = true;
+
+    @Override
+    public String toString() {
+        return JSONUtil.toJsonStr(this);
+    }
+}
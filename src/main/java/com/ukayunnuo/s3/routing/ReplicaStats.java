@@ -0,0 +1,94 @@
+package com.ukayunnuo.s3.routing;
+
+import cn.hutool.core.util.StrUtil;
+
+/**
+ * 副本的延迟与错误率统计(EWMA)
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+public class ReplicaStats {
+
+    private double latencyMillis = -1;
+
+    private double errorRate;
+
+    private int consecutiveFailures;
+
+    private long suspendedUntil;
+
+    private long requests;
+
+    private long failures;
+
+    /**
+     * 延迟 EWMA(毫秒), 尚无样本时为 -1
+     *
+     * @return double
+     */
+    public synchronized double getLatencyMillis() {
+        return latencyMillis;
+    }
+
+    /**
+     * 错误率 EWMA
+     *
+     * @return double
+     */
+    public synchronized double getErrorRate() {
+        return errorRate;
+    }
+
+    public synchronized long getRequests() {
+        return requests;
+    }
+
+    public synchronized long getFailures() {
+        return failures;
+    }
+
+    /**
+     * 当前是否因连续失败而暂停
+     *
+     * @return boolean
+     */
+    public synchronized boolean isSuspended() {
+        return System.currentTimeMillis() < suspendedUntil;
+    }
+
+    synchronized void success(long elapsedNanos, ReplicaRoutingProp prop) {
+        double alpha = prop.getEwmaAlpha();
+        double millis = elapsedNanos / 1e6;
+        latencyMillis = latencyMillis < 0 ? millis : latencyMillis + alpha * (millis - latencyMillis);
+        errorRate -= alpha * errorRate;
+        consecutiveFailures = 0;
+        suspendedUntil = 0;
+        requests++;
+    }
+
+    synchronized void failure(long elapsedNanos, ReplicaRoutingProp prop) {
+        // 失败的耗时也计入延迟, 超时的副本评分随之变差
+        double millis = elapsedNanos / 1e6;
+        latencyMillis = latencyMillis < 0 ? millis : latencyMillis + prop.getEwmaAlpha() * (Math.max(millis, latencyMillis) - latencyMillis);
+        errorRate += prop.getEwmaAlpha() * (1 - errorRate);
+        requests++;
+        failures++;
+        if (++consecutiveFailures >= prop.getFailureThreshold()) {
+            suspendedUntil = System.currentTimeMillis() + prop.getCooldownMillis();
+        }
+    }
+
+    /**
+     * 路由评分, 越小越优先; 尚无样本的副本为 0, 会被优先试用
+     */
+    synchronized double score(double errorPenalty) {
+        return latencyMillis < 0 ? 0 : latencyMillis * (1 + errorRate * errorPenalty);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return StrUtil.format("[latency:{}ms, errorRate:{}, requests:{}, failures:{}, suspended:{}]",
+                String.format("%.1f", latencyMillis), String.format("%.3f", errorRate), requests, failures, System.currentTimeMillis() < suspendedUntil);
+    }
+}
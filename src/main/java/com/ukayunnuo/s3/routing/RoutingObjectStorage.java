@@ -0,0 +1,250 @@
+package com.ukayunnuo.s3.routing;
+
+import com.ukayunnuo.s3.core.StorageExecutor;
+import com.ukayunnuo.s3.core.StorageProvider;
+import com.ukayunnuo.s3.resilience.FailureClassifier;
+import com.ukayunnuo.s3.storage.MultipartUploadInfo;
+import com.ukayunnuo.s3.storage.ObjectChangedException;
+import com.ukayunnuo.s3.storage.ObjectInfo;
+import com.ukayunnuo.s3.storage.ObjectStorage;
+import com.ukayunnuo.s3.storage.PartInfo;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * 多副本读路由
+ * <p> 持有主副本与若干只读副本(如跨区域复制的桶), 按每个副本的延迟与错误率 EWMA 把读请求发往评分最优的健康副本,
+ * 失败时依次换下一个副本; 连续失败的副本暂停 {@code cooldown-millis}. 少量读请求({@code explore-ratio})发往随机的其他副本,
+ * 保持延迟估计是最新的. 写入与分段上传只走主副本 </p>
+ * <p> 从副本读到 404 或版本不符时可能是复制延迟, 回源主副本; 列举已回调过对象后失败不再切换副本, 避免重复回调 </p>
+ * <p> {@code fail-fast} 开启时, 还有后续副本可换的尝试在 {@link StorageExecutor#failFast} 下执行, 失败立即换副本;
+ * 重试、对冲、并发限制按副本存储的端点区分, 各副本应使用不同的 {@link com.ukayunnuo.s3.core.StorageEndpoint} </p>
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Slf4j
+public class RoutingObjectStorage implements ObjectStorage {
+
+    private final Replica primary;
+
+    private final List<Replica> replicas;
+
+    private final ReplicaRoutingProp prop;
+
+    /**
+     * @param prop     配置
+     * @param primary  主副本, 写入只走主副本
+     * @param replicas 只读副本
+     */
+    public RoutingObjectStorage(ReplicaRoutingProp prop, Replica primary, Replica... replicas) {
+        this.prop = prop;
+        this.primary = primary;
+        List<Replica> all = new ArrayList<>();
+        all.add(primary);
+        all.addAll(Arrays.asList(replicas));
+        this.replicas = Collections.unmodifiableList(all);
+        Map<String, String> endpoints = new HashMap<>();
+        for (Replica replica : all) {
+            String other = endpoints.putIfAbsent(replica.getStorage().getEndpoint().getId(), replica.getName());
+            if (other != null) {
+                log.warn("replicas share endpoint, retry/hedge/limiter state is shared, replicas:{}/{}, endpoint:{}",
+                        other, replica.getName(), replica.getStorage().getEndpoint());
+            }
+        }
+    }
+
+    /**
+     * 全部副本(含主副本)及其统计
+     *
+     * @return 副本列表
+     */
+    public List<Replica> getReplicas() {
+        return replicas;
+    }
+
+    @Override
+    public StorageProvider getProvider() {
+        return primary.getStorage().getProvider();
+    }
+
+    @Override
+    public ObjectInfo headObject(String bucket, String key) {
+        return read((replica, storage) -> storage.headObject(replica.bucket(bucket), key));
+    }
+
+    @Override
+    public InputStream getObject(String bucket, String key, long offset, long length, String etag) {
+        return read((replica, storage) -> storage.getObject(replica.bucket(bucket), key, offset, length, etag));
+    }
+
+    @Override
+    public void listObjects(String bucket, String prefix, Consumer<ObjectInfo> consumer) {
+        boolean[] emitted = {false};
+        read((replica, storage) -> {
+            if (emitted[0]) {
+                return null;
+            }
+            storage.listObjects(replica.bucket(bucket), prefix, info -> {
+                emitted[0] = true;
+                consumer.accept(info);
+            });
+            return null;
+        }, () -> emitted[0]);
+    }
+
+    @Override
+    public boolean existsPrefix(String bucket, String prefix) {
+        return read((replica, storage) -> storage.existsPrefix(replica.bucket(bucket), prefix));
+    }
+
+    @Override
+    public String putObject(String bucket, String key, File file, String contentType) {
+        return primary.getStorage().putObject(bucket, key, file, contentType);
+    }
+
+    @Override
+    public String putObject(String bucket, String key, byte[] data, String contentType, Map<String, String> metadata) {
+        return primary.getStorage().putObject(bucket, key, data, contentType, metadata);
+    }
+
+    @Override
+    public void deleteObjects(String bucket, List<String> keys) {
+        primary.getStorage().deleteObjects(bucket, keys);
+    }
+
+    @Override
+    public String initiateMultipartUpload(String bucket, String key, String contentType, Map<String, String> metadata) {
+        return primary.getStorage().initiateMultipartUpload(bucket, key, contentType, metadata);
+    }
+
+    @Override
+    public String uploadPart(String bucket, String key, String uploadId, int partNumber, File file, long offset, long size) {
+        return primary.getStorage().uploadPart(bucket, key, uploadId, partNumber, file, offset, size);
+    }
+
+    @Override
+    public String uploadPart(String bucket, String key, String uploadId, int partNumber, byte[] data) {
+        return primary.getStorage().uploadPart(bucket, key, uploadId, partNumber, data);
+    }
+
+    @Override
+    public List<PartInfo> listParts(String bucket, String key, String uploadId) {
+        return primary.getStorage().listParts(bucket, key, uploadId);
+    }
+
+    @Override
+    public String completeMultipartUpload(String bucket, String key, String uploadId, List<PartInfo> parts) {
+        return primary.getStorage().completeMultipartUpload(bucket, key, uploadId, parts);
+    }
+
+    @Override
+    public void abortMultipartUpload(String bucket, String key, String uploadId) {
+        primary.getStorage().abortMultipartUpload(bucket, key, uploadId);
+    }
+
+    @Override
+    public List<MultipartUploadInfo> listMultipartUploads(String bucket, String prefix) {
+        return primary.getStorage().listMultipartUploads(bucket, prefix);
+    }
+
+    /**
+     * 本次读请求的副本顺序: 未暂停的副本按评分排序(按比例把随机一个换到最前), 暂停的副本排在最后作为兜底
+     */
+    List<Replica> order() {
+        List<Replica> healthy = new ArrayList<>(replicas.size());
+        List<Replica> suspended = new ArrayList<>(1);
+        for (Replica replica : replicas) {
+            (replica.getStats().isSuspended() ? suspended : healthy).add(replica);
+        }
+        double penalty = prop.getErrorPenalty();
+        healthy.sort(Comparator.comparingDouble(replica -> replica.getStats().score(penalty)));
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (healthy.size() > 1 && random.nextDouble() < prop.getExploreRatio()) {
+            Collections.swap(healthy, 0, 1 + random.nextInt(healthy.size() - 1));
+        }
+        healthy.addAll(suspended);
+        return healthy;
+    }
+
+    private <T> T read(ReplicaCall<T> call) {
+        return read(call, () -> false);
+    }
+
+    /**
+     * 按顺序尝试副本
+     *
+     * @param call      读调用
+     * @param committed 为 true 时不再切换副本(已有结果交给调用方)
+     */
+    private <T> T read(ReplicaCall<T> call, BooleanSupplier committed) {
+        RuntimeException last = null;
+        List<Replica> order = order();
+        for (int i = 0; i < order.size(); i++) {
+            Replica replica = order.get(i);
+            boolean failFast = prop.isFailFast() && i < order.size() - 1;
+            long start = System.nanoTime();
+            try {
+                T result = failFast ? StorageExecutor.failFast(() -> call.apply(replica, replica.getStorage()))
+                        : call.apply(replica, replica.getStorage());
+                replica.getStats().success(System.nanoTime() - start, prop);
+                return result;
+            } catch (RuntimeException e) {
+                long elapsed = System.nanoTime() - start;
+                if (FailureClassifier.isNotFound(e) || e instanceof ObjectChangedException) {
+                    // 副本正常应答, 不计入失败
+                    replica.getStats().success(elapsed, prop);
+                    if (replica == primary || !prop.isFallbackToPrimaryOnMiss() || committed.getAsBoolean()) {
+                        throw e;
+                    }
+                    log.debug("replica miss, fall back to primary, replica:{}, error:{}", replica.getName(), e.toString());
+                    return primaryRead(call);
+                }
+                replica.getStats().failure(elapsed, prop);
+                if (committed.getAsBoolean()) {
+                    throw e;
+                }
+                log.warn("replica read failed, try next, replica:{}, stats:{}, error:{}", replica.getName(), replica.getStats(), e.toString());
+                last = e;
+            }
+        }
+        throw last;
+    }
+
+    private <T> T primaryRead(ReplicaCall<T> call) {
+        long start = System.nanoTime();
+        try {
+            T result = call.apply(primary, primary.getStorage());
+            primary.getStats().success(System.nanoTime() - start, prop);
+            return result;
+        } catch (RuntimeException e) {
+            if (FailureClassifier.isNotFound(e) || e instanceof ObjectChangedException) {
+                primary.getStats().success(System.nanoTime() - start, prop);
+            } else {
+                primary.getStats().failure(System.nanoTime() - start, prop);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 在一个副本上执行的读调用
+     */
+    @FunctionalInterface
+    private interface ReplicaCall<T> {
+
+        T apply(Replica replica, ObjectStorage storage);
+    }
+}
@@ -0,0 +1,453 @@
+package com.ukayunnuo.s3.spool;
+
+import cn.hutool.core.util.StrUtil;
+import com.ukayunnuo.s3.exception.S3Exception;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * 暂存日志
+ * <p> 由固定大小的内存映射段文件 {@code <seq>.spool} 组成, 只追加写入. 记录格式:
+ * <pre>
+ * length(int) crc(int) body
+ * PUT : type(1) bucket key contentType(modified UTF-8) dataLength(int) data
+ * DONE: type(2) segment(long) offset(int)
+ * </pre>
+ * length 最后写入, 进程崩溃留下的不完整记录由 CRC 识别后截断. 重启时不再向旧段追加, 旧段只读映射用于上传,
+ * 同一 桶/key 只保留最后一条记录, 已有 DONE 的记录不再上传. 段只从最旧一端回收(其中不再有待上传记录),
+ * 保证 DONE 记录晚于其指向的记录被删除 </p>
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Slf4j
+class SpoolLog {
+
+    static final String SUFFIX = ".spool";
+
+    private static final String LOCK_FILE = "spool.lock";
+
+    private static final byte PUT = 1;
+
+    private static final byte DONE = 2;
+
+    private static final int RECORD_HEADER = 8;
+
+    private static final int DONE_BODY = 13;
+
+    /**
+     * 日志段
+     */
+    static class Segment {
+
+        final long seq;
+
+        final File file;
+
+        /**
+         * 只读取绝对位置, 读取方各自复制
+         */
+        private final ByteBuffer base;
+
+        private final MappedByteBuffer mapped;
+
+        /**
+         * 引用该段的待上传记录数
+         */
+        final AtomicInteger live = new AtomicInteger();
+
+        private int position;
+
+        Segment(long seq, File file, MappedByteBuffer mapped, int position) {
+            this.seq = seq;
+            this.file = file;
+            this.mapped = mapped;
+            this.base = mapped.duplicate();
+            this.position = position;
+        }
+    }
+
+    private final File dir;
+
+    private final long segmentSize;
+
+    private final int maxSegments;
+
+    private final boolean forceOnWrite;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition reclaimed = lock.newCondition();
+
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+
+    private Segment active;
+
+    private FileChannel lockChannel;
+
+    private FileLock fileLock;
+
+    SpoolLog(File dir, long segmentSize, long maxDiskBytes, boolean forceOnWrite) {
+        this.dir = dir;
+        this.segmentSize = Math.min(Integer.MAX_VALUE, segmentSize);
+        this.maxSegments = (int) Math.max(2, maxDiskBytes / this.segmentSize);
+        this.forceOnWrite = forceOnWrite;
+    }
+
+    /**
+     * 打开日志目录并恢复未上传的记录
+     *
+     * @return 待上传记录, 按写入顺序
+     */
+    List<SpoolRecord> open() {
+        try {
+            if (!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
+                throw new IOException("create spool dir failed: " + dir);
+            }
+            lockChannel = FileChannel.open(new File(dir, LOCK_FILE).toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            try {
+                fileLock = lockChannel.tryLock();
+            } catch (OverlappingFileLockException e) {
+                fileLock = null;
+            }
+            if (fileLock == null) {
+                lockChannel.close();
+                throw new IOException("spool dir is used by another writer: " + dir);
+            }
+        } catch (IOException e) {
+            throw new S3Exception(StrUtil.format("open spool failed, dir:{}", dir), e);
+        }
+
+        Map<String, SpoolRecord> latest = new LinkedHashMap<>();
+        Set<String> done = new HashSet<>();
+        File[] files = dir.listFiles((d, name) -> name.endsWith(SUFFIX));
+        if (files != null) {
+            for (File file : files) {
+                try {
+                    long seq = Long.parseLong(file.getName().substring(0, file.getName().length() - SUFFIX.length()));
+                    segments.put(seq, new Segment(seq, file, map(file, FileChannel.MapMode.READ_ONLY), -1));
+                } catch (NumberFormatException | IOException e) {
+                    log.warn("skip unreadable spool segment, file:{}, msg:{}", file, e.getMessage());
+                }
+            }
+        }
+        for (Segment segment : segments.values()) {
+            scan(segment, latest, done);
+        }
+        List<SpoolRecord> pending = new ArrayList<>();
+        for (SpoolRecord record : latest.values()) {
+            if (!done.contains(record.segment.seq + ":" + record.offset)) {
+                record.segment.live.incrementAndGet();
+                pending.add(record);
+            }
+        }
+        lock.lock();
+        try {
+            reclaim();
+        } finally {
+            lock.unlock();
+        }
+        if (!pending.isEmpty()) {
+            log.info("spool recovered, dir:{}, segments:{}, pending:{}", dir, segments.size(), pending.size());
+        }
+        return pending;
+    }
+
+    /**
+     * 追加一条待上传内容, 暂存已满时等待回收
+     *
+     * @param bucket      桶
+     * @param key         key
+     * @param contentType 内容类型
+     * @param data        内容
+     * @param waitMillis  最长等待时间
+     * @return 记录
+     */
+    SpoolRecord appendPut(String bucket, String key, String contentType, byte[] data, long waitMillis) {
+        byte[] header;
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + key.length());
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(PUT);
+            out.writeUTF(bucket);
+            out.writeUTF(key);
+            out.writeUTF(contentType == null ? "" : contentType);
+            out.writeInt(data.length);
+            out.flush();
+            header = bytes.toByteArray();
+        } catch (IOException e) {
+            throw new S3Exception(StrUtil.format("encode spool record failed, key:{}", key), e);
+        }
+        int length = RECORD_HEADER + header.length + data.length;
+        if (length > segmentSize) {
+            throw new S3Exception(StrUtil.format("spool record too large, key:{}, size:{}, segmentSize:{}", key, data.length, segmentSize));
+        }
+        lock.lock();
+        try {
+            Segment segment = reserve(length, waitMillis);
+            int offset = segment.position;
+            CRC32 crc = new CRC32();
+            crc.update(header, 0, header.length);
+            crc.update(data, 0, data.length);
+            write(segment, offset, (int) crc.getValue(), header, data);
+            segment.live.incrementAndGet();
+            return new SpoolRecord(segment, offset, bucket, key, contentType, offset + RECORD_HEADER + header.length, data.length);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 读取记录内容
+     *
+     * @param record 记录
+     * @return 内容
+     */
+    byte[] read(SpoolRecord record) {
+        byte[] data = new byte[record.dataLength];
+        ByteBuffer buffer = record.segment.base.duplicate();
+        buffer.position(record.dataOffset);
+        buffer.get(data);
+        return data;
+    }
+
+    /**
+     * 记录已上传: 释放对段的引用, 段仍存在时追加 DONE 记录(不等待空间, 写不下时重启后会重复上传一次)
+     *
+     * @param record 记录
+     */
+    void markDone(SpoolRecord record) {
+        lock.lock();
+        try {
+            release(record);
+            if (!segments.containsKey(record.segment.seq)) {
+                return;
+            }
+            Segment segment = active;
+            if (segment == null || segment.position + RECORD_HEADER + DONE_BODY > segmentSize) {
+                if (segments.size() >= maxSegments) {
+                    return;
+                }
+                segment = roll();
+            }
+            byte[] body = ByteBuffer.allocate(DONE_BODY).put(DONE).putLong(record.segment.seq).putInt(record.offset).array();
+            CRC32 crc = new CRC32();
+            crc.update(body, 0, body.length);
+            write(segment, segment.position, (int) crc.getValue(), body, new byte[0]);
+        } catch (IOException e) {
+            log.warn("append spool done record failed, key:{}, msg:{}", record.key, e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 记录被同一 key 的新内容取代, 释放对段的引用
+     *
+     * @param record 记录
+     */
+    void supersede(SpoolRecord record) {
+        lock.lock();
+        try {
+            release(record);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 占用的磁盘空间(字节)
+     *
+     * @return long
+     */
+    long diskBytes() {
+        lock.lock();
+        try {
+            return segments.size() * segmentSize;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 刷盘并释放目录锁, 段文件保留到下次打开
+     */
+    void close() {
+        lock.lock();
+        try {
+            if (active != null) {
+                active.mapped.force();
+                active = null;
+            }
+            if (fileLock != null) {
+                fileLock.release();
+                lockChannel.close();
+                fileLock = null;
+            }
+        } catch (IOException e) {
+            log.warn("close spool failed, dir:{}, msg:{}", dir, e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(SpoolRecord record) {
+        if (record.segment.live.decrementAndGet() <= 0) {
+            reclaim();
+        }
+    }
+
+    /**
+     * 从最旧一端删除不再被引用的段
+     */
+    private void reclaim() {
+        boolean removed = false;
+        while (!segments.isEmpty()) {
+            Segment oldest = segments.firstEntry().getValue();
+            if (oldest == active || oldest.live.get() > 0) {
+                break;
+            }
+            segments.pollFirstEntry();
+            // 映射在 GC 时释放, 文件可以先删除
+            if (!oldest.file.delete() && oldest.file.exists()) {
+                log.warn("delete spool segment failed, file:{}", oldest.file);
+            }
+            removed = true;
+        }
+        if (removed) {
+            reclaimed.signalAll();
+        }
+    }
+
+    private Segment reserve(int length, long waitMillis) {
+        if (active != null && active.position + length <= segmentSize) {
+            return active;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitMillis);
+        try {
+            while (segments.size() >= maxSegments) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    throw new S3Exception(StrUtil.format("spool is full, dir:{}, segments:{}", dir, segments.size()));
+                }
+                reclaimed.awaitNanos(remaining);
+            }
+            // 等待期间可能已有其他写入方切换了新段
+            if (active != null && active.position + length <= segmentSize) {
+                return active;
+            }
+            return roll();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new S3Exception("interrupted while waiting for spool space", e);
+        } catch (IOException e) {
+            throw new S3Exception(StrUtil.format("create spool segment failed, dir:{}", dir), e);
+        }
+    }
+
+    private Segment roll() throws IOException {
+        Segment previous = active;
+        long seq = segments.isEmpty() ? 1 : segments.lastKey() + 1;
+        File file = new File(dir, String.format("%020d%s", seq, SUFFIX));
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(segmentSize);
+        }
+        active = new Segment(seq, file, map(file, FileChannel.MapMode.READ_WRITE), 0);
+        segments.put(seq, active);
+        if (previous != null) {
+            previous.mapped.force();
+            if (previous.live.get() <= 0) {
+                reclaim();
+            }
+        }
+        return active;
+    }
+
+    private void write(Segment segment, int offset, int crc, byte[] header, byte[] data) {
+        // 新段文件由 setLength 填零, 先写内容与校验, 最后写长度
+        ByteBuffer buffer = segment.mapped.duplicate();
+        buffer.position(offset + RECORD_HEADER);
+        buffer.put(header);
+        buffer.put(data);
+        buffer.putInt(offset + 4, crc);
+        buffer.putInt(offset, header.length + data.length);
+        segment.position = offset + RECORD_HEADER + header.length + data.length;
+        if (forceOnWrite) {
+            segment.mapped.force();
+        }
+    }
+
+    private void scan(Segment segment, Map<String, SpoolRecord> latest, Set<String> done) {
+        ByteBuffer buffer = segment.base.duplicate();
+        int position = 0;
+        while (position + RECORD_HEADER <= buffer.capacity()) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || position + RECORD_HEADER + length > buffer.capacity()) {
+                break;
+            }
+            byte[] body = new byte[length];
+            ByteBuffer view = buffer.duplicate();
+            view.position(position + RECORD_HEADER);
+            view.get(body);
+            CRC32 crc = new CRC32();
+            crc.update(body, 0, length);
+            if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+                log.warn("truncate broken spool record, file:{}, offset:{}", segment.file, position);
+                break;
+            }
+            try {
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+                byte type = in.readByte();
+                if (type == PUT) {
+                    String bucket = in.readUTF();
+                    String key = in.readUTF();
+                    String contentType = StrUtil.emptyToNull(in.readUTF());
+                    int dataLength = in.readInt();
+                    int dataOffset = position + RECORD_HEADER + length - dataLength;
+                    SpoolRecord record = new SpoolRecord(segment, position, bucket, key, contentType, dataOffset, dataLength);
+                    latest.remove(record.id());
+                    latest.put(record.id(), record);
+                } else if (type == DONE) {
+                    done.add(in.readLong() + ":" + in.readInt());
+                }
+            } catch (IOException e) {
+                log.warn("skip unreadable spool record, file:{}, offset:{}", segment.file, position);
+            }
+            position += RECORD_HEADER + length;
+        }
+    }
+
+    private static MappedByteBuffer map(File file, FileChannel.MapMode mode) throws IOException {
+        StandardOpenOption[] options = mode == FileChannel.MapMode.READ_ONLY
+                ? new StandardOpenOption[]{StandardOpenOption.READ}
+                : new StandardOpenOption[]{StandardOpenOption.READ, StandardOpenOption.WRITE};
+        try (FileChannel channel = FileChannel.open(file.toPath(), options)) {
+            return channel.map(mode, 0, channel.size());
+        }
+    }
+}
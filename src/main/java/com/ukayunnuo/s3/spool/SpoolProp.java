@@ -0,0 +1,71 @@
+package com.ukayunnuo.s3.spool;
+
+import cn.hutool.json.JSONUtil;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+
+/**
+ * 异步写入(write-behind) 配置
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "s3.spool")
+public class SpoolProp {
+
+    /**
+     * 暂存目录, 同一时间只能被一个进程使用
+     */
+    private String dir = System.getProperty("java.io.tmpdir") + File.separator + "s3-util" + File.separator + "spool";
+
+    /**
+     * 日志段文件大小(字节), 单条内容不能超过该大小
+     */
+    private long segmentSize = 64L * 1024 * 1024;
+
+    /**
+     * 暂存占用的最大磁盘空间(字节), 写满后写入方阻塞
+     */
+    private long maxDiskBytes = 1024L * 1024 * 1024;
+
+    /**
+     * 暂存写满时写入方最长等待时间(毫秒), 超时抛出异常
+     */
+    private long offerTimeoutMillis = 5000;
+
+    /**
+     * 上传线程数
+     */
+    private int workers = 4;
+
+    /**
+     * 上传失败后重新排队的延迟(毫秒), 按次数指数增长; 可重试的失败不丢弃写入, 持续失败时暂存写满使写入方阻塞;
+     * 4xx 客户端错误(AccessDenied、NoSuchBucket 等)不重试, 记录日志后丢弃
+     */
+    private long retryDelayMillis = 1000;
+
+    /**
+     * 重新排队延迟的上限(毫秒)
+     */
+    private long maxRetryDelayMillis = 60000;
+
+    /**
+     * 是否每次写入都刷盘; 关闭时进程崩溃不丢数据, 操作系统崩溃可能丢失最近写入
+     */
+    private boolean forceOnWrite = false;
+
+    /**
+     * 关闭时等待执行中上传完成的最长时间(毫秒), 未上传的内容保留在暂存中, 下次启动继续
+     */
+    private long closeTimeoutMillis = 10000;
+
+    @Override
+    public String toString() {
+        return JSONUtil.toJsonStr(this);
+    }
+}
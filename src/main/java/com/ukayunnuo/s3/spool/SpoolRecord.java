@@ -0,0 +1,48 @@
+package com.ukayunnuo.s3.spool;
+
+/**
+ * 暂存日志中的一条待上传内容
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+class SpoolRecord {
+
+    final SpoolLog.Segment segment;
+
+    final int offset;
+
+    final String bucket;
+
+    final String key;
+
+    final String contentType;
+
+    final int dataOffset;
+
+    final int dataLength;
+
+    SpoolRecord(SpoolLog.Segment segment, int offset, String bucket, String key, String contentType, int dataOffset, int dataLength) {
+        this.segment = segment;
+        this.offset = offset;
+        this.bucket = bucket;
+        this.key = key;
+        this.contentType = contentType;
+        this.dataOffset = dataOffset;
+        this.dataLength = dataLength;
+    }
+
+    /**
+     * 合并写入的标识: 同一 桶/key 只上传最后一次写入的内容
+     */
+    String id() {
+        return bucket + "\n" + key;
+    }
+
+    /**
+     * 是否晚于另一条记录写入日志(重启时按日志顺序只保留同一 桶/key 的最后一条)
+     */
+    boolean isNewerThan(SpoolRecord other) {
+        return segment.seq != other.segment.seq ? segment.seq > other.segment.seq : offset > other.offset;
+    }
+}
@@ -0,0 +1,403 @@
+package com.ukayunnuo.s3.spool;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.StrUtil;
+import com.ukayunnuo.s3.core.StorageThreads;
+import com.ukayunnuo.s3.exception.S3Exception;
+import com.ukayunnuo.s3.resilience.FailureClassifier;
+import com.ukayunnuo.s3.resilience.FailureKind;
+import com.ukayunnuo.s3.storage.ObjectStorage;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 异步写入(write-behind)
+ * <p> 内容追加到本地内存映射暂存日志后立即返回, 由后台线程上传. 同一 桶/key 尚未上传时的重复写入合并为一次上传(只传最后一次);
+ * 上传中再次写入则在本次完成后再上传新内容. 进程重启后未上传的内容继续上传(至少一次);
+ * 上传失败时指数退避持续重试, 不丢弃已写入暂存的内容; 暂存达到 {@code s3.spool.max-disk-bytes} 时写入方阻塞,
+ * 超过 {@code offer-timeout-millis} 抛出异常 </p>
+ * <p> 重试也不会成功的失败(AccessDenied、NoSuchBucket 等 4xx)记录日志后丢弃, 计入 {@link #getDeadLetterCount()},
+ * 避免一条无法上传的内容占住其后所有日志段, 使暂存写满 </p>
+ * <p> 同一 key 的并发写入以暂存日志中的顺序为准, 内存中的待上传内容与重启后恢复的内容一致 </p>
+ *
+ * <pre>
+ * &#64;Bean(destroyMethod = "close")
+ * public WriteBehindUploader writeBehindUploader(AmazonS3 amazonS3, SpoolProp spoolProp) {
+ *     return new WriteBehindUploader(new AwsObjectStorage(amazonS3), spoolProp);
+ * }
+ * </pre>
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Slf4j
+public class WriteBehindUploader implements Closeable {
+
+    private static final long POLL_MILLIS = 200;
+
+    private static final AtomicInteger THREAD_SEQ = new AtomicInteger();
+
+    /**
+     * 同一 桶/key 的上传状态
+     */
+    private static class Slot {
+
+        SpoolRecord current;
+
+        /**
+         * 上传中收到的新内容
+         */
+        SpoolRecord next;
+
+        boolean inFlight;
+
+        int attempts;
+
+        Slot(SpoolRecord current) {
+            this.current = current;
+        }
+    }
+
+    private final ObjectStorage storage;
+
+    private final SpoolProp prop;
+
+    private final SpoolLog spool;
+
+    private final Map<String, Slot> slots = new HashMap<>();
+
+    private final BlockingQueue<String> ready = new LinkedBlockingQueue<>();
+
+    private final ExecutorService workers;
+
+    private final ScheduledExecutorService retryScheduler;
+
+    private final AtomicLong uploaded = new AtomicLong();
+
+    private final AtomicLong coalesced = new AtomicLong();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    private final AtomicLong deadLetters = new AtomicLong();
+
+    private volatile boolean running = true;
+
+    public WriteBehindUploader(ObjectStorage storage, SpoolProp prop) {
+        this.storage = storage;
+        this.prop = prop;
+        this.spool = new SpoolLog(new File(prop.getDir()), prop.getSegmentSize(), prop.getMaxDiskBytes(), prop.isForceOnWrite());
+        for (SpoolRecord record : spool.open()) {
+            slots.put(record.id(), new Slot(record));
+            ready.add(record.id());
+        }
+        int threads = Math.max(1, prop.getWorkers());
+        this.workers = StorageThreads.newExecutor("s3-write-behind", threads);
+        this.retryScheduler = Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "s3-write-behind-retry-"));
+        for (int i = 0; i < threads; i++) {
+            workers.execute(this::drain);
+        }
+    }
+
+    public WriteBehindUploader(ObjectStorage storage) {
+        this(storage, new SpoolProp());
+    }
+
+    /**
+     * 写入暂存后立即返回
+     *
+     * @param bucket      桶
+     * @param key         key
+     * @param data        内容
+     * @param contentType 内容类型, 可为空
+     */
+    public void put(String bucket, String key, byte[] data, String contentType) {
+        if (!running) {
+            throw new S3Exception("write-behind uploader closed");
+        }
+        // 追加日志可能等待暂存空间, 不能持有 slots 锁; 并发写入同一 key 时按日志位置决定保留哪条
+        SpoolRecord record = spool.appendPut(bucket, key, contentType, data, prop.getOfferTimeoutMillis());
+        SpoolRecord superseded;
+        synchronized (slots) {
+            Slot slot = slots.get(record.id());
+            if (slot == null) {
+                slots.put(record.id(), new Slot(record));
+                ready.add(record.id());
+                superseded = null;
+            } else if (!record.isNewerThan(slot.current)) {
+                superseded = record;
+            } else if (!slot.inFlight) {
+                superseded = slot.current;
+                slot.current = record;
+                slot.attempts = 0;
+            } else if (slot.next == null || record.isNewerThan(slot.next)) {
+                superseded = slot.next;
+                slot.next = record;
+            } else {
+                superseded = record;
+            }
+        }
+        if (superseded != null) {
+            coalesced.incrementAndGet();
+            spool.supersede(superseded);
+        }
+    }
+
+    /**
+     * 读取文件写入暂存后立即返回
+     *
+     * @param bucket 桶
+     * @param key    key
+     * @param file   文件
+     */
+    public void put(String bucket, String key, File file) {
+        try {
+            put(bucket, key, Files.readAllBytes(file.toPath()), FileUtil.getMimeType(file.getName()));
+        } catch (IOException e) {
+            throw new S3Exception(StrUtil.format("read file failed, file:{}", file), e);
+        }
+    }
+
+    /**
+     * 等待当前暂存的内容全部上传
+     *
+     * @param timeoutMillis 最长等待时间
+     * @return 是否已全部上传
+     */
+    public boolean flush(long timeoutMillis) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized (slots) {
+            while (!slots.isEmpty()) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                try {
+                    slots.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * 待上传的 key 数
+     *
+     * @return int
+     */
+    public int getPendingCount() {
+        synchronized (slots) {
+            return slots.size();
+        }
+    }
+
+    public long getUploadedCount() {
+        return uploaded.get();
+    }
+
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    /**
+     * 失败的上传次数(失败后会重试)
+     *
+     * @return long
+     */
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    /**
+     * 因不可重试的失败而丢弃的内容数
+     *
+     * @return long
+     */
+    public long getDeadLetterCount() {
+        return deadLetters.get();
+    }
+
+    /**
+     * 上次上传失败、等待重试的 key 数
+     *
+     * @return int
+     */
+    public int getRetryingCount() {
+        synchronized (slots) {
+            int retrying = 0;
+            for (Slot slot : slots.values()) {
+                if (slot.attempts > 0) {
+                    retrying++;
+                }
+            }
+            return retrying;
+        }
+    }
+
+    /**
+     * 暂存占用的磁盘空间(字节)
+     *
+     * @return long
+     */
+    public long getSpoolBytes() {
+        return spool.diskBytes();
+    }
+
+    /**
+     * 停止上传线程并关闭暂存, 未上传的内容保留到下次启动
+     */
+    @Override
+    public void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        retryScheduler.shutdownNow();
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(prop.getCloseTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+                log.warn("write-behind uploads still running on close, pending:{}", getPendingCount());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        spool.close();
+        log.info("write-behind uploader closed, uploaded:{}, coalesced:{}, failed:{}, deadLetters:{}, pending:{}",
+                uploaded.get(), coalesced.get(), failed.get(), deadLetters.get(), getPendingCount());
+    }
+
+    private void drain() {
+        while (running) {
+            String id;
+            try {
+                id = ready.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (id != null) {
+                upload(id);
+            }
+        }
+    }
+
+    private void upload(String id) {
+        SpoolRecord record;
+        synchronized (slots) {
+            Slot slot = slots.get(id);
+            if (slot == null || slot.inFlight) {
+                return;
+            }
+            slot.inFlight = true;
+            record = slot.current;
+        }
+        Exception error = null;
+        try {
+            storage.putObject(record.bucket, record.key, spool.read(record), record.contentType);
+        } catch (Exception e) {
+            error = e;
+        }
+        if (error == null) {
+            uploaded.incrementAndGet();
+            spool.markDone(record);
+            finish(id);
+            return;
+        }
+
+        failed.incrementAndGet();
+        if (isPermanent(error)) {
+            deadLetters.incrementAndGet();
+            log.error("write-behind upload failed permanently, dropped, bucket:{}, key:{}, size:{}, status:{}, code:{}, msg:{}",
+                    record.bucket, record.key, record.dataLength, FailureClassifier.status(error), FailureClassifier.errorCode(error),
+                    error.getMessage());
+            spool.markDone(record);
+            finish(id);
+            return;
+        }
+        SpoolRecord dropped = null;
+        int attempts;
+        synchronized (slots) {
+            Slot slot = slots.get(id);
+            slot.inFlight = false;
+            if (slot.next != null) {
+                // 已有新内容, 失败的旧内容不再需要
+                dropped = slot.current;
+                slot.current = slot.next;
+                slot.next = null;
+                slot.attempts = 0;
+            } else {
+                slot.attempts++;
+            }
+            attempts = slot.attempts;
+        }
+        if (dropped != null) {
+            spool.supersede(dropped);
+            ready.add(id);
+            return;
+        }
+        long delay = retryDelay(attempts);
+        log.warn("write-behind upload failed, retry in {}ms, bucket:{}, key:{}, attempt:{}, msg:{}",
+                delay, record.bucket, record.key, attempts, error.getMessage());
+        if (running) {
+            retryScheduler.schedule(() -> ready.add(id), delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 平台返回的 4xx 客户端错误(408、429 等超时/限流除外)重试也不会成功
+     */
+    private static boolean isPermanent(Exception error) {
+        int status = FailureClassifier.status(error);
+        return status >= 400 && status < 500 && FailureClassifier.classify(error) == FailureKind.CLIENT_ERROR;
+    }
+
+    /**
+     * 第 attempts 次失败后的重试延迟: 指数增长, 不超过上限
+     */
+    private long retryDelay(int attempts) {
+        long base = Math.max(1, prop.getRetryDelayMillis());
+        long max = Math.max(base, prop.getMaxRetryDelayMillis());
+        int shift = Math.min(attempts - 1, 20);
+        return Math.min(max, base << shift);
+    }
+
+    /**
+     * 当前内容已处理完: 有新内容则重新排队, 否则移除
+     */
+    private void finish(String id) {
+        synchronized (slots) {
+            Slot slot = slots.get(id);
+            slot.inFlight = false;
+            if (slot.next != null) {
+                slot.current = slot.next;
+                slot.next = null;
+                slot.attempts = 0;
+                ready.add(id);
+            } else {
+                slots.remove(id);
+                slots.notifyAll();
+            }
+        }
+    }
+
+    private static Thread daemon(Runnable runnable, String prefix) {
+        Thread thread = new Thread(runnable, prefix + THREAD_SEQ.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    }
+}
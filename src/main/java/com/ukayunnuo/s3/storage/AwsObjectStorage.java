@@ -0,0 +1,352 @@
+package com.ukayunnuo.s3.storage;
+
+import cn.hutool.core.util.HexUtil;
+import cn.hutool.core.util.StrUtil;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.ListMultipartUploadsRequest;
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.amazonaws.services.s3.model.ListObjectsV2Result;
+import com.amazonaws.services.s3.model.ListPartsRequest;
+import com.amazonaws.services.s3.model.MultipartUpload;
+import com.amazonaws.services.s3.model.MultipartUploadListing;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PartETag;
+import com.amazonaws.services.s3.model.PartListing;
+import com.amazonaws.services.s3.model.PartSummary;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+import com.ukayunnuo.s3.core.StorageEndpoint;
+import com.ukayunnuo.s3.core.StorageExecutor;
+import com.ukayunnuo.s3.core.StorageOperation;
+import com.ukayunnuo.s3.core.StorageProvider;
+import com.ukayunnuo.s3.resilience.FailureClassifier;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Amazon S3 对象存储实现(也可用于 minio / Oracle 的 S3 兼容端点)
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Slf4j
+public class AwsObjectStorage implements ObjectStorage {
+
+    /**
+     * 每页列举数量
+     */
+    private static final int LIST_PAGE_SIZE = 1000;
+
+    /**
+     * 单次批量删除的最大数量
+     */
+    private static final int DELETE_BATCH_SIZE = 1000;
+
+    private static final Pattern MD5_HEX = Pattern.compile("[0-9a-fA-F]{32}");
+
+    private static final String NO_SUCH_UPLOAD = "NoSuchUpload";
+
+    /**
+     * 客户提供密钥的服务端加密
+     */
+    public static final String SSE_C = "SSE-C";
+
+    private static final String SSE_S3 = "AES256";
+
+    private final AmazonS3 amazonS3;
+
+    private final StorageEndpoint endpoint;
+
+    public AwsObjectStorage(AmazonS3 amazonS3) {
+        this(amazonS3, StorageEndpoint.of(StorageProvider.AWS));
+    }
+
+    /**
+     * @param amazonS3 客户端
+     * @param provider 客户端实际连接的平台, 如以 S3 协议访问 minio 时为 {@link StorageProvider#MINIO}
+     */
+    public AwsObjectStorage(AmazonS3 amazonS3, StorageProvider provider) {
+        this(amazonS3, StorageEndpoint.of(provider));
+    }
+
+    /**
+     * @param amazonS3 客户端
+     * @param endpoint 端点, 同一平台的多个端点(如局域网 minio 与公网 AWS)按它区分端点许可、重试、对冲、并发限制与指标
+     */
+    public AwsObjectStorage(AmazonS3 amazonS3, StorageEndpoint endpoint) {
+        this.amazonS3 = amazonS3;
+        this.endpoint = endpoint;
+    }
+
+    @Override
+    public StorageProvider getProvider() {
+        return endpoint.getProvider();
+    }
+
+    @Override
+    public StorageEndpoint getEndpoint() {
+        return endpoint;
+    }
+
+    @Override
+    public ObjectInfo headObject(String bucket, String key) {
+        ObjectMetadata metadata = StorageExecutor.execute(endpoint, StorageOperation.HEAD_OBJECT, bucket, key,
+                () -> amazonS3.getObjectMetadata(bucket, key));
+        ObjectInfo info = new ObjectInfo(key, metadata.getContentLength(), metadata.getETag(), metadata.getLastModified(), metadata.getContentType());
+        info.setMetadata(metadata.getUserMetadata());
+        info.setServerSideEncryption(StrUtil.isNotBlank(metadata.getSSECustomerAlgorithm()) ? SSE_C : metadata.getSSEAlgorithm());
+        // SSE-KMS / SSE-C 加密对象的 ETag 不是内容 MD5
+        String sse = info.getServerSideEncryption();
+        info.setMd5(StrUtil.isBlank(sse) || SSE_S3.equalsIgnoreCase(sse) ? md5FromEtag(metadata.getETag()) : null);
+        return info;
+    }
+
+    @Override
+    public InputStream getObject(String bucket, String key, long offset, long length, String etag) {
+        GetObjectRequest request = new GetObjectRequest(bucket, key);
+        if (length >= 0) {
+            request.withRange(offset, offset + length - 1);
+        } else if (offset > 0) {
+            request.withRange(offset);
+        }
+        if (StrUtil.isNotBlank(etag)) {
+            request.withMatchingETagConstraint(etag);
+        }
+        return StorageExecutor.executeDownload(endpoint, StorageOperation.GET_OBJECT, bucket, key, () -> {
+            S3Object object = amazonS3.getObject(request);
+            // 不满足 ETag 约束时 SDK 返回 null
+            if (object == null) {
+                throw new ObjectChangedException(StrUtil.format("object changed, bucket:{}, key:{}, etag:{}", bucket, key, etag));
+            }
+            return object.getObjectContent();
+        });
+    }
+
+    @Override
+    public void listObjects(String bucket, String prefix, Consumer<ObjectInfo> consumer) {
+        ListObjectsV2Request request = new ListObjectsV2Request()
+                .withBucketName(bucket)
+                .withPrefix(prefix)
+                .withMaxKeys(LIST_PAGE_SIZE);
+        ListObjectsV2Result result;
+        do {
+            result = StorageExecutor.execute(endpoint, StorageOperation.LIST_OBJECTS, bucket, prefix,
+                    () -> amazonS3.listObjectsV2(request));
+            for (S3ObjectSummary summary : result.getObjectSummaries()) {
+                // 列举结果不含加密方式, 无法确认 ETag 是否为内容 MD5, md5 留空, 需要时以 headObject 确认
+                consumer.accept(new ObjectInfo(summary.getKey(), summary.getSize(), summary.getETag(), summary.getLastModified(), null));
+            }
+            request.setContinuationToken(result.getNextContinuationToken());
+        } while (result.isTruncated());
+    }
+
+    @Override
+    public boolean existsPrefix(String bucket, String prefix) {
+        ListObjectsV2Request request = new ListObjectsV2Request()
+                .withBucketName(bucket)
+                .withPrefix(prefix)
+                .withMaxKeys(1);
+        return !StorageExecutor.execute(endpoint, StorageOperation.LIST_OBJECTS, bucket, prefix,
+                () -> amazonS3.listObjectsV2(request)).getObjectSummaries().isEmpty();
+    }
+
+    @Override
+    public String putObject(String bucket, String key, File file, String contentType) {
+        PutObjectRequest request = new PutObjectRequest(bucket, key, file);
+        if (StrUtil.isNotBlank(contentType)) {
+            ObjectMetadata metadata = new ObjectMetadata();
+            metadata.setContentType(contentType);
+            request.setMetadata(metadata);
+        }
+        return StorageExecutor.executeUpload(endpoint, StorageOperation.PUT_OBJECT, bucket, key, file.length(), null,
+                () -> amazonS3.putObject(request).getETag());
+    }
+
+    @Override
+    public String putObject(String bucket, String key, byte[] data, String contentType, Map<String, String> userMetadata) {
+        ByteArrayBody body = new ByteArrayBody(data);
+        ObjectMetadata metadata = metadata(contentType, userMetadata);
+        metadata.setContentLength(body.length());
+        PutObjectRequest request = new PutObjectRequest(bucket, key, body, metadata);
+        return StorageExecutor.executeUpload(endpoint, StorageOperation.PUT_OBJECT, bucket, key, body.length(), body,
+                () -> amazonS3.putObject(request).getETag());
+    }
+
+    @Override
+    public void deleteObjects(String bucket, List<String> keys) {
+        for (int from = 0; from < keys.size(); from += DELETE_BATCH_SIZE) {
+            List<DeleteObjectsRequest.KeyVersion> batch = new ArrayList<>();
+            for (String key : keys.subList(from, Math.min(keys.size(), from + DELETE_BATCH_SIZE))) {
+                batch.add(new DeleteObjectsRequest.KeyVersion(key));
+            }
+            DeleteObjectsRequest request = new DeleteObjectsRequest(bucket).withKeys(batch).withQuiet(true);
+            StorageExecutor.execute(endpoint, StorageOperation.DELETE_OBJECTS, bucket,
+                    () -> amazonS3.deleteObjects(request));
+        }
+    }
+
+    @Override
+    public String initiateMultipartUpload(String bucket, String key, String contentType, Map<String, String> userMetadata) {
+        InitiateMultipartUploadRequest request = new InitiateMultipartUploadRequest(bucket, key, metadata(contentType, userMetadata));
+        return StorageExecutor.execute(endpoint, StorageOperation.INITIATE_MULTIPART, bucket, key,
+                () -> amazonS3.initiateMultipartUpload(request).getUploadId());
+    }
+
+    @Override
+    public String uploadPart(String bucket, String key, String uploadId, int partNumber, File file, long offset, long size) {
+        // 以文件区间作为请求体, SDK 每次发送都重新定位读取, 重试无需缓存数据
+        UploadPartRequest request = new UploadPartRequest()
+                .withBucketName(bucket)
+                .withKey(key)
+                .withUploadId(uploadId)
+                .withPartNumber(partNumber)
+                .withFile(file)
+                .withFileOffset(offset)
+                .withPartSize(size);
+        return StorageExecutor.executeUpload(endpoint, StorageOperation.MULTIPART_UPLOAD, bucket, key, size, null,
+                () -> amazonS3.uploadPart(request).getETag());
+    }
+
+    @Override
+    public String uploadPart(String bucket, String key, String uploadId, int partNumber, byte[] data) {
+        ByteArrayBody body = new ByteArrayBody(data);
+        UploadPartRequest request = new UploadPartRequest()
+                .withBucketName(bucket)
+                .withKey(key)
+                .withUploadId(uploadId)
+                .withPartNumber(partNumber)
+                .withInputStream(body)
+                .withPartSize(body.length());
+        return StorageExecutor.executeUpload(endpoint, StorageOperation.MULTIPART_UPLOAD, bucket, key, body.length(), body,
+                () -> amazonS3.uploadPart(request).getETag());
+    }
+
+    @Override
+    public List<PartInfo> listParts(String bucket, String key, String uploadId) {
+        List<PartInfo> parts = new ArrayList<>();
+        ListPartsRequest request = new ListPartsRequest(bucket, key, uploadId);
+        PartListing listing;
+        do {
+            listing = StorageExecutor.execute(endpoint, StorageOperation.MULTIPART_UPLOAD, bucket, key,
+                    () -> amazonS3.listParts(request));
+            for (PartSummary part : listing.getParts()) {
+                parts.add(new PartInfo(part.getPartNumber(), part.getETag(), part.getSize()));
+            }
+            request.setPartNumberMarker(listing.getNextPartNumberMarker());
+        } while (listing.isTruncated());
+        return parts;
+    }
+
+    @Override
+    public String completeMultipartUpload(String bucket, String key, String uploadId, List<PartInfo> parts) {
+        List<PartETag> partETags = new ArrayList<>(parts.size());
+        for (PartInfo part : parts) {
+            partETags.add(new PartETag(part.getPartNumber(), part.getEtag()));
+        }
+        CompleteMultipartUploadRequest request = new CompleteMultipartUploadRequest(bucket, key, uploadId, partETags);
+        try {
+            return StorageExecutor.execute(endpoint, StorageOperation.COMPLETE_MULTIPART, bucket, key,
+                    () -> amazonS3.completeMultipartUpload(request).getETag());
+        } catch (RuntimeException e) {
+            // 请求已完成但响应丢失时, 再次完成返回 NoSuchUpload; 对象 ETag 与各分段一致则视为成功
+            String etag = NO_SUCH_UPLOAD.equals(FailureClassifier.errorCode(e)) ? completedEtag(bucket, key, parts) : null;
+            if (etag == null) {
+                throw e;
+            }
+            log.info("multipart upload already completed, bucket:{}, key:{}, uploadId:{}", bucket, key, uploadId);
+            return etag;
+        }
+    }
+
+    @Override
+    public void abortMultipartUpload(String bucket, String key, String uploadId) {
+        AbortMultipartUploadRequest request = new AbortMultipartUploadRequest(bucket, key, uploadId);
+        StorageExecutor.execute(endpoint, StorageOperation.MULTIPART_UPLOAD, bucket, key, () -> {
+            amazonS3.abortMultipartUpload(request);
+            return null;
+        });
+    }
+
+    @Override
+    public List<MultipartUploadInfo> listMultipartUploads(String bucket, String prefix) {
+        List<MultipartUploadInfo> uploads = new ArrayList<>();
+        String keyMarker = null;
+        String uploadIdMarker = null;
+        MultipartUploadListing listing;
+        do {
+            ListMultipartUploadsRequest request = new ListMultipartUploadsRequest(bucket)
+                    .withPrefix(prefix)
+                    .withKeyMarker(keyMarker)
+                    .withUploadIdMarker(uploadIdMarker);
+            listing = StorageExecutor.execute(endpoint, StorageOperation.MULTIPART_UPLOAD, bucket, prefix,
+                    () -> amazonS3.listMultipartUploads(request));
+            for (MultipartUpload upload : listing.getMultipartUploads()) {
+                uploads.add(new MultipartUploadInfo(upload.getKey(), upload.getUploadId(), upload.getInitiated()));
+            }
+            keyMarker = listing.getNextKeyMarker();
+            uploadIdMarker = listing.getNextUploadIdMarker();
+        } while (listing.isTruncated());
+        return uploads;
+    }
+
+    /**
+     * 对象 ETag 与各分段计算的分段上传 ETag(MD5(各分段 MD5 拼接)-分段数)一致时返回, 否则为空
+     */
+    private String completedEtag(String bucket, String key, List<PartInfo> parts) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            return null;
+        }
+        for (PartInfo part : parts) {
+            String md5 = md5FromEtag(part.getEtag());
+            if (md5 == null) {
+                return null;
+            }
+            digest.update(HexUtil.decodeHex(md5));
+        }
+        String expected = HexUtil.encodeHexStr(digest.digest()) + "-" + parts.size();
+        Optional<ObjectInfo> info = statObject(bucket, key);
+        return info.isPresent() && expected.equals(info.get().getEtag().replace("\"", "")) ? info.get().getEtag() : null;
+    }
+
+    /**
+     * 单次上传对象的 ETag 即内容 MD5, 分段上传的 ETag(带 -N 后缀)不是
+     */
+    private static String md5FromEtag(String etag) {
+        if (etag == null) {
+            return null;
+        }
+        String value = etag.replace("\"", "");
+        return MD5_HEX.matcher(value).matches() ? value.toLowerCase() : null;
+    }
+
+    private static ObjectMetadata metadata(String contentType, Map<String, String> userMetadata) {
+        ObjectMetadata metadata = new ObjectMetadata();
+        if (StrUtil.isNotBlank(contentType)) {
+            metadata.setContentType(contentType);
+        }
+        if (userMetadata != null) {
+            userMetadata.forEach(metadata::addUserMetadata);
+        }
+        return metadata;
+    }
+}
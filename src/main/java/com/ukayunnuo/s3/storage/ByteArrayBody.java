@@ -0,0 +1,22 @@
+package com.ukayunnuo.s3.storage;
+
+import com.ukayunnuo.s3.core.ReplayableInputStream;
+
+import java.io.ByteArrayInputStream;
+
+/**
+ * 内存请求体, 内容已在内存中, 重试时可从头重放而不受重放上限限制
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+class ByteArrayBody extends ByteArrayInputStream implements ReplayableInputStream {
+
+    ByteArrayBody(byte[] data) {
+        super(data);
+    }
+
+    long length() {
+        return count;
+    }
+}
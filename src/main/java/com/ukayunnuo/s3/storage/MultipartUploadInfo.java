@@ -0,0 +1,33 @@
+package com.ukayunnuo.s3.storage;
+
+import lombok.Data;
+
+import java.util.Date;
+
+/**
+ * 未完成的分段上传
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Data
+public class MultipartUploadInfo {
+
+    private String key;
+
+    private String uploadId;
+
+    /**
+     * 发起时间
+     */
+    private Date initiated;
+
+    public MultipartUploadInfo() {
+    }
+
+    public MultipartUploadInfo(String key, String uploadId, Date initiated) {
+        this.key = key;
+        this.uploadId = uploadId;
+        this.initiated = initiated;
+    }
+}
@@ -0,0 +1,16 @@
+package com.ukayunnuo.s3.storage;
+
+import com.ukayunnuo.s3.exception.S3Exception;
+
+/**
+ * 对象已变化(ETag 与预期不一致)
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+public class ObjectChangedException extends S3Exception {
+
+    public ObjectChangedException(String message) {
+        super(message);
+    }
+}
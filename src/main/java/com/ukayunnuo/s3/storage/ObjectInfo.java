@@ -0,0 +1,55 @@
+package com.ukayunnuo.s3.storage;
+
+import lombok.Data;
+
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * 对象元数据
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Data
+public class ObjectInfo {
+
+    private String key;
+
+    /**
+     * 对象大小(字节)
+     */
+    private long size;
+
+    private String etag;
+
+    private Date lastModified;
+
+    private String contentType;
+
+    /**
+     * 内容 MD5(十六进制), 平台无法确认时为空: 分段上传的对象、SSE-KMS / SSE-C 加密的对象、AWS 列举结果(不含加密方式)
+     */
+    private String md5;
+
+    /**
+     * 用户自定义元数据, 仅 {@link ObjectStorage#headObject} 返回
+     */
+    private Map<String, String> metadata;
+
+    /**
+     * 服务端加密方式(AES256 / aws:kms / SSE-C 等), 未加密或平台无法提供时为空, 仅 {@link ObjectStorage#headObject} 返回
+     */
+    private String serverSideEncryption;
+
+    public ObjectInfo() {
+    }
+
+    public ObjectInfo(String key, long size, String etag, Date lastModified, String contentType) {
+        this.key = key;
+        this.size = size;
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.contentType = contentType;
+    }
+}
@@ -0,0 +1,254 @@
+package com.ukayunnuo.s3.storage;
+
+import com.ukayunnuo.s3.core.StorageEndpoint;
+import com.ukayunnuo.s3.core.StorageProvider;
+import com.ukayunnuo.s3.resilience.FailureClassifier;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * 与平台无关的对象存储操作
+ * <p> 供断点续传等上层能力使用, 各平台实现内部的调用统一经过 {@link com.ukayunnuo.s3.core.StorageExecutor} </p>
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+public interface ObjectStorage {
+
+    /**
+     * 平台
+     *
+     * @return {@link StorageProvider}
+     */
+    StorageProvider getProvider();
+
+    /**
+     * 端点, 默认为平台默认端点
+     *
+     * @return {@link StorageEndpoint}
+     */
+    default StorageEndpoint getEndpoint() {
+        return StorageEndpoint.of(getProvider());
+    }
+
+    /**
+     * 获取对象元数据
+     *
+     * @param bucket 桶
+     * @param key    key
+     * @return {@link ObjectInfo}
+     */
+    ObjectInfo headObject(String bucket, String key);
+
+    /**
+     * 获取对象元数据, 对象不存在时返回空而不抛出异常; 其他错误照常抛出
+     *
+     * @param bucket 桶
+     * @param key    key
+     * @return {@link ObjectInfo}
+     */
+    default Optional<ObjectInfo> statObject(String bucket, String key) {
+        try {
+            return Optional.of(headObject(bucket, key));
+        } catch (RuntimeException e) {
+            if (FailureClassifier.isNotFound(e)) {
+                return Optional.empty();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 按区间获取对象内容
+     *
+     * @param bucket 桶
+     * @param key    key
+     * @param offset 起始偏移
+     * @param length 长度, 负数表示读到末尾
+     * @param etag   预期 ETag, 非空时对象已变化则抛出 {@link ObjectChangedException}
+     * @return {@link InputStream}
+     */
+    InputStream getObject(String bucket, String key, long offset, long length, String etag);
+
+    /**
+     * 流式列出前缀下的对象, 按页获取并逐个回调, 不在内存中保存完整列表
+     *
+     * @param bucket   桶
+     * @param prefix   key 前缀, 可为空
+     * @param consumer 对象回调
+     */
+    void listObjects(String bucket, String prefix, Consumer<ObjectInfo> consumer);
+
+    /**
+     * 前缀下是否有对象; 各平台实现只列举 1 条, 与前缀下的对象数无关. 此默认实现完整列举, 仅供其他实现兜底
+     *
+     * @param bucket 桶
+     * @param prefix key 前缀, 目录需以 "/" 结尾
+     * @return boolean
+     */
+    default boolean existsPrefix(String bucket, String prefix) {
+        boolean[] found = {false};
+        listObjects(bucket, prefix, info -> found[0] = true);
+        return found[0];
+    }
+
+    /**
+     * 前缀下是否没有对象
+     *
+     * @param bucket 桶
+     * @param prefix key 前缀
+     * @return boolean
+     */
+    default boolean isEmptyPrefix(String bucket, String prefix) {
+        return !existsPrefix(bucket, prefix);
+    }
+
+    /**
+     * 并发检查多个前缀
+     *
+     * @param bucket   桶
+     * @param prefixes 前缀
+     * @return 前缀 -> 是否有对象, 按输入顺序
+     */
+    default Map<String, Boolean> existsPrefixes(String bucket, Collection<String> prefixes) {
+        return PrefixChecks.check(prefixes, PrefixChecks.DEFAULT_CONCURRENCY, prefix -> existsPrefix(bucket, prefix));
+    }
+
+    /**
+     * 上传文件(单次请求)
+     *
+     * @param bucket      桶
+     * @param key         key
+     * @param file        文件
+     * @param contentType 内容类型, 可为空
+     * @return 对象 ETag
+     */
+    String putObject(String bucket, String key, File file, String contentType);
+
+    /**
+     * 上传内存中的内容(单次请求)
+     *
+     * @param bucket      桶
+     * @param key         key
+     * @param data        内容
+     * @param contentType 内容类型, 可为空
+     * @return 对象 ETag
+     */
+    default String putObject(String bucket, String key, byte[] data, String contentType) {
+        return putObject(bucket, key, data, contentType, null);
+    }
+
+    /**
+     * 上传内存中的内容(单次请求)
+     *
+     * @param bucket      桶
+     * @param key         key
+     * @param data        内容
+     * @param contentType 内容类型, 可为空
+     * @param metadata    用户自定义元数据, 可为空
+     * @return 对象 ETag
+     */
+    String putObject(String bucket, String key, byte[] data, String contentType, Map<String, String> metadata);
+
+    /**
+     * 批量删除对象
+     *
+     * @param bucket 桶
+     * @param keys   key 列表
+     */
+    void deleteObjects(String bucket, List<String> keys);
+
+    /**
+     * 发起分段上传
+     *
+     * @param bucket      桶
+     * @param key         key
+     * @param contentType 内容类型, 可为空
+     * @return uploadId
+     */
+    default String initiateMultipartUpload(String bucket, String key, String contentType) {
+        return initiateMultipartUpload(bucket, key, contentType, null);
+    }
+
+    /**
+     * 发起分段上传
+     *
+     * @param bucket      桶
+     * @param key         key
+     * @param contentType 内容类型, 可为空
+     * @param metadata    用户自定义元数据, 可为空
+     * @return uploadId
+     */
+    String initiateMultipartUpload(String bucket, String key, String contentType, Map<String, String> metadata);
+
+    /**
+     * 上传文件的一个区间作为分段
+     *
+     * @param bucket     桶
+     * @param key        key
+     * @param uploadId   uploadId
+     * @param partNumber 分段号(从 1 开始)
+     * @param file       文件
+     * @param offset     区间起始偏移
+     * @param size       区间长度
+     * @return 分段 ETag
+     */
+    String uploadPart(String bucket, String key, String uploadId, int partNumber, File file, long offset, long size);
+
+    /**
+     * 上传内存中的内容作为分段
+     *
+     * @param bucket     桶
+     * @param key        key
+     * @param uploadId   uploadId
+     * @param partNumber 分段号(从 1 开始)
+     * @param data       内容
+     * @return 分段 ETag
+     */
+    String uploadPart(String bucket, String key, String uploadId, int partNumber, byte[] data);
+
+    /**
+     * 列出已上传的分段
+     *
+     * @param bucket   桶
+     * @param key      key
+     * @param uploadId uploadId
+     * @return 分段列表
+     */
+    List<PartInfo> listParts(String bucket, String key, String uploadId);
+
+    /**
+     * 完成分段上传
+     *
+     * @param bucket   桶
+     * @param key      key
+     * @param uploadId uploadId
+     * @param parts    按分段号升序排列的分段
+     * @return 对象 ETag
+     */
+    String completeMultipartUpload(String bucket, String key, String uploadId, List<PartInfo> parts);
+
+    /**
+     * 中止分段上传, 释放已上传分段占用的存储
+     *
+     * @param bucket   桶
+     * @param key      key
+     * @param uploadId uploadId
+     */
+    void abortMultipartUpload(String bucket, String key, String uploadId);
+
+    /**
+     * 列出未完成的分段上传
+     *
+     * @param bucket 桶
+     * @param prefix key 前缀, 可为空
+     * @return 未完成的分段上传
+     */
+    List<MultipartUploadInfo> listMultipartUploads(String bucket, String prefix);
+}
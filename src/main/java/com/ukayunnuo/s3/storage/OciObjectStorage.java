@@ -0,0 +1,350 @@
+package com.ukayunnuo.s3.storage;
+
+import cn.hutool.core.util.HexUtil;
+import cn.hutool.core.util.StrUtil;
+import com.oracle.bmc.model.Range;
+import com.oracle.bmc.objectstorage.ObjectStorageClient;
+import com.oracle.bmc.objectstorage.model.CommitMultipartUploadDetails;
+import com.oracle.bmc.objectstorage.model.CommitMultipartUploadPartDetails;
+import com.oracle.bmc.objectstorage.model.CreateMultipartUploadDetails;
+import com.oracle.bmc.objectstorage.model.ListObjects;
+import com.oracle.bmc.objectstorage.model.MultipartUpload;
+import com.oracle.bmc.objectstorage.model.MultipartUploadPartSummary;
+import com.oracle.bmc.objectstorage.model.ObjectSummary;
+import com.oracle.bmc.objectstorage.requests.AbortMultipartUploadRequest;
+import com.oracle.bmc.objectstorage.requests.CommitMultipartUploadRequest;
+import com.oracle.bmc.objectstorage.requests.CreateMultipartUploadRequest;
+import com.oracle.bmc.objectstorage.requests.DeleteObjectRequest;
+import com.oracle.bmc.objectstorage.requests.GetObjectRequest;
+import com.oracle.bmc.objectstorage.requests.HeadObjectRequest;
+import com.oracle.bmc.objectstorage.requests.ListMultipartUploadPartsRequest;
+import com.oracle.bmc.objectstorage.requests.ListMultipartUploadsRequest;
+import com.oracle.bmc.objectstorage.requests.ListObjectsRequest;
+import com.oracle.bmc.objectstorage.requests.PutObjectRequest;
+import com.oracle.bmc.objectstorage.requests.UploadPartRequest;
+import com.oracle.bmc.objectstorage.responses.HeadObjectResponse;
+import com.oracle.bmc.objectstorage.responses.ListMultipartUploadPartsResponse;
+import com.oracle.bmc.objectstorage.responses.ListMultipartUploadsResponse;
+import com.ukayunnuo.s3.core.StorageEndpoint;
+import com.ukayunnuo.s3.core.StorageExecutor;
+import com.ukayunnuo.s3.core.StorageOperation;
+import com.ukayunnuo.s3.core.StorageProvider;
+import com.ukayunnuo.s3.exception.S3Exception;
+import com.ukayunnuo.s3.exception.StorageException;
+import com.ukayunnuo.s3.transfer.FileRangeInputStream;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Oracle Object Storage 原生 API 对象存储实现
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+public class OciObjectStorage implements ObjectStorage {
+
+    private static final int HTTP_PRECONDITION_FAILED = 412;
+
+    private static final int LIST_PAGE_SIZE = 1000;
+
+    private static final String LIST_FIELDS = "name,size,etag,md5,timeModified";
+
+    private final ObjectStorageClient client;
+
+    private final String namespace;
+
+    private final StorageEndpoint endpoint;
+
+    public OciObjectStorage(ObjectStorageClient client, String namespace) {
+        this(client, namespace, StorageEndpoint.of(StorageProvider.OCI));
+    }
+
+    /**
+     * @param client    客户端
+     * @param namespace 命名空间
+     * @param endpoint  端点, 多个区域的客户端按它区分端点许可、重试、对冲、并发限制与指标
+     */
+    public OciObjectStorage(ObjectStorageClient client, String namespace, StorageEndpoint endpoint) {
+        this.client = client;
+        this.namespace = namespace;
+        this.endpoint = endpoint;
+    }
+
+    @Override
+    public StorageProvider getProvider() {
+        return endpoint.getProvider();
+    }
+
+    @Override
+    public StorageEndpoint getEndpoint() {
+        return endpoint;
+    }
+
+    @Override
+    public ObjectInfo headObject(String bucket, String key) {
+        HeadObjectRequest request = HeadObjectRequest.builder()
+                .namespaceName(namespace)
+                .bucketName(bucket)
+                .objectName(key)
+                .build();
+        HeadObjectResponse response = StorageExecutor.execute(endpoint, StorageOperation.HEAD_OBJECT, bucket, key,
+                () -> client.headObject(request));
+        ObjectInfo info = new ObjectInfo(key, response.getContentLength(), response.getETag(), response.getLastModified(), response.getContentType());
+        info.setMetadata(response.getOpcMeta());
+        return info;
+    }
+
+    @Override
+    public InputStream getObject(String bucket, String key, long offset, long length, String etag) {
+        GetObjectRequest.Builder builder = GetObjectRequest.builder()
+                .namespaceName(namespace)
+                .bucketName(bucket)
+                .objectName(key)
+                .ifMatch(StrUtil.emptyToNull(etag));
+        if (length >= 0) {
+            builder.range(new Range(offset, offset + length - 1));
+        } else if (offset > 0) {
+            builder.range(new Range(offset, null));
+        }
+        GetObjectRequest request = builder.build();
+        try {
+            return StorageExecutor.executeDownload(endpoint, StorageOperation.GET_OBJECT, bucket, key,
+                    () -> client.getObject(request).getInputStream());
+        } catch (StorageException e) {
+            if (e.getStatus() == HTTP_PRECONDITION_FAILED) {
+                throw new ObjectChangedException(StrUtil.format("object changed, bucket:{}, key:{}, etag:{}", bucket, key, etag));
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public void listObjects(String bucket, String prefix, Consumer<ObjectInfo> consumer) {
+        String start = null;
+        do {
+            ListObjectsRequest request = ListObjectsRequest.builder()
+                    .namespaceName(namespace)
+                    .bucketName(bucket)
+                    .prefix(prefix)
+                    .start(start)
+                    .limit(LIST_PAGE_SIZE)
+                    .fields(LIST_FIELDS)
+                    .build();
+            ListObjects listObjects = StorageExecutor.execute(endpoint, StorageOperation.LIST_OBJECTS, bucket, prefix,
+                    () -> client.listObjects(request)).getListObjects();
+            for (ObjectSummary summary : listObjects.getObjects()) {
+                ObjectInfo info = new ObjectInfo(summary.getName(), summary.getSize() == null ? 0 : summary.getSize(), summary.getEtag(),
+                        summary.getTimeModified(), null);
+                info.setMd5(md5Hex(summary.getMd5()));
+                consumer.accept(info);
+            }
+            start = listObjects.getNextStartWith();
+        } while (start != null);
+    }
+
+    @Override
+    public boolean existsPrefix(String bucket, String prefix) {
+        ListObjectsRequest request = ListObjectsRequest.builder()
+                .namespaceName(namespace)
+                .bucketName(bucket)
+                .prefix(prefix)
+                .limit(1)
+                .fields("name")
+                .build();
+        return !StorageExecutor.execute(endpoint, StorageOperation.LIST_OBJECTS, bucket, prefix,
+                () -> client.listObjects(request)).getListObjects().getObjects().isEmpty();
+    }
+
+    @Override
+    public String putObject(String bucket, String key, File file, String contentType) {
+        try (FileRangeInputStream body = new FileRangeInputStream(file, 0, file.length())) {
+            PutObjectRequest request = PutObjectRequest.builder()
+                    .namespaceName(namespace)
+                    .bucketName(bucket)
+                    .objectName(key)
+                    .contentLength(body.length())
+                    .contentType(StrUtil.emptyToNull(contentType))
+                    .putObjectBody(body)
+                    .build();
+            return StorageExecutor.executeUpload(endpoint, StorageOperation.PUT_OBJECT, bucket, key, body.length(), body,
+                    () -> client.putObject(request).getETag());
+        } catch (IOException e) {
+            throw new S3Exception(StrUtil.format("read file failed, file:{}", file), e);
+        }
+    }
+
+    @Override
+    public String putObject(String bucket, String key, byte[] data, String contentType, Map<String, String> metadata) {
+        ByteArrayBody body = new ByteArrayBody(data);
+        PutObjectRequest request = PutObjectRequest.builder()
+                .namespaceName(namespace)
+                .bucketName(bucket)
+                .objectName(key)
+                .contentLength(body.length())
+                .contentType(StrUtil.emptyToNull(contentType))
+                .opcMeta(metadata)
+                .putObjectBody(body)
+                .build();
+        return StorageExecutor.executeUpload(endpoint, StorageOperation.PUT_OBJECT, bucket, key, body.length(), body,
+                () -> client.putObject(request).getETag());
+    }
+
+    @Override
+    public void deleteObjects(String bucket, List<String> keys) {
+        // 原生 API 没有批量删除
+        for (String key : keys) {
+            DeleteObjectRequest request = DeleteObjectRequest.builder()
+                    .namespaceName(namespace)
+                    .bucketName(bucket)
+                    .objectName(key)
+                    .build();
+            StorageExecutor.execute(endpoint, StorageOperation.DELETE_OBJECT, bucket, key, () -> client.deleteObject(request));
+        }
+    }
+
+    @Override
+    public String initiateMultipartUpload(String bucket, String key, String contentType, Map<String, String> metadata) {
+        CreateMultipartUploadRequest request = CreateMultipartUploadRequest.builder()
+                .namespaceName(namespace)
+                .bucketName(bucket)
+                .createMultipartUploadDetails(CreateMultipartUploadDetails.builder()
+                        .object(key)
+                        .contentType(StrUtil.emptyToNull(contentType))
+                        .metadata(metadata)
+                        .build())
+                .build();
+        return StorageExecutor.execute(endpoint, StorageOperation.INITIATE_MULTIPART, bucket, key,
+                () -> client.createMultipartUpload(request).getMultipartUpload().getUploadId());
+    }
+
+    @Override
+    public String uploadPart(String bucket, String key, String uploadId, int partNumber, File file, long offset, long size) {
+        // 请求体按文件偏移重放, 重试不受重放字节上限约束
+        try (FileRangeInputStream body = new FileRangeInputStream(file, offset, size)) {
+            UploadPartRequest request = UploadPartRequest.builder()
+                    .namespaceName(namespace)
+                    .bucketName(bucket)
+                    .objectName(key)
+                    .uploadId(uploadId)
+                    .uploadPartNum(partNumber)
+                    .contentLength(size)
+                    .uploadPartBody(body)
+                    .build();
+            return StorageExecutor.executeUpload(endpoint, StorageOperation.MULTIPART_UPLOAD, bucket, key, size, body,
+                    () -> client.uploadPart(request).getETag());
+        } catch (IOException e) {
+            throw new S3Exception(StrUtil.format("read part failed, file:{}, part:{}", file, partNumber), e);
+        }
+    }
+
+    @Override
+    public String uploadPart(String bucket, String key, String uploadId, int partNumber, byte[] data) {
+        ByteArrayBody body = new ByteArrayBody(data);
+        UploadPartRequest request = UploadPartRequest.builder()
+                .namespaceName(namespace)
+                .bucketName(bucket)
+                .objectName(key)
+                .uploadId(uploadId)
+                .uploadPartNum(partNumber)
+                .contentLength(body.length())
+                .uploadPartBody(body)
+                .build();
+        return StorageExecutor.executeUpload(endpoint, StorageOperation.MULTIPART_UPLOAD, bucket, key, body.length(), body,
+                () -> client.uploadPart(request).getETag());
+    }
+
+    @Override
+    public List<PartInfo> listParts(String bucket, String key, String uploadId) {
+        List<PartInfo> parts = new ArrayList<>();
+        String page = null;
+        do {
+            ListMultipartUploadPartsRequest request = ListMultipartUploadPartsRequest.builder()
+                    .namespaceName(namespace)
+                    .bucketName(bucket)
+                    .objectName(key)
+                    .uploadId(uploadId)
+                    .page(page)
+                    .build();
+            ListMultipartUploadPartsResponse response = StorageExecutor.execute(endpoint, StorageOperation.MULTIPART_UPLOAD,
+                    bucket, key, () -> client.listMultipartUploadParts(request));
+            for (MultipartUploadPartSummary part : response.getItems()) {
+                parts.add(new PartInfo(part.getPartNumber(), part.getEtag(), part.getSize()));
+            }
+            page = response.getOpcNextPage();
+        } while (page != null);
+        return parts;
+    }
+
+    @Override
+    public String completeMultipartUpload(String bucket, String key, String uploadId, List<PartInfo> parts) {
+        List<CommitMultipartUploadPartDetails> partsToCommit = new ArrayList<>(parts.size());
+        for (PartInfo part : parts) {
+            partsToCommit.add(CommitMultipartUploadPartDetails.builder().partNum(part.getPartNumber()).etag(part.getEtag()).build());
+        }
+        CommitMultipartUploadRequest request = CommitMultipartUploadRequest.builder()
+                .namespaceName(namespace)
+                .bucketName(bucket)
+                .objectName(key)
+                .uploadId(uploadId)
+                .commitMultipartUploadDetails(CommitMultipartUploadDetails.builder().partsToCommit(partsToCommit).build())
+                .build();
+        return StorageExecutor.execute(endpoint, StorageOperation.COMPLETE_MULTIPART, bucket, key,
+                () -> client.commitMultipartUpload(request).getETag());
+    }
+
+    @Override
+    public void abortMultipartUpload(String bucket, String key, String uploadId) {
+        AbortMultipartUploadRequest request = AbortMultipartUploadRequest.builder()
+                .namespaceName(namespace)
+                .bucketName(bucket)
+                .objectName(key)
+                .uploadId(uploadId)
+                .build();
+        StorageExecutor.execute(endpoint, StorageOperation.MULTIPART_UPLOAD, bucket, key,
+                () -> client.abortMultipartUpload(request));
+    }
+
+    @Override
+    public List<MultipartUploadInfo> listMultipartUploads(String bucket, String prefix) {
+        // 原生 API 不支持按前缀过滤, 在客户端过滤
+        List<MultipartUploadInfo> uploads = new ArrayList<>();
+        String page = null;
+        do {
+            ListMultipartUploadsRequest request = ListMultipartUploadsRequest.builder()
+                    .namespaceName(namespace)
+                    .bucketName(bucket)
+                    .page(page)
+                    .build();
+            ListMultipartUploadsResponse response = StorageExecutor.execute(endpoint, StorageOperation.MULTIPART_UPLOAD,
+                    bucket, prefix, () -> client.listMultipartUploads(request));
+            for (MultipartUpload upload : response.getItems()) {
+                if (prefix == null || upload.getObject().startsWith(prefix)) {
+                    uploads.add(new MultipartUploadInfo(upload.getObject(), upload.getUploadId(), upload.getTimeCreated()));
+                }
+            }
+            page = response.getOpcNextPage();
+        } while (page != null);
+        return uploads;
+    }
+
+    /**
+     * Base64 的内容 MD5 转十六进制, 分段上传对象的 MD5(带 -N 后缀)返回空
+     */
+    private static String md5Hex(String md5) {
+        if (StrUtil.isBlank(md5) || md5.contains("-")) {
+            return null;
+        }
+        try {
+            return HexUtil.encodeHexStr(Base64.getDecoder().decode(md5));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.ukayunnuo.s3.storage;
+
+import lombok.Data;
+
+/**
+ * 分段信息
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Data
+public class PartInfo {
+
+    /**
+     * 分段号(从 1 开始)
+     */
+    private int partNumber;
+
+    /**
+     * 分段 ETag
+     */
+    private String etag;
+
+    /**
+     * 分段大小(字节)
+     */
+    private long size;
+
+    public PartInfo() {
+    }
+
+    public PartInfo(int partNumber, String etag, long size) {
+        this.partNumber = partNumber;
+        this.etag = etag;
+        this.size = size;
+    }
+}
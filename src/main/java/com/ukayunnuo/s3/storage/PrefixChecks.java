@@ -0,0 +1,73 @@
+package com.ukayunnuo.s3.storage;
+
+import com.ukayunnuo.s3.core.StorageThreads;
+import com.ukayunnuo.s3.exception.S3Exception;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+
+/**
+ * 批量前缀检查: 每个前缀一次最多返回 1 条的列举, 并发执行
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+public final class PrefixChecks {
+
+    /**
+     * 默认并发数
+     */
+    public static final int DEFAULT_CONCURRENCY = 32;
+
+    private PrefixChecks() {
+    }
+
+    /**
+     * 并发检查多个前缀
+     *
+     * @param prefixes    前缀
+     * @param concurrency 并发数
+     * @param exists      单个前缀的检查
+     * @return 前缀 -> 是否存在, 按输入顺序; 任一检查失败时抛出其异常
+     */
+    public static Map<String, Boolean> check(Collection<String> prefixes, int concurrency, Predicate<String> exists) {
+        Map<String, Boolean> result = new LinkedHashMap<>();
+        if (prefixes.isEmpty()) {
+            return result;
+        }
+        if (prefixes.size() == 1) {
+            String prefix = prefixes.iterator().next();
+            result.put(prefix, exists.test(prefix));
+            return result;
+        }
+        ExecutorService executor = StorageThreads.newExecutor("s3-prefix-check", Math.min(prefixes.size(), concurrency));
+        try {
+            List<String> order = new ArrayList<>(prefixes);
+            List<Future<Boolean>> futures = new ArrayList<>(order.size());
+            for (String prefix : order) {
+                futures.add(executor.submit(() -> exists.test(prefix)));
+            }
+            for (int i = 0; i < order.size(); i++) {
+                result.put(order.get(i), futures.get(i).get());
+            }
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new S3Exception("prefix check interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new S3Exception("prefix check failed", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.ukayunnuo.s3.sync;
+
+import com.ukayunnuo.s3.transfer.DownloadCheckpoint;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Predicate;
+
+/**
+ * 并行遍历本地目录
+ * <p> 每个子目录一个 fork/join 任务, 文件属性在列目录时一次读取 </p>
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Slf4j
+class LocalTreeWalker {
+
+    private static final LinkOption[] NO_FOLLOW = {LinkOption.NOFOLLOW_LINKS};
+
+    private static final LinkOption[] FOLLOW = {};
+
+    private LocalTreeWalker() {
+    }
+
+    /**
+     * 本地文件
+     */
+    static class LocalFile {
+
+        final File file;
+
+        final long size;
+
+        final long lastModified;
+
+        LocalFile(File file, long size, long lastModified) {
+            this.file = file;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+    }
+
+    /**
+     * 遍历目录
+     *
+     * @param root        根目录
+     * @param pool        并行池
+     * @param followLinks 是否跟随符号链接
+     * @param excluded    文件排除判断(参数为 / 分隔的相对路径)
+     * @return 相对路径 -> 文件
+     */
+    static Map<String, LocalFile> walk(File root, ForkJoinPool pool, boolean followLinks, Predicate<String> excluded) {
+        Map<String, LocalFile> files = new ConcurrentHashMap<>();
+        if (root.isDirectory()) {
+            pool.invoke(new DirTask(root.toPath(), "", files, followLinks ? FOLLOW : NO_FOLLOW, excluded));
+        }
+        return files;
+    }
+
+    private static class DirTask extends RecursiveAction {
+
+        private final Path dir;
+
+        private final String relative;
+
+        private final Map<String, LocalFile> files;
+
+        private final LinkOption[] linkOptions;
+
+        private final Predicate<String> excluded;
+
+        DirTask(Path dir, String relative, Map<String, LocalFile> files, LinkOption[] linkOptions, Predicate<String> excluded) {
+            this.dir = dir;
+            this.relative = relative;
+            this.files = files;
+            this.linkOptions = linkOptions;
+            this.excluded = excluded;
+        }
+
+        @Override
+        protected void compute() {
+            List<DirTask> subTasks = new ArrayList<>();
+            try (DirectoryStream<Path> children = Files.newDirectoryStream(dir)) {
+                for (Path child : children) {
+                    String name = child.getFileName().toString();
+                    String path = relative + name;
+                    BasicFileAttributes attributes = Files.readAttributes(child, BasicFileAttributes.class, linkOptions);
+                    if (attributes.isDirectory()) {
+                        subTasks.add(new DirTask(child, path + "/", files, linkOptions, excluded));
+                    } else if (attributes.isRegularFile() && !isTransferTemp(child, name) && !excluded.test(path)) {
+                        files.put(path, new LocalFile(child.toFile(), attributes.size(), attributes.lastModifiedTime().toMillis()));
+                    }
+                }
+            } catch (IOException e) {
+                log.warn("walk directory failed, dir:{}, msg:{}", dir, e.getMessage());
+            }
+            invokeAll(subTasks);
+        }
+    }
+
+    /**
+     * 断点续传下载的临时文件与检查点不参与同步
+     */
+    private static boolean isTransferTemp(Path file, String name) {
+        if (name.endsWith(DownloadCheckpoint.CHECKPOINT_SUFFIX)) {
+            return true;
+        }
+        return name.endsWith(DownloadCheckpoint.PART_SUFFIX)
+                && Files.exists(file.resolveSibling(name.substring(0, name.length() - DownloadCheckpoint.PART_SUFFIX.length())
+                + DownloadCheckpoint.CHECKPOINT_SUFFIX));
+    }
+}
@@ -0,0 +1,55 @@
+package com.ukayunnuo.s3.sync;
+
+import com.ukayunnuo.s3.storage.ObjectInfo;
+import lombok.Data;
+
+import java.io.File;
+
+/**
+ * 同步动作
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Data
+public class SyncAction {
+
+    private SyncActionType type;
+
+    /**
+     * 对象 key
+     */
+    private String key;
+
+    /**
+     * 本地文件
+     */
+    private File file;
+
+    /**
+     * 需要传输的字节数(删除为 0)
+     */
+    private long size;
+
+    /**
+     * 远端对象, 上传新文件时为空
+     */
+    private ObjectInfo remote;
+
+    /**
+     * 原因, 如 new、size、mtime、checksum、extraneous
+     */
+    private String reason;
+
+    public SyncAction() {
+    }
+
+    public SyncAction(SyncActionType type, String key, File file, long size, ObjectInfo remote, String reason) {
+        this.type = type;
+        this.key = key;
+        this.file = file;
+        this.size = size;
+        this.remote = remote;
+        this.reason = reason;
+    }
+}
@@ -0,0 +1,24 @@
+package com.ukayunnuo.s3.sync;
+
+/**
+ * 同步动作类型
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+public enum SyncActionType {
+
+    UPLOAD,
+
+    DOWNLOAD,
+
+    /**
+     * 删除本地已不存在的对象
+     */
+    DELETE_REMOTE,
+
+    /**
+     * 删除桶中已不存在的本地文件
+     */
+    DELETE_LOCAL
+}
@@ -0,0 +1,21 @@
+package com.ukayunnuo.s3.sync;
+
+/**
+ * 变更判断方式
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+public enum SyncCompareMode {
+
+    /**
+     * 大小不同, 或源端修改时间晚于目标端时视为变更(不读取文件内容)
+     */
+    SIZE_MTIME,
+
+    /**
+     * 大小相同时比较内容 MD5 与对象 MD5(未加密或 SSE-S3 单次上传对象的 ETag), 列举结果没有 MD5 时以 HEAD 确认;
+     * 对象 MD5 仍未知(分段上传、SSE-KMS / SSE-C 加密)时退化为 {@link #SIZE_MTIME}
+     */
+    CHECKSUM
+}
@@ -0,0 +1,20 @@
+package com.ukayunnuo.s3.sync;
+
+/**
+ * 同步方向
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+public enum SyncDirection {
+
+    /**
+     * 本地目录 -> 桶前缀
+     */
+    UPLOAD,
+
+    /**
+     * 桶前缀 -> 本地目录
+     */
+    DOWNLOAD
+}
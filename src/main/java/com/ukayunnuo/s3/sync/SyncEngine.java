@@ -0,0 +1,442 @@
+package com.ukayunnuo.s3.sync;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.HexUtil;
+import cn.hutool.core.util.StrUtil;
+import com.ukayunnuo.s3.core.StorageThreads;
+import com.ukayunnuo.s3.exception.S3Exception;
+import com.ukayunnuo.s3.resilience.FailureClassifier;
+import com.ukayunnuo.s3.storage.ObjectInfo;
+import com.ukayunnuo.s3.storage.ObjectStorage;
+import com.ukayunnuo.s3.transfer.ResumableDownloadProp;
+import com.ukayunnuo.s3.transfer.ResumableDownloader;
+import com.ukayunnuo.s3.transfer.ResumableUploadProp;
+import com.ukayunnuo.s3.transfer.ResumableUploader;
+import com.ukayunnuo.s3.transfer.TransferHandle;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * 目录同步(类 rsync)
+ * <p> 生成计划: 并行遍历本地目录的同时流式列出桶前缀下的对象, 按 大小/修改时间(或内容 MD5) 计算差异 </p>
+ * <p> 执行计划: 并发上传/下载/删除有差异的文件, 单个动作失败不影响其余动作; 删除对象放在传输完成后批量执行 </p>
+ *
+ * <pre>
+ * SyncEngine engine = new SyncEngine(new AwsObjectStorage(amazonS3), syncProp);
+ * SyncPlan plan = engine.plan(SyncDirection.UPLOAD, new File("/data/backup"), bucket, "backup/");
+ * log.info(plan.summary());
+ * SyncResult result = engine.execute(plan);
+ * </pre>
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Slf4j
+public class SyncEngine {
+
+    /**
+     * 小文件下载的临时文件后缀
+     */
+    public static final String TEMP_SUFFIX = ".s3sync.tmp";
+
+    private static final int DELETE_BATCH_SIZE = 1000;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final AtomicInteger THREAD_SEQ = new AtomicInteger();
+
+    private final ObjectStorage storage;
+
+    private final SyncProp prop;
+
+    private final ResumableUploadProp uploadProp;
+
+    private final ResumableDownloadProp downloadProp;
+
+    private final List<PathMatcher> excludes = new ArrayList<>();
+
+    public SyncEngine(ObjectStorage storage, SyncProp prop, ResumableUploadProp uploadProp, ResumableDownloadProp downloadProp) {
+        this.storage = storage;
+        this.prop = prop;
+        this.uploadProp = uploadProp;
+        this.downloadProp = downloadProp;
+        for (String pattern : prop.getExcludes()) {
+            excludes.add(FileSystems.getDefault().getPathMatcher("glob:" + pattern));
+        }
+    }
+
+    public SyncEngine(ObjectStorage storage, SyncProp prop) {
+        this(storage, prop, new ResumableUploadProp(), new ResumableDownloadProp());
+    }
+
+    public SyncEngine(ObjectStorage storage) {
+        this(storage, new SyncProp());
+    }
+
+    /**
+     * 生成并执行同步计划
+     *
+     * @param direction 方向
+     * @param localDir  本地目录
+     * @param bucket    桶
+     * @param prefix    key 前缀
+     * @return {@link SyncResult}
+     */
+    public SyncResult sync(SyncDirection direction, File localDir, String bucket, String prefix) {
+        SyncPlan plan = plan(direction, localDir, bucket, prefix);
+        log.info(plan.summary());
+        return execute(plan);
+    }
+
+    /**
+     * 生成同步计划(不做任何修改)
+     *
+     * @param direction 方向
+     * @param localDir  本地目录
+     * @param bucket    桶
+     * @param prefix    key 前缀, 非空时按目录处理(自动补 /)
+     * @return {@link SyncPlan}
+     */
+    public SyncPlan plan(SyncDirection direction, File localDir, String bucket, String prefix) {
+        long start = System.nanoTime();
+        String keyPrefix = StrUtil.isEmpty(prefix) ? "" : StrUtil.addSuffixIfNot(prefix, "/");
+
+        // 列举对象与遍历本地目录同时进行
+        Map<String, ObjectInfo> remote = new ConcurrentHashMap<>();
+        FutureTask<Void> listing = new FutureTask<>(() -> {
+            storage.listObjects(bucket, keyPrefix, info -> {
+                String path = info.getKey().substring(keyPrefix.length());
+                if (!path.isEmpty() && !path.endsWith("/") && !isExcluded(path)) {
+                    remote.put(path, info);
+                }
+            });
+            return null;
+        });
+        Thread lister = new Thread(listing, "s3-sync-list-" + THREAD_SEQ.incrementAndGet());
+        lister.setDaemon(true);
+        lister.start();
+
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, prop.getWalkThreads()));
+        try {
+            Map<String, LocalTreeWalker.LocalFile> local = LocalTreeWalker.walk(localDir, pool, prop.isFollowLinks(), this::isExcluded);
+            listing.get();
+            List<SyncAction> actions = pool.submit(() -> diff(direction, localDir, bucket, keyPrefix, local, remote)).get();
+            actions.sort(Comparator.comparing(SyncAction::getKey));
+            return new SyncPlan(direction, localDir, bucket, keyPrefix, actions, local.size(), remote.size(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new S3Exception(StrUtil.format("sync plan interrupted, bucket:{}, prefix:{}", bucket, keyPrefix), e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new S3Exception(StrUtil.format("sync plan failed, bucket:{}, prefix:{}", bucket, keyPrefix), (Exception) cause);
+        } finally {
+            listing.cancel(true);
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * 执行同步计划
+     *
+     * @param plan 计划
+     * @return {@link SyncResult}
+     */
+    public SyncResult execute(SyncPlan plan) {
+        return execute(plan, TransferHandle.of(plan.getBucket(), plan.getPrefix(), plan.getTransferBytes()));
+    }
+
+    /**
+     * 执行同步计划, 每完成一个动作按其字节数上报进度; 取消后不再开始新的动作
+     *
+     * @param plan   计划
+     * @param handle 传输句柄
+     * @return {@link SyncResult}
+     */
+    public SyncResult execute(SyncPlan plan, TransferHandle handle) {
+        long start = System.nanoTime();
+        handle.setTotalBytes(plan.getTransferBytes());
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicLong transferred = new AtomicLong();
+        Map<SyncAction, String> failures = Collections.synchronizedMap(new LinkedHashMap<>());
+        ExecutorService executor = StorageThreads.newExecutor("s3-sync", prop.getTransferThreads());
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            List<SyncAction> remoteDeletes = new ArrayList<>();
+            for (SyncAction action : plan.getActions()) {
+                if (action.getType() == SyncActionType.DELETE_REMOTE) {
+                    remoteDeletes.add(action);
+                    continue;
+                }
+                futures.add(executor.submit(() -> {
+                    if (handle.isCancelled()) {
+                        failures.put(action, "cancelled");
+                        return;
+                    }
+                    try {
+                        run(plan, action);
+                        succeeded.incrementAndGet();
+                        transferred.addAndGet(action.getSize());
+                        handle.add(action.getSize());
+                    } catch (Exception e) {
+                        log.warn("sync action failed, type:{}, key:{}, msg:{}", action.getType(), action.getKey(), e.getMessage());
+                        failures.put(action, String.valueOf(e.getMessage()));
+                    }
+                }));
+            }
+            await(futures);
+
+            // 先传输后删除, 避免重命名等场景下短暂丢失数据
+            futures.clear();
+            for (int from = 0; from < remoteDeletes.size(); from += DELETE_BATCH_SIZE) {
+                List<SyncAction> batch = remoteDeletes.subList(from, Math.min(remoteDeletes.size(), from + DELETE_BATCH_SIZE));
+                futures.add(executor.submit(() -> {
+                    if (handle.isCancelled()) {
+                        batch.forEach(action -> failures.put(action, "cancelled"));
+                        return;
+                    }
+                    try {
+                        storage.deleteObjects(plan.getBucket(), batch.stream().map(SyncAction::getKey).collect(Collectors.toList()));
+                        succeeded.addAndGet(batch.size());
+                    } catch (RuntimeException e) {
+                        log.warn("sync delete failed, bucket:{}, count:{}, msg:{}", plan.getBucket(), batch.size(), e.getMessage());
+                        batch.forEach(action -> failures.put(action, String.valueOf(e.getMessage())));
+                    }
+                }));
+            }
+            await(futures);
+        } finally {
+            executor.shutdownNow();
+        }
+        if (failures.isEmpty() && !handle.isCancelled()) {
+            handle.complete();
+        } else if (!handle.isCancelled()) {
+            handle.fail(new S3Exception(StrUtil.format("sync finished with {} failures", failures.size())));
+        }
+        SyncResult result = new SyncResult(plan, succeeded.get(), transferred.get(), new LinkedHashMap<>(failures),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        log.info(result.toString());
+        return result;
+    }
+
+    private List<SyncAction> diff(SyncDirection direction, File localDir, String bucket, String keyPrefix,
+                                  Map<String, LocalTreeWalker.LocalFile> local, Map<String, ObjectInfo> remote) {
+        List<SyncAction> actions;
+        if (direction == SyncDirection.UPLOAD) {
+            actions = local.entrySet().parallelStream()
+                    .map(entry -> {
+                        ObjectInfo object = remote.get(entry.getKey());
+                        String reason = changeReason(direction, bucket, entry.getValue(), object);
+                        return reason == null ? null : new SyncAction(SyncActionType.UPLOAD, keyPrefix + entry.getKey(),
+                                entry.getValue().file, entry.getValue().size, object, reason);
+                    })
+                    .filter(action -> action != null)
+                    .collect(Collectors.toList());
+            if (prop.isDeleteExtraneous()) {
+                remote.forEach((path, object) -> {
+                    if (!local.containsKey(path)) {
+                        actions.add(new SyncAction(SyncActionType.DELETE_REMOTE, object.getKey(), null, 0, object, "extraneous"));
+                    }
+                });
+            }
+        } else {
+            actions = remote.entrySet().parallelStream()
+                    .map(entry -> {
+                        LocalTreeWalker.LocalFile file = local.get(entry.getKey());
+                        String reason = changeReason(direction, bucket, file, entry.getValue());
+                        return reason == null ? null : new SyncAction(SyncActionType.DOWNLOAD, entry.getValue().getKey(),
+                                new File(localDir, entry.getKey()), entry.getValue().getSize(), entry.getValue(), reason);
+                    })
+                    .filter(action -> action != null)
+                    .collect(Collectors.toList());
+            if (prop.isDeleteExtraneous()) {
+                local.forEach((path, file) -> {
+                    if (!remote.containsKey(path)) {
+                        actions.add(new SyncAction(SyncActionType.DELETE_LOCAL, keyPrefix + path, file.file, 0, null, "extraneous"));
+                    }
+                });
+            }
+        }
+        return actions;
+    }
+
+    /**
+     * 判断是否需要同步, 返回原因, 无需同步时返回空
+     */
+    private String changeReason(SyncDirection direction, String bucket, LocalTreeWalker.LocalFile file, ObjectInfo object) {
+        if (file == null || object == null) {
+            return "new";
+        }
+        if (file.size != object.getSize()) {
+            return "size";
+        }
+        if (prop.getCompareMode() == SyncCompareMode.CHECKSUM) {
+            String remoteMd5 = remoteMd5(bucket, object);
+            if (remoteMd5 != null) {
+                return remoteMd5.equalsIgnoreCase(md5(file.file)) ? null : "checksum";
+            }
+        }
+        if (object.getLastModified() == null) {
+            return direction == SyncDirection.UPLOAD ? "mtime" : null;
+        }
+        long remoteMillis = object.getLastModified().getTime();
+        // 上传后对象时间晚于文件修改时间; 下载后文件修改时间被设置为对象时间
+        boolean newer = direction == SyncDirection.UPLOAD ? file.lastModified > remoteMillis : remoteMillis > file.lastModified;
+        return newer ? "mtime" : null;
+    }
+
+    /**
+     * 对象 MD5: 列举结果无法确认时(如 AWS 列举不含加密方式)以 headObject 确认, 仍未知时为空
+     */
+    private String remoteMd5(String bucket, ObjectInfo object) {
+        if (object.getMd5() != null) {
+            return object.getMd5();
+        }
+        try {
+            return storage.headObject(bucket, object.getKey()).getMd5();
+        } catch (RuntimeException e) {
+            if (FailureClassifier.isNotFound(e)) {
+                return null;
+            }
+            throw e;
+        }
+    }
+
+    private void run(SyncPlan plan, SyncAction action) throws IOException {
+        String bucket = plan.getBucket();
+        switch (action.getType()) {
+            case UPLOAD:
+                if (action.getSize() >= prop.getMultipartThreshold()) {
+                    new ResumableUploader(storage, uploadProp).upload(bucket, action.getKey(), action.getFile());
+                } else {
+                    storage.putObject(bucket, action.getKey(), action.getFile(), FileUtil.getMimeType(action.getFile().getName()));
+                }
+                break;
+            case DOWNLOAD:
+                checkInside(plan.getLocalDir(), action);
+                if (action.getSize() >= prop.getMultipartThreshold()) {
+                    new ResumableDownloader(storage, downloadProp).download(bucket, action.getKey(), action.getFile());
+                } else {
+                    download(bucket, action);
+                }
+                if (action.getRemote().getLastModified() != null) {
+                    action.getFile().setLastModified(action.getRemote().getLastModified().getTime());
+                }
+                break;
+            case DELETE_LOCAL:
+                Files.deleteIfExists(action.getFile().toPath());
+                break;
+            default:
+                throw new IllegalStateException("unexpected sync action: " + action.getType());
+        }
+    }
+
+    /**
+     * 小文件单次请求下载到临时文件后原子重命名
+     */
+    private void download(String bucket, SyncAction action) throws IOException {
+        File target = action.getFile();
+        File dir = target.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
+            throw new IOException("create directory failed: " + dir);
+        }
+        File temp = new File(target.getPath() + TEMP_SUFFIX);
+        try (InputStream in = storage.getObject(bucket, action.getKey(), 0, -1, action.getRemote().getEtag());
+             OutputStream out = Files.newOutputStream(temp.toPath())) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                out.write(buffer, 0, n);
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp.toPath());
+            throw e;
+        }
+        try {
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * 下载目标由远端 key 拼接而来, 规范化后必须位于本地目录内, 否则拒绝写入(如 ../ 开头的 key)
+     */
+    private static void checkInside(File localDir, SyncAction action) throws IOException {
+        String dir = localDir.getCanonicalPath();
+        String target = action.getFile().getCanonicalPath();
+        if (!target.startsWith(dir.endsWith(File.separator) ? dir : dir + File.separator)) {
+            throw new IOException(StrUtil.format("download target outside local dir, key:{}, target:{}", action.getKey(), target));
+        }
+    }
+
+    private boolean isExcluded(String path) {
+        if (path.endsWith(TEMP_SUFFIX)) {
+            return true;
+        }
+        for (PathMatcher matcher : excludes) {
+            if (matcher.matches(Paths.get(path))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String md5(File file) {
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, n);
+            }
+            return HexUtil.encodeHexStr(digest.digest());
+        } catch (IOException | NoSuchAlgorithmException e) {
+            throw new S3Exception(StrUtil.format("compute md5 failed, file:{}", file), e);
+        }
+    }
+
+    private static void await(List<Future<?>> futures) {
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new S3Exception("sync interrupted", e);
+        } catch (ExecutionException e) {
+            throw new S3Exception("sync action failed", (Exception) e.getCause());
+        }
+    }
+}
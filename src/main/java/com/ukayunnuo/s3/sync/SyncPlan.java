@@ -0,0 +1,110 @@
+package com.ukayunnuo.s3.sync;
+
+import cn.hutool.core.util.StrUtil;
+import lombok.Getter;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 同步计划
+ * <p> 由 {@link SyncEngine#plan} 生成, 执行前可检查或打印摘要, 再交给 {@link SyncEngine#execute} 执行 </p>
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Getter
+public class SyncPlan {
+
+    private final SyncDirection direction;
+
+    private final File localDir;
+
+    private final String bucket;
+
+    private final String prefix;
+
+    private final List<SyncAction> actions;
+
+    /**
+     * 扫描的本地文件数
+     */
+    private final int localFiles;
+
+    /**
+     * 扫描的对象数
+     */
+    private final int remoteObjects;
+
+    /**
+     * 生成计划耗时(毫秒)
+     */
+    private final long planMillis;
+
+    SyncPlan(SyncDirection direction, File localDir, String bucket, String prefix, List<SyncAction> actions,
+             int localFiles, int remoteObjects, long planMillis) {
+        this.direction = direction;
+        this.localDir = localDir;
+        this.bucket = bucket;
+        this.prefix = prefix;
+        this.actions = Collections.unmodifiableList(actions);
+        this.localFiles = localFiles;
+        this.remoteObjects = remoteObjects;
+        this.planMillis = planMillis;
+    }
+
+    public boolean isEmpty() {
+        return actions.isEmpty();
+    }
+
+    /**
+     * 指定类型的动作数
+     *
+     * @param type 类型
+     * @return int
+     */
+    public int count(SyncActionType type) {
+        int count = 0;
+        for (SyncAction action : actions) {
+            if (action.getType() == type) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 需要传输的总字节数
+     *
+     * @return long
+     */
+    public long getTransferBytes() {
+        long bytes = 0;
+        for (SyncAction action : actions) {
+            bytes += action.getSize();
+        }
+        return bytes;
+    }
+
+    /**
+     * 计划摘要
+     *
+     * @return String
+     */
+    public String summary() {
+        Map<SyncActionType, Integer> counts = new EnumMap<>(SyncActionType.class);
+        for (SyncActionType type : SyncActionType.values()) {
+            counts.put(type, count(type));
+        }
+        return StrUtil.format("sync plan {} {} <-> {}/{}: local:{}, remote:{}, actions:{}, bytes:{}, planMs:{}",
+                direction, localDir, bucket, prefix, localFiles, remoteObjects, counts, getTransferBytes(), planMillis);
+    }
+
+    @Override
+    public String toString() {
+        return summary();
+    }
+}
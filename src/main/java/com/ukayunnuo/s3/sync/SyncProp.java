@@ -0,0 +1,61 @@
+package com.ukayunnuo.s3.sync;
+
+import cn.hutool.json.JSONUtil;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 目录同步 配置
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "s3.sync")
+public class SyncProp {
+
+    /**
+     * 遍历本地目录与计算差异的并行度
+     */
+    private int walkThreads = 4;
+
+    /**
+     * 上传/下载/删除的并发数
+     */
+    private int transferThreads = 8;
+
+    /**
+     * 是否删除目标端多余的文件(对象)
+     */
+    private boolean deleteExtraneous = false;
+
+    /**
+     * 变更判断方式
+     */
+    private SyncCompareMode compareMode = SyncCompareMode.SIZE_MTIME;
+
+    /**
+     * 不小于该大小(字节)的文件使用断点续传上传/下载
+     */
+    private long multipartThreshold = 64L * 1024 * 1024;
+
+    /**
+     * 是否跟随符号链接
+     */
+    private boolean followLinks = false;
+
+    /**
+     * 排除的相对路径(glob, 如 *.tmp、cache/**), 同时作用于本地文件与对象
+     */
+    private List<String> excludes = new ArrayList<>();
+
+    @Override
+    public String toString() {
+        return JSONUtil.toJsonStr(this);
+    }
+}
@@ -0,0 +1,66 @@
+package com.ukayunnuo.s3.sync;
+
+import cn.hutool.core.util.StrUtil;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 同步执行结果
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Getter
+public class SyncResult {
+
+    private final SyncPlan plan;
+
+    /**
+     * 成功的动作数
+     */
+    private final int succeeded;
+
+    /**
+     * 实际传输的字节数
+     */
+    private final long transferredBytes;
+
+    /**
+     * 失败的动作及原因
+     */
+    private final Map<SyncAction, String> failures;
+
+    private final long elapsedMillis;
+
+    SyncResult(SyncPlan plan, int succeeded, long transferredBytes, Map<SyncAction, String> failures, long elapsedMillis) {
+        this.plan = plan;
+        this.succeeded = succeeded;
+        this.transferredBytes = transferredBytes;
+        this.failures = Collections.unmodifiableMap(failures);
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public boolean isSuccess() {
+        return failures.isEmpty();
+    }
+
+    /**
+     * 失败的动作
+     *
+     * @return 动作列表
+     */
+    public List<SyncAction> failedActions() {
+        return Collections.unmodifiableList(new ArrayList<>(failures.keySet()));
+    }
+
+    @Override
+    public String toString() {
+        return StrUtil.format("sync result {} {} <-> {}/{}: succeeded:{}, failed:{}, bytes:{}, elapsedMs:{}",
+                plan.getDirection(), plan.getLocalDir(), plan.getBucket(), plan.getPrefix(), succeeded, failures.size(),
+                transferredBytes, elapsedMillis);
+    }
+}
@@ -0,0 +1,648 @@
+package com.ukayunnuo.s3.tier;
+
+import com.ukayunnuo.s3.core.StorageProvider;
+import com.ukayunnuo.s3.core.StorageThreads;
+import com.ukayunnuo.s3.resilience.FailureClassifier;
+import com.ukayunnuo.s3.storage.MultipartUploadInfo;
+import com.ukayunnuo.s3.storage.ObjectInfo;
+import com.ukayunnuo.s3.storage.ObjectStorage;
+import com.ukayunnuo.s3.storage.PartInfo;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 冷热分层存储
+ * <p> 冷层(AWS / OCI)保存全部对象, 热层(本地 minio)只保存近期频繁读取的对象. 读取先查热层, 未命中读冷层;
+ * 在 {@code access-window-millis} 内读取达到 {@code promote-access-count} 次的对象由后台线程复制到热层.
+ * 后台按 {@code demote-interval-millis} 列举热层, 超出 {@code hot-capacity-bytes} 时按最近访问时间从旧到新删除热层副本,
+ * 冷层不受影响. 降级检查 {@code buckets} 配置的桶与本进程访问过的桶, 重启后没有访问记录的副本按修改时间排序 </p>
+ * <p> 写入与删除只作用于冷层, 随后删除热层副本; 列举与前缀检查直接查冷层. 热层副本的元数据 {@value #META_COLD_ETAG}
+ * 记录冷层 ETag, {@link #headObject} 返回的 ETag 始终是冷层的. 热层不可用时读取自动回退冷层 </p>
+ * <p> 本进程未确认过的热层副本(重启后、访问记录被淘汰、删除热层副本失败)先以冷层 HEAD 比对 ETag, 一致才读热层,
+ * 不一致时删除热层副本并读冷层; 不依赖内存中的记录判断副本是否过期 </p>
+ * <p> 热层与冷层使用相同的桶名, 热层的桶只应由本类写入; 绕过本类直接修改冷层时, 需调用 {@link #invalidate} 使热层副本失效
+ * (如通过 {@code BucketNotificationListener}) </p>
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Slf4j
+public class TieredObjectStorage implements ObjectStorage, Closeable {
+
+    /**
+     * 热层副本中记录冷层 ETag 的元数据名
+     */
+    public static final String META_COLD_ETAG = "s3util-tier-etag";
+
+    private static final AtomicInteger THREAD_SEQ = new AtomicInteger();
+
+    /**
+     * 一个 桶/key 的访问记录
+     */
+    private static class Access {
+
+        long windowStart;
+
+        int count;
+
+        long lastAccess;
+
+        /**
+         * 已确认的热层副本对应的冷层 ETag, 为空表示热层副本未知, 读取前需与冷层比对
+         */
+        String coldEtag;
+
+        /**
+         * 写入、删除、降级的次数, 提升完成时变化说明复制的内容已过期
+         */
+        int version;
+    }
+
+    /**
+     * 降级候选
+     */
+    private static class Candidate {
+
+        final String bucket;
+
+        final String key;
+
+        final long size;
+
+        final long lastAccess;
+
+        Candidate(String bucket, String key, long size, long lastAccess) {
+            this.bucket = bucket;
+            this.key = key;
+            this.size = size;
+            this.lastAccess = lastAccess;
+        }
+    }
+
+    private final ObjectStorage hot;
+
+    private final ObjectStorage cold;
+
+    private final TieredStorageProp prop;
+
+    /**
+     * 访问记录, 按最近访问排序(只有 {@link #touch} 调整顺序), 超出上限时淘汰最久未访问的
+     */
+    private final Map<String, Access> accesses;
+
+    /**
+     * 配置的桶与访问过的桶, 降级时列举这些桶的热层
+     */
+    private final Set<String> buckets = ConcurrentHashMap.newKeySet();
+
+    private final Set<String> promoting = ConcurrentHashMap.newKeySet();
+
+    private final ExecutorService promoter;
+
+    private final ScheduledExecutorService demoter;
+
+    private final AtomicLong hotBytes = new AtomicLong();
+
+    private final AtomicLong hotHits = new AtomicLong();
+
+    private final AtomicLong coldReads = new AtomicLong();
+
+    private final AtomicLong promoted = new AtomicLong();
+
+    private final AtomicLong demoted = new AtomicLong();
+
+    /**
+     * @param hot  热层, 如 minio
+     * @param cold 冷层, 如 AWS / OCI
+     * @param prop 配置
+     */
+    public TieredObjectStorage(ObjectStorage hot, ObjectStorage cold, TieredStorageProp prop) {
+        this.hot = hot;
+        this.cold = cold;
+        this.prop = prop;
+        this.accesses = new LinkedHashMap<String, Access>() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Access> eldest) {
+                return size() > prop.getMaxTrackedKeys();
+            }
+        };
+        buckets.addAll(prop.getBuckets());
+        this.promoter = StorageThreads.newExecutor("s3-tier-promote", Math.max(1, prop.getPromoteWorkers()));
+        this.demoter = Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "s3-tier-demote-"));
+        demoter.scheduleWithFixedDelay(this::demoteQuietly, prop.getDemoteIntervalMillis(), prop.getDemoteIntervalMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public TieredObjectStorage(ObjectStorage hot, ObjectStorage cold) {
+        this(hot, cold, new TieredStorageProp());
+    }
+
+    @Override
+    public StorageProvider getProvider() {
+        return cold.getProvider();
+    }
+
+    @Override
+    public ObjectInfo headObject(String bucket, String key) {
+        buckets.add(bucket);
+        Access access;
+        String known;
+        int version;
+        synchronized (accesses) {
+            access = accesses.get(id(bucket, key));
+            known = access == null ? null : access.coldEtag;
+            version = access == null ? 0 : access.version;
+        }
+        String hotEtag = null;
+        try {
+            ObjectInfo info = hot.headObject(bucket, key);
+            hotEtag = removeColdEtag(info);
+            if (hotEtag != null && hotEtag.equals(known)) {
+                info.setEtag(hotEtag);
+                return info;
+            }
+        } catch (RuntimeException e) {
+            hotFailed(bucket, key, e);
+        }
+        ObjectInfo info = cold.headObject(bucket, key);
+        if (hotEtag != null) {
+            if (sameEtag(hotEtag, info.getEtag())) {
+                confirmed(bucket, key, access, version, info.getEtag());
+            } else {
+                dropHot(bucket, key);
+            }
+        }
+        return info;
+    }
+
+    @Override
+    public InputStream getObject(String bucket, String key, long offset, long length, String etag) {
+        buckets.add(bucket);
+        Access access;
+        int version;
+        String known;
+        synchronized (accesses) {
+            access = touch(bucket, key);
+            version = access.version;
+            known = access.coldEtag;
+        }
+        if (known == null) {
+            known = confirmHot(bucket, key, access, version);
+        }
+        // 指定 ETag 时只有热层副本对应该 ETag 才读热层
+        if (known != null && (etag == null || sameEtag(etag, known))) {
+            try {
+                InputStream in = hot.getObject(bucket, key, offset, length, null);
+                hotHits.incrementAndGet();
+                return in;
+            } catch (RuntimeException e) {
+                hotFailed(bucket, key, e);
+            }
+        }
+        InputStream in = cold.getObject(bucket, key, offset, length, etag);
+        coldReads.incrementAndGet();
+        boolean promote;
+        synchronized (accesses) {
+            promote = access.count >= prop.getPromoteAccessCount();
+        }
+        if (promote) {
+            schedulePromotion(bucket, key, access, version);
+        }
+        return in;
+    }
+
+    @Override
+    public void listObjects(String bucket, String prefix, Consumer<ObjectInfo> consumer) {
+        cold.listObjects(bucket, prefix, consumer);
+    }
+
+    @Override
+    public boolean existsPrefix(String bucket, String prefix) {
+        return cold.existsPrefix(bucket, prefix);
+    }
+
+    @Override
+    public String putObject(String bucket, String key, File file, String contentType) {
+        String etag = cold.putObject(bucket, key, file, contentType);
+        invalidate(bucket, Collections.singletonList(key));
+        return etag;
+    }
+
+    @Override
+    public String putObject(String bucket, String key, byte[] data, String contentType, Map<String, String> metadata) {
+        String etag = cold.putObject(bucket, key, data, contentType, metadata);
+        invalidate(bucket, Collections.singletonList(key));
+        return etag;
+    }
+
+    @Override
+    public void deleteObjects(String bucket, List<String> keys) {
+        cold.deleteObjects(bucket, keys);
+        invalidate(bucket, keys);
+    }
+
+    @Override
+    public String initiateMultipartUpload(String bucket, String key, String contentType, Map<String, String> metadata) {
+        return cold.initiateMultipartUpload(bucket, key, contentType, metadata);
+    }
+
+    @Override
+    public String uploadPart(String bucket, String key, String uploadId, int partNumber, File file, long offset, long size) {
+        return cold.uploadPart(bucket, key, uploadId, partNumber, file, offset, size);
+    }
+
+    @Override
+    public String uploadPart(String bucket, String key, String uploadId, int partNumber, byte[] data) {
+        return cold.uploadPart(bucket, key, uploadId, partNumber, data);
+    }
+
+    @Override
+    public List<PartInfo> listParts(String bucket, String key, String uploadId) {
+        return cold.listParts(bucket, key, uploadId);
+    }
+
+    @Override
+    public String completeMultipartUpload(String bucket, String key, String uploadId, List<PartInfo> parts) {
+        String etag = cold.completeMultipartUpload(bucket, key, uploadId, parts);
+        invalidate(bucket, Collections.singletonList(key));
+        return etag;
+    }
+
+    @Override
+    public void abortMultipartUpload(String bucket, String key, String uploadId) {
+        cold.abortMultipartUpload(bucket, key, uploadId);
+    }
+
+    @Override
+    public List<MultipartUploadInfo> listMultipartUploads(String bucket, String prefix) {
+        return cold.listMultipartUploads(bucket, prefix);
+    }
+
+    /**
+     * 删除热层副本, 冷层被其他途径修改后调用; 删除失败时副本保留, 下次读取与冷层比对 ETag 后删除
+     *
+     * @param bucket 桶
+     * @param keys   key
+     */
+    public void invalidate(String bucket, List<String> keys) {
+        synchronized (accesses) {
+            for (String key : keys) {
+                Access access = accesses.get(id(bucket, key));
+                if (access != null) {
+                    access.coldEtag = null;
+                    access.version++;
+                }
+            }
+        }
+        try {
+            hot.deleteObjects(bucket, keys);
+        } catch (RuntimeException e) {
+            log.warn("tier invalidate failed, hot copies checked against cold on next read, bucket:{}, keys:{}, error:{}",
+                    bucket, keys.size(), e.toString());
+        }
+    }
+
+    /**
+     * 立即执行一轮降级: 删除空闲超时的热层副本, 热层超出容量时按最近访问时间从旧到新删除到低水位以下
+     *
+     * @return 降级的对象数
+     */
+    public int demote() {
+        long now = System.currentTimeMillis();
+        List<Candidate> candidates = new ArrayList<>();
+        long total = 0;
+        for (String bucket : buckets) {
+            List<ObjectInfo> objects = new ArrayList<>();
+            hot.listObjects(bucket, "", objects::add);
+            synchronized (accesses) {
+                for (ObjectInfo info : objects) {
+                    Access access = accesses.get(id(bucket, info.getKey()));
+                    long lastAccess = access != null ? access.lastAccess
+                            : info.getLastModified() == null ? 0 : info.getLastModified().getTime();
+                    candidates.add(new Candidate(bucket, info.getKey(), info.getSize(), lastAccess));
+                    total += info.getSize();
+                }
+            }
+        }
+        candidates.sort(Comparator.comparingLong(candidate -> candidate.lastAccess));
+        long target = total > prop.getHotCapacityBytes() ? (long) (prop.getHotCapacityBytes() * prop.getLowWatermark()) : total;
+        Map<String, List<String>> evicted = new HashMap<>();
+        int count = 0;
+        for (Candidate candidate : candidates) {
+            boolean idle = prop.getMaxIdleMillis() > 0 && now - candidate.lastAccess > prop.getMaxIdleMillis();
+            if (total <= target && !idle) {
+                break;
+            }
+            evicted.computeIfAbsent(candidate.bucket, b -> new ArrayList<>()).add(candidate.key);
+            total -= candidate.size;
+            count++;
+        }
+        for (Map.Entry<String, List<String>> entry : evicted.entrySet()) {
+            synchronized (accesses) {
+                for (String key : entry.getValue()) {
+                    Access access = accesses.get(id(entry.getKey(), key));
+                    if (access != null) {
+                        access.coldEtag = null;
+                        access.version++;
+                    }
+                }
+            }
+            hot.deleteObjects(entry.getKey(), entry.getValue());
+        }
+        hotBytes.set(total);
+        demoted.addAndGet(count);
+        if (count > 0) {
+            log.info("tier demoted, objects:{}, hotBytes:{}", count, total);
+        }
+        return count;
+    }
+
+    /**
+     * 热层占用(字节), 降级时按列举结果校正
+     *
+     * @return long
+     */
+    public long getHotBytes() {
+        return hotBytes.get();
+    }
+
+    public long getHotHitCount() {
+        return hotHits.get();
+    }
+
+    public long getColdReadCount() {
+        return coldReads.get();
+    }
+
+    public long getPromotedCount() {
+        return promoted.get();
+    }
+
+    public long getDemotedCount() {
+        return demoted.get();
+    }
+
+    /**
+     * 停止降级与提升线程, 未完成的提升最多等待 {@code close-timeout-millis}
+     */
+    @Override
+    public void close() {
+        demoter.shutdownNow();
+        promoter.shutdown();
+        try {
+            if (!promoter.awaitTermination(prop.getCloseTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+                promoter.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("tiered storage closed, hotHits:{}, coldReads:{}, promoted:{}, demoted:{}",
+                hotHits.get(), coldReads.get(), promoted.get(), demoted.get());
+    }
+
+    private void schedulePromotion(String bucket, String key, Access access, int version) {
+        String id = id(bucket, key);
+        if (promoting.size() >= prop.getMaxPendingPromotions() || !promoting.add(id)) {
+            return;
+        }
+        try {
+            promoter.execute(() -> {
+                try {
+                    promote(bucket, key, access, version);
+                } catch (IOException | RuntimeException e) {
+                    log.warn("tier promote failed, bucket:{}, key:{}, error:{}", bucket, key, e.toString());
+                } finally {
+                    promoting.remove(id);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            promoting.remove(id);
+        }
+    }
+
+    private void promote(String bucket, String key, Access access, int version) throws IOException {
+        ObjectInfo info = cold.headObject(bucket, key);
+        if (info.getSize() > prop.getMaxPromoteSize()) {
+            return;
+        }
+        Map<String, String> metadata = new HashMap<>();
+        if (info.getMetadata() != null) {
+            metadata.putAll(info.getMetadata());
+        }
+        metadata.put(META_COLD_ETAG, info.getEtag());
+        try (InputStream in = cold.getObject(bucket, key, 0, -1, info.getEtag())) {
+            if (info.getSize() <= prop.getPartSize()) {
+                hot.putObject(bucket, key, readFully(in, new byte[(int) info.getSize()]), info.getContentType(), metadata);
+            } else {
+                copyMultipart(bucket, key, in, info, metadata);
+            }
+        }
+        boolean current;
+        synchronized (accesses) {
+            current = accesses.get(id(bucket, key)) == access && access.version == version;
+            if (current) {
+                access.coldEtag = info.getEtag();
+            }
+        }
+        if (!current) {
+            // 复制期间冷层被修改或副本被降级
+            hot.deleteObjects(bucket, Collections.singletonList(key));
+            return;
+        }
+        promoted.incrementAndGet();
+        log.debug("tier promoted, bucket:{}, key:{}, size:{}", bucket, key, info.getSize());
+        if (hotBytes.addAndGet(info.getSize()) > prop.getHotCapacityBytes()) {
+            demoter.execute(this::demoteQuietly);
+        }
+    }
+
+    private void copyMultipart(String bucket, String key, InputStream in, ObjectInfo info, Map<String, String> metadata) throws IOException {
+        String uploadId = hot.initiateMultipartUpload(bucket, key, info.getContentType(), metadata);
+        try {
+            List<PartInfo> parts = new ArrayList<>();
+            long remaining = info.getSize();
+            for (int partNumber = 1; remaining > 0; partNumber++) {
+                int size = (int) Math.min(prop.getPartSize(), remaining);
+                // 每段新建数组, 不假设各实现在返回后不再引用传入的数组
+                byte[] data = readFully(in, new byte[size]);
+                parts.add(new PartInfo(partNumber, hot.uploadPart(bucket, key, uploadId, partNumber, data), size));
+                remaining -= size;
+            }
+            hot.completeMultipartUpload(bucket, key, uploadId, parts);
+        } catch (IOException | RuntimeException e) {
+            try {
+                hot.abortMultipartUpload(bucket, key, uploadId);
+            } catch (RuntimeException abortError) {
+                e.addSuppressed(abortError);
+            }
+            throw e;
+        }
+    }
+
+    private void demoteQuietly() {
+        try {
+            demote();
+        } catch (RuntimeException e) {
+            log.warn("tier demote failed, error:{}", e.toString());
+        }
+    }
+
+    /**
+     * 热层读取失败: 不存在时清除记录, 其他错误记录日志后回退冷层
+     */
+    private void hotFailed(String bucket, String key, RuntimeException e) {
+        if (FailureClassifier.isNotFound(e)) {
+            synchronized (accesses) {
+                Access access = accesses.get(id(bucket, key));
+                if (access != null) {
+                    access.coldEtag = null;
+                }
+            }
+            return;
+        }
+        log.warn("tier hot read failed, fall back to cold, bucket:{}, key:{}, error:{}", bucket, key, e.toString());
+    }
+
+    /**
+     * 未确认的热层副本与冷层比对 ETag: 一致时记录并返回冷层 ETag, 没有副本或不一致时返回空(不一致的副本被删除)
+     */
+    private String confirmHot(String bucket, String key, Access access, int version) {
+        String hotEtag;
+        try {
+            hotEtag = removeColdEtag(hot.headObject(bucket, key));
+        } catch (RuntimeException e) {
+            hotFailed(bucket, key, e);
+            return null;
+        }
+        if (hotEtag == null) {
+            return null;
+        }
+        String coldEtag;
+        try {
+            coldEtag = cold.headObject(bucket, key).getEtag();
+        } catch (RuntimeException e) {
+            if (FailureClassifier.isNotFound(e)) {
+                dropHot(bucket, key);
+            }
+            // 冷层不可确认时不使用热层副本, 由冷层读取报告错误
+            return null;
+        }
+        if (!sameEtag(hotEtag, coldEtag)) {
+            dropHot(bucket, key);
+            return null;
+        }
+        confirmed(bucket, key, access, version, coldEtag);
+        return coldEtag;
+    }
+
+    /**
+     * 记录已确认的热层副本, 确认期间有写入、删除或降级时不记录
+     */
+    private void confirmed(String bucket, String key, Access access, int version, String coldEtag) {
+        synchronized (accesses) {
+            if (access != null && accesses.get(id(bucket, key)) == access && access.version == version) {
+                access.coldEtag = coldEtag;
+            }
+        }
+    }
+
+    /**
+     * 删除过期的热层副本, 失败时下次读取再比对
+     */
+    private void dropHot(String bucket, String key) {
+        log.debug("tier hot copy outdated, bucket:{}, key:{}", bucket, key);
+        try {
+            hot.deleteObjects(bucket, Collections.singletonList(key));
+        } catch (RuntimeException e) {
+            log.warn("tier drop outdated hot copy failed, bucket:{}, key:{}, error:{}", bucket, key, e.toString());
+        }
+    }
+
+    private static boolean sameEtag(String a, String b) {
+        return a != null && b != null && a.replace("\"", "").equals(b.replace("\"", ""));
+    }
+
+    /**
+     * 记录一次访问并移到最近访问的位置, 调用方持有 accesses 锁
+     */
+    private Access touch(String bucket, String key) {
+        String id = id(bucket, key);
+        Access access = accesses.remove(id);
+        if (access == null) {
+            access = new Access();
+        }
+        accesses.put(id, access);
+        long now = System.currentTimeMillis();
+        if (now - access.windowStart > prop.getAccessWindowMillis()) {
+            access.windowStart = now;
+            access.count = 0;
+        }
+        access.count++;
+        access.lastAccess = now;
+        return access;
+    }
+
+    private static String id(String bucket, String key) {
+        return bucket + "/" + key;
+    }
+
+    /**
+     * 取出热层副本中的冷层 ETag 元数据, 不是本类写入的副本时为空
+     */
+    private static String removeColdEtag(ObjectInfo info) {
+        if (info.getMetadata() == null) {
+            return null;
+        }
+        Map<String, String> metadata = new HashMap<>(info.getMetadata());
+        for (Map.Entry<String, String> entry : info.getMetadata().entrySet()) {
+            // 不同平台返回的元数据名大小写不同
+            if (META_COLD_ETAG.equalsIgnoreCase(entry.getKey())) {
+                metadata.remove(entry.getKey());
+                info.setMetadata(metadata);
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    private static byte[] readFully(InputStream in, byte[] data) throws IOException {
+        int read = 0;
+        int n;
+        while (read < data.length && (n = in.read(data, read, data.length - read)) >= 0) {
+            read += n;
+        }
+        if (read < data.length) {
+            throw new EOFException("object truncated, expected " + data.length + " bytes, read " + read);
+        }
+        return data;
+    }
+
+    private static Thread daemon(Runnable runnable, String prefix) {
+        Thread thread = new Thread(runnable, prefix + THREAD_SEQ.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    }
+}
@@ -0,0 +1,91 @@
+package com.ukayunnuo.s3.tier;
+
+import cn.hutool.json.JSONUtil;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 冷热分层存储 配置
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "s3.tier")
+public class TieredStorageProp {
+
+    /**
+     * 热层容量(字节), 超出后按最近访问时间从旧到新降级
+     */
+    private long hotCapacityBytes = 10L * 1024 * 1024 * 1024;
+
+    /**
+     * 降级到容量的该比例以下, 避免每轮只删几个对象
+     */
+    private double lowWatermark = 0.9;
+
+    /**
+     * 在 {@code access-window-millis} 内访问多少次后提升到热层
+     */
+    private int promoteAccessCount = 2;
+
+    /**
+     * 访问计数窗口(毫秒)
+     */
+    private long accessWindowMillis = 10 * 60 * 1000;
+
+    /**
+     * 超过该大小的对象不提升
+     */
+    private long maxPromoteSize = 512L * 1024 * 1024;
+
+    /**
+     * 提升时分段复制的分段大小(字节), 不超过该大小的对象单次写入
+     */
+    private int partSize = 8 * 1024 * 1024;
+
+    /**
+     * 提升线程数
+     */
+    private int promoteWorkers = 2;
+
+    /**
+     * 排队中的提升数上限, 超出时本次不提升
+     */
+    private int maxPendingPromotions = 1000;
+
+    /**
+     * 降级检查间隔(毫秒)
+     */
+    private long demoteIntervalMillis = 60 * 1000;
+
+    /**
+     * 热层对象超过该时间(毫秒)未访问即降级, 0 表示只按容量降级
+     */
+    private long maxIdleMillis = 0;
+
+    /**
+     * 降级检查的桶, 启动后即纳入检查; 未配置的桶在首次经本类访问后才纳入, 重启前留在热层的副本在此之前不会降级
+     */
+    private List<String> buckets = new ArrayList<>();
+
+    /**
+     * 内存中跟踪访问记录的 key 数上限
+     */
+    private int maxTrackedKeys = 100000;
+
+    /**
+     * 关闭时等待提升完成的时间(毫秒)
+     */
+    private long closeTimeoutMillis = 10000;
+
+    @Override
+    public String toString() {
+        return JSONUtil.toJsonStr(this);
+    }
+}
@@ -0,0 +1,99 @@
+package com.ukayunnuo.s3.transfer;
+
+import cn.hutool.core.util.StrUtil;
+import com.ukayunnuo.s3.core.StorageThreads;
+import com.ukayunnuo.s3.exception.S3Exception;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 分块任务并发执行
+ * <p> 每个传输任务使用独立的执行器({@link StorageThreads}, 守护线程池或虚拟线程); 任一分块失败或传输取消时取消尚未开始的分块.
+ * 不中断执行中的线程: 中断会关闭分块共享的文件通道, 执行中的分块在下一次读写时通过 {@link TransferHandle#checkCancelled()} 退出 </p>
+ * <p> 返回或抛出前等待执行中的分块结束, 调用方随后关闭文件通道、日志时不会有分块仍在读写 </p>
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+class ChunkRunner {
+
+    private static final long WAIT_MILLIS = 500;
+
+    private ChunkRunner() {
+    }
+
+    /**
+     * 并发执行分块任务并等待全部完成
+     *
+     * @param tasks       分块任务
+     * @param concurrency 并发数
+     * @param threadName  线程名前缀
+     * @param handle      传输句柄
+     */
+    static void runAll(List<Callable<Void>> tasks, int concurrency, String threadName, TransferHandle handle) {
+        if (tasks.isEmpty()) {
+            return;
+        }
+        int threads = Math.max(1, Math.min(concurrency, tasks.size()));
+        ExecutorService executor = StorageThreads.newExecutor(threadName, threads);
+        ExecutorCompletionService<Void> completion = new ExecutorCompletionService<>(executor);
+        List<Future<Void>> futures = new ArrayList<>(tasks.size());
+        try {
+            for (Callable<Void> task : tasks) {
+                futures.add(completion.submit(() -> {
+                    handle.checkCancelled();
+                    return task.call();
+                }));
+            }
+            // 取消时排队中的任务被丢弃, 不能无限期等待
+            for (int finished = 0; finished < futures.size(); ) {
+                Future<Void> future = completion.poll(WAIT_MILLIS, TimeUnit.MILLISECONDS);
+                if (future != null) {
+                    future.get();
+                    finished++;
+                } else {
+                    handle.checkCancelled();
+                }
+            }
+        } catch (TransferCancelledException e) {
+            throw new S3Exception(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new S3Exception(StrUtil.format("transfer interrupted, bucket:{}, key:{}", handle.getBucket(), handle.getKey()), e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new S3Exception(StrUtil.format("transfer chunk failed, bucket:{}, key:{}", handle.getBucket(), handle.getKey()),
+                    (Exception) cause);
+        } finally {
+            for (Future<Void> future : futures) {
+                future.cancel(false);
+            }
+            executor.shutdown();
+            awaitTermination(executor);
+        }
+    }
+
+    private static void awaitTermination(ExecutorService executor) {
+        boolean interrupted = false;
+        while (!executor.isTerminated()) {
+            try {
+                executor.awaitTermination(WAIT_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package com.ukayunnuo.s3.transfer;
+
+import cn.hutool.core.util.StrUtil;
+import com.ukayunnuo.s3.core.StorageProvider;
+import com.ukayunnuo.s3.exception.S3Exception;
+import com.ukayunnuo.s3.storage.ObjectInfo;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * 下载检查点
+ * <p> 下载内容写入目标文件旁的临时文件 {@code <target>.part}, 已完成的字节区间记录在旁路检查点 {@code <target>.part.ckpt}:
+ * <pre>
+ * object &lt;provider&gt; &lt;bucket&gt; &lt;urlEncodedKey&gt; &lt;etag&gt; &lt;size&gt; &lt;chunkSize&gt;
+ * range &lt;start&gt; &lt;end&gt;
+ * </pre>
+ * 区间记录按 {@code fsyncEveryChunks} 批量刷盘, 刷盘前先刷临时文件, 保证记录的区间已落盘. 完成后原子重命名为目标文件 </p>
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Slf4j
+public class DownloadCheckpoint implements Closeable {
+
+    public static final String PART_SUFFIX = ".part";
+
+    public static final String CHECKPOINT_SUFFIX = ".part.ckpt";
+
+    @Getter
+    private final File target;
+
+    @Getter
+    private final File temp;
+
+    private final File sidecar;
+
+    private final int fsyncEveryChunks;
+
+    private StorageProvider provider;
+
+    private String bucket;
+
+    private String key;
+
+    @Getter
+    private String etag;
+
+    @Getter
+    private long size = -1;
+
+    @Getter
+    private long chunkSize;
+
+    /**
+     * 已完成区间 start -> end(不含)
+     */
+    private final Map<Long, Long> ranges = new ConcurrentSkipListMap<>();
+
+    private volatile FileChannel data;
+
+    private volatile JournalWriter writer;
+
+    private DownloadCheckpoint(File target, int fsyncEveryChunks) {
+        this.target = target;
+        this.temp = new File(target.getPath() + PART_SUFFIX);
+        this.sidecar = new File(target.getPath() + CHECKPOINT_SUFFIX);
+        this.fsyncEveryChunks = fsyncEveryChunks;
+    }
+
+    /**
+     * 打开目标文件的下载检查点, 已存在时加载其中的记录
+     *
+     * @param target           目标文件
+     * @param fsyncEveryChunks 每多少条区间记录刷盘一次
+     * @return {@link DownloadCheckpoint}
+     */
+    public static DownloadCheckpoint open(File target, int fsyncEveryChunks) {
+        DownloadCheckpoint checkpoint = new DownloadCheckpoint(target, fsyncEveryChunks);
+        checkpoint.read();
+        return checkpoint;
+    }
+
+    /**
+     * 检查点是否对应同一对象的同一版本, 且临时文件完好
+     *
+     * @param provider  平台
+     * @param bucket    桶
+     * @param info      当前对象元数据
+     * @param chunkSize 分块大小
+     * @return boolean
+     */
+    public boolean matches(StorageProvider provider, String bucket, ObjectInfo info, long chunkSize) {
+        return provider == this.provider && Objects.equals(bucket, this.bucket) && Objects.equals(info.getKey(), key)
+                && StrUtil.isNotBlank(etag) && Objects.equals(info.getEtag(), etag) && info.getSize() == size
+                && chunkSize == this.chunkSize && temp.isFile() && temp.length() == size;
+    }
+
+    /**
+     * 开始新的下载: 重建临时文件与检查点
+     *
+     * @param provider  平台
+     * @param bucket    桶
+     * @param info      对象元数据
+     * @param chunkSize 分块大小
+     */
+    public synchronized void begin(StorageProvider provider, String bucket, ObjectInfo info, long chunkSize) {
+        this.provider = provider;
+        this.bucket = bucket;
+        this.key = info.getKey();
+        this.etag = info.getEtag();
+        this.size = info.getSize();
+        this.chunkSize = chunkSize;
+        this.ranges.clear();
+        close();
+        try {
+            File dir = temp.getAbsoluteFile().getParentFile();
+            if (dir != null && !dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
+                throw new IOException("create download dir failed: " + dir);
+            }
+            try (RandomAccessFile file = new RandomAccessFile(temp, "rw")) {
+                file.setLength(size);
+            }
+        } catch (IOException e) {
+            throw new S3Exception(StrUtil.format("create download temp file failed, file:{}", temp), e);
+        }
+        openWriter();
+    }
+
+    /**
+     * 继续已有的下载: 重写检查点(丢弃崩溃留下的不完整末行), 后续记录追加写入
+     */
+    public synchronized void resume() {
+        close();
+        openWriter();
+    }
+
+    /**
+     * 区间是否已完成
+     *
+     * @param start 起始偏移
+     * @param end   结束偏移(不含)
+     * @return boolean
+     */
+    public boolean isDone(long start, long end) {
+        Long recorded = ranges.get(start);
+        return recorded != null && recorded == end;
+    }
+
+    /**
+     * 已完成的字节数
+     *
+     * @return long
+     */
+    public long completedBytes() {
+        long total = 0;
+        for (Map.Entry<Long, Long> range : ranges.entrySet()) {
+            total += range.getValue() - range.getKey();
+        }
+        return total;
+    }
+
+    /**
+     * 在指定位置写入临时文件(线程安全)
+     *
+     * @param buffer   数据
+     * @param position 位置
+     * @throws IOException 写入失败
+     */
+    public void write(ByteBuffer buffer, long position) throws IOException {
+        FileChannel channel = data;
+        if (channel == null) {
+            throw new ClosedChannelException();
+        }
+        long offset = position;
+        while (buffer.hasRemaining()) {
+            offset += channel.write(buffer, offset);
+        }
+    }
+
+    /**
+     * 记录一个已完成的区间
+     *
+     * @param start 起始偏移
+     * @param end   结束偏移(不含)
+     */
+    public void markDone(long start, long end) {
+        JournalWriter current = writer;
+        if (current == null) {
+            return;
+        }
+        ranges.put(start, end);
+        try {
+            current.append(rangeLine(start, end));
+        } catch (IOException e) {
+            // 检查点只用于续传, 写入失败不影响本次下载
+            log.warn("append download checkpoint failed, file:{}, msg:{}", sidecar, e.getMessage());
+        }
+    }
+
+    /**
+     * 完成下载: 临时文件刷盘后原子重命名为目标文件, 并删除检查点
+     *
+     * @return 目标文件
+     */
+    public synchronized File commit() {
+        try {
+            data.force(true);
+            close();
+            if (temp.length() != size) {
+                throw new S3Exception(StrUtil.format("download size mismatch, file:{}, expected:{}, actual:{}", temp, size, temp.length()));
+            }
+            try {
+                Files.move(temp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            throw new S3Exception(StrUtil.format("commit download failed, file:{}", target), e);
+        }
+        new JournalWriter(sidecar, 1, null).delete();
+        return target;
+    }
+
+    /**
+     * 放弃下载: 删除临时文件与检查点
+     */
+    public synchronized void discard() {
+        close();
+        new JournalWriter(sidecar, 1, null).delete();
+        try {
+            Files.deleteIfExists(temp.toPath());
+        } catch (IOException e) {
+            log.warn("delete download temp file failed, file:{}, msg:{}", temp, e.getMessage());
+        }
+    }
+
+    /**
+     * 刷盘并关闭, 保留临时文件与检查点用于续传
+     */
+    @Override
+    public synchronized void close() {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+        if (data != null) {
+            try {
+                data.close();
+            } catch (IOException e) {
+                log.warn("close download temp file failed, file:{}, msg:{}", temp, e.getMessage());
+            }
+            data = null;
+        }
+    }
+
+    private void openWriter() {
+        try {
+            data = FileChannel.open(temp.toPath(), StandardOpenOption.WRITE);
+            writer = new JournalWriter(sidecar, fsyncEveryChunks, data);
+            StringBuilder content = new StringBuilder(StrUtil.format("object {} {} {} {} {} {}\n",
+                    provider.getTag(), bucket, JournalWriter.encode(key), etag, size, chunkSize));
+            for (Map.Entry<Long, Long> range : ranges.entrySet()) {
+                content.append(rangeLine(range.getKey(), range.getValue()));
+            }
+            writer.rewrite(content.toString());
+        } catch (IOException e) {
+            close();
+            throw new S3Exception(StrUtil.format("write download checkpoint failed, file:{}", sidecar), e);
+        }
+    }
+
+    private static String rangeLine(long start, long end) {
+        return StrUtil.format("range {} {}\n", start, end);
+    }
+
+    private void read() {
+        for (String line : JournalWriter.read(sidecar)) {
+            String[] fields = line.split(" ");
+            try {
+                if ("object".equals(fields[0]) && fields.length == 7) {
+                    provider = StorageProvider.valueOf(fields[1].toUpperCase());
+                    bucket = fields[2];
+                    key = JournalWriter.decode(fields[3]);
+                    etag = fields[4];
+                    size = Long.parseLong(fields[5]);
+                    chunkSize = Long.parseLong(fields[6]);
+                } else if ("range".equals(fields[0]) && fields.length == 3) {
+                    ranges.put(Long.parseLong(fields[1]), Long.parseLong(fields[2]));
+                }
+            } catch (IllegalArgumentException e) {
+                // 崩溃时可能留下不完整的末行
+                log.debug("skip broken download checkpoint line, file:{}, line:{}", sidecar, line);
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.ukayunnuo.s3.transfer;
+
+import com.ukayunnuo.s3.core.ReplayableInputStream;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+
+/**
+ * 文件区间输入流
+ * <p> mark/reset 只记录偏移, 重置时重新定位文件, 任意长度都可重放 </p>
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+public class FileRangeInputStream extends InputStream implements ReplayableInputStream {
+
+    private final RandomAccessFile file;
+
+    private final long start;
+
+    private final long end;
+
+    private long position;
+
+    private long mark;
+
+    /**
+     * @param file   文件
+     * @param offset 区间起始偏移
+     * @param length 区间长度
+     * @throws IOException 打开文件失败
+     */
+    public FileRangeInputStream(File file, long offset, long length) throws IOException {
+        this.file = new RandomAccessFile(file, "r");
+        this.start = offset;
+        this.end = offset + length;
+        this.position = offset;
+        this.mark = offset;
+        this.file.seek(offset);
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (position >= end) {
+            return -1;
+        }
+        int b = file.read();
+        if (b >= 0) {
+            position++;
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        long remaining = end - position;
+        if (remaining <= 0) {
+            return -1;
+        }
+        int n = file.read(b, off, (int) Math.min(len, remaining));
+        if (n > 0) {
+            position += n;
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = Math.max(0, Math.min(n, end - position));
+        position += skipped;
+        file.seek(position);
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return (int) Math.min(Integer.MAX_VALUE, end - position);
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    @Override
+    public synchronized void mark(int readLimit) {
+        mark = position;
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        position = mark;
+        file.seek(position);
+    }
+
+    /**
+     * 区间长度
+     *
+     * @return long
+     */
+    public long length() {
+        return end - start;
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+}
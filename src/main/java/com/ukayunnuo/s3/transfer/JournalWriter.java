@@ -0,0 +1,177 @@
+package com.ukayunnuo.s3.transfer;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 追加写检查点文件
+ * <p> 重写时立即刷盘, 追加记录按 {@code fsyncEvery} 条批量刷盘; 指定数据文件时先刷数据文件再刷检查点,
+ * 保证检查点记录的内容已落盘 </p>
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Slf4j
+class JournalWriter implements Closeable {
+
+    private final File file;
+
+    private final int fsyncEvery;
+
+    private final FileChannel data;
+
+    private FileChannel channel;
+
+    private int unsynced;
+
+    /**
+     * @param file       检查点文件
+     * @param fsyncEvery 每多少条记录刷盘一次
+     * @param data       检查点所描述的数据文件, 可为空
+     */
+    JournalWriter(File file, int fsyncEvery, FileChannel data) {
+        this.file = file;
+        this.fsyncEvery = Math.max(1, fsyncEvery);
+        this.data = data;
+    }
+
+    /**
+     * 读取检查点文件的全部行, 文件不存在时返回空列表
+     *
+     * @param file 检查点文件
+     * @return 行列表
+     */
+    static List<String> read(File file) {
+        List<String> lines = new ArrayList<>();
+        if (!file.isFile()) {
+            return lines;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        } catch (IOException e) {
+            log.warn("read journal failed, file:{}, msg:{}", file, e.getMessage());
+        }
+        return lines;
+    }
+
+    /**
+     * 编码记录中的字段(如 key), 保证不含空格与换行
+     *
+     * @param value 值
+     * @return String
+     */
+    static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static String decode(String value) {
+        try {
+            return URLDecoder.decode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 以给定内容重写检查点并刷盘
+     *
+     * @param content 内容
+     * @throws IOException 写入失败
+     */
+    synchronized void rewrite(String content) throws IOException {
+        close();
+        File dir = file.getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
+            throw new IOException("create journal dir failed: " + dir);
+        }
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        write(content);
+        sync();
+    }
+
+    /**
+     * 追加一条记录, 达到批量条数时刷盘
+     *
+     * @param line 记录(含换行)
+     * @throws IOException 写入失败
+     */
+    synchronized void append(String line) throws IOException {
+        if (channel == null) {
+            return;
+        }
+        write(line);
+        if (++unsynced >= fsyncEvery) {
+            sync();
+        }
+    }
+
+    /**
+     * 删除检查点文件
+     */
+    synchronized void delete() {
+        close();
+        try {
+            Files.deleteIfExists(file.toPath());
+        } catch (IOException e) {
+            log.warn("delete journal failed, file:{}, msg:{}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * 刷盘未同步的记录并关闭
+     */
+    @Override
+    public synchronized void close() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            if (unsynced > 0) {
+                sync();
+            }
+            channel.close();
+        } catch (IOException e) {
+            log.warn("close journal failed, file:{}, msg:{}", file, e.getMessage());
+        } finally {
+            channel = null;
+            unsynced = 0;
+        }
+    }
+
+    private void sync() throws IOException {
+        if (data != null && data.isOpen()) {
+            data.force(false);
+        }
+        channel.force(false);
+        unsynced = 0;
+    }
+
+    private void write(String content) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
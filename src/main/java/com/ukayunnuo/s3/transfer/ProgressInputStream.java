@@ -0,0 +1,91 @@
+package com.ukayunnuo.s3.transfer;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 上报传输进度的输入流, 传输取消后读取抛出 {@link TransferCancelledException}
+ * <p> 上传时包装源数据流, 下载时包装响应流 </p>
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+public class ProgressInputStream extends FilterInputStream {
+
+    private final TransferHandle handle;
+
+    private final boolean completeOnEof;
+
+    private long mark;
+
+    /**
+     * @param in            源流
+     * @param handle        传输句柄
+     * @param completeOnEof 读到流末尾时是否标记传输完成
+     */
+    public ProgressInputStream(InputStream in, TransferHandle handle, boolean completeOnEof) {
+        super(in);
+        this.handle = handle;
+        this.completeOnEof = completeOnEof;
+    }
+
+    public ProgressInputStream(InputStream in, TransferHandle handle) {
+        this(in, handle, false);
+    }
+
+    @Override
+    public int read() throws IOException {
+        handle.checkCancelled();
+        int b = super.read();
+        if (b >= 0) {
+            handle.add(1);
+        } else {
+            eof();
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        handle.checkCancelled();
+        int n = super.read(b, off, len);
+        if (n > 0) {
+            handle.add(n);
+        } else if (n < 0) {
+            eof();
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        handle.checkCancelled();
+        long skipped = super.skip(n);
+        if (skipped > 0) {
+            handle.add(skipped);
+        }
+        return skipped;
+    }
+
+    @Override
+    public synchronized void mark(int readLimit) {
+        super.mark(readLimit);
+        mark = handle.getBytesTransferred();
+    }
+
+    /**
+     * SDK 重试时会 reset 请求流, 进度随之回退
+     */
+    @Override
+    public synchronized void reset() throws IOException {
+        super.reset();
+        handle.add(mark - handle.getBytesTransferred());
+    }
+
+    private void eof() {
+        if (completeOnEof) {
+            handle.complete();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.ukayunnuo.s3.transfer;
+
+import cn.hutool.json.JSONUtil;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 断点续传下载 配置
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "s3.transfer.download")
+public class ResumableDownloadProp {
+
+    /**
+     * 分块大小(字节), 每块一次区间请求, 完成后记入检查点
+     */
+    private long chunkSize = 8L * 1024 * 1024;
+
+    /**
+     * 单个下载任务的分块并发数
+     */
+    private int concurrency = 4;
+
+    /**
+     * 每完成多少个分块刷盘一次检查点, 1 表示每块都刷盘
+     */
+    private int fsyncEveryChunks = 8;
+
+    /**
+     * 分块读取中断时的最大尝试次数, 每次从已写入位置继续
+     */
+    private int maxChunkAttempts = 3;
+
+    /**
+     * 读缓冲大小(字节)
+     */
+    private int bufferSize = 64 * 1024;
+
+    @Override
+    public String toString() {
+        return JSONUtil.toJsonStr(this);
+    }
+}
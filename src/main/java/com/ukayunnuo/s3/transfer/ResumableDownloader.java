@@ -0,0 +1,144 @@
+package com.ukayunnuo.s3.transfer;
+
+import cn.hutool.core.util.StrUtil;
+import com.ukayunnuo.s3.exception.S3Exception;
+import com.ukayunnuo.s3.storage.ObjectChangedException;
+import com.ukayunnuo.s3.storage.ObjectInfo;
+import com.ukayunnuo.s3.storage.ObjectStorage;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * 断点续传下载
+ * <p> 对象按分块以区间请求并发下载到临时文件, 已完成区间与对象 ETag 记录在 {@link DownloadCheckpoint} 中;
+ * 分块读取中断时从已写入位置继续请求, 进程中断后再次调用同一 桶/key/目标文件 的下载只请求缺失的分块.
+ * 每次区间请求都带 ETag 条件, 对象在下载过程中被覆盖时抛出 {@link ObjectChangedException} 并丢弃已下载内容,
+ * 全部完成后原子重命名为目标文件 </p>
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Slf4j
+public class ResumableDownloader {
+
+    private final ObjectStorage storage;
+
+    private final ResumableDownloadProp prop;
+
+    public ResumableDownloader(ObjectStorage storage, ResumableDownloadProp prop) {
+        this.storage = storage;
+        this.prop = prop;
+    }
+
+    public ResumableDownloader(ObjectStorage storage) {
+        this(storage, new ResumableDownloadProp());
+    }
+
+    /**
+     * 下载对象到文件(可续传)
+     *
+     * @param bucket 桶
+     * @param key    key
+     * @param target 目标文件
+     * @return 目标文件
+     */
+    public File download(String bucket, String key, File target) {
+        return download(bucket, key, target, TransferHandle.of(bucket, key, -1));
+    }
+
+    /**
+     * 下载对象到文件(可续传), 已续传的字节计入进度
+     *
+     * @param bucket 桶
+     * @param key    key
+     * @param target 目标文件
+     * @param handle 传输句柄
+     * @return 目标文件
+     */
+    public File download(String bucket, String key, File target, TransferHandle handle) {
+        return handle.execute(() -> doDownload(bucket, key, target, handle));
+    }
+
+    private File doDownload(String bucket, String key, File target, TransferHandle handle) {
+        ObjectInfo info = storage.headObject(bucket, key);
+        handle.setTotalBytes(info.getSize());
+        long chunkSize = Math.max(1, prop.getChunkSize());
+        DownloadCheckpoint checkpoint = DownloadCheckpoint.open(target, prop.getFsyncEveryChunks());
+        try {
+            if (checkpoint.matches(storage.getProvider(), bucket, info, chunkSize)) {
+                checkpoint.resume();
+                long resumed = checkpoint.completedBytes();
+                if (resumed > 0) {
+                    handle.add(resumed);
+                    log.info("resume download, bucket:{}, key:{}, etag:{}, bytes:{}/{}", bucket, key, info.getEtag(), resumed, info.getSize());
+                }
+            } else {
+                checkpoint.discard();
+                checkpoint.begin(storage.getProvider(), bucket, info, chunkSize);
+            }
+
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (long start = 0; start < info.getSize(); start += chunkSize) {
+                long chunkStart = start;
+                long chunkEnd = Math.min(info.getSize(), start + chunkSize);
+                if (!checkpoint.isDone(chunkStart, chunkEnd)) {
+                    tasks.add(() -> {
+                        downloadChunk(checkpoint, bucket, key, info.getEtag(), chunkStart, chunkEnd, handle);
+                        return null;
+                    });
+                }
+            }
+            ChunkRunner.runAll(tasks, prop.getConcurrency(), "s3-resumable-download", handle);
+            return checkpoint.commit();
+        } catch (ObjectChangedException e) {
+            // 对象已被覆盖, 已下载的内容不可再用
+            checkpoint.discard();
+            throw e;
+        } finally {
+            checkpoint.close();
+        }
+    }
+
+    private void downloadChunk(DownloadCheckpoint checkpoint, String bucket, String key, String etag, long start, long end,
+                               TransferHandle handle) throws IOException {
+        byte[] buffer = new byte[prop.getBufferSize()];
+        long position = start;
+        for (int attempt = 1; ; attempt++) {
+            try (InputStream in = storage.getObject(bucket, key, position, end - position, etag)) {
+                int n;
+                while (position < end && (n = in.read(buffer, 0, (int) Math.min(buffer.length, end - position))) > 0) {
+                    handle.checkCancelled();
+                    checkpoint.write(ByteBuffer.wrap(buffer, 0, n), position);
+                    position += n;
+                    handle.add(n);
+                }
+                if (position < end) {
+                    throw new EOFException(StrUtil.format("premature end of object content, expected:{}, actual:{}", end, position));
+                }
+                checkpoint.markDone(start, end);
+                return;
+            } catch (TransferCancelledException e) {
+                throw e;
+            } catch (ClosedChannelException e) {
+                // 检查点文件已关闭(传输已结束), 重新下载无意义
+                throw new S3Exception(StrUtil.format("download checkpoint closed, bucket:{}, key:{}, range:{}-{}", bucket, key, start, end), e);
+            } catch (IOException e) {
+                // 请求本身的失败已由 StorageExecutor 重试, 这里只处理读取过程中断的连接
+                if (attempt >= prop.getMaxChunkAttempts()) {
+                    throw new S3Exception(StrUtil.format("download chunk failed, bucket:{}, key:{}, range:{}-{}", bucket, key, start, end), e);
+                }
+                log.warn("download chunk interrupted, resume from {}, bucket:{}, key:{}, attempt:{}, msg:{}",
+                        position, bucket, key, attempt, e.getMessage());
+            }
+        }
+    }
+}
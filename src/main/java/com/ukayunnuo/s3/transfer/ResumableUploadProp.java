@@ -0,0 +1,50 @@
+package com.ukayunnuo.s3.transfer;
+
+import cn.hutool.json.JSONUtil;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+
+/**
+ * 断点续传上传 配置
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "s3.transfer.upload")
+public class ResumableUploadProp {
+
+    /**
+     * 日志目录, 每个上传任务一个追加写日志文件
+     */
+    private String journalDir = System.getProperty("java.io.tmpdir") + File.separator + "s3-util" + File.separator + "uploads";
+
+    /**
+     * 分段大小(字节), 文件过大时自动放大以保证分段数不超过 {@link ResumableUploader#MAX_PARTS}
+     */
+    private long partSize = 16L * 1024 * 1024;
+
+    /**
+     * 单个上传任务的分段并发数
+     */
+    private int concurrency = 4;
+
+    /**
+     * 每写入多少条分段记录刷盘一次, 1 表示每条都刷盘
+     */
+    private int fsyncEveryParts = 8;
+
+    /**
+     * 未完成上传的过期时间(小时), 清理任务中止早于该时间发起的上传
+     */
+    private long staleUploadHours = 24;
+
+    @Override
+    public String toString() {
+        return JSONUtil.toJsonStr(this);
+    }
+}
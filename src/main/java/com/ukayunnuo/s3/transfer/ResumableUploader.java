@@ -0,0 +1,184 @@
+package com.ukayunnuo.s3.transfer;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.StrUtil;
+import com.ukayunnuo.s3.exception.S3Exception;
+import com.ukayunnuo.s3.storage.ObjectStorage;
+import com.ukayunnuo.s3.storage.PartInfo;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+
+/**
+ * 断点续传上传
+ * <p> 以分段上传方式上传本地文件, uploadId、分段大小与已完成分段记录在 {@link UploadJournal} 中.
+ * 进程中断或上传失败后再次调用同一 桶/key/文件 的上传, 会列出服务端已有分段并只上传缺失的分段;
+ * 源文件变化或服务端上传已失效(如被 {@link UploadJanitor} 中止)时重新开始 </p>
+ * <p> 通过 {@link TransferHandle} 取消时不中止服务端上传, 以便之后续传 </p>
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Slf4j
+public class ResumableUploader {
+
+    /**
+     * 单次分段上传允许的最大分段数
+     */
+    public static final int MAX_PARTS = 10000;
+
+    /**
+     * 最小分段大小(最后一段除外)
+     */
+    public static final long MIN_PART_SIZE = 5L * 1024 * 1024;
+
+    private final ObjectStorage storage;
+
+    private final ResumableUploadProp prop;
+
+    public ResumableUploader(ObjectStorage storage, ResumableUploadProp prop) {
+        this.storage = storage;
+        this.prop = prop;
+    }
+
+    public ResumableUploader(ObjectStorage storage) {
+        this(storage, new ResumableUploadProp());
+    }
+
+    /**
+     * 上传文件(可续传)
+     *
+     * @param bucket 桶
+     * @param key    key
+     * @param file   文件
+     * @return 对象 ETag
+     */
+    public String upload(String bucket, String key, File file) {
+        return upload(bucket, key, file, TransferHandle.of(bucket, key, file.length()));
+    }
+
+    /**
+     * 上传文件(可续传), 已续传的字节计入进度
+     *
+     * @param bucket 桶
+     * @param key    key
+     * @param file   文件
+     * @param handle 传输句柄
+     * @return 对象 ETag
+     */
+    public String upload(String bucket, String key, File file, TransferHandle handle) {
+        if (!file.isFile()) {
+            throw new S3Exception(StrUtil.format("upload file not found, file:{}", file));
+        }
+        handle.setTotalBytes(file.length());
+        return handle.execute(() -> doUpload(bucket, key, file, handle));
+    }
+
+    private String doUpload(String bucket, String key, File file, TransferHandle handle) {
+        UploadJournal journal = UploadJournal.open(new File(prop.getJournalDir()), storage.getProvider(), bucket, key, file,
+                prop.getFsyncEveryParts());
+        try {
+            Map<Integer, PartInfo> done = prepare(journal, bucket, key, file);
+            long partSize = journal.getPartSize();
+            int partCount = partCount(file.length(), partSize);
+            long resumed = 0;
+            for (PartInfo part : done.values()) {
+                resumed += part.getSize();
+            }
+            if (resumed > 0) {
+                handle.add(resumed);
+                log.info("resume upload, bucket:{}, key:{}, uploadId:{}, parts:{}/{}", bucket, key, journal.getUploadId(), done.size(), partCount);
+            }
+            uploadMissing(journal, bucket, key, file, handle, done, partCount);
+
+            List<PartInfo> parts = new ArrayList<>(journal.getParts());
+            String etag = storage.completeMultipartUpload(bucket, key, journal.getUploadId(), parts);
+            journal.delete();
+            return etag;
+        } finally {
+            journal.close();
+        }
+    }
+
+    /**
+     * 确定本次使用的 uploadId, 返回服务端已存在且与本地文件区间一致的分段
+     */
+    private Map<Integer, PartInfo> prepare(UploadJournal journal, String bucket, String key, File file) {
+        Map<Integer, PartInfo> done = new HashMap<>();
+        if (journal.matches(file)) {
+            try {
+                Map<Integer, PartInfo> recorded = new HashMap<>();
+                for (PartInfo part : journal.getParts()) {
+                    recorded.put(part.getPartNumber(), part);
+                }
+                List<PartInfo> confirmed = new ArrayList<>();
+                for (PartInfo part : storage.listParts(bucket, key, journal.getUploadId())) {
+                    PartInfo local = recorded.get(part.getPartNumber());
+                    // 服务端分段大小与本地区间一致, 且与日志记录不冲突时才复用
+                    if (part.getSize() == partLength(file.length(), journal.getPartSize(), part.getPartNumber())
+                            && (local == null || Objects.equals(local.getEtag(), part.getEtag()))) {
+                        confirmed.add(part);
+                        done.put(part.getPartNumber(), part);
+                    }
+                }
+                journal.resume(confirmed);
+                return done;
+            } catch (RuntimeException e) {
+                log.warn("upload journal is stale, restart upload, bucket:{}, key:{}, uploadId:{}, msg:{}",
+                        bucket, key, journal.getUploadId(), e.getMessage());
+            }
+        }
+        String uploadId = storage.initiateMultipartUpload(bucket, key, FileUtil.getMimeType(file.getName()));
+        journal.begin(uploadId, partSize(file.length()), file);
+        return done;
+    }
+
+    private void uploadMissing(UploadJournal journal, String bucket, String key, File file, TransferHandle handle,
+                               Map<Integer, PartInfo> done, int partCount) {
+        List<Integer> missing = new ArrayList<>();
+        for (int partNumber = 1; partNumber <= partCount; partNumber++) {
+            if (!done.containsKey(partNumber)) {
+                missing.add(partNumber);
+            }
+        }
+        long length = file.length();
+        long partSize = journal.getPartSize();
+        List<Callable<Void>> tasks = new ArrayList<>(missing.size());
+        for (int partNumber : missing) {
+            long offset = (partNumber - 1) * partSize;
+            long size = partLength(length, partSize, partNumber);
+            tasks.add(() -> {
+                String etag = storage.uploadPart(bucket, key, journal.getUploadId(), partNumber, file, offset, size);
+                journal.append(new PartInfo(partNumber, etag, size));
+                handle.add(size);
+                return null;
+            });
+        }
+        ChunkRunner.runAll(tasks, prop.getConcurrency(), "s3-resumable-upload", handle);
+    }
+
+    /**
+     * 计算分段大小: 不小于配置值与最小分段大小, 且分段数不超过 {@link #MAX_PARTS}
+     */
+    private long partSize(long length) {
+        long partSize = Math.max(prop.getPartSize(), MIN_PART_SIZE);
+        long required = (length + MAX_PARTS - 1) / MAX_PARTS;
+        return Math.max(partSize, required);
+    }
+
+    private static int partCount(long length, long partSize) {
+        // 空文件也需要上传一个空分段
+        return (int) Math.max(1, (length + partSize - 1) / partSize);
+    }
+
+    private static long partLength(long length, long partSize, int partNumber) {
+        long offset = (partNumber - 1) * partSize;
+        return Math.max(0, Math.min(partSize, length - offset));
+    }
+}
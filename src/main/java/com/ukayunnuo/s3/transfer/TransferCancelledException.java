@@ -0,0 +1,16 @@
+package com.ukayunnuo.s3.transfer;
+
+import java.io.InterruptedIOException;
+
+/**
+ * 传输已取消
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+public class TransferCancelledException extends InterruptedIOException {
+
+    public TransferCancelledException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,314 @@
+package com.ukayunnuo.s3.transfer;
+
+import cn.hutool.core.util.StrUtil;
+import com.ukayunnuo.s3.core.StorageCall;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 传输句柄(与平台无关)
+ * <p> 提供已传输字节数、瞬时/平均吞吐、预计剩余时间与取消能力; 热路径 {@link #add(long)} 只做一次原子累加,
+ * 吞吐计算与监听回调按 {@code notifyIntervalMillis} 节流 </p>
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Slf4j
+public class TransferHandle {
+
+    /**
+     * 默认通知间隔(毫秒)
+     */
+    public static final long DEFAULT_NOTIFY_INTERVAL_MILLIS = 500;
+
+    /**
+     * 瞬时吞吐 EWMA 平滑系数
+     */
+    private static final double EWMA_ALPHA = 0.3;
+
+    @Getter
+    private final String bucket;
+
+    @Getter
+    private final String key;
+
+    private final long notifyIntervalNanos;
+
+    private final long startNanos = System.nanoTime();
+
+    private final AtomicLong transferred = new AtomicLong();
+
+    private final AtomicLong lastNotifyNanos = new AtomicLong(startNanos);
+
+    private final AtomicReference<TransferState> state = new AtomicReference<>(TransferState.RUNNING);
+
+    private final List<TransferListener> listeners = new CopyOnWriteArrayList<>();
+
+    private final List<Runnable> cancelActions = new CopyOnWriteArrayList<>();
+
+    private volatile long totalBytes;
+
+    private volatile long lastSampleBytes;
+
+    private volatile double instantBytesPerSecond;
+
+    private volatile long endNanos;
+
+    @Getter
+    private volatile Throwable error;
+
+    public TransferHandle(String bucket, String key, long totalBytes, long notifyIntervalMillis) {
+        this.bucket = bucket;
+        this.key = key;
+        this.totalBytes = totalBytes;
+        this.notifyIntervalNanos = TimeUnit.MILLISECONDS.toNanos(notifyIntervalMillis);
+    }
+
+    /**
+     * 创建传输句柄
+     *
+     * @param bucket     桶
+     * @param key        key
+     * @param totalBytes 总字节数(未知时传 -1)
+     * @return {@link TransferHandle}
+     */
+    public static TransferHandle of(String bucket, String key, long totalBytes) {
+        return new TransferHandle(bucket, key, totalBytes, DEFAULT_NOTIFY_INTERVAL_MILLIS);
+    }
+
+    public TransferHandle addListener(TransferListener listener) {
+        listeners.add(listener);
+        return this;
+    }
+
+    public void removeListener(TransferListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * 注册取消动作(如中止分段上传), 已取消时立即执行
+     *
+     * @param action 动作
+     */
+    public void onCancel(Runnable action) {
+        cancelActions.add(action);
+        if (isCancelled() && cancelActions.remove(action)) {
+            action.run();
+        }
+    }
+
+    /**
+     * 累加已传输字节数(热路径)
+     *
+     * @param bytes 字节数
+     */
+    public void add(long bytes) {
+        long total = transferred.addAndGet(bytes);
+        long now = System.nanoTime();
+        long last = lastNotifyNanos.get();
+        if (now - last >= notifyIntervalNanos && lastNotifyNanos.compareAndSet(last, now)) {
+            sample(total, now - last);
+            notifyProgress();
+        }
+    }
+
+    /**
+     * 未知总量时可在获取到长度后补充
+     *
+     * @param totalBytes 总字节数
+     */
+    public void setTotalBytes(long totalBytes) {
+        this.totalBytes = totalBytes;
+    }
+
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public long getBytesTransferred() {
+        return transferred.get();
+    }
+
+    public TransferState getState() {
+        return state.get();
+    }
+
+    public boolean isCancelled() {
+        return state.get() == TransferState.CANCELLED;
+    }
+
+    public boolean isDone() {
+        return state.get().isDone();
+    }
+
+    /**
+     * 已耗时(毫秒)
+     *
+     * @return long
+     */
+    public long getElapsedMillis() {
+        long end = endNanos == 0 ? System.nanoTime() : endNanos;
+        return TimeUnit.NANOSECONDS.toMillis(end - startNanos);
+    }
+
+    /**
+     * 平均吞吐(字节/秒)
+     *
+     * @return double
+     */
+    public double getAverageBytesPerSecond() {
+        long end = endNanos == 0 ? System.nanoTime() : endNanos;
+        long elapsed = end - startNanos;
+        return elapsed <= 0 ? 0 : transferred.get() * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+    }
+
+    /**
+     * 瞬时吞吐(字节/秒, 按通知间隔采样并做 EWMA 平滑), 尚未采样时返回平均吞吐
+     *
+     * @return double
+     */
+    public double getInstantBytesPerSecond() {
+        double instant = instantBytesPerSecond;
+        return instant > 0 ? instant : getAverageBytesPerSecond();
+    }
+
+    /**
+     * 预计剩余时间(毫秒), 总量未知或无吞吐时返回 -1
+     *
+     * @return long
+     */
+    public long getEtaMillis() {
+        if (isDone()) {
+            return 0;
+        }
+        long total = totalBytes;
+        double rate = getInstantBytesPerSecond();
+        if (total < 0 || rate <= 0) {
+            return -1;
+        }
+        long remaining = Math.max(0, total - transferred.get());
+        return (long) (remaining * 1000 / rate);
+    }
+
+    /**
+     * 完成百分比 [0, 100], 总量未知时返回 -1
+     *
+     * @return double
+     */
+    public double getPercent() {
+        long total = totalBytes;
+        if (total < 0) {
+            return -1;
+        }
+        return total == 0 ? 100 : Math.min(100, transferred.get() * 100.0 / total);
+    }
+
+    /**
+     * 取消传输: 正在读写的流在下一次读写时抛出 {@link TransferCancelledException}, 并执行已注册的取消动作
+     *
+     * @return 是否由本次调用取消
+     */
+    public boolean cancel() {
+        if (!finish(TransferState.CANCELLED, null)) {
+            return false;
+        }
+        for (Runnable action : cancelActions) {
+            if (!cancelActions.remove(action)) {
+                continue;
+            }
+            try {
+                action.run();
+            } catch (RuntimeException e) {
+                log.warn("transfer cancel action failed, bucket:{}, key:{}, msg:{}", bucket, key, e.getMessage());
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 若已取消则抛出异常
+     *
+     * @throws TransferCancelledException 已取消
+     */
+    public void checkCancelled() throws TransferCancelledException {
+        if (isCancelled()) {
+            throw new TransferCancelledException(StrUtil.format("transfer cancelled, bucket:{}, key:{}", bucket, key));
+        }
+    }
+
+    /**
+     * 执行传输调用: 成功后标记完成, 失败时标记失败(已取消的保持取消状态)
+     *
+     * @param call 调用
+     * @return T
+     * @throws E 调用异常
+     */
+    public <T, E extends Exception> T execute(StorageCall<T, E> call) throws E {
+        try {
+            T result = call.call();
+            complete();
+            return result;
+        } catch (Exception e) {
+            fail(e);
+            throw e;
+        }
+    }
+
+    public void complete() {
+        finish(TransferState.COMPLETED, null);
+    }
+
+    public void fail(Throwable e) {
+        finish(TransferState.FAILED, e);
+    }
+
+    private boolean finish(TransferState target, Throwable e) {
+        if (!state.compareAndSet(TransferState.RUNNING, target)) {
+            return false;
+        }
+        endNanos = System.nanoTime();
+        error = e;
+        if (target == TransferState.COMPLETED && totalBytes < 0) {
+            totalBytes = transferred.get();
+        }
+        for (TransferListener listener : listeners) {
+            try {
+                listener.onStateChange(this, target);
+            } catch (RuntimeException ex) {
+                log.warn("transfer listener failed, bucket:{}, key:{}, msg:{}", bucket, key, ex.getMessage());
+            }
+        }
+        return true;
+    }
+
+    private void sample(long total, long intervalNanos) {
+        long delta = total - lastSampleBytes;
+        lastSampleBytes = total;
+        double rate = delta * (double) TimeUnit.SECONDS.toNanos(1) / intervalNanos;
+        double previous = instantBytesPerSecond;
+        instantBytesPerSecond = previous <= 0 ? rate : EWMA_ALPHA * rate + (1 - EWMA_ALPHA) * previous;
+    }
+
+    private void notifyProgress() {
+        for (TransferListener listener : listeners) {
+            try {
+                listener.onProgress(this);
+            } catch (RuntimeException e) {
+                log.warn("transfer listener failed, bucket:{}, key:{}, msg:{}", bucket, key, e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return StrUtil.format("TransferHandle(bucket={}, key={}, state={}, transferred={}, total={}, avgBps={}, instantBps={}, etaMs={})",
+                bucket, key, getState(), getBytesTransferred(), totalBytes,
+                (long) getAverageBytesPerSecond(), (long) getInstantBytesPerSecond(), getEtaMillis());
+    }
+}
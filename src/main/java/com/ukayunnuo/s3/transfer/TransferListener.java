@@ -0,0 +1,28 @@
+package com.ukayunnuo.s3.transfer;
+
+/**
+ * 传输进度监听器
+ * <p> 进度回调按 {@link TransferHandle} 的通知间隔节流, 在传输线程中执行, 实现需轻量 </p>
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@FunctionalInterface
+public interface TransferListener {
+
+    /**
+     * 进度变化(节流)
+     *
+     * @param handle 传输句柄
+     */
+    void onProgress(TransferHandle handle);
+
+    /**
+     * 状态变化(完成、失败、取消, 不节流)
+     *
+     * @param handle 传输句柄
+     * @param state  新状态
+     */
+    default void onStateChange(TransferHandle handle, TransferState state) {
+    }
+}
@@ -0,0 +1,22 @@
+package com.ukayunnuo.s3.transfer;
+
+/**
+ * 传输状态
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+public enum TransferState {
+
+    RUNNING,
+
+    COMPLETED,
+
+    FAILED,
+
+    CANCELLED;
+
+    public boolean isDone() {
+        return this != RUNNING;
+    }
+}
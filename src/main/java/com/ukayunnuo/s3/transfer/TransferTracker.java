@@ -0,0 +1,72 @@
+package com.ukayunnuo.s3.transfer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 进行中的传输登记表, 用于发现慢传输并做重新调度
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+public class TransferTracker {
+
+    private static final Map<TransferHandle, Boolean> ACTIVE = new ConcurrentHashMap<>();
+
+    private static final TransferListener UNREGISTER = new TransferListener() {
+        @Override
+        public void onProgress(TransferHandle handle) {
+        }
+
+        @Override
+        public void onStateChange(TransferHandle handle, TransferState state) {
+            ACTIVE.remove(handle);
+        }
+    };
+
+    private TransferTracker() {
+    }
+
+    /**
+     * 登记传输, 传输结束后自动移除
+     *
+     * @param handle 传输句柄
+     * @return {@link TransferHandle}
+     */
+    public static TransferHandle track(TransferHandle handle) {
+        ACTIVE.put(handle, Boolean.TRUE);
+        handle.addListener(UNREGISTER);
+        if (handle.isDone()) {
+            ACTIVE.remove(handle);
+        }
+        return handle;
+    }
+
+    /**
+     * 获取进行中的传输
+     *
+     * @return {@link List}<{@link TransferHandle}>
+     */
+    public static List<TransferHandle> active() {
+        return new ArrayList<>(ACTIVE.keySet());
+    }
+
+    /**
+     * 获取慢传输: 运行超过 minElapsedMillis 且瞬时吞吐低于 minBytesPerSecond
+     *
+     * @param minBytesPerSecond 最低吞吐(字节/秒)
+     * @param minElapsedMillis  最短运行时间(毫秒), 避免刚启动的传输被误判
+     * @return {@link List}<{@link TransferHandle}>
+     */
+    public static List<TransferHandle> slowTransfers(double minBytesPerSecond, long minElapsedMillis) {
+        List<TransferHandle> result = new ArrayList<>();
+        for (TransferHandle handle : ACTIVE.keySet()) {
+            if (handle.getElapsedMillis() >= minElapsedMillis && handle.getInstantBytesPerSecond() < minBytesPerSecond) {
+                result.add(handle);
+            }
+        }
+        return result;
+    }
+}
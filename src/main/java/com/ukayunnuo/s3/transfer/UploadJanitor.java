@@ -0,0 +1,103 @@
+package com.ukayunnuo.s3.transfer;
+
+import com.ukayunnuo.s3.storage.MultipartUploadInfo;
+import com.ukayunnuo.s3.storage.ObjectStorage;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 未完成分段上传清理任务
+ * <p> 中止指定桶(及前缀)下发起时间早于过期时间的分段上传, 释放已上传分段占用的存储, 并删除对应的过期本地日志.
+ * 可交给定时线程池或 Spring 定时任务周期执行 </p>
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Slf4j
+public class UploadJanitor implements Runnable {
+
+    private final ObjectStorage storage;
+
+    private final String bucket;
+
+    private final String prefix;
+
+    private final File journalDir;
+
+    private final long maxAgeMillis;
+
+    /**
+     * @param storage      对象存储
+     * @param bucket       桶
+     * @param prefix       key 前缀, 为空时清理整个桶
+     * @param journalDir   本地日志目录, 为空时不清理日志
+     * @param maxAgeMillis 过期时间(毫秒)
+     */
+    public UploadJanitor(ObjectStorage storage, String bucket, String prefix, File journalDir, long maxAgeMillis) {
+        this.storage = storage;
+        this.bucket = bucket;
+        this.prefix = prefix;
+        this.journalDir = journalDir;
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    public UploadJanitor(ObjectStorage storage, String bucket, ResumableUploadProp prop) {
+        this(storage, bucket, null, new File(prop.getJournalDir()), TimeUnit.HOURS.toMillis(prop.getStaleUploadHours()));
+    }
+
+    @Override
+    public void run() {
+        try {
+            int aborted = abortStale();
+            if (aborted > 0) {
+                log.info("aborted stale multipart uploads, bucket:{}, prefix:{}, count:{}", bucket, prefix, aborted);
+            }
+        } catch (RuntimeException e) {
+            log.warn("abort stale multipart uploads failed, bucket:{}, prefix:{}, msg:{}", bucket, prefix, e.getMessage());
+        }
+    }
+
+    /**
+     * 中止过期的分段上传并删除过期的本地日志
+     *
+     * @return 中止的上传数量
+     */
+    public int abortStale() {
+        Date cutoff = new Date(System.currentTimeMillis() - maxAgeMillis);
+        int aborted = 0;
+        for (MultipartUploadInfo upload : storage.listMultipartUploads(bucket, prefix)) {
+            if (upload.getInitiated() == null || !upload.getInitiated().before(cutoff)) {
+                continue;
+            }
+            try {
+                storage.abortMultipartUpload(bucket, upload.getKey(), upload.getUploadId());
+                aborted++;
+            } catch (RuntimeException e) {
+                log.warn("abort multipart upload failed, bucket:{}, key:{}, uploadId:{}, msg:{}",
+                        bucket, upload.getKey(), upload.getUploadId(), e.getMessage());
+            }
+        }
+        cleanJournals(cutoff.getTime());
+        return aborted;
+    }
+
+    private void cleanJournals(long cutoffMillis) {
+        File[] files = journalDir == null ? null : journalDir.listFiles((dir, name) -> name.endsWith(UploadJournal.SUFFIX));
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.lastModified() >= cutoffMillis) {
+                continue;
+            }
+            UploadJournal journal = UploadJournal.load(file);
+            if (storage.getProvider() == journal.getProvider() && bucket.equals(journal.getBucket())
+                    && (prefix == null || (journal.getKey() != null && journal.getKey().startsWith(prefix)))) {
+                journal.delete();
+            }
+        }
+    }
+}
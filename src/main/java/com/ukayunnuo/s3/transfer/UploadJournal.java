@@ -0,0 +1,224 @@
+package com.ukayunnuo.s3.transfer;
+
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.SecureUtil;
+import com.ukayunnuo.s3.core.StorageProvider;
+import com.ukayunnuo.s3.exception.S3Exception;
+import com.ukayunnuo.s3.storage.PartInfo;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * 分段上传检查点日志
+ * <p> 每个上传任务一个追加写文本文件, 记录 uploadId、分段大小、源文件指纹与已完成分段的 ETag:
+ * <pre>
+ * target &lt;provider&gt; &lt;bucket&gt; &lt;urlEncodedKey&gt;
+ * upload &lt;uploadId&gt; &lt;partSize&gt; &lt;fileLength&gt; &lt;fileLastModified&gt;
+ * part &lt;partNumber&gt; &lt;size&gt; &lt;etag&gt;
+ * </pre>
+ * 头部写入后立即刷盘; 分段记录按 {@code fsyncEveryParts} 批量刷盘, 崩溃时最多丢失最近一批记录,
+ * 恢复时以服务端列出的分段为准, 丢失的记录不会导致重复上传. 读取时忽略不完整的末行 </p>
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Slf4j
+public class UploadJournal implements Closeable {
+
+    public static final String SUFFIX = ".journal";
+
+    @Getter
+    private final File file;
+
+    @Getter
+    private StorageProvider provider;
+
+    @Getter
+    private String bucket;
+
+    @Getter
+    private String key;
+
+    @Getter
+    private String uploadId;
+
+    @Getter
+    private long partSize;
+
+    @Getter
+    private long fileLength = -1;
+
+    @Getter
+    private long fileLastModified = -1;
+
+    private final Map<Integer, PartInfo> parts = new ConcurrentSkipListMap<>();
+
+    private final JournalWriter writer;
+
+    private UploadJournal(File file, int fsyncEveryParts) {
+        this.file = file;
+        this.writer = new JournalWriter(file, fsyncEveryParts, null);
+    }
+
+    /**
+     * 打开上传任务的日志, 已存在时加载其中的记录
+     *
+     * @param dir             日志目录
+     * @param provider        平台
+     * @param bucket          桶
+     * @param key             key
+     * @param source          源文件
+     * @param fsyncEveryParts 每多少条分段记录刷盘一次
+     * @return {@link UploadJournal}
+     */
+    public static UploadJournal open(File dir, StorageProvider provider, String bucket, String key, File source, int fsyncEveryParts) {
+        String id = SecureUtil.sha1(StrUtil.format("{}|{}|{}|{}", provider.getTag(), bucket, key, source.getAbsolutePath()));
+        UploadJournal journal = new UploadJournal(new File(dir, id + SUFFIX), fsyncEveryParts);
+        if (journal.file.isFile()) {
+            journal.read();
+        }
+        journal.provider = provider;
+        journal.bucket = bucket;
+        journal.key = key;
+        return journal;
+    }
+
+    /**
+     * 只读加载日志文件, 用于清理任务
+     *
+     * @param file 日志文件
+     * @return {@link UploadJournal}
+     */
+    public static UploadJournal load(File file) {
+        UploadJournal journal = new UploadJournal(file, 1);
+        journal.read();
+        return journal;
+    }
+
+    /**
+     * 日志记录的源文件指纹是否与当前文件一致
+     *
+     * @param source 源文件
+     * @return boolean
+     */
+    public boolean matches(File source) {
+        return uploadId != null && fileLength == source.length() && fileLastModified == source.lastModified();
+    }
+
+    /**
+     * 开始新的上传: 清空旧记录并写入头部(立即刷盘, 保证 uploadId 先于分段落盘)
+     *
+     * @param uploadId uploadId
+     * @param partSize 分段大小
+     * @param source   源文件
+     */
+    public synchronized void begin(String uploadId, long partSize, File source) {
+        this.uploadId = uploadId;
+        this.partSize = partSize;
+        this.fileLength = source.length();
+        this.fileLastModified = source.lastModified();
+        this.parts.clear();
+        rewrite();
+    }
+
+    /**
+     * 继续已有的上传: 以服务端确认的分段重写日志(同时丢弃崩溃留下的不完整末行), 后续记录追加写入
+     *
+     * @param confirmed 服务端已确认的分段
+     */
+    public synchronized void resume(List<PartInfo> confirmed) {
+        parts.clear();
+        for (PartInfo part : confirmed) {
+            parts.put(part.getPartNumber(), part);
+        }
+        rewrite();
+    }
+
+    /**
+     * 追加一条已完成分段的记录
+     *
+     * @param part 分段
+     */
+    public synchronized void append(PartInfo part) {
+        parts.put(part.getPartNumber(), part);
+        try {
+            writer.append(partLine(part));
+        } catch (IOException e) {
+            // 日志只用于加速恢复, 写入失败不影响本次上传
+            log.warn("append upload journal failed, file:{}, msg:{}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * 已记录的分段(按分段号升序)
+     *
+     * @return 分段列表
+     */
+    public List<PartInfo> getParts() {
+        return new ArrayList<>(parts.values());
+    }
+
+    /**
+     * 上传完成或放弃后删除日志
+     */
+    public synchronized void delete() {
+        writer.delete();
+    }
+
+    /**
+     * 刷盘并关闭, 保留日志用于续传
+     */
+    @Override
+    public synchronized void close() {
+        writer.close();
+    }
+
+    private void rewrite() {
+        try {
+            StringBuilder content = new StringBuilder(StrUtil.format("target {} {} {}\nupload {} {} {} {}\n",
+                    provider.getTag(), bucket, JournalWriter.encode(key), uploadId, partSize, fileLength, fileLastModified));
+            for (PartInfo part : parts.values()) {
+                content.append(partLine(part));
+            }
+            writer.rewrite(content.toString());
+        } catch (IOException e) {
+            throw new S3Exception(StrUtil.format("write upload journal failed, file:{}", file), e);
+        }
+    }
+
+    private static String partLine(PartInfo part) {
+        return StrUtil.format("part {} {} {}\n", part.getPartNumber(), part.getSize(), part.getEtag());
+    }
+
+    private void read() {
+        for (String line : JournalWriter.read(file)) {
+            String[] fields = line.split(" ");
+            try {
+                if ("target".equals(fields[0]) && fields.length == 4) {
+                    provider = StorageProvider.valueOf(fields[1].toUpperCase());
+                    bucket = fields[2];
+                    key = JournalWriter.decode(fields[3]);
+                } else if ("upload".equals(fields[0]) && fields.length == 5) {
+                    uploadId = fields[1];
+                    partSize = Long.parseLong(fields[2]);
+                    fileLength = Long.parseLong(fields[3]);
+                    fileLastModified = Long.parseLong(fields[4]);
+                } else if ("part".equals(fields[0]) && fields.length == 4) {
+                    int partNumber = Integer.parseInt(fields[1]);
+                    parts.put(partNumber, new PartInfo(partNumber, fields[3], Long.parseLong(fields[2])));
+                }
+            } catch (IllegalArgumentException e) {
+                // 崩溃时可能留下不完整的末行
+                log.debug("skip broken upload journal line, file:{}, line:{}", file, line);
+            }
+        }
+    }
+}
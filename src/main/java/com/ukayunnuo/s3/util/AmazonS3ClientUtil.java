@@ -2,17 +2,24 @@ package com.ukayunnuo.s3.util;
 
 import cn.hutool.core.util.StrUtil;
 import com.alibaba.fastjson2.JSONObject;
+import com.amazonaws.ClientConfiguration;
 import com.amazonaws.auth.AWSCredentialsProvider;
 import com.amazonaws.auth.AWSStaticCredentialsProvider;
 import com.amazonaws.auth.BasicAWSCredentials;
 import com.amazonaws.auth.EC2ContainerCredentialsProviderWrapper;
 import com.amazonaws.client.builder.AwsClientBuilder;
 import com.amazonaws.regions.Regions;
+import com.amazonaws.retry.PredefinedRetryPolicies;
+import com.amazonaws.retry.RetryPolicy;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.AmazonS3ClientBuilder;
+import com.amazonaws.services.s3.model.UploadPartRequest;
 import com.ukayunnuo.s3.aws.AwsS3Prop;
+import com.ukayunnuo.s3.core.StorageEndpoint;
+import com.ukayunnuo.s3.core.StorageProvider;
 import com.ukayunnuo.s3.exception.S3Exception;
 import com.ukayunnuo.s3.oci.OciS3Prop;
+import com.ukayunnuo.s3.resilience.S3Retry;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.Objects;
@@ -30,6 +37,10 @@ public class AmazonS3ClientUtil {
 
     public static AmazonS3 awsAmazonS3Client(AwsS3Prop config) {
         AmazonS3ClientBuilder builder = AmazonS3ClientBuilder.standard();
+        if (S3Retry.isSdkRetryDisabled()) {
+            // 重试由 StorageExecutor 统一处理
+            builder.withClientConfiguration(partRetryOnly());
+        }
         Regions regions = Regions.fromName(config.getRegions());
         builder.withRegion(regions);
         if (StrUtil.isNotBlank(config.getAccessKeyId()) && StrUtil.isNotBlank(config.getSecretAccessKey())) {
@@ -63,13 +74,47 @@ public class AmazonS3ClientUtil {
                 config.getSecretAccessKey()));
         String endpoint = String.format(ENDPOINT_CONSTANT_STR, config.getNamespace(), config.getRegions());
         AwsClientBuilder.EndpointConfiguration endpointConfiguration = new AwsClientBuilder.EndpointConfiguration(endpoint, config.getRegions());
-        return AmazonS3ClientBuilder
+        AmazonS3ClientBuilder builder = AmazonS3ClientBuilder
                 .standard()
                 .withCredentials(credentials)
                 .withEndpointConfiguration(endpointConfiguration)
                 .disableChunkedEncoding()
-                .enablePathStyleAccess()
-                .build();
+                .enablePathStyleAccess();
+        if (S3Retry.isSdkRetryDisabled()) {
+            builder.withClientConfiguration(partRetryOnly());
+        }
+        return builder.build();
+    }
+
+    /**
+     * 关闭 SDK 内置重试, 仅保留不经 StorageExecutor 重试的分段上传(TransferManager 内部上传的分段), 一个分段失败不必重传整个文件
+     */
+    private static ClientConfiguration partRetryOnly() {
+        RetryPolicy.RetryCondition condition = (request, exception, retriesAttempted) -> request instanceof UploadPartRequest
+                && !S3Retry.isManaged()
+                && PredefinedRetryPolicies.DEFAULT_RETRY_CONDITION.shouldRetry(request, exception, retriesAttempted);
+        return new ClientConfiguration().withRetryPolicy(new RetryPolicy(condition,
+                PredefinedRetryPolicies.DEFAULT_BACKOFF_STRATEGY, PredefinedRetryPolicies.DEFAULT_MAX_ERROR_RETRY, false));
+    }
+
+    /**
+     * {@link #awsAmazonS3Client} 创建的客户端对应的端点(区域端点), 用于区分多个区域的重试、对冲与并发限制
+     *
+     * @param config 配置
+     * @return {@link StorageEndpoint}
+     */
+    public static StorageEndpoint awsEndpoint(AwsS3Prop config) {
+        return StorageEndpoint.of(StorageProvider.AWS, StrUtil.isBlank(config.getRegions()) ? null : "s3." + config.getRegions() + ".amazonaws.com");
+    }
+
+    /**
+     * {@link #ociAmazonS3Client} 创建的客户端对应的端点(OCI 的 S3 兼容端点), 平台为 OCI 而不是 AWS
+     *
+     * @param config 配置
+     * @return {@link StorageEndpoint}
+     */
+    public static StorageEndpoint ociEndpoint(OciS3Prop config) {
+        return StorageEndpoint.of(StorageProvider.OCI, String.format(ENDPOINT_CONSTANT_STR, config.getNamespace(), config.getRegions()));
     }
 
 }
@@ -7,13 +7,27 @@ import cn.hutool.core.io.FileUtil;
 import cn.hutool.core.io.IoUtil;
 import cn.hutool.core.util.StrUtil;
 import com.amazonaws.HttpMethod;
+import com.amazonaws.event.ProgressListener;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.model.*;
 import com.amazonaws.services.s3.transfer.TransferManager;
 import com.amazonaws.services.s3.transfer.TransferManagerBuilder;
 import com.amazonaws.services.s3.transfer.Upload;
 import com.amazonaws.services.s3.transfer.model.UploadResult;
+import com.ukayunnuo.s3.core.StorageEndpoint;
+import com.ukayunnuo.s3.core.StorageExecutor;
+import com.ukayunnuo.s3.core.StorageOperation;
+import com.ukayunnuo.s3.core.StorageProvider;
 import com.ukayunnuo.s3.exception.S3Exception;
+import com.ukayunnuo.s3.metrics.S3Metrics;
+import com.ukayunnuo.s3.resilience.S3Retry;
+import com.ukayunnuo.s3.storage.AwsObjectStorage;
+import com.ukayunnuo.s3.transfer.ProgressInputStream;
+import com.ukayunnuo.s3.transfer.ResumableDownloadProp;
+import com.ukayunnuo.s3.transfer.ResumableDownloader;
+import com.ukayunnuo.s3.transfer.ResumableUploadProp;
+import com.ukayunnuo.s3.transfer.ResumableUploader;
+import com.ukayunnuo.s3.transfer.TransferHandle;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -22,8 +36,10 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.stream.Collectors;
 
@@ -67,7 +83,8 @@ public class AmazonS3Utils {
         if (Objects.isNull(amazonS3) || Objects.isNull(file) || StrUtil.isBlank(key)) {
             throw new S3Exception("param is empty, please verification!");
         }
-        return amazonS3.putObject(new PutObjectRequest(bucket, key, file));
+        return StorageExecutor.executeUpload(StorageProvider.AWS, StorageOperation.PUT_OBJECT, bucket, key, file.length(), null,
+                () -> amazonS3.putObject(new PutObjectRequest(bucket, key, file)));
     }
 
     /**
@@ -111,7 +128,37 @@ public class AmazonS3Utils {
             metadata.setContentType(fileContentType);
         }
         PutObjectRequest request = new PutObjectRequest(bucket, key, fileInput, metadata);
-        return amazonS3.putObject(request);
+        long bytes = Objects.isNull(contentLength) ? -1 : contentLength;
+        int replayLimit = S3Retry.replayLimit(fileInput, bytes);
+        if (replayLimit > 0) {
+            request.getRequestClientOptions().setReadLimit(replayLimit);
+        }
+        return StorageExecutor.executeUpload(StorageProvider.AWS, StorageOperation.PUT_OBJECT, bucket, key, bytes, fileInput,
+                () -> amazonS3.putObject(request));
+    }
+
+    /**
+     * 上传文件(带传输进度)
+     *
+     * @param amazonS3        amazon s3
+     * @param bucket          桶
+     * @param fileInput       文件输入
+     * @param contentLength   内容长度
+     * @param fileContentType 文件内容类型
+     * @param key             key
+     * @param handle          传输句柄
+     * @return {@link PutObjectResult}
+     */
+    public static PutObjectResult uploadFile(AmazonS3 amazonS3, String bucket, InputStream fileInput, Long contentLength,
+                                             String fileContentType, String key, TransferHandle handle) {
+        if (Objects.isNull(handle)) {
+            return uploadFile(amazonS3, bucket, fileInput, contentLength, fileContentType, key);
+        }
+        if (handle.getTotalBytes() < 0 && Objects.nonNull(contentLength)) {
+            handle.setTotalBytes(contentLength);
+        }
+        return handle.execute(() -> uploadFile(amazonS3, bucket,
+                new ProgressInputStream(fileInput, handle), contentLength, fileContentType, key));
     }
 
 
@@ -175,11 +222,79 @@ public class AmazonS3Utils {
      * @throws InterruptedException 打断异常
      */
     public static UploadResult subsectionUploadFile(AmazonS3 amazonS3, PutObjectRequest putObjectRequest) throws InterruptedException {
+        return subsectionUploadFile(amazonS3, putObjectRequest, null);
+    }
+
+    /**
+     * 分段上传文件(带传输进度)
+     * <p> 取消 {@code handle} 时会中止分段上传 </p>
+     *
+     * @param amazonS3         amazon s3
+     * @param putObjectRequest 对象
+     * @param handle           传输句柄, 可为空
+     * @return {@link UploadResult}
+     * @throws InterruptedException 打断异常
+     */
+    public static UploadResult subsectionUploadFile(AmazonS3 amazonS3, PutObjectRequest putObjectRequest, TransferHandle handle) throws InterruptedException {
         TransferManager tm = TransferManagerBuilder.standard()
                 .withS3Client(amazonS3)
                 .build();
-        Upload upload = tm.upload(putObjectRequest);
-        return upload.waitForUploadResult();
+        long bytes = Objects.nonNull(putObjectRequest.getFile()) ? putObjectRequest.getFile().length()
+                : Objects.nonNull(putObjectRequest.getMetadata()) ? putObjectRequest.getMetadata().getContentLength() : -1;
+        String bucket = putObjectRequest.getBucketName();
+        // 分段由 SDK 各自重试(见 AmazonS3ClientUtil), 整体传输不重试, 避免一个分段失败重传整个文件
+        StorageEndpoint endpoint = StorageEndpoint.of(StorageProvider.AWS);
+        try {
+            if (Objects.isNull(handle)) {
+                return StorageExecutor.executeTransfer(endpoint, StorageOperation.MULTIPART_UPLOAD, bucket, putObjectRequest.getKey(), bytes,
+                        () -> tm.upload(putObjectRequest).waitForUploadResult());
+            }
+            if (handle.getTotalBytes() < 0) {
+                handle.setTotalBytes(bytes);
+            }
+            return handle.execute(() -> StorageExecutor.executeTransfer(endpoint, StorageOperation.MULTIPART_UPLOAD, bucket, putObjectRequest.getKey(), bytes, () -> {
+                Upload upload = tm.upload(putObjectRequest);
+                upload.addProgressListener((ProgressListener) event -> {
+                    long transferred = event.getBytesTransferred();
+                    if (transferred != 0) {
+                        handle.add(transferred);
+                    }
+                });
+                handle.onCancel(upload::abort);
+                return upload.waitForUploadResult();
+            }));
+        } finally {
+            tm.shutdownNow(false);
+        }
+    }
+
+    /**
+     * 断点续传上传文件
+     * <p> 进程中断或失败后以相同参数再次调用, 只上传服务端缺失的分段, 详见 {@link ResumableUploader} </p>
+     *
+     * @param amazonS3 amazon s3
+     * @param bucket   桶
+     * @param file     文件
+     * @param key      key
+     * @param prop     断点续传配置
+     * @param handle   传输句柄
+     * @return 对象 ETag
+     */
+    public static String resumableUploadFile(AmazonS3 amazonS3, String bucket, File file, String key, ResumableUploadProp prop, TransferHandle handle) {
+        return new ResumableUploader(new AwsObjectStorage(amazonS3), prop).upload(bucket, key, file, handle);
+    }
+
+    /**
+     * 断点续传上传文件(默认配置)
+     *
+     * @param amazonS3 amazon s3
+     * @param bucket   桶
+     * @param file     文件
+     * @param key      key
+     * @return 对象 ETag
+     */
+    public static String resumableUploadFile(AmazonS3 amazonS3, String bucket, File file, String key) {
+        return new ResumableUploader(new AwsObjectStorage(amazonS3)).upload(bucket, key, file);
     }
 
     /**
@@ -192,8 +307,9 @@ public class AmazonS3Utils {
      * @return {@link URL}
      */
     public static URL preUploadFile(AmazonS3 amazonS3, String bucket, Date expiration, String key) {
-        return amazonS3.generatePresignedUrl(new GeneratePresignedUrlRequest(bucket, key)
-                .withExpiration(expiration));
+        return StorageExecutor.execute(StorageProvider.AWS, StorageOperation.PRESIGN, bucket,
+                () -> amazonS3.generatePresignedUrl(new GeneratePresignedUrlRequest(bucket, key)
+                        .withExpiration(expiration)));
     }
 
     /**
@@ -207,9 +323,10 @@ public class AmazonS3Utils {
      * @return {@link URL}
      */
     public static URL preUploadFile(AmazonS3 amazonS3, String bucket, Date expiration, HttpMethod method, String key) {
-        return amazonS3.generatePresignedUrl(new GeneratePresignedUrlRequest(bucket, key)
-                .withExpiration(expiration)
-                .withMethod(method));
+        return StorageExecutor.execute(StorageProvider.AWS, StorageOperation.PRESIGN, bucket,
+                () -> amazonS3.generatePresignedUrl(new GeneratePresignedUrlRequest(bucket, key)
+                        .withExpiration(expiration)
+                        .withMethod(method)));
     }
 
 
@@ -242,6 +359,54 @@ public class AmazonS3Utils {
         return objectList.getObjectSummaries().stream().map(S3ObjectSummary::getKey).collect(Collectors.toList());
     }
 
+    /**
+     * 判断前缀下是否有对象, 只列举 1 条, 耗时与前缀下的对象数无关
+     *
+     * @param amazonS3   amazon s3
+     * @param bucketName bucket名称
+     * @param prefix     前缀
+     * @return boolean
+     */
+    public static boolean prefixExist(AmazonS3 amazonS3, String bucketName, String prefix) {
+        return new AwsObjectStorage(amazonS3).existsPrefix(bucketName, prefix);
+    }
+
+    /**
+     * 判断文件夹是否存在: 文件夹下有任意对象(含文件夹占位对象)即存在
+     *
+     * @param amazonS3   amazon s3
+     * @param bucketName bucket名称
+     * @param folderName 文件夹名称, 可不带结尾的/
+     * @return boolean
+     */
+    public static boolean folderExist(AmazonS3 amazonS3, String bucketName, String folderName) {
+        return prefixExist(amazonS3, bucketName, StrUtil.addSuffixIfNot(folderName, "/"));
+    }
+
+    /**
+     * 判断前缀下是否没有对象
+     *
+     * @param amazonS3   amazon s3
+     * @param bucketName bucket名称
+     * @param prefix     前缀
+     * @return boolean
+     */
+    public static boolean isPrefixEmpty(AmazonS3 amazonS3, String bucketName, String prefix) {
+        return !prefixExist(amazonS3, bucketName, prefix);
+    }
+
+    /**
+     * 并发判断多个前缀下是否有对象
+     *
+     * @param amazonS3   amazon s3
+     * @param bucketName bucket名称
+     * @param prefixes   前缀
+     * @return 前缀 -> 是否有对象, 按输入顺序
+     */
+    public static Map<String, Boolean> prefixExist(AmazonS3 amazonS3, String bucketName, Collection<String> prefixes) {
+        return new AwsObjectStorage(amazonS3).existsPrefixes(bucketName, prefixes);
+    }
+
     /**
      * 获取对象列表
      *
@@ -272,7 +437,8 @@ public class AmazonS3Utils {
         if (maxKeys >= 0) {
             listObjectsRequest.setMaxKeys(maxKeys);
         }
-        return amazonS3.listObjects(listObjectsRequest);
+        return StorageExecutor.execute(StorageProvider.AWS, StorageOperation.LIST_OBJECTS, bucketName,
+                () -> amazonS3.listObjects(listObjectsRequest));
     }
 
     /**
@@ -284,7 +450,8 @@ public class AmazonS3Utils {
      * @return {@link S3Object}
      */
     public static S3Object getObjectInfo(AmazonS3 amazonS3, String bucketName, String key) {
-        return amazonS3.getObject(new GetObjectRequest(bucketName, key));
+        return StorageExecutor.execute(StorageProvider.AWS, StorageOperation.GET_OBJECT, bucketName, key,
+                () -> amazonS3.getObject(new GetObjectRequest(bucketName, key)));
     }
 
     /**
@@ -302,7 +469,8 @@ public class AmazonS3Utils {
         GeneratePresignedUrlRequest urlRequest = new GeneratePresignedUrlRequest(bucket, key);
         urlRequest.setExpiration(DateUtil.offsetDay(DateUtil.date(), expDay));
         urlRequest.setMethod(method);
-        return amazonS3.generatePresignedUrl(urlRequest);
+        return StorageExecutor.execute(StorageProvider.AWS, StorageOperation.PRESIGN, bucket,
+                () -> amazonS3.generatePresignedUrl(urlRequest));
     }
 
     /**
@@ -320,7 +488,8 @@ public class AmazonS3Utils {
         GeneratePresignedUrlRequest urlRequest = new GeneratePresignedUrlRequest(bucket, key);
         urlRequest.setExpiration(expDate);
         urlRequest.setMethod(method);
-        return amazonS3.generatePresignedUrl(urlRequest);
+        return StorageExecutor.execute(StorageProvider.AWS, StorageOperation.PRESIGN, bucket,
+                () -> amazonS3.generatePresignedUrl(urlRequest));
     }
 
     /**
@@ -337,7 +506,8 @@ public class AmazonS3Utils {
         GeneratePresignedUrlRequest urlRequest = new GeneratePresignedUrlRequest(bucket, key);
         urlRequest.setExpiration(expDate);
         urlRequest.setMethod(HttpMethod.GET);
-        return amazonS3.generatePresignedUrl(urlRequest);
+        return StorageExecutor.execute(StorageProvider.AWS, StorageOperation.PRESIGN, bucket,
+                () -> amazonS3.generatePresignedUrl(urlRequest));
     }
 
     /**
@@ -350,8 +520,8 @@ public class AmazonS3Utils {
      */
     public static InputStream downloadFile(AmazonS3 amazonS3, String bucketName, String key) {
         GetObjectRequest request = new GetObjectRequest(bucketName, key);
-        S3Object response = amazonS3.getObject(request);
-        return response.getObjectContent();
+        return StorageExecutor.executeDownload(StorageProvider.AWS, StorageOperation.GET_OBJECT, bucketName, key,
+                () -> amazonS3.getObject(request).getObjectContent());
     }
 
     /**
@@ -364,11 +534,37 @@ public class AmazonS3Utils {
      * @return {@link File}
      */
     public static File downloadFile(AmazonS3 amazonS3, String bucketName, String key, String targetFilePath) {
+        return downloadFile(amazonS3, bucketName, key, targetFilePath, null);
+    }
+
+    /**
+     * 下载文件(带传输进度)
+     * <p> 取消 {@code handle} 时会中止下载连接 </p>
+     *
+     * @param amazonS3       amazon s3
+     * @param bucketName     bucket名称
+     * @param key            key
+     * @param targetFilePath 目标路径
+     * @param handle         传输句柄, 可为空
+     * @return {@link File}
+     */
+    public static File downloadFile(AmazonS3 amazonS3, String bucketName, String key, String targetFilePath, TransferHandle handle) {
         S3ObjectInputStream inputStream = null;
         try {
             GetObjectRequest request = new GetObjectRequest(bucketName, key);
-            inputStream = amazonS3.getObject(request).getObjectContent();
-            return FileUtil.writeFromStream(inputStream, new File(targetFilePath));
+            S3Object s3Object = StorageExecutor.execute(StorageProvider.AWS, StorageOperation.GET_OBJECT, bucketName, key,
+                    () -> amazonS3.getObject(request));
+            inputStream = s3Object.getObjectContent();
+            InputStream in = S3Metrics.meter(StorageProvider.AWS, StorageOperation.GET_OBJECT, bucketName, inputStream);
+            if (Objects.isNull(handle)) {
+                return FileUtil.writeFromStream(in, new File(targetFilePath));
+            }
+            if (handle.getTotalBytes() < 0) {
+                handle.setTotalBytes(s3Object.getObjectMetadata().getContentLength());
+            }
+            handle.onCancel(inputStream::abort);
+            InputStream progressIn = new ProgressInputStream(in, handle);
+            return handle.execute(() -> FileUtil.writeFromStream(progressIn, new File(targetFilePath)));
         } finally {
             if (inputStream != null) {
                 IoUtil.close(inputStream);
@@ -376,6 +572,37 @@ public class AmazonS3Utils {
         }
     }
 
+    /**
+     * 断点续传下载文件
+     * <p> 写入 {@code targetFilePath.part} 临时文件并记录已完成区间, 失败或进程中断后以相同参数再次调用只下载缺失的区间,
+     * 对象 ETag 变化时重新下载, 完成后原子重命名为目标文件, 详见 {@link ResumableDownloader} </p>
+     *
+     * @param amazonS3       amazon s3
+     * @param bucketName     bucket名称
+     * @param key            key
+     * @param targetFilePath 目标路径
+     * @param prop           断点续传配置
+     * @param handle         传输句柄
+     * @return {@link File}
+     */
+    public static File resumableDownloadFile(AmazonS3 amazonS3, String bucketName, String key, String targetFilePath,
+                                             ResumableDownloadProp prop, TransferHandle handle) {
+        return new ResumableDownloader(new AwsObjectStorage(amazonS3), prop).download(bucketName, key, new File(targetFilePath), handle);
+    }
+
+    /**
+     * 断点续传下载文件(默认配置)
+     *
+     * @param amazonS3       amazon s3
+     * @param bucketName     bucket名称
+     * @param key            key
+     * @param targetFilePath 目标路径
+     * @return {@link File}
+     */
+    public static File resumableDownloadFile(AmazonS3 amazonS3, String bucketName, String key, String targetFilePath) {
+        return new ResumableDownloader(new AwsObjectStorage(amazonS3)).download(bucketName, key, new File(targetFilePath));
+    }
+
     /**
      * 复制文件
      *
@@ -388,7 +615,8 @@ public class AmazonS3Utils {
      */
     public static CopyObjectResult copyFile(AmazonS3 amazonS3, String sourceBucket, String destinationBucket, String sourceKey, String destinationKey) {
         CopyObjectRequest copyObjectRequest = new CopyObjectRequest(sourceBucket, sourceKey, destinationBucket, destinationKey);
-        return amazonS3.copyObject(copyObjectRequest);
+        return StorageExecutor.execute(StorageProvider.AWS, StorageOperation.COPY_OBJECT, destinationBucket, destinationKey,
+                () -> amazonS3.copyObject(copyObjectRequest));
     }
 
     /**
@@ -402,7 +630,8 @@ public class AmazonS3Utils {
      */
     public static CopyObjectResult copyFile(AmazonS3 amazonS3, String bucket, String sourceKey, String destinationKey) {
         CopyObjectRequest copyObjectRequest = new CopyObjectRequest(bucket, sourceKey, bucket, destinationKey);
-        return amazonS3.copyObject(copyObjectRequest);
+        return StorageExecutor.execute(StorageProvider.AWS, StorageOperation.COPY_OBJECT, bucket, destinationKey,
+                () -> amazonS3.copyObject(copyObjectRequest));
     }
 
 
@@ -414,7 +643,10 @@ public class AmazonS3Utils {
      * @param key      key
      */
     public static void deleteFile(AmazonS3 amazonS3, String bucket, String key) {
-        amazonS3.deleteObject(new DeleteObjectRequest(bucket, key));
+        StorageExecutor.execute(StorageProvider.AWS, StorageOperation.DELETE_OBJECT, bucket, key, () -> {
+            amazonS3.deleteObject(new DeleteObjectRequest(bucket, key));
+            return null;
+        });
     }
 
     /**
@@ -430,7 +662,8 @@ public class AmazonS3Utils {
                 .withKeys(keys.stream().filter(Objects::nonNull).map(DeleteObjectsRequest.KeyVersion::new).collect(Collectors.toList()))
                 .withQuiet(false);
 
-        return amazonS3.deleteObjects(multiObjectDeleteRequest);
+        return StorageExecutor.execute(StorageProvider.AWS, StorageOperation.DELETE_OBJECTS, bucket,
+                () -> amazonS3.deleteObjects(multiObjectDeleteRequest));
     }
 
     /**
@@ -446,7 +679,8 @@ public class AmazonS3Utils {
                 .withKeys(Arrays.stream(keys).filter(Objects::nonNull).map(DeleteObjectsRequest.KeyVersion::new).collect(Collectors.toList()))
                 .withQuiet(false);
 
-        return amazonS3.deleteObjects(multiObjectDeleteRequest);
+        return StorageExecutor.execute(StorageProvider.AWS, StorageOperation.DELETE_OBJECTS, bucket,
+                () -> amazonS3.deleteObjects(multiObjectDeleteRequest));
     }
 
 
@@ -1,8 +1,20 @@
 package com.ukayunnuo.s3.util;
 
+import cn.hutool.core.io.IoUtil;
+import cn.hutool.core.util.StrUtil;
 import com.alibaba.fastjson2.JSONObject;
+import com.ukayunnuo.s3.core.StorageEndpoint;
+import com.ukayunnuo.s3.core.StorageExecutor;
+import com.ukayunnuo.s3.core.StorageOperation;
+import com.ukayunnuo.s3.core.StorageProvider;
 import com.ukayunnuo.s3.exception.S3MinioException;
+import com.ukayunnuo.s3.exception.StorageException;
+import com.ukayunnuo.s3.metrics.S3Metrics;
 import com.ukayunnuo.s3.minio.MinioProp;
+import com.ukayunnuo.s3.resilience.FailureClassifier;
+import com.ukayunnuo.s3.storage.PrefixChecks;
+import com.ukayunnuo.s3.transfer.ProgressInputStream;
+import com.ukayunnuo.s3.transfer.TransferHandle;
 import io.minio.*;
 import io.minio.http.Method;
 import io.minio.messages.Bucket;
@@ -14,10 +26,17 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.multipart.MultipartFile;
 
 import javax.annotation.Resource;
+import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -37,9 +56,23 @@ public class MinioUtils {
     @Resource
     private MinioClient minioClient;
 
+    private volatile StorageEndpoint endpoint;
+
 
     /* ------------------------------------> bucket operate start  <------------------------------------------------ */
 
+    /**
+     * minio 端点, 端点许可按配置的 endpoint 区分
+     */
+    private StorageEndpoint endpoint() {
+        StorageEndpoint current = endpoint;
+        if (current == null) {
+            current = StorageEndpoint.of(StorageProvider.MINIO, minioProp.getEndpoint());
+            endpoint = current;
+        }
+        return current;
+    }
+
     /**
      * 初始化Bucket
      *
@@ -57,8 +90,11 @@ public class MinioUtils {
      */
     public void createBucket(String bucketName) throws S3MinioException {
         try {
-            if (!minioClient.bucketExists(BucketExistsArgs.builder().bucket(bucketName).build())) {
-                minioClient.makeBucket(MakeBucketArgs.builder().bucket(bucketName).build());
+            if (!doesBucketExist(bucketName)) {
+                StorageExecutor.execute(endpoint(), StorageOperation.CREATE_BUCKET, bucketName, () -> {
+                    minioClient.makeBucket(MakeBucketArgs.builder().bucket(bucketName).build());
+                    return null;
+                });
             }
         } catch (Exception e) {
             throw new S3MinioException("createBucket error!", e);
@@ -74,7 +110,8 @@ public class MinioUtils {
      */
     public boolean doesBucketExist(String bucketName) throws S3MinioException {
         try {
-            return minioClient.bucketExists(BucketExistsArgs.builder().bucket(bucketName).build());
+            return StorageExecutor.execute(endpoint(), StorageOperation.BUCKET_EXISTS, bucketName,
+                    () -> minioClient.bucketExists(BucketExistsArgs.builder().bucket(bucketName).build()));
         } catch (Exception e) {
             throw new S3MinioException(bucketName, e.getMessage(), e);
         }
@@ -89,7 +126,8 @@ public class MinioUtils {
      */
     public String getBucketPolicy(String bucketName) throws S3MinioException {
         try {
-            return minioClient.getBucketPolicy(GetBucketPolicyArgs.builder().bucket(bucketName).build());
+            return StorageExecutor.execute(endpoint(), StorageOperation.GET_BUCKET_POLICY, bucketName,
+                    () -> minioClient.getBucketPolicy(GetBucketPolicyArgs.builder().bucket(bucketName).build()));
         } catch (Exception e) {
             throw new S3MinioException(bucketName, e.getMessage(), e);
         }
@@ -103,7 +141,7 @@ public class MinioUtils {
      */
     public List<Bucket> getAllBuckets() throws S3MinioException {
         try {
-            return minioClient.listBuckets();
+            return StorageExecutor.execute(endpoint(), StorageOperation.LIST_BUCKETS, null, minioClient::listBuckets);
         } catch (Exception e) {
             throw new S3MinioException(e.getMessage(), e);
         }
@@ -133,7 +171,10 @@ public class MinioUtils {
      */
     public void removeBucket(String bucketName) throws S3MinioException {
         try {
-            minioClient.removeBucket(RemoveBucketArgs.builder().bucket(bucketName).build());
+            StorageExecutor.execute(endpoint(), StorageOperation.REMOVE_BUCKET, bucketName, () -> {
+                minioClient.removeBucket(RemoveBucketArgs.builder().bucket(bucketName).build());
+                return null;
+            });
         } catch (Exception e) {
             throw new S3MinioException(e.getMessage(), e);
         }
@@ -147,44 +188,105 @@ public class MinioUtils {
 
 
     /**
-     * 判断文件夹是否存在
+     * 判断文件夹是否存在: 文件夹下有任意对象(含文件夹占位对象)即存在, 只列举 1 条
      *
      * @param bucketName 存储桶
-     * @param folderName 文件夹名称（去掉/）
+     * @param folderName 文件夹名称（可不带结尾的/）
      * @return true：存在
      */
     public boolean folderExist(String bucketName, String folderName) throws S3MinioException {
-        boolean exist = false;
+        return prefixExist(bucketName, StrUtil.addSuffixIfNot(folderName, "/"));
+    }
+
+    /**
+     * 判断前缀下是否有对象, 只列举 1 条, 耗时与前缀下的对象数无关
+     *
+     * @param bucketName 存储桶
+     * @param prefix     前缀
+     * @return true：有对象
+     */
+    public boolean prefixExist(String bucketName, String prefix) throws S3MinioException {
         try {
-            Iterable<Result<Item>> results = minioClient.listObjects(
-                    ListObjectsArgs.builder().bucket(bucketName).prefix(folderName).recursive(false).build());
-            for (Result<Item> result : results) {
-                Item item = result.get();
-                if (item.isDir() && folderName.equals(item.objectName())) {
-                    exist = true;
-                }
-            }
+            return hasObjects(bucketName, prefix);
         } catch (Exception e) {
-            throw new S3MinioException(bucketName, folderName, e.getMessage(), e);
+            throw new S3MinioException(bucketName, prefix, e.getMessage(), e);
         }
-        return exist;
+    }
+
+    /**
+     * 判断前缀下是否没有对象
+     *
+     * @param bucketName 存储桶
+     * @param prefix     前缀
+     * @return true：没有对象
+     */
+    public boolean isPrefixEmpty(String bucketName, String prefix) throws S3MinioException {
+        return !prefixExist(bucketName, prefix);
+    }
+
+    /**
+     * 并发判断多个前缀下是否有对象
+     *
+     * @param bucketName 存储桶
+     * @param prefixes   前缀
+     * @return 前缀 -> 是否有对象, 按输入顺序
+     */
+    public Map<String, Boolean> prefixExist(String bucketName, Collection<String> prefixes) throws S3MinioException {
+        try {
+            return PrefixChecks.check(prefixes, PrefixChecks.DEFAULT_CONCURRENCY, prefix -> {
+                try {
+                    return hasObjects(bucketName, prefix);
+                } catch (Exception e) {
+                    throw StorageException.of(e, bucketName, prefix);
+                }
+            });
+        } catch (RuntimeException e) {
+            throw new S3MinioException(bucketName, null, e.getMessage(), e);
+        }
+    }
+
+    private boolean hasObjects(String bucketName, String prefix) throws Exception {
+        return StorageExecutor.execute(endpoint(), StorageOperation.LIST_OBJECTS, bucketName, prefix, () -> {
+            Iterator<Result<Item>> results = minioClient.listObjects(
+                    ListObjectsArgs.builder().bucket(bucketName).prefix(prefix).recursive(true).maxKeys(1).build()).iterator();
+            if (!results.hasNext()) {
+                return false;
+            }
+            // 列举失败时 get 抛出异常
+            results.next().get();
+            return true;
+        });
     }
 
     /**
      * 判断对象是否存在
+     * <p> 仅对象不存在(404)时返回 false, 鉴权失败、限流等错误抛出 {@link StorageException} </p>
      *
      * @param bucketName bucket名称
      * @param objectName 对象名称
      * @return boolean
      */
     public boolean objectExist(String bucketName, String objectName) {
-        boolean exist = true;
+        return statObject(bucketName, objectName).isPresent();
+    }
+
+    /**
+     * 获取对象元数据, 对象不存在时返回空
+     *
+     * @param bucketName bucket名称
+     * @param objectName 对象名称
+     * @return {@link StatObjectResponse}
+     */
+    public Optional<StatObjectResponse> statObject(String bucketName, String objectName) {
         try {
-            minioClient.statObject(StatObjectArgs.builder().bucket(bucketName).object(objectName).build());
+            return Optional.of(StorageExecutor.execute(endpoint(), StorageOperation.HEAD_OBJECT, bucketName, objectName,
+                    () -> minioClient.statObject(StatObjectArgs.builder().bucket(bucketName).object(objectName).build())));
         } catch (Exception e) {
-            exist = false;
+            if (FailureClassifier.isNotFound(e)) {
+                return Optional.empty();
+            }
+            throw StorageException.of(e, bucketName, objectName);
         }
-        return exist;
     }
 
 
@@ -199,8 +301,9 @@ public class MinioUtils {
      */
     public String getObjectUrl(String bucketName, String objectName, Integer expires) throws S3MinioException {
         try {
-            return minioClient.getPresignedObjectUrl(GetPresignedObjectUrlArgs
-                    .builder().bucket(bucketName).object(objectName).expiry(expires).build());
+            return StorageExecutor.execute(endpoint(), StorageOperation.PRESIGN, bucketName,
+                    () -> minioClient.getPresignedObjectUrl(GetPresignedObjectUrlArgs
+                            .builder().bucket(bucketName).object(objectName).expiry(expires).build()));
         } catch (Exception e) {
             throw new S3MinioException(bucketName, objectName, e.getMessage(), e);
         }
@@ -219,8 +322,9 @@ public class MinioUtils {
      */
     public String getObjectUrl(String bucketName, String objectName, Integer expires, Method method) throws S3MinioException {
         try {
-            return minioClient.getPresignedObjectUrl(GetPresignedObjectUrlArgs
-                    .builder().bucket(bucketName).object(objectName).expiry(expires).method(Method.GET).build());
+            return StorageExecutor.execute(endpoint(), StorageOperation.PRESIGN, bucketName,
+                    () -> minioClient.getPresignedObjectUrl(GetPresignedObjectUrlArgs
+                            .builder().bucket(bucketName).object(objectName).expiry(expires).method(Method.GET).build()));
         } catch (Exception e) {
             throw new S3MinioException(bucketName, objectName, e.getMessage(), e);
         }
@@ -237,12 +341,39 @@ public class MinioUtils {
      */
     public InputStream getObject(String bucketName, String objectName) throws S3MinioException {
         try {
-            return minioClient.getObject(GetObjectArgs.builder().bucket(bucketName).object(objectName).build());
+            return StorageExecutor.executeDownload(endpoint(), StorageOperation.GET_OBJECT, bucketName, objectName,
+                    () -> minioClient.getObject(GetObjectArgs.builder().bucket(bucketName).object(objectName).build()));
         } catch (Exception e) {
             throw new S3MinioException(bucketName, objectName, e.getMessage(), e);
         }
     }
 
+    /**
+     * 获取对象(带传输进度, 读到流末尾时标记完成)
+     *
+     * @param bucketName bucket名称
+     * @param objectName 对象名称
+     * @param handle     传输句柄
+     * @return {@link InputStream} 文件流
+     * @throws S3MinioException s3minio异常
+     */
+    public InputStream getObject(String bucketName, String objectName, TransferHandle handle) throws S3MinioException {
+        try {
+            GetObjectResponse response = StorageExecutor.execute(endpoint(), StorageOperation.GET_OBJECT, bucketName, objectName,
+                    () -> minioClient.getObject(GetObjectArgs.builder().bucket(bucketName).object(objectName).build()));
+            String contentLength = response.headers().get("Content-Length");
+            if (handle.getTotalBytes() < 0 && contentLength != null) {
+                handle.setTotalBytes(Long.parseLong(contentLength));
+            }
+            handle.onCancel(() -> IoUtil.close(response));
+            return new ProgressInputStream(S3Metrics.meter(endpoint(), StorageOperation.GET_OBJECT, bucketName, response),
+                    handle, true);
+        } catch (Exception e) {
+            handle.fail(e);
+            throw new S3MinioException(bucketName, objectName, e.getMessage(), e);
+        }
+    }
+
     /**
      * 获取对象信息
      *
@@ -253,8 +384,8 @@ public class MinioUtils {
      */
     public String getObjectInfo(String bucketName, String objectName) throws S3MinioException {
         try {
-            return minioClient.statObject(
-                    StatObjectArgs.builder().bucket(bucketName).object(objectName).build()).toString();
+            return StorageExecutor.execute(endpoint(), StorageOperation.HEAD_OBJECT, bucketName, objectName,
+                    () -> minioClient.statObject(StatObjectArgs.builder().bucket(bucketName).object(objectName).build())).toString();
         } catch (Exception e) {
             throw new S3MinioException(bucketName, objectName, e.getMessage(), e);
         }
@@ -273,8 +404,9 @@ public class MinioUtils {
      */
     public InputStream getObject(String bucketName, String objectName, long offset, long length) throws S3MinioException {
         try {
-            return minioClient.getObject(
-                    GetObjectArgs.builder().bucket(bucketName).object(objectName).offset(offset).length(length).build());
+            return StorageExecutor.executeDownload(endpoint(), StorageOperation.GET_OBJECT, bucketName, objectName,
+                    () -> minioClient.getObject(
+                            GetObjectArgs.builder().bucket(bucketName).object(objectName).offset(offset).length(length).build()));
         } catch (Exception e) {
             throw new S3MinioException(bucketName, objectName, e.getMessage(), e);
         }
@@ -289,9 +421,11 @@ public class MinioUtils {
      */
     public ObjectWriteResponse putObject(String bucketName, MultipartFile file, String objectName, String contentType) throws S3MinioException {
         try (InputStream inputStream = file.getInputStream()) {
-            return minioClient.putObject(
-                    PutObjectArgs.builder().bucket(bucketName).object(objectName).contentType(contentType)
-                            .stream(inputStream, inputStream.available(), -1).build());
+            long size = inputStream.available();
+            return StorageExecutor.executeUpload(endpoint(), StorageOperation.PUT_OBJECT, bucketName, objectName, size, inputStream,
+                    () -> minioClient.putObject(
+                            PutObjectArgs.builder().bucket(bucketName).object(objectName).contentType(contentType)
+                                    .stream(inputStream, size, -1).build()));
         } catch (Exception e) {
             throw new S3MinioException(bucketName, objectName, e.getMessage(), e);
         }
@@ -306,13 +440,38 @@ public class MinioUtils {
      */
     public ObjectWriteResponse putObject(String bucketName, String objectName, String fileName) throws S3MinioException {
         try {
-            return minioClient.uploadObject(UploadObjectArgs.builder()
-                    .bucket(bucketName).object(objectName).filename(fileName).build());
+            return StorageExecutor.executeUpload(endpoint(), StorageOperation.PUT_OBJECT, bucketName, objectName, new File(fileName).length(), null,
+                    () -> minioClient.uploadObject(UploadObjectArgs.builder()
+                            .bucket(bucketName).object(objectName).filename(fileName).build()));
         } catch (Exception e) {
             throw new S3MinioException(bucketName, objectName, e.getMessage(), e);
         }
     }
 
+    /**
+     * 上传本地文件(带传输进度)
+     *
+     * @param bucketName 存储桶
+     * @param objectName 对象名称
+     * @param fileName   本地文件路径
+     * @param handle     传输句柄
+     */
+    public ObjectWriteResponse putObject(String bucketName, String objectName, String fileName, TransferHandle handle) throws S3MinioException {
+        File file = new File(fileName);
+        long size = file.length();
+        if (handle.getTotalBytes() < 0) {
+            handle.setTotalBytes(size);
+        }
+        try (InputStream inputStream = new ProgressInputStream(new BufferedInputStream(new FileInputStream(file)), handle)) {
+            return handle.execute(() -> StorageExecutor.executeUpload(endpoint(), StorageOperation.PUT_OBJECT, bucketName, objectName, size, inputStream,
+                    () -> minioClient.putObject(PutObjectArgs.builder().bucket(bucketName).object(objectName)
+                            .stream(inputStream, size, -1).build())));
+        } catch (Exception e) {
+            handle.fail(e);
+            throw new S3MinioException(bucketName, objectName, e.getMessage(), e);
+        }
+    }
+
     /**
      * 通过流上传文件
      *
@@ -322,9 +481,11 @@ public class MinioUtils {
      */
     public ObjectWriteResponse putObjectByStream(String bucketName, String objectName, InputStream inputStream) throws S3MinioException {
         try {
-            return minioClient.putObject(
-                    PutObjectArgs.builder().bucket(bucketName).object(objectName).stream(inputStream, inputStream.available(), -1)
-                            .build());
+            long size = inputStream.available();
+            return StorageExecutor.executeUpload(endpoint(), StorageOperation.PUT_OBJECT, bucketName, objectName, size, inputStream,
+                    () -> minioClient.putObject(
+                            PutObjectArgs.builder().bucket(bucketName).object(objectName).stream(inputStream, size, -1)
+                                    .build()));
         } catch (Exception e) {
             throw new S3MinioException(bucketName, objectName, e.getMessage(), e);
         }
@@ -338,10 +499,11 @@ public class MinioUtils {
      */
     public ObjectWriteResponse createFolder(String bucketName, String objectName) throws S3MinioException {
         try {
-            return minioClient.putObject(
-                    PutObjectArgs.builder().bucket(bucketName).object(objectName).stream(
-                                    new ByteArrayInputStream(new byte[]{}), 0, -1)
-                            .build());
+            return StorageExecutor.execute(endpoint(), StorageOperation.PUT_OBJECT, bucketName, objectName,
+                    () -> minioClient.putObject(
+                            PutObjectArgs.builder().bucket(bucketName).object(objectName).stream(
+                                            new ByteArrayInputStream(new byte[]{}), 0, -1)
+                                    .build()));
         } catch (Exception e) {
             throw new S3MinioException(bucketName, objectName, e.getMessage(), e);
         }
@@ -358,12 +520,13 @@ public class MinioUtils {
      */
     public ObjectWriteResponse copyObject(String bucketName, String objectName, String srcBucketName, String srcObjectName) throws S3MinioException {
         try {
-            return minioClient.copyObject(
-                    CopyObjectArgs.builder()
-                            .source(CopySource.builder().bucket(bucketName).object(objectName).build())
-                            .bucket(srcBucketName)
-                            .object(srcObjectName)
-                            .build());
+            return StorageExecutor.execute(endpoint(), StorageOperation.COPY_OBJECT, srcBucketName, srcObjectName,
+                    () -> minioClient.copyObject(
+                            CopyObjectArgs.builder()
+                                    .source(CopySource.builder().bucket(bucketName).object(objectName).build())
+                                    .bucket(srcBucketName)
+                                    .object(srcObjectName)
+                                    .build()));
         } catch (Exception e) {
             throw new S3MinioException(bucketName, objectName, e.getMessage(), e);
         }
@@ -377,11 +540,14 @@ public class MinioUtils {
      */
     public void removeObject(String bucketName, String objectName) throws S3MinioException {
         try {
-            minioClient.removeObject(
-                    RemoveObjectArgs.builder()
-                            .bucket(bucketName)
-                            .object(objectName)
-                            .build());
+            StorageExecutor.execute(endpoint(), StorageOperation.DELETE_OBJECT, bucketName, objectName, () -> {
+                minioClient.removeObject(
+                        RemoveObjectArgs.builder()
+                                .bucket(bucketName)
+                                .object(objectName)
+                                .build());
+                return null;
+            });
         } catch (Exception e) {
             throw new S3MinioException(bucketName, objectName, e.getMessage(), e);
         }
@@ -398,9 +564,7 @@ public class MinioUtils {
      */
     public Iterable<Result<DeleteError>> removeObjects(String bucketName, List<String> objectsName) throws S3MinioException {
         try {
-            Iterable<Result<DeleteError>> results = minioClient.removeObjects(RemoveObjectsArgs.builder().bucket(bucketName)
-                    .objects(objectsName.stream().map(DeleteObject::new).collect(Collectors.toList())).build());
-            return results;
+            return drainRemoveObjects(bucketName, objectsName.stream().map(DeleteObject::new).collect(Collectors.toList()));
         } catch (Exception e) {
             throw new S3MinioException(bucketName, JSONObject.toJSONString(objectsName), e.getMessage(), e);
         }
@@ -416,12 +580,27 @@ public class MinioUtils {
      */
     public Iterable<Result<DeleteError>> removeObjects(String bucketName, String... objectName) throws S3MinioException {
         try {
-            Iterable<Result<DeleteError>> results = minioClient.removeObjects(RemoveObjectsArgs.builder().bucket(bucketName)
-                    .objects(Arrays.stream(objectName).map(DeleteObject::new).collect(Collectors.toList())).build());
-            return results;
+            return drainRemoveObjects(bucketName, Arrays.stream(objectName).map(DeleteObject::new).collect(Collectors.toList()));
         } catch (Exception e) {
             throw new S3MinioException(bucketName, JSONObject.toJSONString(objectName), e.getMessage(), e);
         }
     }
 
+    /**
+     * 批量删除并在执行中读取全部结果
+     * <p> minio 返回的结果是惰性的, 遍历时才发送删除请求, 请求失败以异常结果返回;
+     * 在执行内遍历, 使重试与指标覆盖真正的请求 </p>
+     */
+    private List<Result<DeleteError>> drainRemoveObjects(String bucketName, List<DeleteObject> objects) throws Exception {
+        return StorageExecutor.execute(endpoint(), StorageOperation.DELETE_OBJECTS, bucketName, () -> {
+            List<Result<DeleteError>> results = new ArrayList<>();
+            for (Result<DeleteError> result : minioClient.removeObjects(RemoveObjectsArgs.builder().bucket(bucketName).objects(objects).build())) {
+                // 请求失败时抛出; 单个对象的删除错误正常返回
+                result.get();
+                results.add(result);
+            }
+            return results;
+        });
+    }
+
 }
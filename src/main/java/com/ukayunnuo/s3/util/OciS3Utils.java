@@ -2,6 +2,8 @@ package com.ukayunnuo.s3.util;
 
 
 import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.io.IoUtil;
+import com.oracle.bmc.ClientConfiguration;
 import com.oracle.bmc.ConfigFileReader;
 import com.oracle.bmc.auth.ConfigFileAuthenticationDetailsProvider;
 import com.oracle.bmc.objectstorage.ObjectStorageClient;
@@ -10,14 +12,30 @@ import com.oracle.bmc.objectstorage.model.PreauthenticatedRequest;
 import com.oracle.bmc.objectstorage.model.RenameObjectDetails;
 import com.oracle.bmc.objectstorage.requests.*;
 import com.oracle.bmc.objectstorage.responses.*;
+import com.oracle.bmc.retrier.RetryConfiguration;
+import com.ukayunnuo.s3.core.StorageExecutor;
+import com.ukayunnuo.s3.core.StorageOperation;
+import com.ukayunnuo.s3.core.StorageProvider;
+import com.ukayunnuo.s3.metrics.S3Metrics;
 import com.ukayunnuo.s3.oci.OciS3Prop;
+import com.ukayunnuo.s3.resilience.S3Retry;
+import com.ukayunnuo.s3.storage.OciObjectStorage;
+import com.ukayunnuo.s3.transfer.ProgressInputStream;
+import com.ukayunnuo.s3.transfer.ResumableDownloadProp;
+import com.ukayunnuo.s3.transfer.ResumableDownloader;
+import com.ukayunnuo.s3.transfer.ResumableUploadProp;
+import com.ukayunnuo.s3.transfer.ResumableUploader;
+import com.ukayunnuo.s3.transfer.TransferHandle;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Collection;
 import java.util.Date;
+import java.util.Map;
+import java.util.Objects;
 
 /**
  * oci Object Storage 版本工具类
@@ -71,6 +89,12 @@ public class OciS3Utils {
      * @return {@link ObjectStorageClient}
      */
     public static ObjectStorageClient getClient(ConfigFileAuthenticationDetailsProvider provider) {
+        if (S3Retry.isSdkRetryDisabled()) {
+            // 重试由 StorageExecutor 统一处理
+            return ObjectStorageClient.builder()
+                    .configuration(ClientConfiguration.builder().retryConfiguration(RetryConfiguration.NO_RETRY_CONFIGURATION).build())
+                    .build(provider);
+        }
         return new ObjectStorageClient(provider);
     }
 
@@ -107,7 +131,9 @@ public class OciS3Utils {
      * @return {@link CopyObjectResponse}
      */
     public static CopyObjectResponse copyObject(ObjectStorageClient client, CopyObjectRequest copyObjectRequest) {
-        return client.copyObject(copyObjectRequest);
+        return StorageExecutor.execute(StorageProvider.OCI, StorageOperation.COPY_OBJECT, copyObjectRequest.getBucketName(),
+                copyObjectRequest.getCopyObjectDetails().getSourceObjectName(),
+                () -> client.copyObject(copyObjectRequest));
     }
 
 
@@ -129,7 +155,7 @@ public class OciS3Utils {
                 .namespaceName(namespace)
                 .bucketName(bucketName)
                 .renameObjectDetails(renameObjectDetails).build();
-        return client.renameObject(renameObjectRequest);
+        return renameObject(client, renameObjectRequest);
     }
 
     /**
@@ -140,7 +166,9 @@ public class OciS3Utils {
      * @return {@link RenameObjectResponse}
      */
     public static RenameObjectResponse renameObject(ObjectStorageClient client, RenameObjectRequest renameObjectRequest) {
-        return client.renameObject(renameObjectRequest);
+        return StorageExecutor.execute(StorageProvider.OCI, StorageOperation.RENAME_OBJECT, renameObjectRequest.getBucketName(),
+                renameObjectRequest.getRenameObjectDetails().getSourceName(),
+                () -> client.renameObject(renameObjectRequest));
     }
 
     /**
@@ -157,7 +185,7 @@ public class OciS3Utils {
                 .namespaceName(namespace)
                 .bucketName(bucketName)
                 .objectName(key).build();
-        return client.getObject(getObjectRequest);
+        return getObject(client, getObjectRequest);
     }
 
     /**
@@ -168,7 +196,55 @@ public class OciS3Utils {
      * @return {@link GetObjectResponse}
      */
     public static GetObjectResponse getObject(ObjectStorageClient client, GetObjectRequest objectRequest) {
-        return client.getObject(objectRequest);
+        GetObjectResponse response = StorageExecutor.execute(StorageProvider.OCI, StorageOperation.GET_OBJECT, objectRequest.getBucketName(),
+                objectRequest.getObjectName(), () -> client.getObject(objectRequest));
+        S3Metrics.bytesIn(StorageProvider.OCI, StorageOperation.GET_OBJECT, objectRequest.getBucketName(),
+                Objects.isNull(response.getContentLength()) ? -1 : response.getContentLength());
+        return response;
+    }
+
+    /**
+     * 获取对象内容流(带传输进度, 读到流末尾时标记完成)
+     *
+     * @param client        客户端
+     * @param objectRequest 对象请求
+     * @param handle        传输句柄
+     * @return {@link InputStream}
+     */
+    public static InputStream getObjectStream(ObjectStorageClient client, GetObjectRequest objectRequest, TransferHandle handle) {
+        GetObjectResponse response;
+        try {
+            response = StorageExecutor.execute(StorageProvider.OCI, StorageOperation.GET_OBJECT, objectRequest.getBucketName(),
+                    objectRequest.getObjectName(), () -> client.getObject(objectRequest));
+        } catch (RuntimeException e) {
+            handle.fail(e);
+            throw e;
+        }
+        if (handle.getTotalBytes() < 0 && Objects.nonNull(response.getContentLength())) {
+            handle.setTotalBytes(response.getContentLength());
+        }
+        InputStream in = response.getInputStream();
+        handle.onCancel(() -> IoUtil.close(in));
+        return new ProgressInputStream(S3Metrics.meter(StorageProvider.OCI, StorageOperation.GET_OBJECT, objectRequest.getBucketName(), in),
+                handle, true);
+    }
+
+    /**
+     * 断点续传下载对象到文件
+     * <p> 失败或进程中断后以相同参数再次调用只下载缺失的区间, 对象 ETag 变化时重新下载, 详见 {@link ResumableDownloader} </p>
+     *
+     * @param config         配置
+     * @param client         客户端
+     * @param key            key
+     * @param targetFilePath 目标路径
+     * @param prop           断点续传配置
+     * @param handle         传输句柄
+     * @return {@link File}
+     */
+    public static File resumableGetObject(OciS3Prop config, ObjectStorageClient client, String key, String targetFilePath,
+                                          ResumableDownloadProp prop, TransferHandle handle) {
+        return new ResumableDownloader(new OciObjectStorage(client, config.getNamespace()), prop)
+                .download(config.getBucketName(), key, new File(targetFilePath), handle);
     }
 
     /**
@@ -185,7 +261,7 @@ public class OciS3Utils {
                 .namespaceName(namespace)
                 .bucketName(bucketName)
                 .objectName(key).build();
-        return client.deleteObject(deleteObjectRequest);
+        return deleteObject(client, deleteObjectRequest);
     }
 
     /**
@@ -196,7 +272,9 @@ public class OciS3Utils {
      * @return {@link DeleteObjectResponse}
      */
     public static DeleteObjectResponse deleteObject(ObjectStorageClient client, DeleteObjectRequest deleteObjectRequest) {
-        return client.deleteObject(deleteObjectRequest);
+        return StorageExecutor.execute(StorageProvider.OCI, StorageOperation.DELETE_OBJECT, deleteObjectRequest.getBucketName(),
+                deleteObjectRequest.getObjectName(),
+                () -> client.deleteObject(deleteObjectRequest));
     }
 
     /**
@@ -257,7 +335,8 @@ public class OciS3Utils {
                 .bucketName(bucketName)
                 .createPreauthenticatedRequestDetails(createPreauthenticatedRequestDetails).build();
 
-        return client.createPreauthenticatedRequest(createPreauthenticatedRequestRequest);
+        return StorageExecutor.execute(StorageProvider.OCI, StorageOperation.PRESIGN, bucketName,
+                () -> client.createPreauthenticatedRequest(createPreauthenticatedRequestRequest));
     }
 
 
@@ -314,6 +393,44 @@ public class OciS3Utils {
         return getPutObjectRequest(client, putObjectRequest);
     }
 
+    /**
+     * 上传对象(带传输进度)
+     *
+     * @param config        配置
+     * @param client        客户端
+     * @param objectContent 对象内容
+     * @param contentLength 内容长度
+     * @param contentType   内容类型
+     * @param key           key
+     * @param handle        传输句柄
+     * @return {@link PutObjectResponse}
+     */
+    public static PutObjectResponse putObject(OciS3Prop config, ObjectStorageClient client, InputStream objectContent, Long contentLength,
+                                              String contentType, String key, TransferHandle handle) {
+        if (handle.getTotalBytes() < 0 && Objects.nonNull(contentLength)) {
+            handle.setTotalBytes(contentLength);
+        }
+        return handle.execute(() -> putObject(config, client, new ProgressInputStream(objectContent, handle), contentLength, contentType, key));
+    }
+
+    /**
+     * 断点续传上传文件
+     * <p> 进程中断或失败后以相同参数再次调用, 只上传服务端缺失的分段, 详见 {@link ResumableUploader} </p>
+     *
+     * @param config 配置
+     * @param client 客户端
+     * @param file   文件
+     * @param key    key
+     * @param prop   断点续传配置
+     * @param handle 传输句柄
+     * @return 对象 ETag
+     */
+    public static String resumablePutObject(OciS3Prop config, ObjectStorageClient client, File file, String key,
+                                            ResumableUploadProp prop, TransferHandle handle) {
+        return new ResumableUploader(new OciObjectStorage(client, config.getNamespace()), prop)
+                .upload(config.getBucketName(), key, file, handle);
+    }
+
     /**
      * 获取 上传对象请求
      *
@@ -322,7 +439,10 @@ public class OciS3Utils {
      * @return {@link PutObjectResponse}
      */
     public static PutObjectResponse getPutObjectRequest(ObjectStorageClient client, PutObjectRequest putObjectRequest) {
-        return client.putObject(putObjectRequest);
+        return StorageExecutor.executeUpload(StorageProvider.OCI, StorageOperation.PUT_OBJECT, putObjectRequest.getBucketName(),
+                putObjectRequest.getObjectName(),
+                Objects.isNull(putObjectRequest.getContentLength()) ? -1 : putObjectRequest.getContentLength(),
+                putObjectRequest.getPutObjectBody(), () -> client.putObject(putObjectRequest));
     }
 
 
@@ -368,8 +488,43 @@ public class OciS3Utils {
                 .prefix(prefix)
                 .limit(limit).build();
 
-        return client.listObjects(listObjectsRequest);
+        return StorageExecutor.execute(StorageProvider.OCI, StorageOperation.LIST_OBJECTS, config.getBucketName(),
+                () -> client.listObjects(listObjectsRequest));
+    }
+
+    /**
+     * 判断前缀下是否有对象, 只列举 1 条, 耗时与前缀下的对象数无关
+     *
+     * @param config 配置
+     * @param client 客户端
+     * @param prefix 前缀
+     * @return boolean
+     */
+    public static boolean prefixExist(OciS3Prop config, ObjectStorageClient client, String prefix) {
+        return new OciObjectStorage(client, config.getNamespace()).existsPrefix(config.getBucketName(), prefix);
     }
 
+    /**
+     * 判断前缀下是否没有对象
+     *
+     * @param config 配置
+     * @param client 客户端
+     * @param prefix 前缀
+     * @return boolean
+     */
+    public static boolean isPrefixEmpty(OciS3Prop config, ObjectStorageClient client, String prefix) {
+        return !prefixExist(config, client, prefix);
+    }
 
+    /**
+     * 并发判断多个前缀下是否有对象
+     *
+     * @param config   配置
+     * @param client   客户端
+     * @param prefixes 前缀
+     * @return 前缀 -> 是否有对象, 按输入顺序
+     */
+    public static Map<String, Boolean> prefixExist(OciS3Prop config, ObjectStorageClient client, Collection<String> prefixes) {
+        return new OciObjectStorage(client, config.getNamespace()).existsPrefixes(config.getBucketName(), prefixes);
+    }
 }
@@ -0,0 +1,161 @@
+package com.ukayunnuo.s3.bulk;
+
+import cn.hutool.core.io.FileUtil;
+import com.ukayunnuo.s3.exception.S3Exception;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link BulkJobEngine} 测试
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+public class BulkJobEngineTest {
+
+    private File dir;
+
+    private BulkProp prop;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("bulk").toFile();
+        prop = new BulkProp();
+        prop.setWorkDir(dir.getPath());
+        prop.setParallelism(8);
+        prop.setKeysPerTask(16);
+        prop.setMaxPendingBatches(4);
+    }
+
+    @After
+    public void tearDown() {
+        FileUtil.del(dir);
+    }
+
+    @Test
+    public void processesAllKeysAndReportsFailures() throws IOException {
+        Set<String> seen = ConcurrentHashMap.newKeySet();
+        try (BulkJobEngine engine = new BulkJobEngine(prop)) {
+            BulkJobResult result = engine.run(new BulkJob("all", "b", keys(1000), (bucket, key) -> {
+                seen.add(key);
+                if (key.endsWith("7")) {
+                    throw new IllegalStateException("boom " + key);
+                }
+            }));
+            assertEquals(1000, seen.size());
+            assertEquals(1000, result.getProcessed());
+            assertEquals(100, result.getFailed());
+            assertEquals(900, result.getSucceeded());
+            List<String> report = Files.readAllLines(result.getReportFile().toPath(), StandardCharsets.UTF_8);
+            assertEquals(100, report.size());
+            assertTrue(report.get(0).contains("boom"));
+        }
+    }
+
+    @Test
+    public void bucketConcurrencyIsBoundedWithoutExtraThreads() {
+        prop.setMaxConcurrencyPerBucket(2);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        try (BulkJobEngine engine = new BulkJobEngine(prop)) {
+            engine.run(new BulkJob("bounded", "b", keys(200), (bucket, key) -> {
+                threads.add(Thread.currentThread());
+                int now = running.incrementAndGet();
+                peak.accumulateAndGet(now, Math::max);
+                Thread.sleep(1);
+                running.decrementAndGet();
+            }));
+        }
+        assertTrue("peak " + peak.get(), peak.get() <= 2);
+        assertTrue("threads " + threads.size(), threads.size() <= prop.getParallelism());
+    }
+
+    @Test
+    public void batchOperationGetsWholeBatches() {
+        Map<Integer, Integer> sizes = new ConcurrentHashMap<>();
+        BulkOperation operation = new BulkOperation() {
+            @Override
+            public void apply(String bucket, String key) {
+                fail("batch operation expected");
+            }
+
+            @Override
+            public int batchSize() {
+                return 100;
+            }
+
+            @Override
+            public void applyBatch(String bucket, List<String> keys, Map<String, Exception> failures) {
+                sizes.merge(keys.size(), 1, Integer::sum);
+                failures.put(keys.get(0), new IllegalStateException("first of batch"));
+            }
+        };
+        try (BulkJobEngine engine = new BulkJobEngine(prop)) {
+            BulkJobResult result = engine.run(new BulkJob("batch", "b", keys(250), operation));
+            assertEquals(250, result.getProcessed());
+            assertEquals(3, result.getFailed());
+        }
+        assertEquals(Integer.valueOf(2), sizes.get(100));
+        assertEquals(Integer.valueOf(1), sizes.get(50));
+    }
+
+    @Test
+    public void resumesFromCheckpointAfterSourceFailure() {
+        Set<String> first = ConcurrentHashMap.newKeySet();
+        try (BulkJobEngine engine = new BulkJobEngine(prop)) {
+            KeySource failing = (resumeAfter, consumer) -> {
+                keys(1000).scan(resumeAfter, (key, position) -> {
+                    if (Integer.parseInt(position) > 500) {
+                        throw new S3Exception("source failed");
+                    }
+                    consumer.accept(key, position);
+                });
+            };
+            try {
+                engine.run(new BulkJob("resume", "b", failing, (bucket, key) -> first.add(key)));
+                fail("source failure expected");
+            } catch (S3Exception expected) {
+                // 检查点已保存
+            }
+            Set<String> second = ConcurrentHashMap.newKeySet();
+            BulkJobResult result = engine.run(new BulkJob("resume", "b", keys(1000), (bucket, key) -> second.add(key)));
+            assertTrue(result.isResumed());
+            assertEquals(1000, result.getProcessed());
+            assertFalse(second.contains("key-0"));
+            assertTrue(second.contains("key-999"));
+            Set<String> all = ConcurrentHashMap.newKeySet();
+            all.addAll(first);
+            all.addAll(second);
+            assertEquals(1000, all.size());
+        }
+    }
+
+    /**
+     * key-0 .. key-(n-1), 位置为序号(从 1 开始)
+     */
+    private static KeySource keys(int n) {
+        return (resumeAfter, consumer) -> {
+            int skip = resumeAfter == null ? 0 : Integer.parseInt(resumeAfter);
+            for (int i = skip; i < n; i++) {
+                consumer.accept("key-" + i, String.valueOf(i + 1));
+            }
+        };
+    }
+}
@@ -0,0 +1,59 @@
+package com.ukayunnuo.s3.bulk;
+
+import cn.hutool.core.io.FileUtil;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * 清单读取耗时对比, 不随测试运行
+ * <p> 生成 lines 行的清单后分别以 {@link LineFileKeySource}、{@link ManifestReader#scanBytes}、{@link ManifestReader#scan}
+ * 读取 rounds 次, 输出每种方式的最短耗时; 首轮用于预热页缓存: </p>
+ * <pre>
+ * java -cp target/classes:target/test-classes:&lt;依赖&gt; com.ukayunnuo.s3.bulk.ManifestReaderBenchmark [lines] [rounds]
+ * </pre>
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+public class ManifestReaderBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int lines = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        File file = File.createTempFile("manifest-bench", ".txt");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+                for (int i = 0; i < lines; i++) {
+                    writer.write("logs/2024/" + (i % 365) + "/host-" + (i % 97) + "/part-" + i + ".gz\n");
+                }
+            }
+            System.out.printf("java %s, lines %d, file %dMB, cpus %d%n", System.getProperty("java.version"), lines,
+                    file.length() >> 20, Runtime.getRuntime().availableProcessors());
+            ManifestReader reader = new ManifestReader(file, ManifestFormat.lines());
+            long[] best = {Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE};
+            for (int round = 0; round < rounds; round++) {
+                long[] count = new long[3];
+                long start = System.nanoTime();
+                new LineFileKeySource(file).scan(null, (key, position) -> count[0]++);
+                best[0] = Math.min(best[0], System.nanoTime() - start);
+                start = System.nanoTime();
+                reader.scanBytes((key, length, next) -> count[1]++);
+                best[1] = Math.min(best[1], System.nanoTime() - start);
+                start = System.nanoTime();
+                reader.scan(null, (key, position) -> count[2]++);
+                best[2] = Math.min(best[2], System.nanoTime() - start);
+                if (count[0] != lines || count[1] != lines || count[2] != lines) {
+                    throw new IllegalStateException("line count mismatch: " + count[0] + "/" + count[1] + "/" + count[2]);
+                }
+            }
+            System.out.printf("LineFileKeySource %dms, scanBytes %dms, scan %dms%n",
+                    best[0] / 1_000_000, best[1] / 1_000_000, best[2] / 1_000_000);
+        } finally {
+            FileUtil.del(file);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.ukayunnuo.s3.bulk;
+
+import cn.hutool.core.io.FileUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * {@link ManifestReader} 测试
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+public class ManifestReaderTest {
+
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("manifest").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        FileUtil.del(dir);
+    }
+
+    @Test
+    public void readsLinesSkippingBlankAndCr() throws IOException {
+        File file = write("a.txt", "alpha\r\nbeta\n\n中文/键\ngamma");
+        assertEquals(Arrays.asList("alpha", "beta", "中文/键", "gamma"), keys(new ManifestReader(file, ManifestFormat.lines()), null));
+    }
+
+    @Test
+    public void readsQuotedCsvColumn() throws IOException {
+        File file = write("inventory.csv", "bucket,key,size\n"
+                + "b,plain.txt,1\n"
+                + "b,\"with,comma.txt\",2\n"
+                + "\"b\",\"say \"\"hi\"\".txt\",3\n"
+                + "b\n");
+        assertEquals(Arrays.asList("plain.txt", "with,comma.txt", "say \"hi\".txt"),
+                keys(new ManifestReader(file, ManifestFormat.csv(1, true)), null));
+    }
+
+    @Test
+    public void resumesAfterPosition() throws IOException {
+        File file = write("a.txt", "k1\nk2\nk3\nk4\n");
+        ManifestReader reader = new ManifestReader(file, ManifestFormat.lines());
+        List<String> positions = new ArrayList<>();
+        reader.scan(null, (key, position) -> positions.add(position));
+        assertEquals(Arrays.asList("k3", "k4"), keys(reader, positions.get(1)));
+    }
+
+    @Test
+    public void splitCoversEveryLineOnce() throws IOException {
+        StringBuilder content = new StringBuilder();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            String key = "prefix/" + i + (i % 7 == 0 ? "/longer-key-name" : "");
+            expected.add(key);
+            content.append(key).append('\n');
+        }
+        File file = write("big.txt", content.toString());
+        ManifestReader reader = new ManifestReader(file, ManifestFormat.lines());
+        List<ManifestReader> parts = reader.split(7);
+        assertEquals(7, parts.size());
+        List<String> actual = new ArrayList<>();
+        long previousEnd = 0;
+        for (ManifestReader part : parts) {
+            assertEquals(previousEnd, part.getStart());
+            previousEnd = part.getEnd();
+            actual.addAll(keys(part, null));
+        }
+        assertEquals(file.length(), previousEnd);
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void agreesWithLineFileKeySource() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            content.append("logs/2024/").append(i).append(".gz").append(i % 3 == 0 ? "\r\n" : "\n");
+        }
+        File file = write("keys.txt", content.toString());
+        List<String> expected = new ArrayList<>();
+        new LineFileKeySource(file).scan(null, (key, position) -> expected.add(key));
+        List<String> actual = new ArrayList<>();
+        new ManifestReader(file, ManifestFormat.lines()).scanBytes(
+                (key, length, next) -> actual.add(new String(key, 0, length, StandardCharsets.UTF_8)));
+        assertEquals(500, actual.size());
+        assertEquals(expected, actual);
+    }
+
+    private File write(String name, String content) throws IOException {
+        File file = new File(dir, name);
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static List<String> keys(ManifestReader reader, String resumeAfter) {
+        List<String> keys = new ArrayList<>();
+        reader.scan(resumeAfter, (key, position) -> keys.add(key));
+        return keys;
+    }
+}
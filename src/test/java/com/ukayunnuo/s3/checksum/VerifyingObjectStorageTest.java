@@ -0,0 +1,227 @@
+package com.ukayunnuo.s3.checksum;
+
+import com.ukayunnuo.s3.storage.InMemoryObjectStorage;
+import com.ukayunnuo.s3.storage.ObjectInfo;
+import com.ukayunnuo.s3.storage.PartInfo;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link VerifyingObjectStorage} 测试
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+public class VerifyingObjectStorageTest {
+
+    private static final String BUCKET = "bucket";
+
+    private static final byte[] DATA = "verifying object storage".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void kmsEtagIsNotTreatedAsMd5() throws IOException {
+        EncryptedStorage delegate = new EncryptedStorage("aws:kms");
+        new VerifyingObjectStorage(delegate).putObject(BUCKET, "a.txt", DATA, "text/plain", null);
+
+        VerifyingObjectStorage storage = new VerifyingObjectStorage(delegate, etagProp());
+        assertArrayEquals(DATA, readAll(storage.getVerifiedObject(BUCKET, "a.txt")));
+        assertArrayEquals(DATA, readAll(storage.getObject(BUCKET, "a.txt", 0, -1, EncryptedStorage.ETAG)));
+    }
+
+    @Test
+    public void unencryptedEtagMismatchFails() {
+        EncryptedStorage delegate = new EncryptedStorage(null);
+        delegate.putObject(BUCKET, "a.txt", DATA, "text/plain", null);
+
+        VerifyingObjectStorage storage = new VerifyingObjectStorage(delegate, etagProp());
+        try {
+            readAll(storage.getVerifiedObject(BUCKET, "a.txt"));
+            fail("etag mismatch not detected");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("MD5"));
+        }
+    }
+
+    @Test
+    public void metadataChecksumDetectsCorruption() {
+        InMemoryObjectStorage delegate = new InMemoryObjectStorage();
+        VerifyingObjectStorage storage = new VerifyingObjectStorage(delegate);
+        storage.putObject(BUCKET, "a.txt", DATA, "text/plain", null);
+        delegate.content(BUCKET, "a.txt")[0] ^= 1;
+
+        try {
+            readAll(storage.getVerifiedObject(BUCKET, "a.txt"));
+            fail("corruption not detected");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("CRC32C"));
+        }
+    }
+
+    @Test
+    public void multipartUploadIsVerifiedPerPart() throws IOException {
+        InMemoryObjectStorage delegate = new InMemoryObjectStorage();
+        VerifyingObjectStorage storage = new VerifyingObjectStorage(delegate);
+        byte[] data = random(300);
+        File file = tempFile(data);
+        try {
+            String uploadId = storage.initiateMultipartUpload(BUCKET, "big.bin", null, null);
+            List<PartInfo> parts = new ArrayList<>();
+            parts.add(new PartInfo(1, storage.uploadPart(BUCKET, "big.bin", uploadId, 1, file, 0, 100), 100));
+            parts.add(new PartInfo(2, storage.uploadPart(BUCKET, "big.bin", uploadId, 2, Arrays.copyOfRange(data, 100, 200)), 100));
+            parts.add(new PartInfo(3, storage.uploadPart(BUCKET, "big.bin", uploadId, 3, file, 200, 100), 100));
+            storage.completeMultipartUpload(BUCKET, "big.bin", uploadId, parts);
+        } finally {
+            Files.delete(file.toPath());
+        }
+
+        assertArrayEquals(data, readAll(storage.getVerifiedObject(BUCKET, "big.bin")));
+        // 旁路对象不出现在列举结果中
+        List<String> keys = new ArrayList<>();
+        storage.listObjects(BUCKET, "", info -> keys.add(info.getKey()));
+        assertEquals(Collections.singletonList("big.bin"), keys);
+
+        delegate.content(BUCKET, "big.bin")[150] ^= 1;
+        try {
+            readAll(storage.getVerifiedObject(BUCKET, "big.bin"));
+            fail("corruption not detected");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("part 2 CRC32C"));
+        }
+
+        storage.deleteObjects(BUCKET, Collections.singletonList("big.bin"));
+        assertEquals(0, delegate.ids().size());
+    }
+
+    @Test
+    public void largeFileIsVerifiedThroughSidecar() throws IOException {
+        ChecksumProp prop = new ChecksumProp();
+        prop.setMaxBufferedBytes(16);
+        prop.setAlgorithms(EnumSet.of(ChecksumAlgorithm.CRC32C, ChecksumAlgorithm.SHA256));
+        InMemoryObjectStorage delegate = new InMemoryObjectStorage();
+        VerifyingObjectStorage storage = new VerifyingObjectStorage(delegate, prop);
+        byte[] data = random(100);
+        File file = tempFile(data);
+        try {
+            storage.putObject(BUCKET, "large.bin", file, null);
+        } finally {
+            Files.delete(file.toPath());
+        }
+
+        assertArrayEquals(data, readAll(storage.getVerifiedObject(BUCKET, "large.bin")));
+        delegate.content(BUCKET, "large.bin")[99] ^= 1;
+        try {
+            readAll(storage.getVerifiedObject(BUCKET, "large.bin"));
+            fail("corruption not detected");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("part 1"));
+        }
+    }
+
+    @Test
+    public void sidecarOfOverwrittenObjectIsIgnored() throws IOException {
+        InMemoryObjectStorage delegate = new InMemoryObjectStorage();
+        VerifyingObjectStorage storage = new VerifyingObjectStorage(delegate);
+        String uploadId = storage.initiateMultipartUpload(BUCKET, "k", null, null);
+        String etag = storage.uploadPart(BUCKET, "k", uploadId, 1, random(50));
+        storage.completeMultipartUpload(BUCKET, "k", uploadId, Collections.singletonList(new PartInfo(1, etag, 50)));
+
+        // 绕过本类覆盖对象, 旁路对象中的 ETag 不再匹配
+        byte[] replaced = random(80);
+        delegate.putObject(BUCKET, "k", replaced, null, null);
+        assertArrayEquals(replaced, readAll(storage.getVerifiedObject(BUCKET, "k")));
+    }
+
+    @Test
+    public void truncatedAndExtendedContentIsRejected() {
+        PartChecksums.Part part = new PartChecksums.Part(1, 10, ContentChecksum.of(EnumSet.of(ChecksumAlgorithm.CRC32C), new byte[10]).values());
+        PartChecksums checksums = new PartChecksums("etag", Collections.singletonList(part));
+        try {
+            readAll(new PartChecksumInputStream(new ByteArrayInputStream(new byte[9]), checksums, "k"));
+            fail("truncation not detected");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("truncated"));
+        }
+        try {
+            readAll(new PartChecksumInputStream(new ByteArrayInputStream(new byte[11]), checksums, "k"));
+            fail("extra content not detected");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("longer"));
+        }
+        assertEquals(checksums.getParts().get(0).getValues(), PartChecksums.parse(checksums.toText()).getParts().get(0).getValues());
+    }
+
+    private static ChecksumProp etagProp() {
+        ChecksumProp prop = new ChecksumProp();
+        prop.setVerifyEtag(true);
+        return prop;
+    }
+
+    private static byte[] random(int size) {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        return data;
+    }
+
+    private static File tempFile(byte[] data) throws IOException {
+        File file = File.createTempFile("verifying", ".bin");
+        Files.write(file.toPath(), data);
+        return file;
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        try (InputStream input = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[64];
+            int n;
+            while ((n = input.read(buffer)) >= 0) {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    /**
+     * ETag 与内容无关的存储, 模拟服务端加密
+     */
+    private static class EncryptedStorage extends InMemoryObjectStorage {
+
+        static final String ETAG = "0123456789abcdef0123456789abcdef";
+
+        final String sse;
+
+        EncryptedStorage(String sse) {
+            this.sse = sse;
+        }
+
+        @Override
+        public ObjectInfo headObject(String bucket, String key) {
+            ObjectInfo info = super.headObject(bucket, key);
+            info.setEtag(ETAG);
+            info.setServerSideEncryption(sse);
+            return info;
+        }
+
+        @Override
+        public InputStream getObject(String bucket, String key, long offset, long length, String etag) {
+            return super.getObject(bucket, key, offset, length, null);
+        }
+    }
+}
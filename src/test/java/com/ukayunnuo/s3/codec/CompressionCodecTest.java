@@ -0,0 +1,56 @@
+package com.ukayunnuo.s3.codec;
+
+import com.ukayunnuo.s3.exception.S3Exception;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * {@link CompressionCodec} 测试
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+public class CompressionCodecTest {
+
+    @Test
+    public void resolvesKnownTags() {
+        assertEquals(CompressionCodec.NONE, CompressionCodec.of(null));
+        assertEquals(CompressionCodec.NONE, CompressionCodec.of(""));
+        assertEquals(CompressionCodec.NONE, CompressionCodec.of("identity"));
+        assertEquals(CompressionCodec.GZIP, CompressionCodec.of("GZIP"));
+        assertEquals(CompressionCodec.ZSTD, CompressionCodec.of("zstd"));
+    }
+
+    @Test(expected = S3Exception.class)
+    public void rejectsUnknownTag() {
+        CompressionCodec.of("brotli");
+    }
+
+    @Test
+    public void concatenatedGzipMembersDecompress() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (String chunk : new String[]{"hello ", "world"}) {
+            try (OutputStream gzip = CompressionCodec.GZIP.compress(out, 6)) {
+                gzip.write(chunk.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        ByteArrayOutputStream plain = new ByteArrayOutputStream();
+        try (InputStream in = CompressionCodec.GZIP.decompress(new ByteArrayInputStream(out.toByteArray()))) {
+            byte[] buffer = new byte[256];
+            int n;
+            while ((n = in.read(buffer)) >= 0) {
+                plain.write(buffer, 0, n);
+            }
+        }
+        assertArrayEquals("hello world".getBytes(StandardCharsets.UTF_8), plain.toByteArray());
+    }
+}
@@ -0,0 +1,59 @@
+package com.ukayunnuo.s3.core;
+
+import com.ukayunnuo.s3.metrics.OperationMeters;
+import com.ukayunnuo.s3.metrics.S3Metrics;
+import com.ukayunnuo.s3.resilience.S3Limiter;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * {@link StorageEndpoint} 测试
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+public class StorageEndpointTest {
+
+    @Test
+    public void parsesHostAndPort() {
+        assertEquals("minio@10.0.0.5:9000", StorageEndpoint.of(StorageProvider.MINIO, "http://10.0.0.5:9000/").getId());
+        assertEquals("aws@s3.us-east-1.amazonaws.com", StorageEndpoint.of(StorageProvider.AWS, "https://S3.us-east-1.amazonaws.com").getId());
+        assertEquals("minio@minio:9000", StorageEndpoint.of(StorageProvider.MINIO, "minio:9000").getId());
+    }
+
+    @Test
+    public void blankHostIsProviderDefault() {
+        StorageEndpoint endpoint = StorageEndpoint.of(StorageProvider.AWS, " ");
+        assertSame(StorageEndpoint.of(StorageProvider.AWS), endpoint);
+        assertNull(endpoint.getHost());
+        assertEquals("aws", endpoint.getId());
+    }
+
+    @Test
+    public void sameProviderDifferentHostsDiffer() {
+        StorageEndpoint lan = StorageEndpoint.of(StorageProvider.AWS, "http://10.0.0.5:9000");
+        assertEquals(lan, StorageEndpoint.of(StorageProvider.AWS, "10.0.0.5:9000"));
+        assertNotEquals(lan, StorageEndpoint.of(StorageProvider.AWS));
+        assertNotEquals(lan, StorageEndpoint.of(StorageProvider.MINIO, "10.0.0.5:9000"));
+    }
+
+    @Test
+    public void metersAndLimitersAreKeyedByEndpoint() {
+        StorageEndpoint hot = StorageEndpoint.of(StorageProvider.MINIO, "10.0.0.5:9000");
+        StorageEndpoint cold = StorageEndpoint.of(StorageProvider.AWS);
+
+        OperationMeters hotMeters = S3Metrics.meters(hot, StorageOperation.GET_OBJECT, "b");
+        assertSame(hotMeters, S3Metrics.meters(StorageEndpoint.of(StorageProvider.MINIO, "http://10.0.0.5:9000"), StorageOperation.GET_OBJECT, "b"));
+        assertNotSame(hotMeters, S3Metrics.meters(cold, StorageOperation.GET_OBJECT, "b"));
+        assertNotSame(hotMeters, S3Metrics.meters(StorageProvider.MINIO, StorageOperation.GET_OBJECT, "b"));
+        assertEquals(hot, hotMeters.getEndpoint());
+        assertEquals(StorageProvider.MINIO, hotMeters.getProvider());
+        assertNotSame(S3Limiter.limiter(hot, "b", "k"), S3Limiter.limiter(cold, "b", "k"));
+        assertEquals(hot, S3Limiter.limiter(hot, "b", "k").getEndpoint());
+    }
+}
@@ -0,0 +1,118 @@
+package com.ukayunnuo.s3.core;
+
+import com.amazonaws.AmazonServiceException;
+import com.ukayunnuo.s3.exception.S3Exception;
+import com.ukayunnuo.s3.exception.StorageErrorKind;
+import com.ukayunnuo.s3.exception.StorageException;
+import com.ukayunnuo.s3.exception.StorageNotFoundException;
+import com.ukayunnuo.s3.resilience.FailureClassifier;
+import com.ukayunnuo.s3.resilience.S3Retry;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link StorageExecutor} 异常转换测试
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+public class StorageExecutorTest {
+
+    @Test
+    public void platformNotFoundBecomesStorageNotFound() {
+        AmazonServiceException cause = serviceException(404, "NoSuchKey");
+        try {
+            StorageExecutor.execute(StorageProvider.AWS, StorageOperation.HEAD_OBJECT, "b", "k", () -> {
+                throw cause;
+            });
+            fail("exception expected");
+        } catch (StorageNotFoundException e) {
+            assertSame(cause, e.getCause());
+            assertEquals("k", e.getKey());
+            assertEquals("NoSuchKey", e.getErrorCode());
+            assertTrue(FailureClassifier.isNotFound(e));
+        }
+    }
+
+    @Test
+    public void platformErrorKeepsKindAndStatus() {
+        try {
+            StorageExecutor.execute(StorageProvider.AWS, StorageOperation.PUT_OBJECT, "b", "k", () -> {
+                throw serviceException(403, "AccessDenied");
+            });
+            fail("exception expected");
+        } catch (StorageException e) {
+            assertEquals(StorageErrorKind.AUTH, e.getKind());
+            assertEquals(403, e.getStatus());
+            assertEquals(403, FailureClassifier.status(e));
+            assertEquals(StorageErrorKind.AUTH, FailureClassifier.errorKind(e));
+        }
+    }
+
+    @Test
+    public void ownExceptionsPassThrough() {
+        S3Exception error = new S3Exception("not a platform error");
+        try {
+            StorageExecutor.execute(StorageProvider.AWS, StorageOperation.GET_OBJECT, "b", "k", () -> {
+                throw error;
+            });
+            fail("exception expected");
+        } catch (S3Exception e) {
+            assertSame(error, e);
+        }
+    }
+
+    @Test
+    public void classifierRecognisesStorageNotFound() {
+        StorageNotFoundException e = new StorageNotFoundException("b", "k");
+        assertTrue(FailureClassifier.isNotFound(e));
+        assertTrue(FailureClassifier.isNotFound(new S3Exception("wrapped", e)));
+        assertEquals(StorageErrorKind.NOT_FOUND, FailureClassifier.errorKind(e));
+    }
+
+    @Test
+    public void transferIsAttemptedOnce() {
+        AtomicInteger calls = new AtomicInteger();
+        try {
+            StorageExecutor.executeTransfer(StorageEndpoint.of(StorageProvider.AWS), StorageOperation.MULTIPART_UPLOAD, "b", "k", 10, () -> {
+                calls.incrementAndGet();
+                // 分段由 SDK 各自重试, 整体传输不处于重试范围内
+                assertFalse(S3Retry.isManaged());
+                throw serviceException(500, "InternalError");
+            });
+            fail("exception expected");
+        } catch (StorageException e) {
+            assertEquals(StorageErrorKind.TRANSIENT, e.getKind());
+        }
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void retriedCallsAreManaged() {
+        AtomicInteger calls = new AtomicInteger();
+        String result = StorageExecutor.execute(StorageProvider.AWS, StorageOperation.MULTIPART_UPLOAD, "b", "k", () -> {
+            assertTrue(S3Retry.isManaged());
+            if (calls.incrementAndGet() == 1) {
+                throw serviceException(500, "InternalError");
+            }
+            return "etag";
+        });
+        assertEquals("etag", result);
+        assertEquals(2, calls.get());
+        assertFalse(S3Retry.isManaged());
+    }
+
+    private static AmazonServiceException serviceException(int status, String code) {
+        AmazonServiceException e = new AmazonServiceException("status " + status);
+        e.setStatusCode(status);
+        e.setErrorCode(code);
+        return e;
+    }
+}
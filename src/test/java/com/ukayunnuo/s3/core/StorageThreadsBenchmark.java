@@ -0,0 +1,81 @@
+package com.ukayunnuo.s3.core;
+
+import com.ukayunnuo.s3.metrics.S3Metrics;
+import com.ukayunnuo.s3.metrics.S3MetricsProp;
+import io.micrometer.core.instrument.Metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 平台线程与虚拟线程模式的吞吐对比, 不随测试运行
+ * <p> 每次调用在 {@link StorageExecutor} 内阻塞 {@code sleep} 毫秒模拟一次存储请求, 关闭指标与并发限制;
+ * 虚拟线程模式需运行在 Java 21+: </p>
+ * <pre>
+ * java -cp target/classes:target/test-classes:&lt;依赖&gt; com.ukayunnuo.s3.core.StorageThreadsBenchmark [calls] [sleepMillis] [concurrency...]
+ * </pre>
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+public class StorageThreadsBenchmark {
+
+    private static final StorageEndpoint ENDPOINT = StorageEndpoint.of(StorageProvider.AWS, "bench:9000");
+
+    public static void main(String[] args) throws InterruptedException {
+        int calls = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        long sleepMillis = args.length > 1 ? Long.parseLong(args[1]) : 50;
+        int[] concurrencies = {200, 2000, 10000};
+        if (args.length > 2) {
+            concurrencies = new int[args.length - 2];
+            for (int i = 2; i < args.length; i++) {
+                concurrencies[i - 2] = Integer.parseInt(args[i]);
+            }
+        }
+        S3MetricsProp metricsProp = new S3MetricsProp();
+        metricsProp.setEnabled(false);
+        S3Metrics.configure(Metrics.globalRegistry, metricsProp);
+        System.out.printf("java %s, calls %d, sleep %dms%n", System.getProperty("java.version"), calls, sleepMillis);
+        for (int concurrency : concurrencies) {
+            String platform = run(ThreadMode.PLATFORM, concurrency, calls, sleepMillis);
+            String virtual = StorageThreads.isVirtualSupported() ? run(ThreadMode.VIRTUAL, concurrency, calls, sleepMillis) : "unsupported";
+            System.out.printf("concurrency %6d: platform %s, virtual %s%n", concurrency, platform, virtual);
+        }
+    }
+
+    private static String run(ThreadMode mode, int concurrency, int calls, long sleepMillis) throws InterruptedException {
+        StorageThreadsProp prop = new StorageThreadsProp();
+        prop.setMode(mode);
+        prop.setMaxInFlightPerHost(concurrency);
+        StorageThreads.configure(prop);
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        threads.resetPeakThreadCount();
+        int baseline = threads.getThreadCount();
+        ExecutorService executor = StorageThreads.newExecutor("bench", concurrency);
+        CountDownLatch done = new CountDownLatch(calls);
+        long start = System.nanoTime();
+        for (int i = 0; i < calls; i++) {
+            executor.execute(() -> {
+                try {
+                    StorageExecutor.execute(ENDPOINT, StorageOperation.HEAD_OBJECT, "bench", () -> {
+                        Thread.sleep(sleepMillis);
+                        return null;
+                    });
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        long elapsed = System.nanoTime() - start;
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+        double perSecond = calls * 1e9 / elapsed;
+        return String.format("%.1fk/s (+%d threads)", perSecond / 1000, threads.getPeakThreadCount() - baseline);
+    }
+}
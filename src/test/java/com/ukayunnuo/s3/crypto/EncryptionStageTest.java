@@ -0,0 +1,202 @@
+package com.ukayunnuo.s3.crypto;
+
+import com.ukayunnuo.s3.exception.S3Exception;
+import com.ukayunnuo.s3.storage.InMemoryObjectStorage;
+import com.ukayunnuo.s3.storage.ObjectInfo;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link EncryptionStage} 测试
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+public class EncryptionStageTest {
+
+    private static final String BUCKET = "bucket";
+
+    private static final int CHUNK = 1024;
+
+    private static final int PART = 5 * 1024 * 1024;
+
+    private final InMemoryObjectStorage storage = new InMemoryObjectStorage();
+
+    private EncryptionStage stage;
+
+    @After
+    public void tearDown() {
+        if (stage != null) {
+            stage.shutdown();
+        }
+    }
+
+    @Test
+    public void emptyObjectRoundTrips() throws IOException {
+        stage = new EncryptionStage(storage, prop(CHUNK));
+        stage.put(BUCKET, "empty", new ByteArrayInputStream(new byte[0]), null);
+
+        // 空内容也有一个仅含标签的块
+        assertEquals(EnvelopeCipher.TAG_BYTES, storage.content(BUCKET, "empty").length);
+        assertArrayEquals(new byte[0], readAll(stage.get(BUCKET, "empty")));
+        assertArrayEquals(new byte[0], stage.getRange(BUCKET, "empty", 0, 10));
+        assertEquals(0, stage.plainLength(storage.headObject(BUCKET, "empty")));
+    }
+
+    @Test
+    public void exactMultipleOfChunkSizeRoundTrips() throws IOException {
+        stage = new EncryptionStage(storage, prop(CHUNK));
+        byte[] data = random(4 * CHUNK, 1);
+        stage.put(BUCKET, "exact", new ByteArrayInputStream(data), null);
+
+        assertEquals(4 * (CHUNK + EnvelopeCipher.TAG_BYTES), storage.content(BUCKET, "exact").length);
+        assertArrayEquals(data, readAll(stage.get(BUCKET, "exact")));
+        assertArrayEquals(Arrays.copyOfRange(data, 3 * CHUNK, 4 * CHUNK), stage.getRange(BUCKET, "exact", 3 * CHUNK, CHUNK));
+        assertArrayEquals(new byte[0], stage.getRange(BUCKET, "exact", 4 * CHUNK, 1));
+    }
+
+    @Test
+    public void multipartObjectRoundTrips() throws IOException {
+        stage = new EncryptionStage(storage, prop(64 * 1024));
+        byte[] data = random(2 * PART + 12345, 2);
+        stage.put(BUCKET, "multi", new ByteArrayInputStream(data), "application/octet-stream");
+
+        assertEquals(1, storage.calls("initiateMultipartUpload"));
+        assertEquals(3, storage.calls("uploadPart"));
+        assertEquals(0, storage.pendingUploads());
+        assertArrayEquals(data, readAll(stage.get(BUCKET, "multi")));
+        assertEquals(data.length, stage.plainLength(storage.headObject(BUCKET, "multi")));
+    }
+
+    @Test
+    public void rangeSpansChunkAndPartBoundaries() {
+        int chunk = 64 * 1024;
+        stage = new EncryptionStage(storage, prop(chunk));
+        byte[] data = random(2 * PART + 777, 3);
+        stage.put(BUCKET, "range", new ByteArrayInputStream(data), null);
+
+        int[][] ranges = {
+                // 块内、跨块、跨分段、跨两个分段到末尾、超出末尾截断
+                {10, 100}, {chunk - 7, 20}, {PART - 100, 300}, {PART - 5, PART + 500}, {data.length - 10, 100}, {0, data.length}
+        };
+        for (int[] range : ranges) {
+            int end = Math.min(data.length, range[0] + range[1]);
+            assertArrayEquals(range[0] + "+" + range[1], Arrays.copyOfRange(data, range[0], end),
+                    stage.getRange(BUCKET, "range", range[0], range[1]));
+        }
+        try {
+            stage.getRange(BUCKET, "range", data.length + 1, 1);
+            fail("out of bounds range accepted");
+        } catch (S3Exception expected) {
+            // 预期
+        }
+    }
+
+    @Test
+    public void tamperedChunkIsRejected() {
+        stage = new EncryptionStage(storage, prop(CHUNK));
+        byte[] data = random(3 * CHUNK + 10, 4);
+        stage.put(BUCKET, "tampered", new ByteArrayInputStream(data), null);
+        // 修改第 2 块密文中的一个字节
+        storage.content(BUCKET, "tampered")[CHUNK + EnvelopeCipher.TAG_BYTES + 5] ^= 1;
+
+        assertGetFails("tampered");
+        assertArrayEquals(Arrays.copyOfRange(data, 0, CHUNK), stage.getRange(BUCKET, "tampered", 0, CHUNK));
+        assertRangeFails("tampered", CHUNK, 10);
+    }
+
+    @Test
+    public void truncatedObjectIsRejected() {
+        stage = new EncryptionStage(storage, prop(CHUNK));
+        stage.put(BUCKET, "whole", new ByteArrayInputStream(random(3 * CHUNK + 10, 5)), null);
+        byte[] sealed = storage.content(BUCKET, "whole");
+        ObjectInfo info = storage.headObject(BUCKET, "whole");
+        int cipherChunk = CHUNK + EnvelopeCipher.TAG_BYTES;
+
+        // 去掉最后一块: 剩余的最后一块加密时不是最后一块
+        storage.putObject(BUCKET, "dropped", Arrays.copyOf(sealed, 3 * cipherChunk), null, info.getMetadata());
+        assertGetFails("dropped");
+        assertRangeFails("dropped", 2 * CHUNK, 10);
+
+        // 截断在块中间
+        storage.putObject(BUCKET, "cut", Arrays.copyOf(sealed, 2 * cipherChunk + 100), null, info.getMetadata());
+        assertGetFails("cut");
+    }
+
+    @Test
+    public void reorderedChunksAreRejected() {
+        stage = new EncryptionStage(storage, prop(CHUNK));
+        stage.put(BUCKET, "ordered", new ByteArrayInputStream(random(3 * CHUNK, 6)), null);
+        byte[] sealed = storage.content(BUCKET, "ordered").clone();
+        int cipherChunk = CHUNK + EnvelopeCipher.TAG_BYTES;
+        byte[] swapped = sealed.clone();
+        System.arraycopy(sealed, 0, swapped, cipherChunk, cipherChunk);
+        System.arraycopy(sealed, cipherChunk, swapped, 0, cipherChunk);
+        storage.putObject(BUCKET, "swapped", swapped, null, storage.headObject(BUCKET, "ordered").getMetadata());
+
+        assertGetFails("swapped");
+        assertRangeFails("swapped", 0, 10);
+        assertRangeFails("swapped", CHUNK, 10);
+    }
+
+    private void assertGetFails(String key) {
+        try {
+            readAll(stage.get(BUCKET, key));
+            fail("corrupted content accepted: " + key);
+        } catch (IOException expected) {
+            // 预期
+        }
+    }
+
+    private void assertRangeFails(String key, long offset, int length) {
+        try {
+            stage.getRange(BUCKET, key, offset, length);
+            fail("corrupted range accepted: " + key + "@" + offset);
+        } catch (S3Exception e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    private static EncryptionProp prop(int chunkSize) {
+        byte[] masterKey = new byte[32];
+        new Random(42).nextBytes(masterKey);
+        EncryptionProp prop = new EncryptionProp();
+        prop.getMasterKeys().put("k1", Base64.getEncoder().encodeToString(masterKey));
+        prop.setActiveKeyId("k1");
+        prop.setChunkSize(chunkSize);
+        prop.setPartSize(PART);
+        prop.setConcurrency(2);
+        return prop;
+    }
+
+    private static byte[] random(int size, long seed) {
+        byte[] data = new byte[size];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        try (InputStream stream = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = stream.read(buffer)) >= 0) {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.ukayunnuo.s3.crypto;
+
+import org.junit.Test;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link EnvelopeCipher} 与 {@link DecryptingInputStream} 测试
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+public class EnvelopeCipherTest {
+
+    private static final int CHUNK = 32;
+
+    private static final byte[] MASTER_KEY = new byte[32];
+
+    static {
+        new Random(7).nextBytes(MASTER_KEY);
+    }
+
+    @Test
+    public void dataKeyIsBoundToKeyId() throws GeneralSecurityException, IOException {
+        EnvelopeCipher envelope = EnvelopeCipher.generate(CHUNK);
+        byte[] wrapped = envelope.wrap(MASTER_KEY, "k1");
+        byte[] data = random(3 * CHUNK + 5);
+        byte[] sealed = seal(envelope, data);
+
+        EnvelopeCipher unwrapped = EnvelopeCipher.unwrap(MASTER_KEY, "k1", wrapped, CHUNK);
+        assertArrayEquals(data, decrypt(unwrapped, sealed, 0));
+        try {
+            EnvelopeCipher.unwrap(MASTER_KEY, "k2", wrapped, CHUNK);
+            fail("data key unwrapped under another key id");
+        } catch (AEADBadTagException expected) {
+            // 预期
+        }
+    }
+
+    @Test
+    public void lengthsAccountForTags() {
+        EnvelopeCipher envelope = EnvelopeCipher.generate(CHUNK);
+        long cipherChunk = CHUNK + EnvelopeCipher.TAG_BYTES;
+        assertEquals(1, envelope.chunkCount(EnvelopeCipher.TAG_BYTES));
+        assertEquals(0, envelope.plainLength(EnvelopeCipher.TAG_BYTES));
+        assertEquals(2, envelope.chunkCount(2 * cipherChunk));
+        assertEquals(2 * CHUNK, envelope.plainLength(2 * cipherChunk));
+        assertEquals(3, envelope.chunkCount(2 * cipherChunk + EnvelopeCipher.TAG_BYTES + 1));
+        assertEquals(2 * CHUNK + 1, envelope.plainLength(2 * cipherChunk + EnvelopeCipher.TAG_BYTES + 1));
+    }
+
+    @Test
+    public void streamStartsAtAnyChunk() throws GeneralSecurityException, IOException {
+        EnvelopeCipher envelope = EnvelopeCipher.generate(CHUNK);
+        byte[] data = random(4 * CHUNK + 3);
+        byte[] sealed = seal(envelope, data);
+        int cipherChunk = CHUNK + EnvelopeCipher.TAG_BYTES;
+
+        byte[] tail = Arrays.copyOfRange(sealed, 2 * cipherChunk, sealed.length);
+        assertArrayEquals(Arrays.copyOfRange(data, 2 * CHUNK, data.length), decrypt(envelope, tail, 2));
+        // 从错误的块序号开始解密
+        assertDecryptFails(envelope, tail, 1);
+    }
+
+    @Test
+    public void truncatedStreamFails() throws GeneralSecurityException, IOException {
+        EnvelopeCipher envelope = EnvelopeCipher.generate(CHUNK);
+        byte[] sealed = seal(envelope, random(3 * CHUNK));
+        int cipherChunk = CHUNK + EnvelopeCipher.TAG_BYTES;
+        // 流在声明的最后一块之前结束
+        InputStream in = new DecryptingInputStream(new ByteArrayInputStream(Arrays.copyOf(sealed, cipherChunk + 10)), envelope, 3, 0);
+        try {
+            readAll(in);
+            fail("truncated stream accepted");
+        } catch (EOFException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("chunk 1"));
+        }
+        // 最后一块不完整时认证失败
+        assertDecryptFails(envelope, Arrays.copyOf(sealed, sealed.length - 10), 0);
+    }
+
+    @Test
+    public void appendedChunkFails() throws GeneralSecurityException, IOException {
+        EnvelopeCipher envelope = EnvelopeCipher.generate(CHUNK);
+        byte[] data = random(2 * CHUNK);
+        byte[] sealed = seal(envelope, data);
+        // 追加一块后, 原来的最后一块不再是最后一块
+        byte[] extended = Arrays.copyOf(sealed, sealed.length + CHUNK + EnvelopeCipher.TAG_BYTES);
+        System.arraycopy(sealed, 0, extended, sealed.length, CHUNK + EnvelopeCipher.TAG_BYTES);
+        assertDecryptFails(envelope, extended, 0);
+    }
+
+    private static void assertDecryptFails(EnvelopeCipher envelope, byte[] sealed, long firstChunk)
+            throws GeneralSecurityException {
+        try {
+            decrypt(envelope, sealed, firstChunk);
+            fail("corrupted content accepted");
+        } catch (IOException expected) {
+            // 预期
+        }
+    }
+
+    /**
+     * 与 {@link EncryptionStage} 相同的分块方式加密整个对象
+     */
+    private static byte[] seal(EnvelopeCipher envelope, byte[] plain) throws GeneralSecurityException {
+        int chunks = Math.max(1, (plain.length + CHUNK - 1) / CHUNK);
+        byte[] sealed = new byte[plain.length + chunks * EnvelopeCipher.TAG_BYTES];
+        Cipher cipher = EnvelopeCipher.newCipher();
+        int out = 0;
+        for (int i = 0; i < chunks; i++) {
+            int from = i * CHUNK;
+            out += envelope.encrypt(cipher, i, i == chunks - 1, plain, from, Math.min(CHUNK, plain.length - from), sealed, out);
+        }
+        return sealed;
+    }
+
+    private static byte[] decrypt(EnvelopeCipher envelope, byte[] sealed, long firstChunk) throws GeneralSecurityException, IOException {
+        long chunkCount = firstChunk + envelope.chunkCount(sealed.length);
+        return readAll(new DecryptingInputStream(new ByteArrayInputStream(sealed), envelope, chunkCount, firstChunk));
+    }
+
+    private static byte[] random(int size) {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        return data;
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        try (InputStream stream = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[50];
+            int n;
+            while ((n = stream.read(buffer)) >= 0) {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.ukayunnuo.s3.dedup;
+
+import com.ukayunnuo.s3.storage.InMemoryObjectStorage;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link DedupStore} 测试
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+public class DedupStoreTest {
+
+    private static final String BUCKET = "bucket";
+
+    private static final byte[] DATA = "dedup content".getBytes(StandardCharsets.UTF_8);
+
+    private final InMemoryObjectStorage storage = new InMemoryObjectStorage();
+
+    private final DedupStore store = new DedupStore(storage);
+
+    @Test
+    public void sameContentIsStoredOnce() {
+        DedupResult first = put("a.txt");
+        DedupResult second = put("b.txt");
+
+        assertFalse(first.isDeduplicated());
+        assertTrue(second.isDeduplicated());
+        // 引用 2 + 指针 2 + 内容 1
+        assertEquals(5, storage.calls("putObject"));
+        assertEquals(2, store.refCount(BUCKET, first.getDigest()));
+        assertArrayEquals(DATA, storage.content(BUCKET, store.resolve(BUCKET, "b.txt")));
+    }
+
+    @Test
+    public void blobIsDeletedWithLastRef() {
+        String digest = put("a.txt").getDigest();
+        put("b.txt");
+
+        assertFalse(store.delete(BUCKET, "a.txt"));
+        assertNotNull(storage.content(BUCKET, store.blobKey(digest)));
+        assertTrue(store.delete(BUCKET, "b.txt"));
+        assertNull(storage.content(BUCKET, store.blobKey(digest)));
+        assertEquals(0, storage.calls("listObjects"));
+        assertEquals(2, storage.calls("existsPrefix"));
+    }
+
+    @Test
+    public void blobDeletedElsewhereIsUploadedAgain() {
+        String digest = put("a.txt").getDigest();
+        storage.deleteObjects(BUCKET, Collections.singletonList(store.blobKey(digest)));
+
+        DedupResult result = put("b.txt");
+
+        assertFalse(result.isDeduplicated());
+        assertArrayEquals(DATA, storage.content(BUCKET, store.blobKey(digest)));
+    }
+
+    private DedupResult put(String key) {
+        return store.put(BUCKET, key, new ByteArrayInputStream(DATA), "text/plain");
+    }
+}
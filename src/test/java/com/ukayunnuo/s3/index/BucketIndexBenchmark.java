@@ -0,0 +1,79 @@
+package com.ukayunnuo.s3.index;
+
+import cn.hutool.core.io.FileUtil;
+import com.ukayunnuo.s3.storage.InMemoryObjectStorage;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * 桶索引查询耗时, 不随测试运行
+ * <p> 以 keys 个对象重建索引, 随机查询 lookups 次已存在与不存在的 key, 输出 rounds 轮中的最短平均耗时; 首轮用于预热: </p>
+ * <pre>
+ * java -cp target/classes:target/test-classes:&lt;依赖&gt; com.ukayunnuo.s3.index.BucketIndexBenchmark [keys] [lookups] [rounds]
+ * </pre>
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+public class BucketIndexBenchmark {
+
+    private static final String BUCKET = "bench";
+
+    public static void main(String[] args) throws Exception {
+        int keys = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int lookups = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        File dir = Files.createTempDirectory("bucket-index-bench").toFile();
+        try {
+            InMemoryObjectStorage storage = new InMemoryObjectStorage();
+            byte[] empty = new byte[0];
+            for (int i = 0; i < keys; i++) {
+                storage.putObject(BUCKET, key(i), empty, null, null);
+            }
+            BucketIndexProp prop = new BucketIndexProp();
+            prop.setDir(dir.getAbsolutePath());
+            try (BucketIndex index = BucketIndex.open(storage, BUCKET, prop)) {
+                long start = System.nanoTime();
+                index.rebuild();
+                System.out.printf("java %s, keys %d, file %.1fMB, rebuild %dms, cpus %d%n", System.getProperty("java.version"), keys,
+                        new File(dir, BUCKET + ".idx").length() / 1048576.0, (System.nanoTime() - start) / 1_000_000,
+                        Runtime.getRuntime().availableProcessors());
+                Random random = new Random(42);
+                double bestHit = Double.MAX_VALUE;
+                double bestMiss = Double.MAX_VALUE;
+                int falsePositives = 0;
+                for (int round = 0; round < rounds; round++) {
+                    start = System.nanoTime();
+                    for (int i = 0; i < lookups; i++) {
+                        if (!index.exists(key(random.nextInt(keys)))) {
+                            throw new IllegalStateException("missing key");
+                        }
+                    }
+                    bestHit = Math.min(bestHit, (System.nanoTime() - start) / (double) lookups);
+                    falsePositives = 0;
+                    start = System.nanoTime();
+                    for (int i = 0; i < lookups; i++) {
+                        String absent = key(keys + random.nextInt(keys));
+                        if (index.mightExist(absent)) {
+                            falsePositives++;
+                            if (index.exists(absent)) {
+                                throw new IllegalStateException("phantom key");
+                            }
+                        }
+                    }
+                    bestMiss = Math.min(bestMiss, (System.nanoTime() - start) / (double) lookups);
+                }
+                System.out.printf("hit %.2fus, miss %.2fus, bloom false positives %.2f%%%n",
+                        bestHit / 1000, bestMiss / 1000, falsePositives * 100.0 / lookups);
+            }
+        } finally {
+            FileUtil.del(dir);
+        }
+    }
+
+    private static String key(int i) {
+        return String.format("data/%03d/%08d.bin", i % 1000, i);
+    }
+}
@@ -0,0 +1,216 @@
+package com.ukayunnuo.s3.index;
+
+import cn.hutool.core.io.FileUtil;
+import com.ukayunnuo.s3.storage.InMemoryObjectStorage;
+import com.ukayunnuo.s3.storage.ObjectInfo;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link BucketIndex} 测试
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+public class BucketIndexTest {
+
+    private static final String BUCKET = "bucket";
+
+    private final InMemoryObjectStorage storage = new InMemoryObjectStorage();
+
+    private final BucketIndexProp prop = new BucketIndexProp();
+
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("bucket-index").toFile();
+        prop.setDir(dir.getAbsolutePath());
+        // 小重启间隔, 让查询跨越多个块
+        prop.setRestartInterval(4);
+    }
+
+    @After
+    public void tearDown() {
+        FileUtil.del(dir);
+    }
+
+    @Test
+    public void rebuildAnswersLookupsAndPrefixes() {
+        List<String> keys = putObjects("logs/", 200);
+        putObjects("data/", 50);
+
+        try (BucketIndex index = BucketIndex.open(storage, BUCKET, prop)) {
+            assertFalse(index.isBuilt());
+            index.rebuild();
+
+            assertTrue(index.isBuilt());
+            assertEquals(250, index.size());
+            assertEquals(0, storage.calls("headObject"));
+            for (String key : keys) {
+                assertTrue(key, index.exists(key));
+            }
+            ObjectInfo info = index.get("logs/0007.log").get();
+            assertEquals(storage.headObject(BUCKET, "logs/0007.log").getEtag(), info.getEtag());
+            assertEquals("logs/0007.log".length(), info.getSize());
+            assertFalse(index.exists("logs/9999.log"));
+            assertFalse(index.exists("logs/"));
+            assertEquals(keys, index.listKeys("logs/"));
+            assertEquals(keys.subList(100, 110), index.listKeys("logs/010"));
+            assertTrue(index.hasPrefix("data/"));
+            assertFalse(index.hasPrefix("tmp/"));
+            assertEquals(1, storage.calls("listObjects"));
+        }
+    }
+
+    @Test
+    public void bloomFilterRejectsMostAbsentKeys() {
+        putObjects("k/", 2000);
+
+        try (BucketIndex index = BucketIndex.open(storage, BUCKET, prop)) {
+            index.rebuild();
+
+            int falsePositives = 0;
+            for (int i = 0; i < 10000; i++) {
+                if (index.mightExist("absent/" + i)) {
+                    falsePositives++;
+                }
+            }
+            // 误判率 1%, 留足余量
+            assertTrue("false positives: " + falsePositives, falsePositives < 500);
+            assertTrue(index.mightExist("k/0001.log"));
+        }
+    }
+
+    @Test
+    public void overlayAppliesOnTopOfFile() {
+        putObjects("a/", 10);
+
+        try (BucketIndex index = BucketIndex.open(storage, BUCKET, prop)) {
+            index.rebuild();
+            index.put(info("a/0003.5.log"));
+            index.remove("a/0005.log");
+
+            assertTrue(index.exists("a/0003.5.log"));
+            assertFalse(index.exists("a/0005.log"));
+            assertFalse(index.mightExist("a/0005.log"));
+            List<String> keys = index.listKeys("a/");
+            assertEquals(10, keys.size());
+            assertEquals("a/0003.5.log", keys.get(3));
+            assertFalse(keys.contains("a/0005.log"));
+            assertEquals(10, index.size());
+
+            index.remove("a/0003.5.log");
+            for (int i = 0; i < 10; i++) {
+                index.remove(String.format("a/%04d.log", i));
+            }
+            assertFalse(index.hasPrefix("a/"));
+        }
+    }
+
+    @Test
+    public void compactPersistsOverlayAndReopenLoadsFile() {
+        putObjects("a/", 10);
+
+        try (BucketIndex index = BucketIndex.open(storage, BUCKET, prop)) {
+            index.rebuild();
+            index.put(info("b/new.log"));
+            index.remove("a/0000.log");
+            index.compact();
+            assertEquals(10, index.size());
+        }
+        try (BucketIndex index = BucketIndex.open(storage, BUCKET, prop)) {
+            assertTrue(index.isBuilt());
+            assertTrue(index.exists("b/new.log"));
+            assertFalse(index.exists("a/0000.log"));
+            assertEquals(9, index.listKeys("a/").size());
+            assertEquals(1, storage.calls("listObjects"));
+        }
+    }
+
+    @Test
+    public void refreshReplacesOnlyThePrefix() {
+        putObjects("a/", 5);
+        putObjects("b/", 5);
+        putObjects("c/", 5);
+
+        try (BucketIndex index = BucketIndex.open(storage, BUCKET, prop)) {
+            index.rebuild();
+            storage.deleteObjects(BUCKET, Arrays.asList("b/0000.log", "c/0000.log"));
+            storage.putObject(BUCKET, "b/0009.log", new byte[1], null, null);
+            // 前缀内的变更以列举结果为准, 前缀外的变更保留
+            index.put(info("b/phantom.log"));
+            index.put(info("a/extra.log"));
+
+            index.refresh("b/");
+
+            assertEquals(Arrays.asList("b/0001.log", "b/0002.log", "b/0003.log", "b/0004.log", "b/0009.log"), index.listKeys("b/"));
+            assertTrue(index.exists("c/0000.log"));
+            assertTrue(index.exists("a/extra.log"));
+            assertEquals(16, index.size());
+        }
+    }
+
+    @Test
+    public void overlayIsCompactedWhenFull() {
+        prop.setMaxOverlayEntries(10);
+
+        try (BucketIndex index = BucketIndex.open(storage, BUCKET, prop)) {
+            for (int i = 0; i < 11; i++) {
+                index.put(info(String.format("k/%04d", i)));
+            }
+
+            assertTrue(index.isBuilt());
+            assertEquals(11, index.size());
+            assertEquals(0, storage.calls("listObjects"));
+        }
+    }
+
+    @Test
+    public void keysAreOrderedByCodePoint() {
+        String bmp = "k/\uFFFD";
+        String supplementary = "k/\uD83D\uDE00";
+
+        try (BucketIndex index = BucketIndex.open(storage, BUCKET, prop)) {
+            index.put(info(supplementary));
+            index.put(info(bmp));
+            index.put(info("k/z"));
+
+            // UTF-8 字节序(S3 列举顺序): U+FFFD 在 U+1F600 之前, 与 String.compareTo 相反
+            assertEquals(Arrays.asList("k/z", bmp, supplementary), index.listKeys("k/"));
+            index.compact();
+            assertEquals(Arrays.asList("k/z", bmp, supplementary), index.listKeys("k/"));
+            assertTrue(index.exists(supplementary));
+        }
+    }
+
+    private List<String> putObjects(String prefix, int count) {
+        List<String> keys = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String key = String.format("%s%04d.log", prefix, i);
+            storage.putObject(BUCKET, key, key.getBytes(StandardCharsets.UTF_8), "text/plain", null);
+            keys.add(key);
+        }
+        Collections.sort(keys);
+        return keys;
+    }
+
+    private static ObjectInfo info(String key) {
+        return new ObjectInfo(key, 1, "etag", new Date(), null);
+    }
+}
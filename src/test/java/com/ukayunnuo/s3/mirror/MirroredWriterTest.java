@@ -0,0 +1,142 @@
+package com.ukayunnuo.s3.mirror;
+
+import com.ukayunnuo.s3.exception.S3Exception;
+import com.ukayunnuo.s3.storage.InMemoryObjectStorage;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link MirroredWriter} 测试
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+public class MirroredWriterTest {
+
+    private static final String BUCKET = "bucket";
+
+    private final InMemoryObjectStorage minio = new InMemoryObjectStorage();
+
+    private final InMemoryObjectStorage aws = new InMemoryObjectStorage();
+
+    private final MirrorProp prop = new MirrorProp();
+
+    public MirroredWriterTest() {
+        prop.setPartSize(1024);
+        prop.setBufferedParts(1);
+    }
+
+    @Test
+    public void writesSmallAndMultipartObjectsToAllTargets() {
+        byte[] small = random(100);
+        byte[] large = random(5000);
+
+        try (MirroredWriter writer = writer()) {
+            writer.put(BUCKET, "small", small, null, null);
+            MirrorResult result = writer.put(BUCKET, "large", new ByteArrayInputStream(large), null, null);
+
+            assertEquals(5000, result.getSize());
+            assertEquals(2, result.succeededCount());
+        }
+        assertArrayEquals(small, minio.content(BUCKET, "small"));
+        assertArrayEquals(large, minio.content(BUCKET, "large"));
+        assertArrayEquals(large, aws.content("dr-bucket", "large"));
+        assertEquals(5, aws.calls("uploadPart"));
+    }
+
+    @Test
+    public void concurrentPutsDoNotStarveEachOther() throws Exception {
+        // 线程数等于目标数: 修复前并发写入各占一个线程后互相等待对方的另一个目标
+        prop.setWorkers(2);
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        try (MirroredWriter writer = writer()) {
+            List<Future<MirrorResult>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                String key = "k" + i;
+                results.add(callers.submit(() -> writer.put(BUCKET, key, new ByteArrayInputStream(random(4096)), null, null)));
+            }
+            for (Future<MirrorResult> result : results) {
+                assertEquals(2, result.get(30, TimeUnit.SECONDS).succeededCount());
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+        assertEquals(8, minio.ids().size());
+        assertEquals(8, aws.ids().size());
+    }
+
+    @Test
+    public void putIsRejectedWhenWorkersStayBusy() throws Exception {
+        prop.setWorkers(2);
+        prop.setStartTimeoutMillis(200);
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        InMemoryObjectStorage blocking = new InMemoryObjectStorage() {
+            @Override
+            public String putObject(String bucket, String key, byte[] data, String contentType, Map<String, String> metadata) {
+                entered.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.putObject(bucket, key, data, contentType, metadata);
+            }
+        };
+        ExecutorService callers = Executors.newSingleThreadExecutor();
+        try (MirroredWriter writer = new MirroredWriter(prop, new MirrorTarget("minio", minio), new MirrorTarget("slow", blocking))) {
+            Future<MirrorResult> first = callers.submit(() -> writer.put(BUCKET, "a", new byte[1], null, null));
+            assertTrue(entered.await(5, TimeUnit.SECONDS));
+            try {
+                writer.put(BUCKET, "b", new byte[1], null, null);
+                fail("exception expected");
+            } catch (S3Exception e) {
+                assertTrue(e.getMessage(), e.getMessage().contains("mirror workers busy"));
+            }
+            release.countDown();
+            assertEquals(2, first.get(5, TimeUnit.SECONDS).succeededCount());
+            // 线程释放后可以继续写入
+            assertEquals(2, writer.put(BUCKET, "c", new byte[1], null, null).succeededCount());
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    public void closedWriterFailsTargetsInsteadOfHanging() {
+        MirroredWriter writer = writer();
+        writer.close();
+
+        try {
+            writer.put(BUCKET, "k", new ByteArrayInputStream(random(4096)), null, null);
+            fail("exception expected");
+        } catch (MirrorQuorumException e) {
+            assertEquals(0, e.getResult().succeededCount());
+        }
+    }
+
+    private MirroredWriter writer() {
+        return new MirroredWriter(prop, new MirrorTarget("minio", minio), new MirrorTarget("aws", aws, "dr-bucket"));
+    }
+
+    private static byte[] random(int size) {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        return data;
+    }
+}
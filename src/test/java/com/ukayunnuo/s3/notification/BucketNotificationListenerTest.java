@@ -0,0 +1,121 @@
+package com.ukayunnuo.s3.notification;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link BucketNotificationListener} 重连测试
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+public class BucketNotificationListenerTest {
+
+    private static final long RECONNECT_MILLIS = 200;
+
+    @Test
+    public void resyncFollowsNewSubscriptionAndReconnectsAreDelayed() throws InterruptedException {
+        ScriptedListener source = new ScriptedListener(prop());
+        List<String> delivered = new CopyOnWriteArrayList<>();
+        source.addListener(new BucketChangeListener() {
+            @Override
+            public void onChanges(List<BucketChange> changes) {
+                changes.forEach(change -> delivered.add(change.getKey()));
+            }
+
+            @Override
+            public void onResync(String bucket, String prefix) {
+                delivered.add("resync");
+            }
+        });
+        try {
+            source.start();
+            assertTrue(source.finished.await(10, TimeUnit.SECONDS));
+        } finally {
+            source.close();
+        }
+
+        // 重新订阅建立前不应通知失效
+        assertEquals(0, source.resyncsBeforeSubscribe.get());
+        assertEquals("[a, resync, b]", delivered.toString());
+        // 正常结束的连接同样等待后再重连
+        assertTrue(source.gapAfterReturnMillis >= RECONNECT_MILLIS - 20);
+    }
+
+    private static BucketNotificationProp prop() {
+        BucketNotificationProp prop = new BucketNotificationProp();
+        prop.setBatchWindowMillis(20);
+        prop.setReconnectDelayMillis(RECONNECT_MILLIS);
+        return prop;
+    }
+
+    /**
+     * 第一次连接收到 a 后断开; 第二次订阅较慢, 收到 b 后正常结束; 第三次连接记录与上次结束的间隔
+     */
+    private static class ScriptedListener extends BucketNotificationListener {
+
+        private final AtomicInteger attempts = new AtomicInteger();
+
+        private final AtomicInteger resyncsBeforeSubscribe = new AtomicInteger(-1);
+
+        private final CountDownLatch finished = new CountDownLatch(1);
+
+        private final List<String> resyncs = new CopyOnWriteArrayList<>();
+
+        private volatile long returnedAt;
+
+        private volatile long gapAfterReturnMillis;
+
+        ScriptedListener(BucketNotificationProp prop) {
+            super("bucket", "", prop);
+            addListener(new BucketChangeListener() {
+                @Override
+                public void onChanges(List<BucketChange> changes) {
+                }
+
+                @Override
+                public void onResync(String bucket, String prefix) {
+                    resyncs.add(prefix);
+                }
+            });
+        }
+
+        @Override
+        protected void watch() throws Exception {
+            switch (attempts.incrementAndGet()) {
+                case 1:
+                    connected();
+                    publish(BucketChange.removed(bucket, "a"));
+                    throw new IOException("connection reset");
+                case 2:
+                    // 订阅耗时比分发间隔长, 期间的变更由失效通知覆盖
+                    TimeUnit.MILLISECONDS.sleep(300);
+                    resyncsBeforeSubscribe.set(resyncs.size());
+                    connected();
+                    publish(BucketChange.removed(bucket, "b"));
+                    returnedAt = System.nanoTime();
+                    return;
+                case 3:
+                    gapAfterReturnMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - returnedAt);
+                    // 等待 b 分发完成
+                    TimeUnit.MILLISECONDS.sleep(300);
+                    finished.countDown();
+                    while (isRunning()) {
+                        TimeUnit.MILLISECONDS.sleep(10);
+                    }
+                    return;
+                default:
+                    return;
+            }
+        }
+    }
+}
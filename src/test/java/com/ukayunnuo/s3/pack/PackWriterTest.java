@@ -0,0 +1,166 @@
+package com.ukayunnuo.s3.pack;
+
+import cn.hutool.core.io.FileUtil;
+import com.ukayunnuo.s3.exception.S3Exception;
+import com.ukayunnuo.s3.storage.InMemoryObjectStorage;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link PackWriter} 与 {@link PackReader} 测试
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+public class PackWriterTest {
+
+    private static final String BUCKET = "bucket";
+
+    private final InMemoryObjectStorage storage = new InMemoryObjectStorage();
+
+    private File spoolDir;
+
+    private PackProp prop;
+
+    @Before
+    public void setUp() throws IOException {
+        spoolDir = Files.createTempDirectory("pack-writer").toFile();
+        prop = new PackProp();
+        prop.setSpoolDir(spoolDir.getPath());
+        prop.setSegmentSize(4096);
+        // 只读段尾时索引放不下, 需要补一次请求
+        prop.setTailReadSize(64);
+        prop.setMergeGapBytes(16);
+    }
+
+    @After
+    public void tearDown() {
+        FileUtil.del(spoolDir);
+    }
+
+    @Test
+    public void entriesRoundTripAcrossSegments() {
+        Map<String, byte[]> written = new LinkedHashMap<>();
+        Map<String, PackEntry> positions = new LinkedHashMap<>();
+        Random random = new Random(1);
+        try (PackWriter writer = new PackWriter(storage, BUCKET, "packs", prop)) {
+            for (int i = 0; i < 40; i++) {
+                byte[] data = new byte[random.nextInt(300)];
+                random.nextBytes(data);
+                String key = "file-" + i;
+                written.put(key, data);
+                positions.put(key, writer.add(key, data));
+            }
+            // 重复写入以最后一次为准
+            written.put("file-39", bytes("rewritten"));
+            positions.put("file-39", writer.add("file-39", bytes("rewritten")));
+            writer.close();
+            assertTrue(writer.getSegments().size() > 1);
+            assertEquals(0, spoolDir.list().length);
+        }
+
+        PackReader reader = new PackReader(storage, prop);
+        for (Map.Entry<String, byte[]> e : written.entrySet()) {
+            PackEntry entry = positions.get(e.getKey());
+            assertTrue(entry.getSegment().startsWith("packs/"));
+            assertArrayEquals(e.getKey(), e.getValue(), reader.get(BUCKET, entry.getSegment(), e.getKey()));
+            assertArrayEquals(e.getKey(), e.getValue(), reader.read(BUCKET, entry));
+        }
+        String segment = positions.get("file-0").getSegment();
+        assertNull(reader.get(BUCKET, segment, "missing"));
+
+        List<String> keys = Arrays.asList("file-3", "file-0", "file-1", "missing");
+        Map<String, byte[]> all = reader.getAll(BUCKET, segment, keys);
+        assertEquals(3, all.size());
+        for (String key : Arrays.asList("file-0", "file-1", "file-3")) {
+            assertArrayEquals(key, written.get(key), all.get(key));
+        }
+    }
+
+    @Test
+    public void getAllReloadsIndexOfOverwrittenSegment() {
+        String segment;
+        try (PackWriter writer = new PackWriter(storage, BUCKET, "packs", prop)) {
+            segment = writer.add("a", bytes("old")).getSegment();
+        }
+        String other;
+        try (PackWriter writer = new PackWriter(storage, BUCKET, "packs", prop)) {
+            writer.add("pad", bytes("padding"));
+            other = writer.add("a", bytes("new content")).getSegment();
+        }
+        PackReader reader = new PackReader(storage, prop);
+        assertArrayEquals(bytes("old"), reader.getAll(BUCKET, segment, Arrays.asList("a")).get("a"));
+
+        // 段被覆盖后缓存的索引失效
+        storage.putObject(BUCKET, segment, storage.content(BUCKET, other), null, null);
+        assertArrayEquals(bytes("new content"), reader.getAll(BUCKET, segment, Arrays.asList("a")).get("a"));
+    }
+
+    @Test
+    public void partialSpoolWriteBreaksWriter() throws Exception {
+        PackWriter writer = new PackWriter(storage, BUCKET, "packs", prop);
+        writer.add("a", bytes("first"));
+        Field out = PackWriter.class.getDeclaredField("out");
+        out.setAccessible(true);
+        OutputStream spool = (OutputStream) out.get(writer);
+        // 写入部分字节后失败
+        out.set(writer, new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                spool.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                spool.write(b, off, Math.min(len, 2));
+                throw new IOException("disk full");
+            }
+
+            @Override
+            public void close() throws IOException {
+                spool.close();
+            }
+        });
+
+        assertFails(() -> writer.add("b", bytes("second")));
+        // 之后的写入与上传都拒绝, 不会上传位置错乱的段
+        assertFails(() -> writer.add("c", bytes("third")));
+        assertFails(writer::flush);
+        assertFails(writer::close);
+        assertEquals(0, storage.ids().size());
+        assertEquals(0, spoolDir.list().length);
+        assertFails(() -> writer.add("d", bytes("closed")));
+    }
+
+    private static void assertFails(Runnable action) {
+        try {
+            action.run();
+            fail("exception expected");
+        } catch (S3Exception expected) {
+            // 预期
+        }
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
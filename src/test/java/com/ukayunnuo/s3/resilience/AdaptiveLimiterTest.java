@@ -0,0 +1,106 @@
+package com.ukayunnuo.s3.resilience;
+
+import com.ukayunnuo.s3.core.StorageOperation;
+import com.ukayunnuo.s3.core.StorageProvider;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link AdaptiveLimiter} 测试
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+public class AdaptiveLimiterTest {
+
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void largeTransfersDoNotThrottleSmallReads() throws InterruptedException {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(StorageProvider.AWS, "b", "", new S3LimiterProp());
+        int initial = limiter.getLimit();
+        for (int i = 0; i < 50; i++) {
+            complete(limiter, StorageOperation.HEAD_OBJECT, 80 * MILLIS);
+            complete(limiter, StorageOperation.PUT_OBJECT, 5000 * MILLIS);
+            complete(limiter, StorageOperation.MULTIPART_UPLOAD, 9000 * MILLIS);
+        }
+        assertTrue(limiter.getLimit() >= initial);
+        assertEquals(80, limiter.getBaselineMillis(StorageOperation.HEAD_OBJECT), 0.001);
+        assertEquals(0, limiter.getBaselineMillis(StorageOperation.PUT_OBJECT), 0.001);
+    }
+
+    @Test
+    public void slowReadsBackOff() throws InterruptedException {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(StorageProvider.AWS, "b", "", new S3LimiterProp());
+        complete(limiter, StorageOperation.GET_OBJECT, 100 * MILLIS);
+        int before = limiter.getLimit();
+        complete(limiter, StorageOperation.GET_OBJECT, 1000 * MILLIS);
+        assertTrue(limiter.getLimit() < before);
+    }
+
+    @Test
+    public void baselinesAreKeptPerOperation() throws InterruptedException {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(StorageProvider.AWS, "b", "", new S3LimiterProp());
+        complete(limiter, StorageOperation.LIST_OBJECTS, 400 * MILLIS);
+        complete(limiter, StorageOperation.HEAD_OBJECT, 60 * MILLIS);
+        int before = limiter.getLimit();
+        // 列举比 HEAD 慢, 不应视为延迟恶化
+        complete(limiter, StorageOperation.LIST_OBJECTS, 420 * MILLIS);
+        assertTrue(limiter.getLimit() >= before);
+    }
+
+    @Test
+    public void burstOfThrottlesDecreasesOnce() throws InterruptedException {
+        S3LimiterProp prop = new S3LimiterProp();
+        AdaptiveLimiter limiter = new AdaptiveLimiter(StorageProvider.AWS, "b", "", prop);
+        int initial = limiter.getLimit();
+        int burst = Math.min(initial, 10);
+        for (int i = 0; i < burst; i++) {
+            assertTrue(limiter.acquire(0));
+        }
+        Thread.sleep(2);
+        // 同一批并发请求都在退让前发出, 只退让一次
+        for (int i = 0; i < burst; i++) {
+            limiter.onFailure(true, MILLIS);
+        }
+        int reduced = limiter.getLimit();
+        assertEquals((int) Math.max(prop.getMinLimit(), initial * prop.getBackoffRatio()), reduced);
+        assertEquals(0, limiter.getInFlight());
+
+        // 退让后发出的请求再次被限流, 继续退让
+        Thread.sleep(2);
+        assertTrue(limiter.acquire(0));
+        limiter.onFailure(true, 0);
+        assertTrue(limiter.getLimit() < reduced);
+    }
+
+    @Test
+    public void errorsReleasePermits() {
+        S3LimiterProp prop = new S3LimiterProp();
+        prop.setEnabled(true);
+        S3Limiter.configure(prop);
+        try {
+            for (int i = 0; i < 3; i++) {
+                try {
+                    S3Limiter.execute(StorageProvider.AWS, StorageOperation.GET_OBJECT, "errors", "k", () -> {
+                        throw new AssertionError("boom");
+                    });
+                } catch (AssertionError expected) {
+                    // 预期
+                }
+            }
+            assertEquals(0, S3Limiter.limiter(StorageProvider.AWS, "errors", "k").getInFlight());
+        } finally {
+            S3Limiter.configure(new S3LimiterProp());
+        }
+    }
+
+    private static void complete(AdaptiveLimiter limiter, StorageOperation operation, long latencyNanos) throws InterruptedException {
+        assertTrue(limiter.acquire(0));
+        limiter.onSuccess(operation, latencyNanos);
+    }
+}
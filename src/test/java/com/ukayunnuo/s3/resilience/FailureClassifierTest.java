@@ -0,0 +1,45 @@
+package com.ukayunnuo.s3.resilience;
+
+import com.ukayunnuo.s3.exception.StorageErrorKind;
+import com.ukayunnuo.s3.exception.StorageException;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link FailureClassifier} 测试
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+public class FailureClassifierTest {
+
+    @Test
+    public void throttleCodesAreNotExecuted() {
+        assertEquals(FailureKind.THROTTLED, FailureClassifier.classify(503, "SlowDown"));
+        assertEquals(FailureKind.THROTTLED, FailureClassifier.classify(503, "RequestLimitExceeded"));
+        assertEquals(FailureKind.THROTTLED, FailureClassifier.classify(429, null));
+        assertTrue(FailureKind.THROTTLED.isNotExecuted());
+    }
+
+    @Test
+    public void bare503IsServerError() {
+        assertEquals(FailureKind.SERVER_ERROR, FailureClassifier.classify(503, null));
+        assertEquals(FailureKind.SERVER_ERROR, FailureClassifier.classify(503, "ServiceUnavailable"));
+        // 请求可能已被执行, 非幂等操作不能重试
+        assertFalse(FailureKind.SERVER_ERROR.isNotExecuted());
+
+        RuntimeException e = new RuntimeException("wrapped", new ServerError(503, "ServiceUnavailable"));
+        assertEquals(FailureKind.SERVER_ERROR, FailureClassifier.classify(e));
+        assertEquals(StorageErrorKind.TRANSIENT, FailureClassifier.errorKind(new ServerError(503, null)));
+    }
+
+    private static class ServerError extends StorageException {
+
+        ServerError(int status, String errorCode) {
+            super(StorageErrorKind.TRANSIENT, status, errorCode, "bucket", "key", "server error", null);
+        }
+    }
+}
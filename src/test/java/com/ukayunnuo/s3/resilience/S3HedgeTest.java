@@ -0,0 +1,97 @@
+package com.ukayunnuo.s3.resilience;
+
+import com.ukayunnuo.s3.core.StorageOperation;
+import com.ukayunnuo.s3.core.StorageProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link S3Hedge} 线程耗尽测试
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+public class S3HedgeTest {
+
+    private static final String BUCKET = "bucket";
+
+    @Before
+    public void setUp() throws InterruptedException {
+        S3HedgeProp prop = new S3HedgeProp();
+        prop.setEnabled(true);
+        prop.setMinSamples(10);
+        prop.setMinDelayMillis(5);
+        prop.setBudgetCapacity(100);
+        prop.setMaxThreads(1);
+        S3Hedge.configure(prop);
+        for (int i = 0; i < 40; i++) {
+            S3Hedge.execute(StorageProvider.AWS, StorageOperation.GET_OBJECT, BUCKET, () -> {
+                Thread.sleep(1);
+                return "warm";
+            });
+        }
+        assertTrue(S3Hedge.hedgeDelayMillis(StorageProvider.AWS, StorageOperation.GET_OBJECT, BUCKET) >= 5);
+    }
+
+    @After
+    public void tearDown() {
+        S3Hedge.configure(new S3HedgeProp());
+    }
+
+    @Test
+    public void hedgeIsSkippedWhenThreadsAreExhausted() throws InterruptedException {
+        AtomicInteger calls = new AtomicInteger();
+
+        String result = S3Hedge.execute(StorageProvider.AWS, StorageOperation.GET_OBJECT, BUCKET, () -> {
+            calls.incrementAndGet();
+            Thread.sleep(100);
+            return "primary";
+        });
+
+        // 唯一的线程被主请求占用, 对冲请求不应在调用线程上重复执行
+        assertEquals("primary", result);
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void primaryRunsOnCallerWhenThreadsAreExhausted() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService callers = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> busy = callers.submit(() -> S3Hedge.execute(StorageProvider.AWS, StorageOperation.GET_OBJECT, BUCKET, () -> {
+                entered.countDown();
+                release.await();
+                return "busy";
+            }));
+            assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+            Thread caller = Thread.currentThread();
+            Thread[] ran = new Thread[1];
+            String result = S3Hedge.execute(StorageProvider.AWS, StorageOperation.GET_OBJECT, BUCKET, () -> {
+                ran[0] = Thread.currentThread();
+                return "direct";
+            });
+
+            assertEquals("direct", result);
+            assertSame(caller, ran[0]);
+            release.countDown();
+            assertEquals("busy", busy.get(5, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+            callers.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.ukayunnuo.s3.routing;
+
+import com.amazonaws.AmazonServiceException;
+import com.ukayunnuo.s3.core.StorageEndpoint;
+import com.ukayunnuo.s3.core.StorageExecutor;
+import com.ukayunnuo.s3.core.StorageOperation;
+import com.ukayunnuo.s3.core.StorageProvider;
+import com.ukayunnuo.s3.exception.StorageException;
+import com.ukayunnuo.s3.storage.InMemoryObjectStorage;
+import com.ukayunnuo.s3.storage.ObjectInfo;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link RoutingObjectStorage} 测试
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+public class RoutingObjectStorageTest {
+
+    private static final String BUCKET = "bucket";
+
+    private final AtomicInteger attempts = new AtomicInteger();
+
+    private final ReplicaRoutingProp prop = new ReplicaRoutingProp();
+
+    private final InMemoryObjectStorage healthy = new InMemoryObjectStorage(StorageProvider.OCI);
+
+    public RoutingObjectStorageTest() {
+        prop.setExploreRatio(0);
+        healthy.putObject(BUCKET, "k", new byte[3], null, null);
+    }
+
+    @Test
+    public void failFastMovesToNextReplicaWithoutRetrying() {
+        RoutingObjectStorage storage = new RoutingObjectStorage(prop, new Replica("primary", failing()), new Replica("oci", healthy));
+
+        ObjectInfo info = storage.headObject(BUCKET, "k");
+
+        assertEquals(3, info.getSize());
+        assertEquals(1, attempts.get());
+        assertFalse(StorageExecutor.isFailFast());
+    }
+
+    @Test
+    public void lastReplicaIsRetried() {
+        RoutingObjectStorage storage = new RoutingObjectStorage(prop, new Replica("primary", failing()));
+
+        try {
+            storage.headObject(BUCKET, "k");
+            fail("exception expected");
+        } catch (StorageException e) {
+            assertEquals(500, e.getStatus());
+        }
+        assertTrue(attempts.get() > 1);
+    }
+
+    @Test
+    public void retriesEachReplicaWhenFailFastIsOff() {
+        prop.setFailFast(false);
+        RoutingObjectStorage storage = new RoutingObjectStorage(prop, new Replica("primary", failing()), new Replica("oci", healthy));
+
+        assertEquals(3, storage.headObject(BUCKET, "k").getSize());
+        assertTrue(attempts.get() > 1);
+    }
+
+    /**
+     * 经过 {@link StorageExecutor} 且总是返回 500 的副本
+     */
+    private InMemoryObjectStorage failing() {
+        StorageEndpoint endpoint = StorageEndpoint.of(StorageProvider.AWS, "s3.us-east-1.amazonaws.com");
+        return new InMemoryObjectStorage() {
+
+            @Override
+            public StorageEndpoint getEndpoint() {
+                return endpoint;
+            }
+
+            @Override
+            public ObjectInfo headObject(String bucket, String key) {
+                return StorageExecutor.execute(endpoint, StorageOperation.HEAD_OBJECT, bucket, key, () -> {
+                    attempts.incrementAndGet();
+                    AmazonServiceException e = new AmazonServiceException("internal error");
+                    e.setStatusCode(500);
+                    e.setErrorCode("InternalError");
+                    throw e;
+                });
+            }
+        };
+    }
+}
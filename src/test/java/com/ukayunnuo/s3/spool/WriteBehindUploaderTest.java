@@ -0,0 +1,159 @@
+package com.ukayunnuo.s3.spool;
+
+import cn.hutool.core.io.FileUtil;
+import com.ukayunnuo.s3.exception.StorageErrorKind;
+import com.ukayunnuo.s3.exception.StorageException;
+import com.ukayunnuo.s3.storage.InMemoryObjectStorage;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link WriteBehindUploader} 测试
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+public class WriteBehindUploaderTest {
+
+    private File dir;
+
+    private SpoolProp prop;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("write-behind").toFile();
+        prop = new SpoolProp();
+        prop.setDir(dir.getPath());
+        prop.setSegmentSize(1024 * 1024);
+        prop.setMaxDiskBytes(8 * 1024 * 1024);
+        prop.setWorkers(2);
+        prop.setRetryDelayMillis(1);
+        prop.setMaxRetryDelayMillis(5);
+        prop.setCloseTimeoutMillis(2000);
+    }
+
+    @After
+    public void tearDown() {
+        FileUtil.del(dir);
+    }
+
+    @Test
+    public void uploadsInBackground() {
+        InMemoryObjectStorage storage = new InMemoryObjectStorage();
+        try (WriteBehindUploader uploader = new WriteBehindUploader(storage, prop)) {
+            uploader.put("b", "k1", bytes("v1"), "text/plain");
+            uploader.put("b", "k2", bytes("v2"), null);
+            assertTrue(uploader.flush(5000));
+            assertArrayEquals(bytes("v1"), storage.content("b", "k1"));
+            assertArrayEquals(bytes("v2"), storage.content("b", "k2"));
+            assertEquals(2, uploader.getUploadedCount());
+        }
+    }
+
+    @Test
+    public void keepsRetryingUntilUploaded() {
+        InMemoryObjectStorage storage = new InMemoryObjectStorage();
+        AtomicInteger attempts = new AtomicInteger();
+        storage.setFault(call -> call.startsWith("putObject") && attempts.incrementAndGet() <= 30);
+        try (WriteBehindUploader uploader = new WriteBehindUploader(storage, prop)) {
+            uploader.put("b", "k", bytes("v"), null);
+            assertTrue(uploader.flush(10000));
+            assertArrayEquals(bytes("v"), storage.content("b", "k"));
+            assertEquals(30, uploader.getFailedCount());
+            assertEquals(0, uploader.getRetryingCount());
+        }
+    }
+
+    @Test
+    public void permanentFailureIsDroppedAndDoesNotPinTheSpool() {
+        prop.setSegmentSize(64 * 1024);
+        prop.setMaxDiskBytes(256 * 1024);
+        prop.setOfferTimeoutMillis(2000);
+        InMemoryObjectStorage storage = new InMemoryObjectStorage() {
+            @Override
+            public String putObject(String bucket, String key, byte[] data, String contentType, Map<String, String> metadata) {
+                if ("denied".equals(key)) {
+                    throw new StorageException(StorageErrorKind.AUTH, 403, "AccessDenied", bucket, key, "access denied", null);
+                }
+                return super.putObject(bucket, key, data, contentType, metadata);
+            }
+        };
+        try (WriteBehindUploader uploader = new WriteBehindUploader(storage, prop)) {
+            uploader.put("b", "denied", bytes("v"), null);
+            // 远超暂存上限的后续写入, 无法上传的内容占住最早的段时会阻塞超时
+            for (int i = 0; i < 100; i++) {
+                uploader.put("b", "k" + i, new byte[8 * 1024], null);
+            }
+            assertTrue(uploader.flush(10000));
+            assertEquals(1, uploader.getDeadLetterCount());
+            assertEquals(100, uploader.getUploadedCount());
+            assertEquals(100, storage.ids().size());
+        }
+        try (WriteBehindUploader uploader = new WriteBehindUploader(new InMemoryObjectStorage(), prop)) {
+            assertEquals(0, uploader.getPendingCount());
+        }
+    }
+
+    @Test
+    public void recoversPendingAfterRestart() {
+        InMemoryObjectStorage down = new InMemoryObjectStorage();
+        down.setFault(call -> true);
+        try (WriteBehindUploader uploader = new WriteBehindUploader(down, prop)) {
+            uploader.put("b", "k", bytes("v1"), null);
+            uploader.put("b", "k", bytes("v2"), null);
+            uploader.put("b", "other", bytes("o"), null);
+            assertFalse(uploader.flush(200));
+        }
+        InMemoryObjectStorage up = new InMemoryObjectStorage();
+        try (WriteBehindUploader uploader = new WriteBehindUploader(up, prop)) {
+            assertTrue(uploader.flush(5000));
+            assertArrayEquals(bytes("v2"), up.content("b", "k"));
+            assertArrayEquals(bytes("o"), up.content("b", "other"));
+        }
+    }
+
+    @Test
+    public void concurrentWritesMatchSpoolOrder() throws InterruptedException {
+        InMemoryObjectStorage storage = new InMemoryObjectStorage();
+        try (WriteBehindUploader uploader = new WriteBehindUploader(storage, prop)) {
+            List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int id = t;
+                threads.add(new Thread(() -> {
+                    for (int i = 0; i < 200; i++) {
+                        uploader.put("b", "k", bytes(id + "-" + i), null);
+                    }
+                }));
+            }
+            threads.forEach(Thread::start);
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            assertTrue(uploader.flush(10000));
+        }
+        // 内存中最后上传的内容即日志中最后一条, 重启后没有遗留的待上传内容
+        InMemoryObjectStorage restarted = new InMemoryObjectStorage();
+        try (WriteBehindUploader uploader = new WriteBehindUploader(restarted, prop)) {
+            assertEquals(0, uploader.getPendingCount());
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,119 @@
+package com.ukayunnuo.s3.storage;
+
+import com.amazonaws.auth.AWSStaticCredentialsProvider;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.client.builder.AwsClientBuilder;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.AmazonS3ClientBuilder;
+import com.ukayunnuo.s3.stub.S3StubServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link AwsObjectStorage} 对桩服务的冒烟测试
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+public class AwsObjectStorageStubTest {
+
+    private static final String BUCKET = "test";
+
+    private S3StubServer server;
+
+    private AwsObjectStorage storage;
+
+    @Before
+    public void setUp() {
+        server = S3StubServer.start().withBuckets(BUCKET);
+        AmazonS3 amazonS3 = AmazonS3ClientBuilder.standard()
+                .withCredentials(new AWSStaticCredentialsProvider(new BasicAWSCredentials("ak", "sk")))
+                .withEndpointConfiguration(new AwsClientBuilder.EndpointConfiguration(server.getEndpoint(), "us-east-1"))
+                .enablePathStyleAccess()
+                .build();
+        storage = new AwsObjectStorage(amazonS3);
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    public void putGetAndRange() {
+        storage.putObject(BUCKET, "a.txt", "hello world".getBytes(StandardCharsets.UTF_8), "text/plain");
+        assertEquals("hello world", read(storage.getObject(BUCKET, "a.txt", 0, -1, null)));
+        assertEquals("world", read(storage.getObject(BUCKET, "a.txt", 6, 5, null)));
+        assertEquals(11, storage.headObject(BUCKET, "a.txt").getSize());
+        assertFalse(storage.statObject(BUCKET, "missing").isPresent());
+    }
+
+    @Test
+    public void listObjectsV2() {
+        for (int i = 0; i < 3; i++) {
+            storage.putObject(BUCKET, "p/" + i, new byte[]{(byte) i}, null);
+        }
+        storage.putObject(BUCKET, "q/0", new byte[1], null);
+        List<String> keys = new ArrayList<>();
+        storage.listObjects(BUCKET, "p/", info -> keys.add(info.getKey()));
+        assertEquals(Arrays.asList("p/0", "p/1", "p/2"), keys);
+        assertTrue(storage.existsPrefix(BUCKET, "q/"));
+        assertFalse(storage.existsPrefix(BUCKET, "r/"));
+    }
+
+    @Test
+    public void multipartUpload() {
+        String uploadId = storage.initiateMultipartUpload(BUCKET, "big", null);
+        List<PartInfo> parts = new ArrayList<>();
+        parts.add(new PartInfo(1, storage.uploadPart(BUCKET, "big", uploadId, 1, "abc".getBytes(StandardCharsets.UTF_8)), 3));
+        parts.add(new PartInfo(2, storage.uploadPart(BUCKET, "big", uploadId, 2, "def".getBytes(StandardCharsets.UTF_8)), 3));
+        assertEquals(2, storage.listParts(BUCKET, "big", uploadId).size());
+        storage.completeMultipartUpload(BUCKET, "big", uploadId, parts);
+        assertEquals("abcdef", read(storage.getObject(BUCKET, "big", 0, -1, null)));
+        assertTrue(storage.listMultipartUploads(BUCKET, "").isEmpty());
+    }
+
+    @Test
+    public void completeMultipartUploadTwice() {
+        String uploadId = storage.initiateMultipartUpload(BUCKET, "twice", null);
+        List<PartInfo> parts = new ArrayList<>();
+        parts.add(new PartInfo(1, storage.uploadPart(BUCKET, "twice", uploadId, 1, "abc".getBytes(StandardCharsets.UTF_8)), 3));
+        String etag = storage.completeMultipartUpload(BUCKET, "twice", uploadId, parts);
+        // 响应丢失后再次完成: 服务端返回 NoSuchUpload, 对象已按这些分段写入
+        assertEquals(etag, storage.completeMultipartUpload(BUCKET, "twice", uploadId, parts));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void completeUnknownUploadFails() {
+        List<PartInfo> parts = new ArrayList<>();
+        parts.add(new PartInfo(1, "900150983cd24fb0d6963f7d28e17f72", 3));
+        storage.completeMultipartUpload(BUCKET, "never", "missing-upload", parts);
+    }
+
+    private static String read(InputStream in) {
+        try (InputStream stream = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = stream.read(buffer)) >= 0) {
+                out.write(buffer, 0, n);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
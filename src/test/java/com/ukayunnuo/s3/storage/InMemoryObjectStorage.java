@@ -0,0 +1,335 @@
+package com.ukayunnuo.s3.storage;
+
+import cn.hutool.core.util.HexUtil;
+import cn.hutool.core.util.StrUtil;
+import com.ukayunnuo.s3.core.StorageProvider;
+import com.ukayunnuo.s3.exception.S3Exception;
+import com.ukayunnuo.s3.exception.StorageNotFoundException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * 内存中的 {@link ObjectStorage}, 供测试使用
+ * <p> ETag 与 S3 一致: 单次上传为内容 MD5, 分段上传为 MD5(各分段 MD5 拼接)-分段数; 不存在时抛出 {@link StorageNotFoundException} </p>
+ * <p> {@link #setFault(Predicate)} 可按 操作名/key 注入失败, {@link #calls(String)} 统计各操作的调用次数 </p>
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+public class InMemoryObjectStorage implements ObjectStorage {
+
+    private final StorageProvider provider;
+
+    private final Map<String, Entry> objects = new ConcurrentHashMap<>();
+
+    private final Map<String, Upload> uploads = new ConcurrentHashMap<>();
+
+    private final Map<String, AtomicInteger> calls = new ConcurrentHashMap<>();
+
+    private volatile Predicate<String> fault = call -> false;
+
+    public InMemoryObjectStorage() {
+        this(StorageProvider.AWS);
+    }
+
+    public InMemoryObjectStorage(StorageProvider provider) {
+        this.provider = provider;
+    }
+
+    /**
+     * 注入失败
+     *
+     * @param fault 入参为 "操作名 key"(如 "uploadPart big.bin"), 返回 true 时该次调用抛出 {@link S3Exception}
+     */
+    public void setFault(Predicate<String> fault) {
+        this.fault = fault == null ? call -> false : fault;
+    }
+
+    /**
+     * 操作的调用次数
+     *
+     * @param operation 操作名(方法名)
+     * @return int
+     */
+    public int calls(String operation) {
+        AtomicInteger count = calls.get(operation);
+        return count == null ? 0 : count.get();
+    }
+
+    /**
+     * 对象内容
+     *
+     * @param bucket 桶
+     * @param key    key
+     * @return 不存在时为空
+     */
+    public byte[] content(String bucket, String key) {
+        Entry entry = objects.get(id(bucket, key));
+        return entry == null ? null : entry.data;
+    }
+
+    /**
+     * 全部 key(bucket/key)
+     *
+     * @return {@link List}<{@link String}>
+     */
+    public List<String> ids() {
+        return new ArrayList<>(new TreeMap<>(objects).keySet());
+    }
+
+    public int pendingUploads() {
+        return uploads.size();
+    }
+
+    @Override
+    public StorageProvider getProvider() {
+        return provider;
+    }
+
+    @Override
+    public ObjectInfo headObject(String bucket, String key) {
+        call("headObject", key);
+        Entry entry = entry(bucket, key);
+        ObjectInfo info = entry.info(key);
+        info.setMetadata(new HashMap<>(entry.metadata));
+        return info;
+    }
+
+    @Override
+    public InputStream getObject(String bucket, String key, long offset, long length, String etag) {
+        call("getObject", key);
+        Entry entry = entry(bucket, key);
+        if (StrUtil.isNotBlank(etag) && !etag.replace("\"", "").equals(entry.etag)) {
+            throw new ObjectChangedException(StrUtil.format("object changed, bucket:{}, key:{}, etag:{}", bucket, key, etag));
+        }
+        int start = (int) Math.min(offset, entry.data.length);
+        int end = length < 0 ? entry.data.length : (int) Math.min(entry.data.length, offset + length);
+        return new ByteArrayInputStream(Arrays.copyOfRange(entry.data, start, end));
+    }
+
+    @Override
+    public void listObjects(String bucket, String prefix, Consumer<ObjectInfo> consumer) {
+        call("listObjects", prefix);
+        String start = id(bucket, StrUtil.nullToEmpty(prefix));
+        for (Map.Entry<String, Entry> e : new TreeMap<>(objects).tailMap(start).entrySet()) {
+            if (!e.getKey().startsWith(start)) {
+                break;
+            }
+            consumer.accept(e.getValue().info(e.getKey().substring(bucket.length() + 1)));
+        }
+    }
+
+    @Override
+    public boolean existsPrefix(String bucket, String prefix) {
+        call("existsPrefix", prefix);
+        String start = id(bucket, StrUtil.nullToEmpty(prefix));
+        String first = new TreeMap<>(objects).ceilingKey(start);
+        return first != null && first.startsWith(start);
+    }
+
+    @Override
+    public String putObject(String bucket, String key, File file, String contentType) {
+        try {
+            return putObject(bucket, key, Files.readAllBytes(file.toPath()), contentType, null);
+        } catch (IOException e) {
+            throw new S3Exception(e);
+        }
+    }
+
+    @Override
+    public String putObject(String bucket, String key, byte[] data, String contentType, Map<String, String> metadata) {
+        call("putObject", key);
+        Entry entry = new Entry(data.clone(), md5Hex(data), contentType, metadata);
+        objects.put(id(bucket, key), entry);
+        return entry.etag;
+    }
+
+    @Override
+    public void deleteObjects(String bucket, List<String> keys) {
+        call("deleteObjects", String.join(",", keys));
+        for (String key : keys) {
+            objects.remove(id(bucket, key));
+        }
+    }
+
+    @Override
+    public String initiateMultipartUpload(String bucket, String key, String contentType, Map<String, String> metadata) {
+        call("initiateMultipartUpload", key);
+        String uploadId = UUID.randomUUID().toString();
+        uploads.put(uploadId, new Upload(bucket, key, contentType, metadata));
+        return uploadId;
+    }
+
+    @Override
+    public String uploadPart(String bucket, String key, String uploadId, int partNumber, File file, long offset, long size) {
+        byte[] data = new byte[(int) size];
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            in.seek(offset);
+            in.readFully(data);
+        } catch (IOException e) {
+            throw new S3Exception(e);
+        }
+        return uploadPart(bucket, key, uploadId, partNumber, data);
+    }
+
+    @Override
+    public String uploadPart(String bucket, String key, String uploadId, int partNumber, byte[] data) {
+        call("uploadPart", key);
+        Upload upload = upload(uploadId);
+        String etag = md5Hex(data);
+        upload.parts.put(partNumber, new Entry(data.clone(), etag, null, null));
+        return etag;
+    }
+
+    @Override
+    public List<PartInfo> listParts(String bucket, String key, String uploadId) {
+        call("listParts", key);
+        List<PartInfo> parts = new ArrayList<>();
+        upload(uploadId).parts.forEach((number, part) -> parts.add(new PartInfo(number, part.etag, part.data.length)));
+        return parts;
+    }
+
+    @Override
+    public String completeMultipartUpload(String bucket, String key, String uploadId, List<PartInfo> parts) {
+        call("completeMultipartUpload", key);
+        Upload upload = upload(uploadId);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        MessageDigest md5s = md5();
+        for (PartInfo part : parts) {
+            Entry entry = upload.parts.get(part.getPartNumber());
+            if (entry == null || !entry.etag.equals(part.getEtag())) {
+                throw new S3Exception(StrUtil.format("InvalidPart, key:{}, part:{}", key, part.getPartNumber()));
+            }
+            out.write(entry.data, 0, entry.data.length);
+            md5s.update(HexUtil.decodeHex(entry.etag));
+        }
+        String etag = HexUtil.encodeHexStr(md5s.digest()) + "-" + parts.size();
+        objects.put(id(bucket, key), new Entry(out.toByteArray(), etag, upload.contentType, upload.metadata));
+        uploads.remove(uploadId);
+        return etag;
+    }
+
+    @Override
+    public void abortMultipartUpload(String bucket, String key, String uploadId) {
+        call("abortMultipartUpload", key);
+        uploads.remove(uploadId);
+    }
+
+    @Override
+    public List<MultipartUploadInfo> listMultipartUploads(String bucket, String prefix) {
+        call("listMultipartUploads", prefix);
+        List<MultipartUploadInfo> result = new ArrayList<>();
+        uploads.forEach((uploadId, upload) -> {
+            if (upload.bucket.equals(bucket) && upload.key.startsWith(StrUtil.nullToEmpty(prefix))) {
+                result.add(new MultipartUploadInfo(upload.key, uploadId, upload.initiated));
+            }
+        });
+        return result;
+    }
+
+    private void call(String operation, String key) {
+        calls.computeIfAbsent(operation, k -> new AtomicInteger()).incrementAndGet();
+        if (fault.test(operation + " " + key)) {
+            throw new S3Exception(StrUtil.format("injected fault, operation:{}, key:{}", operation, key));
+        }
+    }
+
+    private Entry entry(String bucket, String key) {
+        Entry entry = objects.get(id(bucket, key));
+        if (entry == null) {
+            throw new StorageNotFoundException(bucket, key);
+        }
+        return entry;
+    }
+
+    private Upload upload(String uploadId) {
+        Upload upload = uploads.get(uploadId);
+        if (upload == null) {
+            throw new S3Exception("NoSuchUpload: " + uploadId);
+        }
+        return upload;
+    }
+
+    private static String id(String bucket, String key) {
+        return bucket + "/" + key;
+    }
+
+    private static String md5Hex(byte[] data) {
+        return HexUtil.encodeHexStr(md5().digest(data));
+    }
+
+    private static MessageDigest md5() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class Entry {
+
+        final byte[] data;
+
+        final String etag;
+
+        final String contentType;
+
+        final Map<String, String> metadata;
+
+        final Date lastModified = new Date();
+
+        Entry(byte[] data, String etag, String contentType, Map<String, String> metadata) {
+            this.data = data;
+            this.etag = etag;
+            this.contentType = contentType;
+            this.metadata = metadata == null ? new HashMap<>() : new HashMap<>(metadata);
+        }
+
+        ObjectInfo info(String key) {
+            return new ObjectInfo(key, data.length, etag, lastModified, contentType);
+        }
+    }
+
+    private static class Upload {
+
+        final String bucket;
+
+        final String key;
+
+        final String contentType;
+
+        final Map<String, String> metadata;
+
+        final Date initiated = new Date();
+
+        final Map<Integer, Entry> parts = new ConcurrentSkipListMap<>();
+
+        Upload(String bucket, String key, String contentType, Map<String, String> metadata) {
+            this.bucket = bucket;
+            this.key = key;
+            this.contentType = contentType;
+            this.metadata = metadata;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.ukayunnuo.s3.stub;
+
+import cn.hutool.json.JSONUtil;
+import lombok.Data;
+
+/**
+ * S3 兼容桩服务 配置
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Data
+public class S3StubConfig {
+
+    /**
+     * 监听端口, 0 表示随机端口
+     */
+    private int port = 0;
+
+    /**
+     * 监听地址
+     */
+    private String host = "127.0.0.1";
+
+    /**
+     * 数据目录, 为空时数据只保存在内存中
+     */
+    private String dataDir;
+
+    /**
+     * 区域(返回给 GetBucketLocation)
+     */
+    private String region = "us-east-1";
+
+    /**
+     * 处理线程数, <=0 时使用可伸缩线程池
+     */
+    private int workerThreads = 0;
+
+    /**
+     * 注入的固定延迟(毫秒)
+     */
+    private long latencyMillis = 0;
+
+    /**
+     * 注入的随机抖动延迟上限(毫秒)
+     */
+    private long latencyJitterMillis = 0;
+
+    /**
+     * 全局带宽上限(字节/秒), <=0 不限速, 上传下载共享
+     */
+    private long bandwidthBytesPerSecond = 0;
+
+    /**
+     * 注入 500 InternalError 的概率 [0, 1]
+     */
+    private double errorRate = 0;
+
+    /**
+     * 注入 503 SlowDown 的概率 [0, 1]
+     */
+    private double throttleRate = 0;
+
+    @Override
+    public String toString() {
+        return JSONUtil.toJsonStr(this);
+    }
+}
@@ -0,0 +1,767 @@
+package com.ukayunnuo.s3.stub;
+
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.StrUtil;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.ukayunnuo.s3.exception.S3Exception;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * S3 兼容桩服务 请求处理
+ * <p> 仅支持 path-style 访问, 不校验签名 </p>
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Slf4j
+public class S3StubHandler implements HttpHandler {
+
+    private static final String XML_HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>";
+
+    private static final String XMLNS = " xmlns=\"http://s3.amazonaws.com/doc/2006-03-01/\"";
+
+    private static final String META_HEADER_PREFIX = "x-amz-meta-";
+
+    private static final int DEFAULT_MAX_KEYS = 1000;
+
+    private static final Pattern KEY_PATTERN = Pattern.compile("<Key>(.*?)</Key>", Pattern.DOTALL);
+
+    private static final Pattern PART_PATTERN = Pattern.compile("<PartNumber>\\s*(\\d+)\\s*</PartNumber>\\s*<ETag>(.*?)</ETag>", Pattern.DOTALL);
+
+    private static final Pattern QUIET_PATTERN = Pattern.compile("<Quiet>\\s*true\\s*</Quiet>", Pattern.CASE_INSENSITIVE);
+
+    private static final DateTimeFormatter ISO_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'").withZone(ZoneOffset.UTC);
+
+    private final S3StubConfig config;
+
+    private final StubStorage storage;
+
+    private final StubFaultInjector faultInjector;
+
+    public S3StubHandler(S3StubConfig config, StubStorage storage, StubFaultInjector faultInjector) {
+        this.config = config;
+        this.storage = storage;
+        this.faultInjector = faultInjector;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        String requestId = IdUtil.fastSimpleUUID();
+        exchange.getResponseHeaders().set("x-amz-request-id", requestId);
+        try {
+            faultInjector.delay();
+            StubFaultInjector.Fault fault = faultInjector.nextFault();
+            if (fault == StubFaultInjector.Fault.SLOW_DOWN) {
+                sendError(exchange, 503, "SlowDown", "Please reduce your request rate.", requestId);
+                return;
+            }
+            if (fault == StubFaultInjector.Fault.INTERNAL_ERROR) {
+                sendError(exchange, 500, "InternalError", "We encountered an internal error. Please try again.", requestId);
+                return;
+            }
+            route(exchange);
+        } catch (StubError e) {
+            sendError(exchange, e.status, e.code, e.getMessage(), requestId);
+        } catch (Exception e) {
+            log.warn("stub request failed, method:{}, uri:{}, msg:{}", exchange.getRequestMethod(), exchange.getRequestURI(), e.getMessage());
+            sendError(exchange, 500, "InternalError", String.valueOf(e.getMessage()), requestId);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void route(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod().toUpperCase(Locale.ROOT);
+        String path = exchange.getRequestURI().getRawPath();
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        String trimmed = path.startsWith("/") ? path.substring(1) : path;
+        if (trimmed.isEmpty()) {
+            if ("GET".equals(method)) {
+                listBuckets(exchange);
+                return;
+            }
+            throw new StubError(405, "MethodNotAllowed", "method not allowed: " + method);
+        }
+        int slash = trimmed.indexOf('/');
+        String bucket = decode(slash < 0 ? trimmed : trimmed.substring(0, slash));
+        String key = slash < 0 || slash == trimmed.length() - 1 ? null : decode(trimmed.substring(slash + 1));
+        if (key == null) {
+            routeBucket(exchange, method, bucket, query);
+        } else {
+            routeObject(exchange, method, bucket, key, query);
+        }
+    }
+
+    private void routeBucket(HttpExchange exchange, String method, String bucket, Map<String, String> query) throws IOException {
+        switch (method) {
+            case "PUT":
+                storage.createBucket(bucket);
+                sendEmpty(exchange, 200);
+                return;
+            case "HEAD":
+                requireBucket(bucket);
+                sendEmpty(exchange, 200);
+                return;
+            case "DELETE":
+                requireBucket(bucket);
+                if (!storage.deleteBucket(bucket)) {
+                    throw new StubError(409, "BucketNotEmpty", "The bucket you tried to delete is not empty");
+                }
+                sendEmpty(exchange, 204);
+                return;
+            case "POST":
+                if (query.containsKey("delete")) {
+                    deleteObjects(exchange, bucket);
+                    return;
+                }
+                break;
+            case "GET":
+                if (query.containsKey("location")) {
+                    requireBucket(bucket);
+                    sendXml(exchange, 200, XML_HEADER + "<LocationConstraint" + XMLNS + ">" + escape(config.getRegion()) + "</LocationConstraint>");
+                    return;
+                }
+                if (query.containsKey("policy")) {
+                    requireBucket(bucket);
+                    throw new StubError(404, "NoSuchBucketPolicy", "The bucket policy does not exist");
+                }
+                if (query.containsKey("uploads")) {
+                    listUploads(exchange, bucket, query);
+                    return;
+                }
+                listObjects(exchange, bucket, query);
+                return;
+            default:
+                break;
+        }
+        throw new StubError(405, "MethodNotAllowed", "method not allowed: " + method);
+    }
+
+    private void routeObject(HttpExchange exchange, String method, String bucket, String key,
+                             Map<String, String> query) throws IOException {
+        requireBucket(bucket);
+        String uploadId = query.get("uploadId");
+        switch (method) {
+            case "GET":
+                if (uploadId != null) {
+                    listParts(exchange, requireUpload(uploadId), query);
+                } else {
+                    getObject(exchange, bucket, key, true);
+                }
+                return;
+            case "HEAD":
+                getObject(exchange, bucket, key, false);
+                return;
+            case "PUT":
+                if (uploadId != null) {
+                    uploadPart(exchange, requireUpload(uploadId), query);
+                } else if (exchange.getRequestHeaders().getFirst("x-amz-copy-source") != null) {
+                    copyObject(exchange, bucket, key);
+                } else {
+                    putObject(exchange, bucket, key);
+                }
+                return;
+            case "POST":
+                if (query.containsKey("uploads")) {
+                    String id = storage.initiateUpload(bucket, key, contentType(exchange), userMetadata(exchange.getRequestHeaders()));
+                    sendXml(exchange, 200, XML_HEADER + "<InitiateMultipartUploadResult" + XMLNS + ">"
+                            + element("Bucket", bucket) + element("Key", key) + element("UploadId", id)
+                            + "</InitiateMultipartUploadResult>");
+                    return;
+                }
+                if (uploadId != null) {
+                    completeUpload(exchange, requireUpload(uploadId));
+                    return;
+                }
+                break;
+            case "DELETE":
+                if (uploadId != null) {
+                    if (!storage.abortUpload(uploadId)) {
+                        throw new StubError(404, "NoSuchUpload", "The specified upload does not exist");
+                    }
+                } else {
+                    storage.delete(bucket, key);
+                }
+                sendEmpty(exchange, 204);
+                return;
+            default:
+                break;
+        }
+        throw new StubError(405, "MethodNotAllowed", "method not allowed: " + method);
+    }
+
+    /* ------------------------------------> bucket operate  <------------------------------------------------ */
+
+    private void listBuckets(HttpExchange exchange) throws IOException {
+        StringBuilder xml = new StringBuilder(XML_HEADER).append("<ListAllMyBucketsResult").append(XMLNS).append(">")
+                .append("<Owner><ID>stub</ID><DisplayName>stub</DisplayName></Owner><Buckets>");
+        String now = ISO_FORMAT.format(Instant.now());
+        for (String bucket : storage.listBuckets()) {
+            xml.append("<Bucket>").append(element("Name", bucket)).append(element("CreationDate", now)).append("</Bucket>");
+        }
+        xml.append("</Buckets></ListAllMyBucketsResult>");
+        sendXml(exchange, 200, xml.toString());
+    }
+
+    private void listObjects(HttpExchange exchange, String bucket, Map<String, String> query) throws IOException {
+        NavigableMap<String, StubObject> objects = requireBucket(bucket);
+        boolean v2 = "2".equals(query.get("list-type"));
+        String prefix = StrUtil.nullToEmpty(query.get("prefix"));
+        String delimiter = StrUtil.emptyToDefault(query.get("delimiter"), null);
+        int maxKeys = query.containsKey("max-keys") ? Integer.parseInt(query.get("max-keys")) : DEFAULT_MAX_KEYS;
+        String marker;
+        if (v2) {
+            String token = query.get("continuation-token");
+            marker = token != null
+                    ? new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8) : query.get("start-after");
+        } else {
+            marker = query.get("marker");
+        }
+
+        List<StubObject> contents = new ArrayList<>();
+        List<String> commonPrefixes = new ArrayList<>();
+        String lastReturned = null;
+        boolean truncated = false;
+        String from = marker != null && marker.compareTo(prefix) > 0 ? marker : prefix;
+        boolean inclusive = !from.equals(marker);
+        for (StubObject object : objects.tailMap(from, inclusive).values()) {
+            String key = object.getKey();
+            if (!key.startsWith(prefix)) {
+                break;
+            }
+            String commonPrefix = null;
+            if (delimiter != null) {
+                int idx = key.indexOf(delimiter, prefix.length());
+                if (idx >= 0) {
+                    commonPrefix = key.substring(0, idx + delimiter.length());
+                }
+            }
+            if (commonPrefix != null && (commonPrefix.equals(lastReturned) || (marker != null && marker.startsWith(commonPrefix)))) {
+                continue;
+            }
+            if (contents.size() + commonPrefixes.size() >= maxKeys) {
+                truncated = true;
+                break;
+            }
+            if (commonPrefix != null) {
+                commonPrefixes.add(commonPrefix);
+                lastReturned = commonPrefix;
+            } else {
+                contents.add(object);
+                lastReturned = key;
+            }
+        }
+
+        StringBuilder xml = new StringBuilder(XML_HEADER).append("<ListBucketResult").append(XMLNS).append('>')
+                .append(element("Name", bucket)).append(element("Prefix", prefix))
+                .append(element("MaxKeys", String.valueOf(maxKeys)))
+                .append(element("IsTruncated", String.valueOf(truncated)));
+        if (delimiter != null) {
+            xml.append(element("Delimiter", delimiter));
+        }
+        if (v2) {
+            xml.append(element("KeyCount", String.valueOf(contents.size() + commonPrefixes.size())));
+            if (query.containsKey("continuation-token")) {
+                xml.append(element("ContinuationToken", query.get("continuation-token")));
+            }
+            if (truncated) {
+                xml.append(element("NextContinuationToken",
+                        Base64.getUrlEncoder().encodeToString(lastReturned.getBytes(StandardCharsets.UTF_8))));
+            }
+        } else {
+            xml.append(element("Marker", StrUtil.nullToEmpty(marker)));
+            if (truncated) {
+                xml.append(element("NextMarker", lastReturned));
+            }
+        }
+        for (StubObject object : contents) {
+            xml.append("<Contents>").append(element("Key", object.getKey()))
+                    .append(element("LastModified", ISO_FORMAT.format(Instant.ofEpochMilli(object.getLastModified()))))
+                    .append(element("ETag", quote(object.getEtag())))
+                    .append(element("Size", String.valueOf(object.getSize())))
+                    .append(element("StorageClass", "STANDARD")).append("</Contents>");
+        }
+        for (String commonPrefix : commonPrefixes) {
+            xml.append("<CommonPrefixes>").append(element("Prefix", commonPrefix)).append("</CommonPrefixes>");
+        }
+        xml.append("</ListBucketResult>");
+        sendXml(exchange, 200, xml.toString());
+    }
+
+    private void deleteObjects(HttpExchange exchange, String bucket) throws IOException {
+        requireBucket(bucket);
+        String body = readBody(exchange);
+        boolean quiet = QUIET_PATTERN.matcher(body).find();
+        StringBuilder xml = new StringBuilder(XML_HEADER).append("<DeleteResult").append(XMLNS).append(">");
+        Matcher matcher = KEY_PATTERN.matcher(body);
+        while (matcher.find()) {
+            String key = unescape(matcher.group(1));
+            storage.delete(bucket, key);
+            if (!quiet) {
+                xml.append("<Deleted>").append(element("Key", key)).append("</Deleted>");
+            }
+        }
+        xml.append("</DeleteResult>");
+        sendXml(exchange, 200, xml.toString());
+    }
+
+    /* ------------------------------------> object operate  <------------------------------------------------ */
+
+    private void getObject(HttpExchange exchange, String bucket, String key, boolean withBody) throws IOException {
+        StubObject object = storage.get(bucket, key);
+        if (object == null) {
+            throw new StubError(404, "NoSuchKey", "The specified key does not exist.");
+        }
+        Headers request = exchange.getRequestHeaders();
+        String ifMatch = request.getFirst("If-Match");
+        if (ifMatch != null && !"*".equals(ifMatch) && !object.getEtag().equals(unquote(ifMatch))) {
+            throw new StubError(412, "PreconditionFailed", "At least one of the pre-conditions you specified did not hold");
+        }
+        String ifNoneMatch = request.getFirst("If-None-Match");
+        Headers headers = exchange.getResponseHeaders();
+        headers.set("ETag", quote(object.getEtag()));
+        if (ifNoneMatch != null && object.getEtag().equals(unquote(ifNoneMatch))) {
+            exchange.sendResponseHeaders(304, -1);
+            return;
+        }
+        headers.set("Last-Modified", DateTimeFormatter.RFC_1123_DATE_TIME.format(
+                Instant.ofEpochMilli(object.getLastModified()).atOffset(ZoneOffset.UTC)));
+        headers.set("Accept-Ranges", "bytes");
+        headers.set("Content-Type", StrUtil.emptyToDefault(object.getContentType(), "application/octet-stream"));
+        for (Map.Entry<String, String> entry : object.getUserMetadata().entrySet()) {
+            headers.set(META_HEADER_PREFIX + entry.getKey(), entry.getValue());
+        }
+
+        long size = object.getSize();
+        long start = 0;
+        long length = size;
+        int status = 200;
+        String range = request.getFirst("Range");
+        if (range != null && range.startsWith("bytes=") && range.indexOf(',') < 0) {
+            String spec = range.substring("bytes=".length()).trim();
+            int dash = spec.indexOf('-');
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            long end;
+            if (first.isEmpty()) {
+                start = Math.max(0, size - Long.parseLong(last));
+                end = size - 1;
+            } else {
+                start = Long.parseLong(first);
+                end = last.isEmpty() ? size - 1 : Math.min(Long.parseLong(last), size - 1);
+            }
+            if (start >= size || end < start) {
+                headers.set("Content-Range", "bytes */" + size);
+                throw new StubError(416, "InvalidRange", "The requested range is not satisfiable");
+            }
+            length = end - start + 1;
+            status = 206;
+            headers.set("Content-Range", "bytes " + start + "-" + end + "/" + size);
+        }
+        headers.set("Content-Length", String.valueOf(length));
+        if (!withBody || length == 0) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(status, length);
+        try (InputStream in = object.open(start, length); OutputStream out = faultInjector.limit(exchange.getResponseBody())) {
+            byte[] buffer = new byte[64 * 1024];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+        }
+    }
+
+    private void putObject(HttpExchange exchange, String bucket, String key) throws IOException {
+        StubObject object;
+        try (InputStream body = requestBody(exchange)) {
+            object = storage.put(bucket, key, body, contentType(exchange), userMetadata(exchange.getRequestHeaders()));
+        }
+        exchange.getResponseHeaders().set("ETag", quote(object.getEtag()));
+        sendEmpty(exchange, 200);
+    }
+
+    private void copyObject(HttpExchange exchange, String bucket, String key) throws IOException {
+        String source = decode(exchange.getRequestHeaders().getFirst("x-amz-copy-source"));
+        int q = source.indexOf('?');
+        if (q >= 0) {
+            source = source.substring(0, q);
+        }
+        if (source.startsWith("/")) {
+            source = source.substring(1);
+        }
+        int slash = source.indexOf('/');
+        if (slash <= 0) {
+            throw new StubError(400, "InvalidArgument", "Invalid copy source: " + source);
+        }
+        boolean replace = "REPLACE".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("x-amz-metadata-directive"));
+        StubObject object = storage.copy(source.substring(0, slash), source.substring(slash + 1), bucket, key,
+                replace ? contentType(exchange) : null, replace ? userMetadata(exchange.getRequestHeaders()) : null);
+        if (object == null) {
+            throw new StubError(404, "NoSuchKey", "The specified key does not exist.");
+        }
+        sendXml(exchange, 200, XML_HEADER + "<CopyObjectResult" + XMLNS + ">"
+                + element("LastModified", ISO_FORMAT.format(Instant.ofEpochMilli(object.getLastModified())))
+                + element("ETag", quote(object.getEtag())) + "</CopyObjectResult>");
+    }
+
+    /* ------------------------------------> multipart operate  <------------------------------------------------ */
+
+    private void uploadPart(HttpExchange exchange, StubStorage.Upload upload, Map<String, String> query) throws IOException {
+        int partNumber = Integer.parseInt(query.get("partNumber"));
+        StubObject part;
+        try (InputStream body = requestBody(exchange)) {
+            part = storage.uploadPart(upload, partNumber, body);
+        }
+        exchange.getResponseHeaders().set("ETag", quote(part.getEtag()));
+        sendEmpty(exchange, 200);
+    }
+
+    private void completeUpload(HttpExchange exchange, StubStorage.Upload upload) throws IOException {
+        String body = readBody(exchange);
+        List<Integer> partNumbers = new ArrayList<>();
+        Matcher matcher = PART_PATTERN.matcher(body);
+        while (matcher.find()) {
+            int partNumber = Integer.parseInt(matcher.group(1));
+            StubObject part = upload.getParts().get(partNumber);
+            if (part == null || !part.getEtag().equals(unquote(unescape(matcher.group(2))))) {
+                throw new StubError(400, "InvalidPart", "One or more of the specified parts could not be found: " + partNumber);
+            }
+            partNumbers.add(partNumber);
+        }
+        StubObject object;
+        try {
+            object = storage.completeUpload(upload, partNumbers);
+        } catch (S3Exception e) {
+            throw new StubError(400, "InvalidPart", e.getMessage());
+        }
+        sendXml(exchange, 200, XML_HEADER + "<CompleteMultipartUploadResult" + XMLNS + ">"
+                + element("Location", "/" + upload.getBucket() + "/" + upload.getKey())
+                + element("Bucket", upload.getBucket()) + element("Key", upload.getKey())
+                + element("ETag", quote(object.getEtag())) + "</CompleteMultipartUploadResult>");
+    }
+
+    private void listParts(HttpExchange exchange, StubStorage.Upload upload, Map<String, String> query) throws IOException {
+        int marker = query.containsKey("part-number-marker") ? Integer.parseInt(query.get("part-number-marker")) : 0;
+        int maxParts = query.containsKey("max-parts") ? Integer.parseInt(query.get("max-parts")) : DEFAULT_MAX_KEYS;
+        StringBuilder parts = new StringBuilder();
+        int count = 0;
+        int last = marker;
+        boolean truncated = false;
+        for (Map.Entry<Integer, StubObject> entry : upload.getParts().tailMap(marker, false).entrySet()) {
+            if (count >= maxParts) {
+                truncated = true;
+                break;
+            }
+            StubObject part = entry.getValue();
+            parts.append("<Part>").append(element("PartNumber", String.valueOf(entry.getKey())))
+                    .append(element("LastModified", ISO_FORMAT.format(Instant.ofEpochMilli(part.getLastModified()))))
+                    .append(element("ETag", quote(part.getEtag())))
+                    .append(element("Size", String.valueOf(part.getSize()))).append("</Part>");
+            last = entry.getKey();
+            count++;
+        }
+        sendXml(exchange, 200, XML_HEADER + "<ListPartsResult" + XMLNS + ">"
+                + element("Bucket", upload.getBucket()) + element("Key", upload.getKey())
+                + element("UploadId", upload.getUploadId())
+                + element("PartNumberMarker", String.valueOf(marker))
+                + element("NextPartNumberMarker", String.valueOf(last))
+                + element("MaxParts", String.valueOf(maxParts))
+                + element("IsTruncated", String.valueOf(truncated))
+                + parts + "</ListPartsResult>");
+    }
+
+    private void listUploads(HttpExchange exchange, String bucket, Map<String, String> query) throws IOException {
+        requireBucket(bucket);
+        String prefix = StrUtil.nullToEmpty(query.get("prefix"));
+        StringBuilder xml = new StringBuilder(XML_HEADER).append("<ListMultipartUploadsResult").append(XMLNS).append(">")
+                .append(element("Bucket", bucket)).append(element("KeyMarker", ""))
+                .append(element("UploadIdMarker", "")).append(element("Prefix", prefix))
+                .append(element("MaxUploads", String.valueOf(DEFAULT_MAX_KEYS)))
+                .append(element("IsTruncated", "false"));
+        for (StubStorage.Upload upload : storage.listUploads(bucket)) {
+            if (!upload.getKey().startsWith(prefix)) {
+                continue;
+            }
+            xml.append("<Upload>").append(element("Key", upload.getKey()))
+                    .append(element("UploadId", upload.getUploadId()))
+                    .append(element("Initiated", ISO_FORMAT.format(Instant.ofEpochMilli(upload.getInitiated()))))
+                    .append(element("StorageClass", "STANDARD")).append("</Upload>");
+        }
+        xml.append("</ListMultipartUploadsResult>");
+        sendXml(exchange, 200, xml.toString());
+    }
+
+    /* ------------------------------------> helper  <------------------------------------------------ */
+
+    private NavigableMap<String, StubObject> requireBucket(String bucket) {
+        NavigableMap<String, StubObject> objects = storage.objects(bucket);
+        if (objects == null) {
+            throw new StubError(404, "NoSuchBucket", "The specified bucket does not exist");
+        }
+        return objects;
+    }
+
+    private StubStorage.Upload requireUpload(String uploadId) {
+        StubStorage.Upload upload = storage.getUpload(uploadId);
+        if (upload == null) {
+            throw new StubError(404, "NoSuchUpload", "The specified upload does not exist");
+        }
+        return upload;
+    }
+
+    /**
+     * 请求体: 带宽限制 + aws-chunked 解码
+     */
+    private InputStream requestBody(HttpExchange exchange) {
+        InputStream body = faultInjector.limit(exchange.getRequestBody());
+        String sha256 = exchange.getRequestHeaders().getFirst("x-amz-content-sha256");
+        String encoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+        if ((sha256 != null && sha256.startsWith("STREAMING-")) || (encoding != null && encoding.contains("aws-chunked"))) {
+            return new AwsChunkedInputStream(body);
+        }
+        return body;
+    }
+
+    private String readBody(HttpExchange exchange) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = requestBody(exchange)) {
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static String contentType(HttpExchange exchange) {
+        return exchange.getRequestHeaders().getFirst("Content-Type");
+    }
+
+    private static Map<String, String> userMetadata(Headers headers) {
+        Map<String, String> metadata = new HashMap<>();
+        for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+            String name = entry.getKey().toLowerCase(Locale.ROOT);
+            if (name.startsWith(META_HEADER_PREFIX) && !entry.getValue().isEmpty()) {
+                metadata.put(name.substring(META_HEADER_PREFIX.length()), entry.getValue().get(0));
+            }
+        }
+        return metadata;
+    }
+
+    private static void sendEmpty(HttpExchange exchange, int status) throws IOException {
+        exchange.sendResponseHeaders(status, -1);
+    }
+
+    private static void sendXml(HttpExchange exchange, int status, String xml) throws IOException {
+        byte[] body = xml.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/xml");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String code, String message, String requestId) throws IOException {
+        if ("HEAD".equalsIgnoreCase(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        sendXml(exchange, status, XML_HEADER + "<Error>" + element("Code", code) + element("Message", message)
+                + element("Resource", exchange.getRequestURI().getPath()) + element("RequestId", requestId) + "</Error>");
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (StrUtil.isEmpty(rawQuery)) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            if (pair.isEmpty()) {
+                continue;
+            }
+            int eq = pair.indexOf('=');
+            if (eq < 0) {
+                query.put(decode(pair), "");
+            } else {
+                query.put(decode(pair.substring(0, eq)), decode(pair.substring(eq + 1)));
+            }
+        }
+        return query;
+    }
+
+    /**
+     * 百分号解码(不把 '+' 视为空格, 与 S3 客户端的编码方式一致)
+     */
+    private static String decode(String raw) {
+        if (raw.indexOf('%') < 0) {
+            return raw;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length());
+        for (int i = 0; i < raw.length(); i++) {
+            char c = raw.charAt(i);
+            if (c == '%' && i + 2 < raw.length()) {
+                out.write(Integer.parseInt(raw.substring(i + 1, i + 3), 16));
+                i += 2;
+            } else {
+                byte[] bytes = String.valueOf(c).getBytes(StandardCharsets.UTF_8);
+                out.write(bytes, 0, bytes.length);
+            }
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static String element(String name, String value) {
+        return "<" + name + ">" + escape(value) + "</" + name + ">";
+    }
+
+    private static String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '<':
+                    sb.append("&lt;");
+                    break;
+                case '>':
+                    sb.append("&gt;");
+                    break;
+                case '&':
+                    sb.append("&amp;");
+                    break;
+                case '"':
+                    sb.append("&quot;");
+                    break;
+                case '\'':
+                    sb.append("&apos;");
+                    break;
+                default:
+                    sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String unescape(String value) {
+        return value.replace("&lt;", "<").replace("&gt;", ">").replace("&quot;", "\"")
+                .replace("&apos;", "'").replace("&amp;", "&");
+    }
+
+    private static String quote(String etag) {
+        return "\"" + etag + "\"";
+    }
+
+    private static String unquote(String etag) {
+        String value = etag.trim();
+        if (value.startsWith("\"") && value.endsWith("\"") && value.length() >= 2) {
+            return value.substring(1, value.length() - 1);
+        }
+        return value;
+    }
+
+    /**
+     * 带状态码的桩服务错误
+     */
+    private static final class StubError extends RuntimeException {
+
+        private final int status;
+
+        private final String code;
+
+        private StubError(int status, String code, String message) {
+            super(message, null, false, false);
+            this.status = status;
+            this.code = code;
+        }
+    }
+
+    /**
+     * aws-chunked(STREAMING-AWS4-HMAC-SHA256-PAYLOAD) 解码流, 忽略分块签名
+     */
+    private static final class AwsChunkedInputStream extends InputStream {
+
+        private final InputStream in;
+
+        private long chunkRemaining;
+
+        private boolean eof;
+
+        private AwsChunkedInputStream(InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            int n = read(one, 0, 1);
+            return n <= 0 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (eof) {
+                return -1;
+            }
+            if (chunkRemaining == 0) {
+                String header = readLine();
+                int semicolon = header.indexOf(';');
+                chunkRemaining = Long.parseLong((semicolon < 0 ? header : header.substring(0, semicolon)).trim(), 16);
+                if (chunkRemaining == 0) {
+                    eof = true;
+                    return -1;
+                }
+            }
+            int n = in.read(b, off, (int) Math.min(len, chunkRemaining));
+            if (n < 0) {
+                eof = true;
+                return -1;
+            }
+            chunkRemaining -= n;
+            if (chunkRemaining == 0) {
+                readLine();
+            }
+            return n;
+        }
+
+        private String readLine() throws IOException {
+            StringBuilder sb = new StringBuilder();
+            int c;
+            while ((c = in.read()) != -1 && c != '\n') {
+                if (c != '\r') {
+                    sb.append((char) c);
+                }
+            }
+            return sb.toString();
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.ukayunnuo.s3.stub;
+
+import com.sun.net.httpserver.HttpServer;
+import com.ukayunnuo.s3.exception.S3Exception;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 内嵌 S3 兼容桩服务
+ * <p> 支持: put/get/range/head/list(v1,v2)/multipart/copy/批量删除, 以及延迟、带宽、错误率注入 </p>
+ * <p> 可直接作为 {@code MinioClient}、{@code AmazonS3}(需 path-style) 的 endpoint 使用, 便于离线压测与集成测试 </p>
+ * <p color='red'> 注意: 不校验签名; OCI 原生 API({@code OciS3Utils}) 不是 S3 协议, 需通过 OCI 的 S3 兼容端点访问 </p>
+ *
+ * <pre>
+ * S3StubConfig config = new S3StubConfig();
+ * config.setLatencyMillis(20);
+ * config.setThrottleRate(0.01);
+ * try (S3StubServer server = S3StubServer.start(config)) {
+ *     MinioClient client = MinioClient.builder().endpoint(server.getEndpoint()).credentials("ak", "sk").build();
+ *     ...
+ * }
+ * </pre>
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Slf4j
+public class S3StubServer implements Closeable {
+
+    private final HttpServer server;
+
+    private final ExecutorService executor;
+
+    @Getter
+    private final StubStorage storage;
+
+    @Getter
+    private final S3StubConfig config;
+
+    private S3StubServer(S3StubConfig config) throws IOException {
+        this.config = config;
+        this.storage = new StubStorage(config.getDataDir());
+        this.server = HttpServer.create(new InetSocketAddress(config.getHost(), config.getPort()), 1024);
+        this.executor = config.getWorkerThreads() > 0
+                ? Executors.newFixedThreadPool(config.getWorkerThreads(), daemonThreadFactory())
+                : Executors.newCachedThreadPool(daemonThreadFactory());
+        server.createContext("/", new S3StubHandler(config, storage, new StubFaultInjector(config)));
+        server.setExecutor(executor);
+    }
+
+    /**
+     * 启动桩服务
+     *
+     * @param config 配置
+     * @return {@link S3StubServer}
+     */
+    public static S3StubServer start(S3StubConfig config) {
+        try {
+            S3StubServer stub = new S3StubServer(config);
+            stub.server.start();
+            log.info("s3 stub server started, endpoint:{}, config:{}", stub.getEndpoint(), config);
+            return stub;
+        } catch (IOException e) {
+            throw new S3Exception("s3 stub server start failed!", e);
+        }
+    }
+
+    /**
+     * 启动桩服务(默认配置: 内存存储, 随机端口, 无故障注入)
+     *
+     * @return {@link S3StubServer}
+     */
+    public static S3StubServer start() {
+        return start(new S3StubConfig());
+    }
+
+    /**
+     * 获取实际监听端口
+     *
+     * @return int
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * 获取 endpoint
+     *
+     * @return {@link String} 例: http://127.0.0.1:9000
+     */
+    public String getEndpoint() {
+        return "http://" + config.getHost() + ":" + getPort();
+    }
+
+    /**
+     * 预先创建桶
+     *
+     * @param bucketNames 桶名
+     * @return {@link S3StubServer}
+     */
+    public S3StubServer withBuckets(String... bucketNames) {
+        for (String bucketName : bucketNames) {
+            storage.createBucket(bucketName);
+        }
+        return this;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+        log.info("s3 stub server stopped, endpoint:{}", getEndpoint());
+    }
+
+    private static ThreadFactory daemonThreadFactory() {
+        AtomicInteger index = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, "s3-stub-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
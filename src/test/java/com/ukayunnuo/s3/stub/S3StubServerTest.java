@@ -0,0 +1,145 @@
+package com.ukayunnuo.s3.stub;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 桩服务协议测试(直接发送 HTTP 请求)
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+public class S3StubServerTest {
+
+    private S3StubServer server;
+
+    @Before
+    public void setUp() {
+        server = S3StubServer.start().withBuckets("test");
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    public void putGetAndRange() throws IOException {
+        assertEquals(200, request("PUT", "/test/a/b.txt", null, "hello world".getBytes(StandardCharsets.UTF_8)).status);
+        assertEquals("hello world", request("GET", "/test/a/b.txt", null, null).text());
+        Response range = request("GET", "/test/a/b.txt", "bytes=6-10", null);
+        assertEquals(206, range.status);
+        assertEquals("world", range.text());
+        assertEquals(404, request("GET", "/test/missing", null, null).status);
+    }
+
+    @Test
+    public void listV2WithPaging() throws IOException {
+        for (int i = 0; i < 5; i++) {
+            request("PUT", "/test/p/" + i, null, new byte[]{(byte) i});
+        }
+        request("PUT", "/test/q/0", null, new byte[1]);
+        Response first = request("GET", "/test?list-type=2&prefix=p/&max-keys=3", null, null);
+        assertEquals(3, count(first.text(), "<Key>"));
+        assertTrue(first.text().contains("<IsTruncated>true</IsTruncated>"));
+        Matcher token = Pattern.compile("<NextContinuationToken>(.*?)</NextContinuationToken>").matcher(first.text());
+        assertTrue(token.find());
+        Response second = request("GET", "/test?list-type=2&prefix=p/&max-keys=3&continuation-token=" + token.group(1), null, null);
+        assertEquals(2, count(second.text(), "<Key>"));
+        assertTrue(second.text().contains("<IsTruncated>false</IsTruncated>"));
+    }
+
+    @Test
+    public void multipartUpload() throws IOException {
+        Response initiate = request("POST", "/test/big?uploads", null, new byte[0]);
+        Matcher id = Pattern.compile("<UploadId>(.*?)</UploadId>").matcher(initiate.text());
+        assertTrue(id.find());
+        String uploadId = id.group(1);
+        Response part1 = request("PUT", "/test/big?partNumber=1&uploadId=" + uploadId, null, "abc".getBytes(StandardCharsets.UTF_8));
+        Response part2 = request("PUT", "/test/big?partNumber=2&uploadId=" + uploadId, null, "def".getBytes(StandardCharsets.UTF_8));
+        String complete = "<CompleteMultipartUpload>"
+                + "<Part><PartNumber>1</PartNumber><ETag>" + part1.etag + "</ETag></Part>"
+                + "<Part><PartNumber>2</PartNumber><ETag>" + part2.etag + "</ETag></Part>"
+                + "</CompleteMultipartUpload>";
+        assertEquals(200, request("POST", "/test/big?uploadId=" + uploadId, null, complete.getBytes(StandardCharsets.UTF_8)).status);
+        assertEquals("abcdef", request("GET", "/test/big", null, null).text());
+    }
+
+    @Test
+    public void injectedThrottling() throws IOException {
+        S3StubConfig config = new S3StubConfig();
+        config.setThrottleRate(1);
+        try (S3StubServer throttled = S3StubServer.start(config).withBuckets("test")) {
+            Response response = request(throttled, "GET", "/test/a", null, null);
+            assertEquals(503, response.status);
+            assertTrue(response.text().contains("SlowDown"));
+        }
+    }
+
+    private Response request(String method, String path, String range, byte[] body) throws IOException {
+        return request(server, method, path, range, body);
+    }
+
+    private static Response request(S3StubServer target, String method, String path, String range, byte[] body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(target.getEndpoint() + path).openConnection();
+        connection.setRequestMethod(method);
+        if (range != null) {
+            connection.setRequestProperty("Range", range);
+        }
+        if (body != null) {
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(body.length);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body);
+            }
+        }
+        Response response = new Response();
+        response.status = connection.getResponseCode();
+        response.etag = connection.getHeaderField("ETag");
+        try (InputStream in = response.status >= 400 ? connection.getErrorStream() : connection.getInputStream()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int n;
+            while (in != null && (n = in.read(buffer)) >= 0) {
+                out.write(buffer, 0, n);
+            }
+            response.body = out.toByteArray();
+        }
+        return response;
+    }
+
+    private static int count(String text, String token) {
+        int count = 0;
+        for (int i = text.indexOf(token); i >= 0; i = text.indexOf(token, i + 1)) {
+            count++;
+        }
+        return count;
+    }
+
+    private static class Response {
+
+        int status;
+
+        String etag;
+
+        byte[] body;
+
+        String text() {
+            return new String(body, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.ukayunnuo.s3.stub;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 桩服务 故障注入: 延迟、错误率、带宽限制
+ * <p> 带宽限制为全局共享(所有连接的上传与下载共用同一额度), 更贴近单机压测时的链路瓶颈 </p>
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+public class StubFaultInjector {
+
+    /**
+     * 注入的故障类型
+     */
+    public enum Fault {
+        NONE, INTERNAL_ERROR, SLOW_DOWN
+    }
+
+    private final S3StubConfig config;
+
+    /**
+     * 下一个字节可被发送的时间点(纳秒)
+     */
+    private long nextFreeNanos = System.nanoTime();
+
+    public StubFaultInjector(S3StubConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * 注入延迟
+     *
+     * @throws InterruptedIOException 被打断
+     */
+    public void delay() throws InterruptedIOException {
+        long millis = config.getLatencyMillis();
+        if (config.getLatencyJitterMillis() > 0) {
+            millis += ThreadLocalRandom.current().nextLong(config.getLatencyJitterMillis() + 1);
+        }
+        sleepNanos(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    /**
+     * 按配置的概率抽取本次请求的故障
+     *
+     * @return {@link Fault}
+     */
+    public Fault nextFault() {
+        double r = ThreadLocalRandom.current().nextDouble();
+        if (r < config.getThrottleRate()) {
+            return Fault.SLOW_DOWN;
+        }
+        if (r < config.getThrottleRate() + config.getErrorRate()) {
+            return Fault.INTERNAL_ERROR;
+        }
+        return Fault.NONE;
+    }
+
+    public InputStream limit(InputStream in) {
+        return config.getBandwidthBytesPerSecond() <= 0 ? in : new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b >= 0) {
+                    acquire(1);
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int n = super.read(b, off, len);
+                if (n > 0) {
+                    acquire(n);
+                }
+                return n;
+            }
+        };
+    }
+
+    public OutputStream limit(OutputStream out) {
+        return config.getBandwidthBytesPerSecond() <= 0 ? out : new FilterOutputStream(out) {
+            @Override
+            public void write(int b) throws IOException {
+                acquire(1);
+                out.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                acquire(len);
+                out.write(b, off, len);
+            }
+        };
+    }
+
+    /**
+     * 预约 n 字节的带宽额度, 并等待到额度可用
+     *
+     * @param bytes 字节数
+     * @throws InterruptedIOException 被打断
+     */
+    private void acquire(int bytes) throws InterruptedIOException {
+        long cost = bytes * TimeUnit.SECONDS.toNanos(1) / config.getBandwidthBytesPerSecond();
+        long waitUntil;
+        synchronized (this) {
+            long now = System.nanoTime();
+            waitUntil = Math.max(now, nextFreeNanos);
+            nextFreeNanos = waitUntil + cost;
+        }
+        sleepNanos(waitUntil - System.nanoTime());
+    }
+
+    private static void sleepNanos(long nanos) throws InterruptedIOException {
+        if (nanos <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        }
+    }
+}
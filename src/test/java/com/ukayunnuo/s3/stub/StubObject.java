@@ -0,0 +1,116 @@
+package com.ukayunnuo.s3.stub;
+
+import lombok.Getter;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * 桩服务中的对象(或分段)
+ * <p> 内容保存在内存字节数组或磁盘文件中, 二者取其一 </p>
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Getter
+public class StubObject {
+
+    private final String key;
+
+    private final byte[] data;
+
+    private final File file;
+
+    private final long size;
+
+    private final String etag;
+
+    private final long lastModified;
+
+    private final String contentType;
+
+    private final Map<String, String> userMetadata;
+
+    public StubObject(String key, byte[] data, File file, long size, String etag, long lastModified,
+                      String contentType, Map<String, String> userMetadata) {
+        this.key = key;
+        this.data = data;
+        this.file = file;
+        this.size = size;
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.contentType = contentType;
+        this.userMetadata = userMetadata == null ? Collections.<String, String>emptyMap() : userMetadata;
+    }
+
+    /**
+     * 以新的 key 复制元数据(内容共享, 对象不可变)
+     *
+     * @param newKey       新key
+     * @param lastModified 修改时间
+     * @return {@link StubObject}
+     */
+    public StubObject withKey(String newKey, long lastModified) {
+        return new StubObject(newKey, data, file, size, etag, lastModified, contentType, userMetadata);
+    }
+
+    /**
+     * 打开内容流
+     *
+     * @param offset 起始位置
+     * @param length 长度
+     * @return {@link InputStream}
+     * @throws IOException ioexception
+     */
+    public InputStream open(long offset, long length) throws IOException {
+        if (data != null) {
+            return new ByteArrayInputStream(data, (int) offset, (int) length);
+        }
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        raf.seek(offset);
+        return new BoundedInputStream(Channels.newInputStream(raf.getChannel()), length);
+    }
+
+    /**
+     * 限定长度的输入流
+     */
+    private static final class BoundedInputStream extends java.io.FilterInputStream {
+
+        private long remaining;
+
+        private BoundedInputStream(InputStream in, long remaining) {
+            super(in);
+            this.remaining = remaining;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = super.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int n = super.read(b, off, (int) Math.min(len, remaining));
+            if (n > 0) {
+                remaining -= n;
+            }
+            return n;
+        }
+    }
+}
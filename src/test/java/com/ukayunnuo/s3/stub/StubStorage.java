@@ -0,0 +1,420 @@
+package com.ukayunnuo.s3.stub;
+
+import cn.hutool.core.util.HexUtil;
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.StrUtil;
+import com.ukayunnuo.s3.exception.S3Exception;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * 桩服务 存储
+ * <p> dataDir 为空时所有内容保存在内存中, 否则对象内容落盘(元数据在启动时从磁盘恢复) </p>
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+@Slf4j
+public class StubStorage {
+
+    private static final String META_PREFIX = "meta.";
+
+    private final File dataDir;
+
+    private final Map<String, ConcurrentSkipListMap<String, StubObject>> buckets = new ConcurrentHashMap<>();
+
+    private final Map<String, Upload> uploads = new ConcurrentHashMap<>();
+
+    public StubStorage(String dataDir) {
+        this.dataDir = StrUtil.isBlank(dataDir) ? null : new File(dataDir);
+        if (this.dataDir != null) {
+            load();
+        }
+    }
+
+    /* ------------------------------------> bucket operate start  <------------------------------------------------ */
+
+    public boolean createBucket(String bucket) {
+        if (dataDir != null) {
+            bucketDir(bucket).mkdirs();
+        }
+        return buckets.putIfAbsent(bucket, new ConcurrentSkipListMap<>()) == null;
+    }
+
+    public boolean bucketExists(String bucket) {
+        return buckets.containsKey(bucket);
+    }
+
+    /**
+     * 删除桶
+     *
+     * @param bucket 桶
+     * @return false: 桶非空
+     */
+    public boolean deleteBucket(String bucket) {
+        ConcurrentSkipListMap<String, StubObject> objects = buckets.get(bucket);
+        if (objects == null) {
+            return true;
+        }
+        if (!objects.isEmpty()) {
+            return false;
+        }
+        buckets.remove(bucket);
+        if (dataDir != null) {
+            bucketDir(bucket).delete();
+        }
+        return true;
+    }
+
+    public List<String> listBuckets() {
+        return new ArrayList<>(new java.util.TreeSet<>(buckets.keySet()));
+    }
+
+    /**
+     * 获取桶内对象(有序)
+     *
+     * @param bucket 桶
+     * @return {@link NavigableMap}, 桶不存在时返回 null
+     */
+    public NavigableMap<String, StubObject> objects(String bucket) {
+        return buckets.get(bucket);
+    }
+
+    /* ------------------------------------> object operate start  <------------------------------------------------ */
+
+    public StubObject get(String bucket, String key) {
+        ConcurrentSkipListMap<String, StubObject> objects = buckets.get(bucket);
+        return objects == null ? null : objects.get(key);
+    }
+
+    public StubObject put(String bucket, String key, InputStream body, String contentType, Map<String, String> userMetadata) throws IOException {
+        File target = dataDir == null ? null : objectFile(bucket, key);
+        StubObject object = write(key, body, target, contentType, userMetadata);
+        return commit(bucket, object);
+    }
+
+    public boolean delete(String bucket, String key) {
+        ConcurrentSkipListMap<String, StubObject> objects = buckets.get(bucket);
+        StubObject removed = objects == null ? null : objects.remove(key);
+        if (removed != null && dataDir != null) {
+            removed.getFile().delete();
+            metaFile(removed.getFile()).delete();
+        }
+        return removed != null;
+    }
+
+    public StubObject copy(String srcBucket, String srcKey, String dstBucket, String dstKey,
+                           String contentType, Map<String, String> userMetadata) throws IOException {
+        StubObject source = get(srcBucket, srcKey);
+        if (source == null) {
+            return null;
+        }
+        Map<String, String> meta = userMetadata == null ? source.getUserMetadata() : userMetadata;
+        String type = contentType == null ? source.getContentType() : contentType;
+        if (dataDir == null) {
+            return commit(dstBucket, new StubObject(dstKey, source.getData(), null, source.getSize(), source.getEtag(),
+                    System.currentTimeMillis(), type, meta));
+        }
+        File target = objectFile(dstBucket, dstKey);
+        File tmp = tmpFile(target);
+        Files.copy(source.getFile().toPath(), tmp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return commit(dstBucket, new StubObject(dstKey, null, target, source.getSize(), source.getEtag(),
+                System.currentTimeMillis(), type, meta));
+    }
+
+    /* ------------------------------------> multipart operate start  <------------------------------------------------ */
+
+    public String initiateUpload(String bucket, String key, String contentType, Map<String, String> userMetadata) {
+        String uploadId = IdUtil.fastSimpleUUID();
+        uploads.put(uploadId, new Upload(uploadId, bucket, key, contentType, userMetadata));
+        if (dataDir != null) {
+            uploadDir(uploadId).mkdirs();
+        }
+        return uploadId;
+    }
+
+    public Upload getUpload(String uploadId) {
+        return uploads.get(uploadId);
+    }
+
+    public List<Upload> listUploads(String bucket) {
+        List<Upload> result = new ArrayList<>();
+        for (Upload upload : uploads.values()) {
+            if (upload.getBucket().equals(bucket)) {
+                result.add(upload);
+            }
+        }
+        result.sort((a, b) -> a.getKey().equals(b.getKey())
+                ? a.getUploadId().compareTo(b.getUploadId()) : a.getKey().compareTo(b.getKey()));
+        return result;
+    }
+
+    public StubObject uploadPart(Upload upload, int partNumber, InputStream body) throws IOException {
+        File target = dataDir == null ? null : new File(uploadDir(upload.getUploadId()), partNumber + ".part");
+        StubObject part = write(String.valueOf(partNumber), body, target, null, null);
+        upload.getParts().put(partNumber, part);
+        return part;
+    }
+
+    /**
+     * 完成分段上传
+     *
+     * @param upload      上传
+     * @param partNumbers 按顺序提交的分段号
+     * @return {@link StubObject}
+     * @throws IOException ioexception
+     */
+    public StubObject completeUpload(Upload upload, List<Integer> partNumbers) throws IOException {
+        MessageDigest md5s = md5();
+        List<StubObject> parts = new ArrayList<>(partNumbers.size());
+        long size = 0;
+        for (Integer partNumber : partNumbers) {
+            StubObject part = upload.getParts().get(partNumber);
+            if (part == null) {
+                throw new S3Exception("InvalidPart: " + partNumber);
+            }
+            parts.add(part);
+            size += part.getSize();
+            md5s.update(HexUtil.decodeHex(part.getEtag()));
+        }
+        String etag = HexUtil.encodeHexStr(md5s.digest()) + "-" + parts.size();
+        File target = dataDir == null ? null : objectFile(upload.getBucket(), upload.getKey());
+        byte[] data = null;
+        OutputStream out;
+        File tmp = null;
+        if (target == null) {
+            out = new ByteArrayOutputStream((int) size);
+        } else {
+            tmp = tmpFile(target);
+            out = new FileOutputStream(tmp);
+        }
+        try {
+            for (StubObject part : parts) {
+                try (InputStream in = part.open(0, part.getSize())) {
+                    copy(in, out);
+                }
+            }
+        } finally {
+            out.close();
+        }
+        if (target == null) {
+            data = ((ByteArrayOutputStream) out).toByteArray();
+        } else {
+            Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        abortUpload(upload.getUploadId());
+        return commit(upload.getBucket(), new StubObject(upload.getKey(), data, target, size, etag,
+                System.currentTimeMillis(), upload.getContentType(), upload.getUserMetadata()));
+    }
+
+    public boolean abortUpload(String uploadId) {
+        Upload upload = uploads.remove(uploadId);
+        if (upload != null && dataDir != null) {
+            File dir = uploadDir(uploadId);
+            File[] files = dir.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            dir.delete();
+        }
+        return upload != null;
+    }
+
+    /* ------------------------------------> internal  <------------------------------------------------ */
+
+    private StubObject write(String key, InputStream body, File target, String contentType, Map<String, String> userMetadata) throws IOException {
+        MessageDigest md5 = md5();
+        long size;
+        byte[] data = null;
+        if (target == null) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            size = copy(body, out, md5);
+            data = out.toByteArray();
+        } else {
+            File tmp = tmpFile(target);
+            try (OutputStream out = new FileOutputStream(tmp)) {
+                size = copy(body, out, md5);
+            }
+            Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        return new StubObject(key, data, target, size, HexUtil.encodeHexStr(md5.digest()),
+                System.currentTimeMillis(), contentType, userMetadata);
+    }
+
+    private StubObject commit(String bucket, StubObject object) throws IOException {
+        ConcurrentSkipListMap<String, StubObject> objects = buckets.get(bucket);
+        if (objects == null) {
+            throw new S3Exception("NoSuchBucket: " + bucket);
+        }
+        if (object.getFile() != null) {
+            writeMeta(object);
+        }
+        objects.put(object.getKey(), object);
+        return object;
+    }
+
+    private void writeMeta(StubObject object) throws IOException {
+        Properties props = new Properties();
+        props.setProperty("key", object.getKey());
+        props.setProperty("size", String.valueOf(object.getSize()));
+        props.setProperty("etag", object.getEtag());
+        props.setProperty("lastModified", String.valueOf(object.getLastModified()));
+        if (object.getContentType() != null) {
+            props.setProperty("contentType", object.getContentType());
+        }
+        for (Map.Entry<String, String> entry : object.getUserMetadata().entrySet()) {
+            props.setProperty(META_PREFIX + entry.getKey(), entry.getValue());
+        }
+        File meta = metaFile(object.getFile());
+        File tmp = tmpFile(meta);
+        try (OutputStream out = new FileOutputStream(tmp)) {
+            props.store(out, null);
+        }
+        Files.move(tmp.toPath(), meta.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void load() {
+        File[] dirs = new File(dataDir, "buckets").listFiles(File::isDirectory);
+        if (dirs == null) {
+            return;
+        }
+        for (File dir : dirs) {
+            ConcurrentSkipListMap<String, StubObject> objects = new ConcurrentSkipListMap<>();
+            File[] metas = dir.listFiles((d, name) -> name.endsWith(".meta"));
+            if (metas != null) {
+                for (File meta : metas) {
+                    try (InputStream in = new FileInputStream(meta)) {
+                        Properties props = new Properties();
+                        props.load(in);
+                        Map<String, String> userMetadata = new HashMap<>();
+                        for (String name : props.stringPropertyNames()) {
+                            if (name.startsWith(META_PREFIX)) {
+                                userMetadata.put(name.substring(META_PREFIX.length()), props.getProperty(name));
+                            }
+                        }
+                        String key = props.getProperty("key");
+                        File data = new File(dir, meta.getName().replace(".meta", ".data"));
+                        objects.put(key, new StubObject(key, null, data, Long.parseLong(props.getProperty("size")),
+                                props.getProperty("etag"), Long.parseLong(props.getProperty("lastModified")),
+                                props.getProperty("contentType"), userMetadata));
+                    } catch (IOException | RuntimeException e) {
+                        log.warn("stub storage skip broken meta file:{}, msg:{}", meta, e.getMessage());
+                    }
+                }
+            }
+            buckets.put(decodeName(dir.getName()), objects);
+        }
+        log.info("stub storage loaded, dataDir:{}, buckets:{}", dataDir, buckets.keySet());
+    }
+
+    private File bucketDir(String bucket) {
+        return new File(new File(dataDir, "buckets"), HexUtil.encodeHexStr(bucket.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private File uploadDir(String uploadId) {
+        return new File(new File(dataDir, "uploads"), uploadId);
+    }
+
+    private File objectFile(String bucket, String key) {
+        MessageDigest sha1;
+        try {
+            sha1 = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new S3Exception(e);
+        }
+        File dir = bucketDir(bucket);
+        dir.mkdirs();
+        return new File(dir, HexUtil.encodeHexStr(sha1.digest(key.getBytes(StandardCharsets.UTF_8))) + ".data");
+    }
+
+    private static File metaFile(File data) {
+        return new File(data.getParentFile(), data.getName().replace(".data", ".meta"));
+    }
+
+    private static File tmpFile(File target) {
+        return new File(target.getParentFile(), target.getName() + "." + IdUtil.fastSimpleUUID() + ".tmp");
+    }
+
+    private static String decodeName(String hex) {
+        return new String(HexUtil.decodeHex(hex), StandardCharsets.UTF_8);
+    }
+
+    private static MessageDigest md5() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new S3Exception(e);
+        }
+    }
+
+    private static long copy(InputStream in, OutputStream out) throws IOException {
+        return copy(in, out, null);
+    }
+
+    private static long copy(InputStream in, OutputStream out, MessageDigest digest) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        long total = 0;
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+            if (digest != null) {
+                digest.update(buffer, 0, n);
+            }
+            total += n;
+        }
+        return total;
+    }
+
+    /**
+     * 进行中的分段上传
+     */
+    @Getter
+    public static class Upload {
+
+        private final String uploadId;
+
+        private final String bucket;
+
+        private final String key;
+
+        private final String contentType;
+
+        private final Map<String, String> userMetadata;
+
+        private final long initiated = System.currentTimeMillis();
+
+        private final ConcurrentSkipListMap<Integer, StubObject> parts = new ConcurrentSkipListMap<>();
+
+        Upload(String uploadId, String bucket, String key, String contentType, Map<String, String> userMetadata) {
+            this.uploadId = uploadId;
+            this.bucket = bucket;
+            this.key = key;
+            this.contentType = contentType;
+            this.userMetadata = userMetadata;
+        }
+    }
+}
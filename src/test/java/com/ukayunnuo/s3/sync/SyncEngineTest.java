@@ -0,0 +1,103 @@
+package com.ukayunnuo.s3.sync;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.crypto.SecureUtil;
+import com.ukayunnuo.s3.storage.InMemoryObjectStorage;
+import com.ukayunnuo.s3.storage.ObjectInfo;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link SyncEngine} 测试
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+public class SyncEngineTest {
+
+    private static final String BUCKET = "bucket";
+
+    private final InMemoryObjectStorage storage = new InMemoryObjectStorage();
+
+    private File root;
+
+    private File localDir;
+
+    @Before
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("sync-engine").toFile();
+        localDir = new File(root, "local");
+    }
+
+    @After
+    public void tearDown() {
+        FileUtil.del(root);
+    }
+
+    @Test
+    public void downloadRejectsKeysOutsideLocalDir() throws IOException {
+        storage.putObject(BUCKET, "backup/a.txt", bytes("a"), null, null);
+        storage.putObject(BUCKET, "backup/sub/b.txt", bytes("b"), null, null);
+        storage.putObject(BUCKET, "backup/../escape.txt", bytes("x"), null, null);
+        storage.putObject(BUCKET, "backup/sub/../../../escape2.txt", bytes("x"), null, null);
+
+        SyncEngine engine = new SyncEngine(storage);
+        SyncResult result = engine.execute(engine.plan(SyncDirection.DOWNLOAD, localDir, BUCKET, "backup/"));
+
+        assertEquals(2, result.getSucceeded());
+        assertEquals(2, result.getFailures().size());
+        for (SyncAction action : result.failedActions()) {
+            assertTrue(action.getKey(), action.getKey().contains(".."));
+        }
+        assertArrayEquals(bytes("a"), Files.readAllBytes(new File(localDir, "a.txt").toPath()));
+        assertArrayEquals(bytes("b"), Files.readAllBytes(new File(localDir, "sub/b.txt").toPath()));
+        assertFalse(new File(root, "escape.txt").exists());
+        assertFalse(new File(root.getParentFile(), "escape2.txt").exists());
+    }
+
+    @Test
+    public void checksumModeConfirmsMd5WithHead() throws IOException {
+        InMemoryObjectStorage storage = new InMemoryObjectStorage() {
+            @Override
+            public ObjectInfo headObject(String bucket, String key) {
+                // 列举结果没有 MD5, HEAD 按加密方式确认
+                ObjectInfo info = super.headObject(bucket, key);
+                info.setMd5(SecureUtil.md5(new String(content(bucket, key), StandardCharsets.UTF_8)));
+                return info;
+            }
+        };
+        storage.putObject(BUCKET, "backup/same.txt", bytes("same"), null, null);
+        storage.putObject(BUCKET, "backup/diff.txt", bytes("old!"), null, null);
+        assertTrue(localDir.mkdirs());
+        Files.write(new File(localDir, "same.txt").toPath(), bytes("same"));
+        Files.write(new File(localDir, "diff.txt").toPath(), bytes("new!"));
+        // 本地文件比对象新, 按修改时间比较时两个文件都会上传
+        long future = System.currentTimeMillis() + 60000;
+        assertTrue(new File(localDir, "same.txt").setLastModified(future));
+        assertTrue(new File(localDir, "diff.txt").setLastModified(future));
+
+        SyncProp prop = new SyncProp();
+        prop.setCompareMode(SyncCompareMode.CHECKSUM);
+        SyncPlan plan = new SyncEngine(storage, prop).plan(SyncDirection.UPLOAD, localDir, BUCKET, "backup/");
+
+        assertEquals(1, plan.getActions().size());
+        assertEquals("backup/diff.txt", plan.getActions().get(0).getKey());
+        assertEquals("checksum", plan.getActions().get(0).getReason());
+        assertEquals(2, storage.calls("headObject"));
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
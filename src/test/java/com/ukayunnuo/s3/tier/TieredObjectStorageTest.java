@@ -0,0 +1,122 @@
+package com.ukayunnuo.s3.tier;
+
+import com.ukayunnuo.s3.storage.InMemoryObjectStorage;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * {@link TieredObjectStorage} 降级测试
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+public class TieredObjectStorageTest {
+
+    private static final String BUCKET = "bucket";
+
+    private final InMemoryObjectStorage hot = new InMemoryObjectStorage();
+
+    private final InMemoryObjectStorage cold = new InMemoryObjectStorage();
+
+    private final TieredStorageProp prop = new TieredStorageProp();
+
+    public TieredObjectStorageTest() {
+        prop.setHotCapacityBytes(100);
+        prop.setDemoteIntervalMillis(60000);
+        // 上次运行留在热层的副本
+        hot.putObject(BUCKET, "a", new byte[80], null, null);
+        hot.putObject(BUCKET, "b", new byte[80], null, null);
+    }
+
+    @Test
+    public void outdatedHotCopyIsNotServedAfterRestart() throws IOException {
+        // 热层副本记录的冷层 ETag 与冷层当前对象不一致(上次运行删除副本失败)
+        hot.putObject(BUCKET, "k", bytes("old"), null, Collections.singletonMap(TieredObjectStorage.META_COLD_ETAG, "outdated"));
+        cold.putObject(BUCKET, "k", bytes("new"), null, null);
+
+        try (TieredObjectStorage tiered = new TieredObjectStorage(hot, cold, prop)) {
+            assertEquals(cold.headObject(BUCKET, "k").getEtag(), tiered.headObject(BUCKET, "k").getEtag());
+            assertArrayEquals(bytes("new"), readAll(tiered.getObject(BUCKET, "k", 0, -1, null)));
+            assertEquals(0, tiered.getHotHitCount());
+            assertNull(hot.content(BUCKET, "k"));
+        }
+    }
+
+    @Test
+    public void currentHotCopyIsConfirmedOnce() throws IOException {
+        String etag = cold.putObject(BUCKET, "k", bytes("same"), null, null);
+        hot.putObject(BUCKET, "k", bytes("same"), null, Collections.singletonMap(TieredObjectStorage.META_COLD_ETAG, etag));
+
+        try (TieredObjectStorage tiered = new TieredObjectStorage(hot, cold, prop)) {
+            assertArrayEquals(bytes("same"), readAll(tiered.getObject(BUCKET, "k", 0, -1, null)));
+            assertArrayEquals(bytes("same"), readAll(tiered.getObject(BUCKET, "k", 0, -1, etag)));
+            assertEquals(2, tiered.getHotHitCount());
+            assertEquals(1, cold.calls("headObject"));
+            assertEquals(0, cold.calls("getObject"));
+        }
+    }
+
+    @Test
+    public void failedInvalidateDoesNotDependOnTrackedAccesses() throws IOException {
+        prop.setMaxTrackedKeys(1);
+        String etag = cold.putObject(BUCKET, "k", bytes("v1"), null, null);
+        hot.putObject(BUCKET, "k", bytes("v1"), null, Collections.singletonMap(TieredObjectStorage.META_COLD_ETAG, etag));
+
+        try (TieredObjectStorage tiered = new TieredObjectStorage(hot, cold, prop)) {
+            assertArrayEquals(bytes("v1"), readAll(tiered.getObject(BUCKET, "k", 0, -1, null)));
+            hot.setFault(call -> call.startsWith("deleteObjects"));
+            tiered.putObject(BUCKET, "k", bytes("v2"), null, null);
+            // 访问其他 key 淘汰 k 的访问记录
+            cold.putObject(BUCKET, "other", bytes("o"), null, null);
+            readAll(tiered.getObject(BUCKET, "other", 0, -1, null));
+            hot.setFault(null);
+
+            assertArrayEquals(bytes("v2"), readAll(tiered.getObject(BUCKET, "k", 0, -1, null)));
+            assertNull(hot.content(BUCKET, "k"));
+        }
+    }
+
+    @Test
+    public void unconfiguredBucketIsNotDemotedBeforeAccess() {
+        try (TieredObjectStorage tiered = new TieredObjectStorage(hot, cold, prop)) {
+            assertEquals(0, tiered.demote());
+            assertEquals(0, hot.calls("listObjects"));
+        }
+    }
+
+    @Test
+    public void configuredBucketIsDemotedAfterRestart() {
+        prop.setBuckets(Collections.singletonList(BUCKET));
+
+        try (TieredObjectStorage tiered = new TieredObjectStorage(hot, cold, prop)) {
+            assertEquals(1, tiered.demote());
+            assertEquals(80, tiered.getHotBytes());
+            assertEquals(1, hot.ids().size());
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        try (InputStream input = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[64];
+            int n;
+            while ((n = input.read(buffer)) >= 0) {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.ukayunnuo.s3.transfer;
+
+import com.ukayunnuo.s3.exception.S3Exception;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link ChunkRunner} 测试
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+public class ChunkRunnerTest {
+
+    @Test
+    public void runsAllChunks() {
+        AtomicInteger done = new AtomicInteger();
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            tasks.add(() -> {
+                done.incrementAndGet();
+                return null;
+            });
+        }
+        ChunkRunner.runAll(tasks, 4, "chunk-test", TransferHandle.of("b", "k", -1));
+        assertEquals(20, done.get());
+    }
+
+    @Test(timeout = 10000)
+    public void failureWaitsForRunningChunks() {
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicBoolean running = new AtomicBoolean();
+        Callable<Void> slow = () -> {
+            running.set(true);
+            started.countDown();
+            TimeUnit.MILLISECONDS.sleep(300);
+            running.set(false);
+            return null;
+        };
+        Callable<Void> failing = () -> {
+            started.await();
+            throw new IllegalStateException("boom");
+        };
+        try {
+            ChunkRunner.runAll(Arrays.asList(slow, failing), 2, "chunk-test", TransferHandle.of("b", "k", -1));
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("boom", e.getMessage());
+        }
+        // 返回时执行中的分块已结束, 调用方可安全关闭文件通道
+        assertFalse(running.get());
+    }
+
+    @Test(expected = S3Exception.class)
+    public void checkedFailureIsWrapped() {
+        Callable<Void> failing = () -> {
+            throw new IOException("io");
+        };
+        ChunkRunner.runAll(Arrays.asList(failing), 1, "chunk-test", TransferHandle.of("b", "k", -1));
+    }
+}
@@ -0,0 +1,104 @@
+package com.ukayunnuo.s3.transfer;
+
+import cn.hutool.core.io.FileUtil;
+import com.ukayunnuo.s3.exception.S3Exception;
+import com.ukayunnuo.s3.storage.InMemoryObjectStorage;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link ResumableDownloader} 测试
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+public class ResumableDownloaderTest {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private File dir;
+
+    private File target;
+
+    private byte[] content;
+
+    private InMemoryObjectStorage storage;
+
+    private ResumableDownloadProp prop;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("resumable-download").toFile();
+        target = new File(dir, "data.bin");
+        content = new byte[CHUNK_SIZE * 5 + 77];
+        new Random(33).nextBytes(content);
+        storage = new InMemoryObjectStorage();
+        storage.putObject("b", "k", content, null);
+        prop = new ResumableDownloadProp();
+        prop.setChunkSize(CHUNK_SIZE);
+        prop.setConcurrency(1);
+        prop.setBufferSize(8192);
+    }
+
+    @After
+    public void tearDown() {
+        FileUtil.del(dir);
+    }
+
+    @Test
+    public void downloadsAllChunks() throws IOException {
+        new ResumableDownloader(storage, prop).download("b", "k", target);
+        assertArrayEquals(content, Files.readAllBytes(target.toPath()));
+        assertFalse(new File(target.getPath() + DownloadCheckpoint.PART_SUFFIX).exists());
+        assertFalse(new File(target.getPath() + DownloadCheckpoint.CHECKPOINT_SUFFIX).exists());
+    }
+
+    @Test
+    public void resumesFromCheckpoint() throws IOException {
+        AtomicInteger gets = new AtomicInteger();
+        storage.setFault(call -> call.startsWith("getObject") && gets.incrementAndGet() == 4);
+        try {
+            new ResumableDownloader(storage, prop).download("b", "k", target);
+            fail();
+        } catch (S3Exception e) {
+            assertTrue(e.getMessage().contains("injected fault"));
+        }
+        assertFalse(target.exists());
+
+        storage.setFault(null);
+        new ResumableDownloader(storage, prop).download("b", "k", target);
+        assertArrayEquals(content, Files.readAllBytes(target.toPath()));
+        // 前三块已完成, 续传只下载剩余三块
+        assertEquals(4 + 3, storage.calls("getObject"));
+    }
+
+    @Test
+    public void discardsCheckpointWhenObjectChanged() throws IOException {
+        AtomicInteger gets = new AtomicInteger();
+        storage.setFault(call -> call.startsWith("getObject") && gets.incrementAndGet() == 2);
+        try {
+            new ResumableDownloader(storage, prop).download("b", "k", target);
+            fail();
+        } catch (S3Exception expected) {
+            // 检查点保留
+        }
+        storage.setFault(null);
+        content[0]++;
+        storage.putObject("b", "k", content, null);
+        new ResumableDownloader(storage, prop).download("b", "k", target);
+        assertArrayEquals(content, Files.readAllBytes(target.toPath()));
+    }
+}
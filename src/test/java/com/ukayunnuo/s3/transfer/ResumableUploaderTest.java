@@ -0,0 +1,113 @@
+package com.ukayunnuo.s3.transfer;
+
+import cn.hutool.core.io.FileUtil;
+import com.ukayunnuo.s3.exception.S3Exception;
+import com.ukayunnuo.s3.storage.InMemoryObjectStorage;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link ResumableUploader} 测试
+ *
+ * @author ukayunnuo
+ * @since 1.0.0
+ */
+public class ResumableUploaderTest {
+
+    private static final int PART_SIZE = (int) ResumableUploader.MIN_PART_SIZE;
+
+    private File dir;
+
+    private File file;
+
+    private byte[] content;
+
+    private InMemoryObjectStorage storage;
+
+    private ResumableUploadProp prop;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("resumable-upload").toFile();
+        content = new byte[PART_SIZE * 2 + 1234];
+        new Random(32).nextBytes(content);
+        file = new File(dir, "data.bin");
+        Files.write(file.toPath(), content);
+        storage = new InMemoryObjectStorage();
+        prop = new ResumableUploadProp();
+        prop.setJournalDir(new File(dir, "journal").getPath());
+        prop.setPartSize(PART_SIZE);
+        prop.setConcurrency(1);
+    }
+
+    @After
+    public void tearDown() {
+        FileUtil.del(dir);
+    }
+
+    @Test
+    public void uploadsAllParts() {
+        new ResumableUploader(storage, prop).upload("b", "k", file);
+        assertArrayEquals(content, storage.content("b", "k"));
+        assertEquals(3, storage.calls("uploadPart"));
+        assertEquals(0, storage.pendingUploads());
+        assertEquals(0, journalFiles());
+    }
+
+    @Test
+    public void resumesFromJournal() {
+        AtomicInteger parts = new AtomicInteger();
+        storage.setFault(call -> call.startsWith("uploadPart") && parts.incrementAndGet() == 3);
+        try {
+            new ResumableUploader(storage, prop).upload("b", "k", file);
+            fail();
+        } catch (S3Exception e) {
+            assertTrue(e.getMessage().contains("injected fault"));
+        }
+        assertEquals(1, storage.pendingUploads());
+        assertTrue(journalFiles() > 0);
+
+        storage.setFault(null);
+        new ResumableUploader(storage, prop).upload("b", "k", file);
+        assertArrayEquals(content, storage.content("b", "k"));
+        // 前两段已确认, 续传只上传第三段
+        assertEquals(4, storage.calls("uploadPart"));
+        assertEquals(1, storage.calls("initiateMultipartUpload"));
+        assertEquals(0, storage.pendingUploads());
+    }
+
+    @Test
+    public void restartsWhenFileChanged() throws IOException {
+        storage.setFault(call -> call.startsWith("completeMultipartUpload"));
+        try {
+            new ResumableUploader(storage, prop).upload("b", "k", file);
+            fail();
+        } catch (S3Exception expected) {
+            // 日志保留
+        }
+        storage.setFault(null);
+        content[0]++;
+        Files.write(file.toPath(), content);
+        file.setLastModified(file.lastModified() + 2000);
+        new ResumableUploader(storage, prop).upload("b", "k", file);
+        assertArrayEquals(content, storage.content("b", "k"));
+        assertEquals(2, storage.calls("initiateMultipartUpload"));
+    }
+
+    private int journalFiles() {
+        String[] names = new File(prop.getJournalDir()).list();
+        return names == null ? 0 : names.length;
+    }
+}